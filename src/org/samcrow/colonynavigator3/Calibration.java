@@ -0,0 +1,356 @@
+package org.samcrow.colonynavigator3;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.zip.CRC32;
+
+/**
+ * A coordinate transformation fitted by least squares to surveyed control
+ * points, with the residual of each point.
+ *
+ * Control points are read from a CSV file, so the calibration can be changed
+ * without rebuilding the application. Each line has a name, the local X and
+ * Y coordinates, the latitude and the longitude:
+ * <pre>
+ * # name, x, y, latitude, longitude
+ * BM12, 68, 707, 31.87265776, -109.04243
+ * </pre>
+ * Blank lines, lines starting with # and a header line are ignored.
+ *
+ * The solved coefficients are saved in a cache file along with a checksum of
+ * the control point file. When the control points have not changed, the
+ * coefficients are read from the cache instead of being solved again.
+ *
+ * @author Sam Crow
+ */
+public class Calibration {
+
+	private static final String CHECKSUM_KEY = "checksum";
+	private static final String COEFFICIENTS_KEY = "coefficients";
+
+	private final CoordinateTransformer transformer;
+
+	private final List<String> names;
+
+	private final List<MapPoint> points;
+
+	/**
+	 * The distance, in local units, between the surveyed position of each point
+	 * and the position its latitude and longitude are transformed to
+	 */
+	private final double[] residuals;
+
+	/**
+	 * Constructor that fits a transformation to control points
+	 *
+	 * @param names
+	 *            The name of each point
+	 * @param points
+	 *            The points, in the same order as the names
+	 * @throws IllegalArgumentException
+	 *             if there are no points, or the points do not define a
+	 *             transformation
+	 */
+	public Calibration(List<String> names, List<MapPoint> points) {
+		this(names, points, CoordinateTransformer.fit(points));
+	}
+
+	private Calibration(List<String> names, List<MapPoint> points, CoordinateTransformer transformer) {
+		if(names.size() != points.size()) {
+			throw new IllegalArgumentException("Got " + names.size() + " names for " + points.size() + " points");
+		}
+		this.names = Collections.unmodifiableList(new ArrayList<String>(names));
+		this.points = Collections.unmodifiableList(new ArrayList<MapPoint>(points));
+		this.transformer = transformer;
+
+		final int count = points.size();
+		final double[] local = new double[2 * count];
+		for(int i = 0; i < count; i++) {
+			local[2 * i] = points.get(i).getLongitude();
+			local[2 * i + 1] = points.get(i).getLatitude();
+		}
+		transformer.toLocal(local, local, count);
+		residuals = new double[count];
+		for(int i = 0; i < count; i++) {
+			final double dx = local[2 * i] - points.get(i).getX();
+			final double dy = local[2 * i + 1] - points.get(i).getY();
+			residuals[i] = Math.sqrt(dx * dx + dy * dy);
+		}
+	}
+
+	/**
+	 * Load control points from a file and fit a transformation to them, or
+	 * read the transformation from a cache if the control points have not
+	 * changed since it was saved. If the cache is missing or out of date,
+	 * it is replaced.
+	 *
+	 * @param controlPointFile
+	 *            The file to read control points from
+	 * @param cacheFile
+	 *            The file to read and write the solved coefficients
+	 * @return The calibration
+	 * @throws IOException
+	 *             if the control point file could not be read or contains an
+	 *             invalid line
+	 * @throws IllegalArgumentException
+	 *             if the control points do not define a transformation
+	 */
+	public static Calibration load(File controlPointFile, File cacheFile) throws IOException {
+		final byte[] content = readFully(controlPointFile);
+		final CRC32 crc = new CRC32();
+		crc.update(content);
+		final String checksum = Long.toHexString(crc.getValue());
+
+		final List<String> names = new ArrayList<String>();
+		final List<MapPoint> points = new ArrayList<MapPoint>();
+		readControlPoints(new ByteArrayInputStream(content), names, points);
+
+		final CoordinateTransformer cached = readCache(cacheFile, checksum);
+		if(cached != null) {
+			return new Calibration(names, points, cached);
+		}
+		final Calibration calibration = new Calibration(names, points);
+		try {
+			writeCache(cacheFile, checksum, calibration.transformer);
+		} catch (IOException e) {
+			System.err.println("Could not save calibration cache");
+			e.printStackTrace();
+		}
+		return calibration;
+	}
+
+	/**
+	 * Read control points
+	 *
+	 * @param in
+	 *            The stream to read from. It is not closed.
+	 * @param names
+	 *            A list to add the name of each point to
+	 * @param points
+	 *            A list to add the points to
+	 * @throws IOException
+	 *             if the stream could not be read or a line is not valid
+	 */
+	public static void readControlPoints(InputStream in, List<String> names, List<MapPoint> points)
+			throws IOException {
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+		boolean firstLine = true;
+		int lineNumber = 0;
+		String line;
+		while((line = reader.readLine()) != null) {
+			lineNumber++;
+			line = line.trim();
+			if(line.length() == 0 || line.startsWith("#")) {
+				continue;
+			}
+			final String[] parts = line.split("\\s*,\\s*");
+			if(parts.length != 5) {
+				throw new IOException("Line " + lineNumber + ": expected name, x, y, latitude, longitude");
+			}
+			try {
+				final double x = Double.parseDouble(parts[1]);
+				final double y = Double.parseDouble(parts[2]);
+				final double latitude = Double.parseDouble(parts[3]);
+				final double longitude = Double.parseDouble(parts[4]);
+				names.add(parts[0]);
+				points.add(new MapPoint(x, y, latitude, longitude));
+			} catch (NumberFormatException e) {
+				if(!firstLine) {
+					throw new IOException("Line " + lineNumber + ": " + e.getMessage());
+				}
+				// Header
+			}
+			firstLine = false;
+		}
+	}
+
+	/**
+	 * Read coefficients from a cache file
+	 *
+	 * @return A transformer from the cached coefficients, or null if the cache
+	 *         does not exist, cannot be read or has a different checksum
+	 */
+	private static CoordinateTransformer readCache(File cacheFile, String checksum) {
+		if(!cacheFile.exists()) {
+			return null;
+		}
+		try {
+			final Properties properties = new Properties();
+			final InputStream in = new FileInputStream(cacheFile);
+			try {
+				properties.load(in);
+			} finally {
+				in.close();
+			}
+			if(!checksum.equals(properties.getProperty(CHECKSUM_KEY))) {
+				return null;
+			}
+			final String[] parts = properties.getProperty(COEFFICIENTS_KEY, "").split(",");
+			final double[] coefficients = new double[parts.length];
+			for(int i = 0; i < parts.length; i++) {
+				coefficients[i] = Double.parseDouble(parts[i]);
+			}
+			return CoordinateTransformer.fromCoefficients(coefficients);
+		} catch (IOException e) {
+			e.printStackTrace();
+		} catch (IllegalArgumentException e) {
+			// Includes NumberFormatException
+			System.err.println("Invalid calibration cache: " + e.getMessage());
+		}
+		return null;
+	}
+
+	private static void writeCache(File cacheFile, String checksum, CoordinateTransformer transformer)
+			throws IOException {
+		final StringBuilder coefficients = new StringBuilder();
+		for(double value : transformer.getCoefficients()) {
+			if(coefficients.length() != 0) {
+				coefficients.append(',');
+			}
+			// Double.toString gives the exact value back when parsed
+			coefficients.append(Double.toString(value));
+		}
+		final Properties properties = new Properties();
+		properties.setProperty(CHECKSUM_KEY, checksum);
+		properties.setProperty(COEFFICIENTS_KEY, coefficients.toString());
+
+		final OutputStream out = new FileOutputStream(cacheFile);
+		try {
+			properties.store(out, "Solved calibration coefficients. Delete to solve again.");
+		} finally {
+			out.close();
+		}
+	}
+
+	private static byte[] readFully(File file) throws IOException {
+		final InputStream in = new FileInputStream(file);
+		try {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[4096];
+			int read;
+			while((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * @return The fitted transformation
+	 */
+	public CoordinateTransformer getTransformer() {
+		return transformer;
+	}
+
+	/**
+	 * @return The number of control points
+	 */
+	public int getPointCount() {
+		return points.size();
+	}
+
+	/**
+	 * @param index
+	 *            The index of a point
+	 * @return The name of the point
+	 */
+	public String getName(int index) {
+		return names.get(index);
+	}
+
+	/**
+	 * @return The control points
+	 */
+	public List<MapPoint> getPoints() {
+		return points;
+	}
+
+	/**
+	 * @param index
+	 *            The index of a point
+	 * @return The point
+	 */
+	public MapPoint getPoint(int index) {
+		return points.get(index);
+	}
+
+	/**
+	 * @param index
+	 *            The index of a point
+	 * @return The distance, in local units, between the surveyed position of
+	 *         the point and the position that its latitude and longitude are
+	 *         transformed to
+	 */
+	public double getResidual(int index) {
+		return residuals[index];
+	}
+
+	/**
+	 * @return The root mean square of the residuals
+	 */
+	public double getRmsResidual() {
+		if(residuals.length == 0) {
+			return 0;
+		}
+		double sum = 0;
+		for(double residual : residuals) {
+			sum += residual * residual;
+		}
+		return Math.sqrt(sum / residuals.length);
+	}
+
+	/**
+	 * @return The index of the point with the largest residual, or -1 if there
+	 *         are no points
+	 */
+	public int getWorstPoint() {
+		int worst = -1;
+		for(int i = 0; i < residuals.length; i++) {
+			if(worst == -1 || residuals[i] > residuals[worst]) {
+				worst = i;
+			}
+		}
+		return worst;
+	}
+
+	/**
+	 * @return A description of the calibration with the residual of each
+	 *         point, largest first
+	 */
+	public String getReport() {
+		final List<Integer> order = new ArrayList<Integer>();
+		for(int i = 0; i < residuals.length; i++) {
+			order.add(i);
+		}
+		Collections.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer lhs, Integer rhs) {
+				return Double.compare(residuals[rhs], residuals[lhs]);
+			}
+		});
+
+		final StringBuilder report = new StringBuilder();
+		report.append(String.format(Locale.US, "%d control points, RMS residual %.2f\n",
+				residuals.length, getRmsResidual()));
+		for(int index : order) {
+			report.append(String.format(Locale.US, "%s: %.2f\n", names.get(index), residuals[index]));
+		}
+		return report.toString();
+	}
+}
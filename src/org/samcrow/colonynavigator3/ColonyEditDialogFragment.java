@@ -1,14 +1,20 @@
 package org.samcrow.colonynavigator3;
 
+import java.util.ArrayList;
+
 import org.samcrow.colonynavigator3.data.Colony;
+import org.samcrow.data.photo.ThumbnailCache;
 
 import android.app.AlertDialog;
 import android.app.Dialog;
 import android.app.DialogFragment;
 import android.content.DialogInterface;
+import android.graphics.Bitmap;
 import android.os.Bundle;
 import android.view.View;
 import android.widget.CheckBox;
+import android.widget.ImageView;
+import android.widget.LinearLayout;
 
 /**
  * A fragment that creates a dialog that can be used to edit a colony.
@@ -32,6 +38,16 @@ public class ColonyEditDialogFragment extends DialogFragment {
 		public void onColonyChanged(Bundle colonyData);
 	}
 
+	/**
+	 * An interface for an Activity that can provide thumbnails of colony photos
+	 */
+	public static interface ThumbnailSource {
+		/**
+		 * @return The thumbnail cache, or null if photos are not available
+		 */
+		public ThumbnailCache getThumbnailCache();
+	}
+
 	public static ColonyEditDialogFragment newInstance(Colony colony) {
 		final ColonyEditDialogFragment fragment = new ColonyEditDialogFragment();
 		final Bundle args = new Bundle();
@@ -39,6 +55,7 @@ public class ColonyEditDialogFragment extends DialogFragment {
 		args.putInt("colony_id", colony.getId());
 		args.putBoolean("colony_visited", colony.isVisited());
 		args.putBoolean("colony_active", colony.isActive());
+		args.putStringArrayList("colony_photos", new ArrayList<String>(colony.getPhotos()));
 		
 		fragment.setArguments(args);
 		
@@ -67,6 +84,28 @@ public class ColonyEditDialogFragment extends DialogFragment {
 		final CheckBox activeBox = (CheckBox) view.findViewById(R.id.active_checkbox);
 		activeBox.setChecked(colonyActive);
 		
+		// Show thumbnails of photos, loaded in the background
+		final ArrayList<String> photos = args.getStringArrayList("colony_photos");
+		if(photos != null && getActivity() instanceof ThumbnailSource) {
+			final ThumbnailCache thumbnails = ((ThumbnailSource) getActivity()).getThumbnailCache();
+			final LinearLayout photoStrip = (LinearLayout) view.findViewById(R.id.photo_strip);
+			if(thumbnails != null) {
+				for(String hash : photos) {
+					final ImageView image = new ImageView(getActivity());
+					image.setPadding(4, 4, 4, 4);
+					photoStrip.addView(image);
+					thumbnails.get(hash, new ThumbnailCache.Callback() {
+						@Override
+						public void thumbnailLoaded(String hash, Bitmap thumbnail) {
+							if(thumbnail != null) {
+								image.setImageBitmap(thumbnail);
+							}
+						}
+					});
+				}
+			}
+		}
+		
 		// Set up buttons
 		builder.setPositiveButton(R.string.save_action, new DialogInterface.OnClickListener() {
 			@Override
@@ -1,98 +1,304 @@
 package org.samcrow.colonynavigator3;
 
-import org.mapsforge.core.model.LatLong;
-import org.samcrow.colonynavigator3.data.Colony;
+import java.util.Arrays;
+import java.util.List;
 
-import android.graphics.Matrix;
-import android.graphics.PointF;
+import org.mapsforge.core.model.LatLong;
 
 /**
  * Transforms coordinates from GPS latitude/longitude into local colony
- * coordinates. <br />
- * To do this, this class takes the GPS coordinates adn:
- * <ol>
- * <li>Translates them</li>
- * <li>Rotates them around the local zero point</li>
- * <li>Scales them around the local zero point</li>
- * </ol>
- * 
+ * coordinates, and back. <br />
+ * The transformation is calculated from up to four points whose local and
+ * GPS positions are both known:
+ * <ul>
+ * <li>One point: translation</li>
+ * <li>Two points: translation, rotation and uniform scale</li>
+ * <li>Three points: affine (translation, rotation, scale and shear)</li>
+ * <li>Four points: projective</li>
+ * </ul>
+ * These match android.graphics.Matrix.setPolyToPoly, which this class replaces.
+ * {@link #fit(List)} fits an affine transformation to any number of points by
+ * least squares. <br />
+ * All calculations use doubles, with longitude and latitude measured from the
+ * first point (or the mean of the points, when fitting), so precision is not lost on the large longitude and latitude
+ * values. This class does not use Android, so it can be tested and
+ * benchmarked on any JVM. The batch methods do not allocate any objects.
+ * The coefficients can be replaced with {@link #setCoefficients(double[])},
+ * which is safe while other threads are using the transformer.
+ *
  * @author Sam Crow
  */
-public class CoordinateTransformer {
+public final class CoordinateTransformer {
+
+	/**
+	 * The current transformation. It is replaced all at once by
+	 * {@link #setCoefficients(double[])}, and each method reads it once, so a
+	 * transformation is never done with a mix of old and new coefficients.
+	 */
+	private volatile Coefficients coefficients;
 
-	private Matrix matrix = new Matrix();
-	
-	private Matrix inverse = new Matrix();
+	/** The number of values returned by {@link #getCoefficients()} */
+	public static final int COEFFICIENT_COUNT = 10;
 
 	/**
-	 * Constructor that uses the local position and latitude/longitude of 2
-	 * points to calculate offsets, rotation, & scale
-	 * @param points Up to 4 points to use to map coordinates
+	 * Constructor that uses the local position and latitude/longitude of
+	 * some points to calculate the transformation
+	 *
+	 * @param points
+	 *            1 to 4 points to use to map coordinates
+	 * @throws IllegalArgumentException
+	 *             if there are no points, more than 4 points, or the
+	 *             points do not define a transformation that can be inverted
 	 */
-	private CoordinateTransformer(MapPoint... points) {
+	public CoordinateTransformer(MapPoint... points) {
+		this(exactCoefficients(points));
+	}
 
-		if(points.length > 4) {
-			throw new IllegalArgumentException("Cannot use more than 4 points.");
-		}
+	/**
+	 * Constructor from coefficients in the format returned by
+	 * {@link #getCoefficients()}
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the coefficients do not define a transformation that can
+	 *             be inverted
+	 */
+	private CoordinateTransformer(double[] coefficients) {
+		this.coefficients = new Coefficients(coefficients);
+	}
 
-		float[] sourcePoints = new float[points.length * 2];
+	/**
+	 * Replace the transformation without creating a new transformer. Every
+	 * user of this transformer, including other threads, gets the new
+	 * transformation from its next call.
+	 *
+	 * @param coefficients
+	 *            The new coefficients, in the format returned by
+	 *            {@link #getCoefficients()}
+	 * @throws IllegalArgumentException
+	 *             if the number of coefficients is wrong or they do not
+	 *             define a transformation that can be inverted. The
+	 *             transformation is not changed.
+	 */
+	public void setCoefficients(double[] coefficients) {
+		this.coefficients = new Coefficients(coefficients);
+	}
+
+	/**
+	 * Create a transformer that fits any number of control points as closely
+	 * as possible. <br />
+	 * With fewer than three points the transformation passes through every
+	 * point, as with {@link #CoordinateTransformer(MapPoint...)}. With three
+	 * or more it is the affine transformation that minimizes the sum of the
+	 * squared distances, in local coordinates, between the surveyed position
+	 * of each point and the position its latitude and longitude are
+	 * transformed to. Longitude and latitude are measured from the mean of
+	 * the points, which keeps the normal equations well conditioned.
+	 *
+	 * @param points
+	 *            The control points
+	 * @return A transformer
+	 * @throws IllegalArgumentException
+	 *             if there are no points, or all the points are on one line
+	 */
+	public static CoordinateTransformer fit(List<MapPoint> points) {
+		final int n = points.size();
+		if(n < 3) {
+			return new CoordinateTransformer(points.toArray(new MapPoint[n]));
+		}
 
-		float[] destPoints = new float[points.length * 2];
+		double meanLongitude = 0;
+		double meanLatitude = 0;
+		for(MapPoint point : points) {
+			meanLongitude += point.getLongitude();
+			meanLatitude += point.getLatitude();
+		}
+		meanLongitude /= n;
+		meanLatitude /= n;
 
-		int i = 0;
+		// Normal equations: (A^T A) row = A^T x for rows of A = [u v 1]
+		final double[][] normal = new double[3][3];
+		final double[] rhsX = new double[3];
+		final double[] rhsY = new double[3];
 		for(MapPoint point : points) {
-			//Source points: latitude/longitude
-			sourcePoints[2 * i] = (float) point.getLongitude(); //Longitude = x
-			System.out.println("X (lon) "+2*i+" "+sourcePoints[2*i]);
-			sourcePoints[2 * i + 1] = (float) point.getLatitude();//Latitude = y
-			System.out.println("Y (lat) "+(2*i+1)+" "+sourcePoints[2*i+1]);
+			final double[] row = { point.getLongitude() - meanLongitude, point.getLatitude() - meanLatitude, 1 };
+			for(int i = 0; i < 3; i++) {
+				for(int j = 0; j < 3; j++) {
+					normal[i][j] += row[i] * row[j];
+				}
+				rhsX[i] += row[i] * point.getX();
+				rhsY[i] += row[i] * point.getY();
+			}
+		}
+		final double[] row0 = solve(copy(normal), rhsX);
+		final double[] row1 = solve(normal, rhsY);
+
+		return new CoordinateTransformer(new double[] { meanLongitude, meanLatitude,
+				row0[0], row0[1], row0[2], row1[0], row1[1], row1[2], 0, 0 });
+	}
 
+	/**
+	 * Create a transformer from coefficients returned by
+	 * {@link #getCoefficients()}
+	 *
+	 * @param coefficients
+	 *            The coefficients
+	 * @return A transformer
+	 * @throws IllegalArgumentException
+	 *             if the number of coefficients is wrong or they do not
+	 *             define a transformation that can be inverted
+	 */
+	public static CoordinateTransformer fromCoefficients(double[] coefficients) {
+		return new CoordinateTransformer(coefficients.clone());
+	}
+
+	/**
+	 * Calculate the coefficients of a transformation that passes through
+	 * every point
+	 *
+	 * @param points
+	 *            1 to 4 points
+	 * @return The coefficients, in the format returned by
+	 *         {@link #getCoefficients()}
+	 */
+	private static double[] exactCoefficients(MapPoint[] points) {
+		if(points.length > 4) {
+			throw new IllegalArgumentException("Cannot use more than 4 points.");
+		}
+		if(points.length == 0) {
+			throw new IllegalArgumentException("At least 1 point is required.");
+		}
 
-			//Destination points: colony coordinates
-			destPoints[2 * i] = (float) point.getX();
-			System.out.println("Dest X "+2*i+" "+destPoints[2*i]);
-			destPoints[2 * i + 1] = (float) point.getY();
-			System.out.println("Dest Y "+(2*i+1)+" "+destPoints[2*i+1]);
+		final double originLongitude = points[0].getLongitude();
+		final double originLatitude = points[0].getLatitude();
 
-			i++;
+		final int n = points.length;
+		final double[] u = new double[n];
+		final double[] v = new double[n];
+		final double[] x = new double[n];
+		final double[] y = new double[n];
+		for(int i = 0; i < n; i++) {
+			u[i] = points[i].getLongitude() - originLongitude;
+			v[i] = points[i].getLatitude() - originLatitude;
+			x[i] = points[i].getX();
+			y[i] = points[i].getY();
 		}
 
-		boolean success = matrix.setPolyToPoly(sourcePoints, 0, destPoints, 0, points.length);
-		if(!success) {
-			throw new RuntimeException("Could not set up matrix");
+		// Coefficients m00, m01, m02, m10, m11, m12, m20, m21
+		final double[] m = new double[] { 1, 0, 0, 0, 1, 0, 0, 0 };
+		if(n == 1) {
+			m[2] = x[0] - u[0];
+			m[5] = y[0] - v[0];
+		}
+		else if(n == 2) {
+			// As complex numbers, local = s * gps + t
+			final double du = u[1] - u[0];
+			final double dv = v[1] - v[0];
+			final double dx = x[1] - x[0];
+			final double dy = y[1] - y[0];
+			final double lengthSquared = du * du + dv * dv;
+			if(lengthSquared == 0) {
+				throw new IllegalArgumentException("Points have the same latitude and longitude");
+			}
+			final double sRe = (dx * du + dy * dv) / lengthSquared;
+			final double sIm = (dy * du - dx * dv) / lengthSquared;
+			m[0] = sRe;
+			m[1] = -sIm;
+			m[3] = sIm;
+			m[4] = sRe;
+			m[2] = x[0] - (sRe * u[0] - sIm * v[0]);
+			m[5] = y[0] - (sIm * u[0] + sRe * v[0]);
+		}
+		else if(n == 3) {
+			// Two independent 3x3 systems with the same matrix
+			final double[][] a = new double[3][];
+			for(int i = 0; i < 3; i++) {
+				a[i] = new double[] { u[i], v[i], 1 };
+			}
+			final double[] row0 = solve(copy(a), x.clone());
+			final double[] row1 = solve(copy(a), y.clone());
+			System.arraycopy(row0, 0, m, 0, 3);
+			System.arraycopy(row1, 0, m, 3, 3);
 		}
-		
-		boolean invertSuccess = matrix.invert(inverse);
-		if(!invertSuccess) {
-			throw new RuntimeException("Could not invert matrix");
+		else {
+			// Eight equations for the eight coefficients:
+			// m00 u + m01 v + m02 - m20 u x - m21 v x = x
+			// m10 u + m11 v + m12 - m20 u y - m21 v y = y
+			final double[][] a = new double[8][];
+			final double[] b = new double[8];
+			for(int i = 0; i < 4; i++) {
+				a[2 * i] = new double[] { u[i], v[i], 1, 0, 0, 0, -u[i] * x[i], -v[i] * x[i] };
+				b[2 * i] = x[i];
+				a[2 * i + 1] = new double[] { 0, 0, 0, u[i], v[i], 1, -u[i] * y[i], -v[i] * y[i] };
+				b[2 * i + 1] = y[i];
+			}
+			System.arraycopy(solve(a, b), 0, m, 0, 8);
 		}
 
-		System.out.println(matrix);
+		final double[] coefficients = new double[COEFFICIENT_COUNT];
+		coefficients[0] = originLongitude;
+		coefficients[1] = originLatitude;
+		System.arraycopy(m, 0, coefficients, 2, 8);
+		return coefficients;
 	}
 
 	/**
 	 * Transform given GPS coordinates into local coordinates.
-	 * 
+	 *
 	 * @param longitude
 	 *            The longitude (X-axis location)
 	 * @param latitude
-	 *            The latitude (Y-axis location);
-	 * @return A point with the transformed coordinates
+	 *            The latitude (Y-axis location)
+	 * @return A new array containing the X and Y coordinates
 	 */
-	public PointF toLocal(double longitude, double latitude) {
-		// Explicitly extract the primitive values from the objects
-		double x = longitude;
-		double y = latitude;
-		float[] points = new float[] { (float) x, (float) y };
+	public double[] toLocal(double longitude, double latitude) {
+		final double[] point = new double[] { longitude, latitude };
+		toLocal(point, point, 1);
+		return point;
+	}
 
-		matrix.mapPoints(points);
+	/**
+	 * Transform many GPS coordinates into local coordinates at once.
+	 *
+	 * @param lonLat
+	 *            Longitude and latitude pairs: the longitude of point i at
+	 *            index 2i and its latitude at index 2i + 1
+	 * @param local
+	 *            An array to put the X and Y coordinates of each point in,
+	 *            in the same order. This may be the same array as lonLat.
+	 * @param count
+	 *            The number of points to transform
+	 */
+	public void toLocal(double[] lonLat, double[] local, int count) {
+		final Coefficients c = coefficients;
+		for(int i = 0, end = 2 * count; i < end; i += 2) {
+			final double u = lonLat[i] - c.originLongitude;
+			final double v = lonLat[i + 1] - c.originLatitude;
+			final double w = c.m20 * u + c.m21 * v + 1;
+			local[i] = (c.m00 * u + c.m01 * v + c.m02) / w;
+			local[i + 1] = (c.m10 * u + c.m11 * v + c.m12) / w;
+		}
+	}
 
-		return new PointF(points[0], points[1]);
+	/**
+	 * Transform the given local coordinates into GPS coordinates
+	 *
+	 * @param x
+	 *            The X location
+	 * @param y
+	 *            The y location
+	 * @return A point with the longitude mapped to x and the latitude mapped to
+	 *         y
+	 */
+	public LatLong toGps(double x, double y) {
+		final Coefficients c = coefficients;
+		final double w = c.i20 * x + c.i21 * y + c.i22;
+		return new LatLong(c.originLatitude + (c.i10 * x + c.i11 * y + c.i12) / w,
+				c.originLongitude + (c.i00 * x + c.i01 * y + c.i02) / w);
 	}
 
 	/**
 	 * Transform the given local coordinates into GPS coordinates
-	 * 
+	 *
 	 * @param x
 	 *            The X location
 	 * @param y
@@ -101,30 +307,222 @@ public class CoordinateTransformer {
 	 *         y
 	 */
 	public LatLong toGps(float x, float y) {
+		return toGps((double) x, (double) y);
+	}
+
+	/**
+	 * Transform many local coordinates into GPS coordinates at once.
+	 *
+	 * @param local
+	 *            X and Y pairs: the X coordinate of point i at index 2i and
+	 *            its Y coordinate at index 2i + 1
+	 * @param lonLat
+	 *            An array to put the longitude and latitude of each point in,
+	 *            in the same order. This may be the same array as local.
+	 * @param count
+	 *            The number of points to transform
+	 */
+	public void toGps(double[] local, double[] lonLat, int count) {
+		final Coefficients c = coefficients;
+		for(int i = 0, end = 2 * count; i < end; i += 2) {
+			final double x = local[i];
+			final double y = local[i + 1];
+			final double w = c.i20 * x + c.i21 * y + c.i22;
+			lonLat[i] = c.originLongitude + (c.i00 * x + c.i01 * y + c.i02) / w;
+			lonLat[i + 1] = c.originLatitude + (c.i10 * x + c.i11 * y + c.i12) / w;
+		}
+	}
+
+	/**
+	 * Get a value that identifies the current transformation. Transformations with
+	 * different coefficients have different fingerprints, so this can
+	 * be saved with transformed coordinates to check that they are still valid.
+	 *
+	 * @return The fingerprint
+	 */
+	public long getFingerprint() {
+		long fingerprint = 17;
+		for(double value : getCoefficients()) {
+			fingerprint = 31 * fingerprint + Double.doubleToLongBits(value);
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * Get the values that define this transformation, so that it can be saved
+	 * and recreated with {@link #fromCoefficients(double[])} without solving
+	 * for it again
+	 *
+	 * @return The origin longitude, origin latitude, m00, m01, m02, m10, m11,
+	 *         m12, m20 and m21
+	 */
+	public double[] getCoefficients() {
+		final Coefficients c = coefficients;
+		return new double[] { c.originLongitude, c.originLatitude, c.m00, c.m01, c.m02, c.m10, c.m11, c.m12, c.m20, c.m21 };
+	}
+
+	/**
+	 * A transformation and its inverse
+	 */
+	private static final class Coefficients {
+
+		/** The longitude and latitude that GPS coordinates are measured from */
+		final double originLongitude;
+		final double originLatitude;
+
+		// GPS to local: for u = longitude - originLongitude and v = latitude - originLatitude,
+		// x = (m00 u + m01 v + m02) / (m20 u + m21 v + 1)
+		// y = (m10 u + m11 v + m12) / (m20 u + m21 v + 1)
+		final double m00, m01, m02;
+		final double m10, m11, m12;
+		final double m20, m21;
+
+		// Local to GPS: the inverse of the above matrix
+		final double i00, i01, i02;
+		final double i10, i11, i12;
+		final double i20, i21, i22;
+
+		/**
+		 * @param values
+		 *            Coefficients in the format returned by
+		 *            {@link CoordinateTransformer#getCoefficients()}
+		 * @throws IllegalArgumentException
+		 *             if the number of coefficients is wrong or they do not
+		 *             define a transformation that can be inverted
+		 */
+		Coefficients(double[] values) {
+			if(values.length != COEFFICIENT_COUNT) {
+				throw new IllegalArgumentException("Expected " + COEFFICIENT_COUNT + " coefficients, got "
+						+ values.length);
+			}
+			originLongitude = values[0];
+			originLatitude = values[1];
+			m00 = values[2];
+			m01 = values[3];
+			m02 = values[4];
+			m10 = values[5];
+			m11 = values[6];
+			m12 = values[7];
+			m20 = values[8];
+			m21 = values[9];
 
-		float[] points = new float[] { x, y };
+			// Inverse from the adjugate
+			final double c00 = m11 - m12 * m21;
+			final double c01 = m12 * m20 - m10;
+			final double c02 = m10 * m21 - m11 * m20;
+			final double determinant = m00 * c00 + m01 * c01 + m02 * c02;
+			if(determinant == 0 || Double.isNaN(determinant) || Double.isInfinite(determinant)) {
+				throw new IllegalArgumentException("Transformation cannot be inverted");
+			}
+			i00 = c00 / determinant;
+			i01 = (m02 * m21 - m01) / determinant;
+			i02 = (m01 * m12 - m02 * m11) / determinant;
+			i10 = c01 / determinant;
+			i11 = (m00 - m02 * m20) / determinant;
+			i12 = (m02 * m10 - m00 * m12) / determinant;
+			i20 = c02 / determinant;
+			i21 = (m01 * m20 - m00 * m21) / determinant;
+			i22 = (m00 * m11 - m01 * m10) / determinant;
+		}
+	}
 
-		inverse.mapPoints(points);
+	/**
+	 * Solve a linear system with Gaussian elimination and partial pivoting
+	 *
+	 * @param a
+	 *            The square coefficient matrix. It is modified.
+	 * @param b
+	 *            The right-hand side. It is modified.
+	 * @return The solution
+	 * @throws IllegalArgumentException
+	 *             if the matrix is singular
+	 */
+	private static double[] solve(double[][] a, double[] b) {
+		final int n = b.length;
+		for(int column = 0; column < n; column++) {
+			int pivot = column;
+			for(int row = column + 1; row < n; row++) {
+				if(Math.abs(a[row][column]) > Math.abs(a[pivot][column])) {
+					pivot = row;
+				}
+			}
+			if(a[pivot][column] == 0) {
+				throw new IllegalArgumentException("Points do not define a transformation (three are on a line?)");
+			}
+			final double[] rowSwap = a[column];
+			a[column] = a[pivot];
+			a[pivot] = rowSwap;
+			final double bSwap = b[column];
+			b[column] = b[pivot];
+			b[pivot] = bSwap;
 
-		return new LatLong(points[1], points[0]);
+			for(int row = column + 1; row < n; row++) {
+				final double factor = a[row][column] / a[column][column];
+				for(int k = column; k < n; k++) {
+					a[row][k] -= factor * a[column][k];
+				}
+				b[row] -= factor * b[column];
+			}
+		}
+		final double[] solution = new double[n];
+		for(int row = n - 1; row >= 0; row--) {
+			double sum = b[row];
+			for(int k = row + 1; k < n; k++) {
+				sum -= a[row][k] * solution[k];
+			}
+			solution[row] = sum / a[row][row];
+		}
+		return solution;
+	}
 
+	private static double[][] copy(double[][] matrix) {
+		final double[][] copy = new double[matrix.length][];
+		for(int i = 0; i < matrix.length; i++) {
+			copy[i] = matrix[i].clone();
+		}
+		return copy;
 	}
-	
+
 	private static CoordinateTransformer instance;
-	
-	public static CoordinateTransformer getInstance() {
-		
+
+	/**
+	 * Set the transformer returned by {@link #getInstance()}. This should be
+	 * called before any colony coordinates are transformed.
+	 *
+	 * @param transformer
+	 *            The transformer to use
+	 */
+	public static synchronized void setInstance(CoordinateTransformer transformer) {
+		instance = transformer;
+	}
+
+	/**
+	 * @return The built-in reference points used by {@link #getInstance()}
+	 *         when no other transformer has been set
+	 */
+	public static List<MapPoint> getBuiltInPoints() {
+		// Colonies 962, 980 and 567
+		final MapPoint topLeft = new MapPoint(68, 707, 31.87265776, -109.04243);
+		final MapPoint bottomRight = new MapPoint(1324, 289, 31.87087500797029, -109.03870950670428);
+		final MapPoint bottomLeft = new MapPoint(110, 110, 31.871036, -109.042678);
+		// Not used: colony 442, new MapPoint(110, 782, 31.872357, -109.0391114)
+
+		return Arrays.asList(topLeft, bottomRight, bottomLeft);
+	}
+
+	/**
+	 * Get the transformer set with {@link #setInstance(CoordinateTransformer)},
+	 * or if none was set, a transformer from {@link #getBuiltInPoints()}
+	 *
+	 * @return The transformer
+	 */
+	public static synchronized CoordinateTransformer getInstance() {
+
 		if(instance == null) {
-			
-			final MapPoint topLeft = new MapPoint(new Colony(962, 68, 707, false), 31.87265776, -109.04243);
-			final MapPoint bottomRight = new MapPoint(new Colony(980, 1324, 289, false), 31.87087500797029, -109.03870950670428);
-			final MapPoint bottomLeft = new MapPoint(new Colony(567, 110, 110, false), 31.871036, -109.042678);
-			@SuppressWarnings("unused")
-			final MapPoint topRight = new MapPoint(new Colony(442, 110, 782, false), 31.872357, -109.0391114);
-			
-			instance = new CoordinateTransformer(topLeft, bottomRight, bottomLeft);
-		}
-		
+			final List<MapPoint> points = getBuiltInPoints();
+			instance = new CoordinateTransformer(points.toArray(new MapPoint[points.size()]));
+		}
+
 		return instance;
 	}
 }
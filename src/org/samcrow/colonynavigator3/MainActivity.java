@@ -1,13 +1,25 @@
 package org.samcrow.colonynavigator3;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.mapsforge.core.model.LatLong;
-import org.mapsforge.core.model.MapPosition;
 import org.mapsforge.map.android.AndroidPreferences;
 import org.mapsforge.map.android.graphics.AndroidGraphicFactory;
 import org.mapsforge.map.android.util.AndroidUtil;
 import org.mapsforge.map.android.view.MapView;
+import org.mapsforge.map.layer.Layer;
 import org.mapsforge.map.layer.LayerManager;
 import org.mapsforge.map.layer.cache.TileCache;
 import org.mapsforge.map.layer.renderer.TileRendererLayer;
@@ -20,11 +32,33 @@ import org.samcrow.colonynavigator3.data.Colony;
 import org.samcrow.colonynavigator3.data.ColonyList;
 import org.samcrow.colonynavigator3.data.ColonyList.NoSuchColonyException;
 import org.samcrow.colonynavigator3.data.ColonySelection;
+import org.samcrow.colonynavigator3.data.ColonyTags;
+import org.samcrow.colonynavigator3.data.TagSet;
 import org.samcrow.colonynavigator3.map.ColonyMarker;
+import org.samcrow.colonynavigator3.map.LocationPipeline;
 import org.samcrow.colonynavigator3.map.NotifyingMyLocationOverlay;
 import org.samcrow.colonynavigator3.map.RouteLineLayer;
-import org.samcrow.data.provider.ColonyProvider;
+import org.samcrow.data.archive.CensusArchive;
+import org.samcrow.data.export.CSVExportFormat;
+import org.samcrow.data.export.ColonyExporter;
+import org.samcrow.data.export.ExportFormat;
+import org.samcrow.data.export.GeoJSONFormat;
+import org.samcrow.data.export.KMLFormat;
+import org.samcrow.data.gps.PositionAverager;
+import org.samcrow.data.gps.SurveyImporter;
+import org.samcrow.data.gps.WaypointBuffer;
+import org.samcrow.data.merge.ColonyDiff;
+import org.samcrow.data.merge.MultiDeviceMerger;
+import org.samcrow.data.observation.Observation;
+import org.samcrow.data.observation.ObservationLog;
+import org.samcrow.data.photo.BlobStore;
+import org.samcrow.data.photo.ThumbnailCache;
 import org.samcrow.data.provider.MemoryCardDataProvider;
+import org.samcrow.data.sql.AndroidSQLDatabase;
+import org.samcrow.data.sql.SQLDatabase;
+import org.samcrow.data.storage.FileStorage;
+import org.samcrow.data.sync.SyncClient;
+import org.samcrow.data.sync.SyncServer;
 
 import android.app.Activity;
 import android.app.AlertDialog;
@@ -33,7 +67,10 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
 import android.graphics.drawable.Drawable;
+import android.location.Location;
+import android.location.LocationListener;
 import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
 import android.text.InputType;
 import android.view.Menu;
@@ -52,30 +89,205 @@ import com.applantation.android.svg.SVGParser;
  * @see SystemUiHider
  */
 public class MainActivity extends Activity implements
-		OnSharedPreferenceChangeListener, ColonyEditDialogFragment.ColonyChangeListener {
+		OnSharedPreferenceChangeListener, ColonyEditDialogFragment.ColonyChangeListener,
+		ColonyEditDialogFragment.ThumbnailSource {
 
 	/**
-	 * The initial position of the map
+	 * The directory on the memory card that the site list is stored in. It is
+	 * also the directory of the default site.
 	 */
-	private static final MapPosition START_POSITION = new MapPosition(
-			new LatLong(31.872176, -109.040983), (byte) 17);
+	private static final File DATA_DIR = new File("/mnt/extSdCard");
 
-	private static final File MAP_FILE = new File(
-			"/mnt/extSdCard/new-mexico.map");
+	/**
+	 * The site that is used if {@link #DATA_DIR} does not contain a site list
+	 * (see {@link SiteRegistry})
+	 */
+	private static final Site DEFAULT_SITE = new Site("Default", DATA_DIR, new File(DATA_DIR, "new-mexico.map"),
+			31.872176, -109.040983, (byte) 17);
+
+	/**
+	 * The preference that the name of the open site is saved in
+	 */
+	private static final String SITE_PREFERENCE = "site";
+
+	// The names of files and directories in each site's directory
+
+	/**
+	 * The directory containing colony files from several devices to merge
+	 */
+	private static final String MERGE_DIR = "merge";
+
+	/**
+	 * The directory that exported changes are written to
+	 */
+	private static final String EXPORT_DIR = "exports";
+
+	/**
+	 * A file containing the address of the base station sync server,
+	 * as a host name, optionally followed by a colon and a port
+	 */
+	private static final String SYNC_SERVER_FILE = "sync_server.txt";
+
+	/**
+	 * The file that sync progress is saved in
+	 */
+	private static final String SYNC_STATE_FILE = "sync_state.properties";
+
+	/**
+	 * The file that colony visits are recorded in
+	 */
+	private static final String OBSERVATION_LOG_FILE = "observations.log";
+
+	/**
+	 * The archive of past censuses, built with the BuildCensusArchive tool
+	 */
+	private static final String CENSUS_ARCHIVE_FILE = "census_archive.bin";
+
+	/**
+	 * The directory that colony photos are stored in, named by hash
+	 */
+	private static final String PHOTO_DIR = "photos";
+
+	/**
+	 * The directory that photo thumbnails are saved in
+	 */
+	private static final String THUMBNAIL_DIR = "thumbnails";
+
+	/**
+	 * The directory that new photos are copied to for importing. Each photo
+	 * file name starts with the colony ID, followed by an underscore or a period.
+	 */
+	private static final String PHOTO_INBOX_DIR = "photo_inbox";
+
+	/**
+	 * The directory containing GPX and latitude/longitude CSV files of
+	 * newly surveyed colonies to import
+	 */
+	private static final String GPS_IMPORT_DIR = "gps_import";
+
+	/**
+	 * The distance in meters that a colony marker may be off by before it is
+	 * moved after the calibration changes
+	 */
+	private static final double REPROJECT_TOLERANCE = 0.25;
+
+	/**
+	 * The minimum distance in meters between an imported colony and any other colony
+	 */
+	private static final double GPS_IMPORT_MIN_DISTANCE = 2;
+
+	/**
+	 * The distance in pixels that the smoothed location must move before the
+	 * route line and distance are updated
+	 */
+	private static final double LOCATION_PIXEL_THRESHOLD = 2;
+
+	/** The largest GPS accuracy, in meters, of a fix used to re-survey a colony */
+	private static final float MAX_RESURVEY_ACCURACY = 10;
+
+	/** The number of fixes averaged together before taking the median */
+	private static final int RESURVEY_GROUP_SIZE = 5;
+
+	/** Re-survey fixes more than this many standard deviations from the estimate are rejected */
+	private static final double RESURVEY_REJECT_DEVIATIONS = 3;
+
+	/** The smallest standard deviation, in meters, used to reject re-survey fixes */
+	private static final double RESURVEY_MIN_DEVIATION = 1;
+
+	/**
+	 * The number of fixes a re-survey needs before it can be saved. Fixes a
+	 * second apart are far from independent, so this is more than the
+	 * standard error alone would need.
+	 */
+	private static final int RESURVEY_MIN_FIXES = 30;
+
+	/** The largest standard error, in meters, of a re-survey that can be saved */
+	private static final double RESURVEY_MAX_ERROR = 0.5;
+
+	/** The maximum width and height of a photo thumbnail, in pixels */
+	private static final int THUMBNAIL_SIZE = 160;
+
+	/** The maximum memory used by thumbnails */
+	private static final long THUMBNAIL_CACHE_BYTES = 8 * 1024 * 1024;
 
 	private PreferencesFacade preferencesFacade;
 
 	private MapView mapView;
 
+	/**
+	 * The sites that can be opened
+	 */
+	private SiteRegistry sites;
+
+	/**
+	 * The open site. Its colonies, map tiles, caches and calibration are
+	 * replaced by {@link #openSite(Site)}.
+	 */
+	private Site site;
+
 	private TileCache tileCache;
 
+	private TileRendererLayer tileRendererLayer;
+
 	private LayerManager layerManager;
 	
 	private NotifyingMyLocationOverlay locationOverlay;
 
-	private ColonyProvider provider;
+	/**
+	 * Smooths location fixes and calculates the distance to the selected colony
+	 */
+	private LocationPipeline locationPipeline;
+
+	private MemoryCardDataProvider provider;
 
 	private ColonyList colonies;
+
+	private ObservationLog observationLog;
+
+	private BlobStore photoStore;
+
+	/**
+	 * Creates photo thumbnails
+	 */
+	private final ExecutorService thumbnailExecutor = Executors.newSingleThreadExecutor();
+
+	private ThumbnailCache thumbnailCache;
+
+	/**
+	 * The names of the tags whose colonies are shown, or null to show all colonies
+	 */
+	private List<String> filterTags = null;
+
+	/**
+	 * The colonies whose markers are visible, or null if all markers are visible
+	 */
+	private TagSet visibleColonies = null;
+
+	/**
+	 * The calibration of the open site
+	 */
+	private SiteCalibration calibration;
+
+	/**
+	 * The census archive, or null if it has not been loaded
+	 */
+	private CensusArchive censusArchive;
+
+	/**
+	 * Averages GPS fixes while a colony is being re-surveyed, or null
+	 */
+	private PositionAverager resurvey;
+
+	/**
+	 * The colony being re-surveyed, or null
+	 */
+	private Colony resurveyColony;
+
+	/**
+	 * The dialog that shows the progress of the re-survey, or null
+	 */
+	private AlertDialog resurveyDialog;
+
 	/**
 	 * The current selected colony
 	 */
@@ -96,23 +308,21 @@ public class MainActivity extends Activity implements
 
 			setTitle("Map");
 
-			setUpMap();
-
-			// Add colonies
-			provider = new MemoryCardDataProvider();
+			sites = SiteRegistry.read(DATA_DIR, DEFAULT_SITE);
 
-			colonies = provider.getColonies();
-			for (Colony colony : colonies) {
-				layerManager.getLayers().add(new ColonyMarker(colony));
-			}
-			
-			// Add layers above colonies
+			setUpMap();
 
 			// Location layer
 			setUpLocationOverlay();
 			// Route line layer
 			setUpRouteLine();
 
+			// Colonies and the map go below these layers
+			final String siteName = getSharedPreferences(getPersistableId(), MODE_PRIVATE)
+					.getString(SITE_PREFERENCE, null);
+			openFirstUsableSite(sites.getSite(siteName));
+			initializePosition(mapView.getModel().mapViewPosition);
+
 		} catch (Exception ex) {
 			// Show a dialog, then quit
 			new AlertDialog.Builder(MainActivity.this)
@@ -132,6 +342,401 @@ public class MainActivity extends Activity implements
 
 	}
 
+	/**
+	 * Opens a site, or if it cannot be opened, the first other site that can.
+	 * The user is told why the site was not opened.
+	 * @param preferred The site to try first
+	 * @throws IOException if no site could be opened
+	 */
+	private void openFirstUsableSite(Site preferred) throws IOException {
+		IOException firstProblem = null;
+		boolean opened = false;
+		for (Site candidate : sites.getOpenOrder(preferred)) {
+			try {
+				openSite(candidate);
+				opened = true;
+				break;
+			} catch (IOException e) {
+				e.printStackTrace();
+				if (firstProblem == null) {
+					firstProblem = e;
+				}
+			}
+		}
+		if (!opened) {
+			throw firstProblem;
+		}
+		if (firstProblem != null) {
+			new AlertDialog.Builder(this)
+					.setTitle(R.string.switch_site)
+					.setMessage("Could not open " + preferred.getName() + ": " + firstProblem.getMessage()
+							+ "\nOpened " + site.getName() + " instead.")
+					.setIcon(android.R.drawable.ic_dialog_alert)
+					.setNeutralButton("OK", DIALOG_CLICK_NOOP).show();
+		}
+	}
+
+	/**
+	 * Closes the open site, if any, and opens another. The new site's
+	 * calibration, colonies, map tiles and caches are loaded now, and the
+	 * previous site's are released, so only one site is kept in memory.
+	 * If the new site cannot be calibrated, the open site is left open.
+	 * @param newSite The site to open
+	 * @throws IOException if the site has no usable control points (see
+	 * {@link SiteCalibration#read(Site, File)}) or its observation log could not be opened
+	 */
+	private void openSite(Site newSite) throws IOException {
+		final SiteCalibration newCalibration = SiteCalibration.read(newSite, DATA_DIR);
+		closeSite();
+		site = newSite;
+		setTitle(site.getName());
+
+		// Calibrate before any colony coordinates are transformed
+		calibration = newCalibration;
+		calibration.apply();
+		if (calibration.getWarning() != null) {
+			new AlertDialog.Builder(this)
+					.setTitle(R.string.calibration)
+					.setMessage(calibration.getWarning())
+					.setIcon(android.R.drawable.ic_dialog_alert)
+					.setNeutralButton("OK", DIALOG_CLICK_NOOP).show();
+		}
+
+		// Map tiles go below everything else
+		tileCache = AndroidUtil.createTileCache(this, getPersistableId() + "_" + site.getId(),
+				mapView.getModel().displayModel.getTileSize(),
+				getScreenRatio(),
+				mapView.getModel().frameBufferModel.getOverdrawFactor());
+		tileRendererLayer = createTileRendererLayer(tileCache, mapView.getModel().mapViewPosition,
+				site.getMapFile(), InternalRenderTheme.OSMARENDER, false);
+		layerManager.getLayers().add(0, tileRendererLayer);
+
+		// Add colonies below the location and route line layers
+		final MemoryCardDataProvider siteProvider = new MemoryCardDataProvider(new FileStorage(site.getDirectory()),
+				openColonyDatabase(site));
+		provider = siteProvider;
+		colonies = provider.getColonies();
+		final List<Layer> markers = new ArrayList<Layer>(colonies.size());
+		for (Colony colony : colonies) {
+			markers.add(new ColonyMarker(colony));
+		}
+		layerManager.getLayers().addAll(layerManager.getLayers().indexOf(locationOverlay), markers);
+
+		// Apply changes to the data files while running
+		provider.startWatching(uiExecutor, new MemoryCardDataProvider.ReloadListener() {
+			@Override
+			public void coloniesReloaded(ColonyDiff diff) {
+				// Ignore reloads queued before the site was closed
+				if (provider == siteProvider) {
+					updateMarkers(diff);
+				}
+			}
+		});
+		provider.getTags().setListener(new ColonyTags.Listener() {
+			@Override
+			public void tagChanged(String name) {
+				if (provider == siteProvider && filterTags != null && filterTags.contains(name)) {
+					applyTagFilter(filterTags);
+				}
+			}
+		});
+
+		observationLog = new ObservationLog(site.getFile(OBSERVATION_LOG_FILE));
+		photoStore = new BlobStore(site.getFile(PHOTO_DIR));
+		thumbnailCache = new ThumbnailCache(photoStore, site.getFile(THUMBNAIL_DIR), THUMBNAIL_SIZE,
+				THUMBNAIL_CACHE_BYTES, thumbnailExecutor, uiExecutor);
+	}
+
+	/**
+	 * Opens the database that a site's colonies are kept in. Each site has
+	 * its own database in the application's private storage.
+	 * @param site The site
+	 * @return The database, or null if it could not be opened
+	 */
+	private SQLDatabase openColonyDatabase(Site site) {
+		try {
+			return AndroidSQLDatabase.open(getDatabasePath("colonies_" + site.getId() + ".db"));
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Releases everything that belongs to the open site: colonies and their
+	 * markers, the map tile layer and tile cache, the observation log,
+	 * thumbnails, the census archive and the calibration
+	 */
+	private void closeSite() {
+		if (site == null) {
+			return;
+		}
+		if (resurveyDialog != null) {
+			resurveyDialog.dismiss();
+			finishResurvey(false);
+		}
+		selection.setSelectedColony(null);
+		filterTags = null;
+		visibleColonies = null;
+		censusArchive = null;
+
+		if (provider != null) {
+			provider.close();
+			provider = null;
+		}
+		if (colonies != null) {
+			for (Colony colony : colonies) {
+				if (colony.getMarker() != null) {
+					layerManager.getLayers().remove(colony.getMarker());
+				}
+			}
+			colonies = null;
+		}
+		if (tileRendererLayer != null) {
+			layerManager.getLayers().remove(tileRendererLayer);
+			tileRendererLayer.onDestroy();
+			tileRendererLayer = null;
+		}
+		if (tileCache != null) {
+			tileCache.destroy();
+			tileCache = null;
+		}
+		if (observationLog != null) {
+			try {
+				observationLog.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			observationLog = null;
+		}
+		if (thumbnailCache != null) {
+			thumbnailCache.clear();
+			thumbnailCache = null;
+		}
+		photoStore = null;
+		calibration = null;
+		site = null;
+	}
+
+	/**
+	 * Asks for a site to open
+	 */
+	private void showSiteDialog() {
+		final List<Site> siteList = sites.getSites();
+		final String[] names = new String[siteList.size()];
+		int checked = -1;
+		for (int i = 0; i < names.length; i++) {
+			names[i] = siteList.get(i).getName();
+			if (siteList.get(i) == site) {
+				checked = i;
+			}
+		}
+		new AlertDialog.Builder(this)
+				.setTitle(R.string.switch_site)
+				.setSingleChoiceItems(names, checked, new DialogInterface.OnClickListener() {
+					@Override
+					public void onClick(DialogInterface dialog, int which) {
+						dialog.dismiss();
+						final Site newSite = siteList.get(which);
+						if (newSite == site) {
+							return;
+						}
+						try {
+							openSite(newSite);
+							mapView.getModel().mapViewPosition.setMapPosition(site.getStartPosition());
+							layerManager.redrawLayers();
+							getSharedPreferences(getPersistableId(), MODE_PRIVATE).edit()
+									.putString(SITE_PREFERENCE, site.getName()).commit();
+						} catch (IOException e) {
+							e.printStackTrace();
+							new AlertDialog.Builder(MainActivity.this)
+									.setTitle(R.string.switch_site)
+									.setMessage("Could not open " + newSite.getName() + ": " + e.getMessage())
+									.setIcon(android.R.drawable.ic_dialog_alert)
+									.setNeutralButton("OK", DIALOG_CLICK_NOOP).show();
+						}
+					}
+				}).show();
+	}
+
+	/**
+	 * Uses the current GPS position as a confirmation that the user is standing
+	 * on the selected colony, updates the calibration and moves the markers
+	 * that are now off by more than {@link #REPROJECT_TOLERANCE}
+	 */
+	private void confirmPosition() {
+		final Colony colony = selection.getSelectedColony();
+		final Location location = locationOverlay != null ? locationOverlay.getLastLocation() : null;
+		String problem;
+		if (calibration == null || !calibration.canUpdate()) {
+			problem = "The calibration cannot be updated.";
+		} else if (colony == null) {
+			problem = "Select the colony you are standing on first.";
+		} else if (location == null || !location.hasAccuracy()) {
+			problem = "No GPS position is available.";
+		} else {
+			problem = calibration.checkConfirmation(colony, location.getLongitude(), location.getLatitude(),
+					location.getAccuracy());
+		}
+		if (problem != null) {
+			new AlertDialog.Builder(this)
+					.setTitle(R.string.confirm_position)
+					.setMessage(problem)
+					.setNeutralButton("OK", DIALOG_CLICK_NOOP).show();
+			return;
+		}
+
+		calibration.confirm(colony, location.getLongitude(), location.getLatitude(), location.getAccuracy());
+
+		for (Colony moved : provider.reprojectColonies(REPROJECT_TOLERANCE)) {
+			if (moved.getMarker() != null) {
+				moved.getMarker().setLatLong(moved.getLatLon());
+			}
+		}
+		layerManager.redrawLayers();
+	}
+
+	/**
+	 * Starts averaging GPS fixes to find a new position for the selected
+	 * colony. A dialog shows the progress after each fix, and the position
+	 * can be saved once it has converged.
+	 */
+	private void startResurvey() {
+		final Colony colony = selection.getSelectedColony();
+		if (colony == null) {
+			new AlertDialog.Builder(this)
+					.setTitle(R.string.resurvey)
+					.setMessage("Select the colony to re-survey first.")
+					.setNeutralButton("OK", DIALOG_CLICK_NOOP).show();
+			return;
+		}
+		resurveyColony = colony;
+		resurvey = new PositionAverager(RESURVEY_GROUP_SIZE, RESURVEY_REJECT_DEVIATIONS, RESURVEY_MIN_DEVIATION);
+		resurveyDialog = new AlertDialog.Builder(this)
+				.setTitle(R.string.resurvey)
+				.setMessage(getResurveyMessage())
+				.setCancelable(false)
+				.setPositiveButton("Save", new DialogInterface.OnClickListener() {
+					@Override
+					public void onClick(DialogInterface dialog, int which) {
+						finishResurvey(true);
+					}
+				})
+				.setNegativeButton("Cancel", new DialogInterface.OnClickListener() {
+					@Override
+					public void onClick(DialogInterface dialog, int which) {
+						finishResurvey(false);
+					}
+				}).show();
+		resurveyDialog.getButton(DialogInterface.BUTTON_POSITIVE).setEnabled(false);
+	}
+
+	/**
+	 * Adds a GPS fix to the re-survey, if one is running, and shows the progress
+	 * @param location The fix
+	 */
+	private void addResurveyFix(Location location) {
+		if (resurvey == null || !location.hasAccuracy() || location.getAccuracy() > MAX_RESURVEY_ACCURACY) {
+			return;
+		}
+		final double[] local = CoordinateTransformer.getInstance().toLocal(location.getLongitude(),
+				location.getLatitude());
+		resurvey.add(local[0], local[1]);
+		resurveyDialog.setMessage(getResurveyMessage());
+		resurveyDialog.getButton(DialogInterface.BUTTON_POSITIVE).setEnabled(
+				resurvey.isConverged(RESURVEY_MIN_FIXES, RESURVEY_MAX_ERROR));
+	}
+
+	/**
+	 * @return A description of the progress of the re-survey
+	 */
+	private String getResurveyMessage() {
+		final StringBuilder message = new StringBuilder();
+		message.append(String.format(Locale.US, "Colony %d\n%d fixes used, %d rejected", resurveyColony.getId(),
+				resurvey.getCount(), resurvey.getRejected()));
+		if (resurvey.getCount() < 2) {
+			message.append(String.format(Locale.US, "\nWaiting for GPS fixes accurate to %.0f m", MAX_RESURVEY_ACCURACY));
+			return message.toString();
+		}
+		message.append(String.format(Locale.US, "\n%.1f m from the saved position\nStandard error %.2f m",
+				Math.hypot(resurvey.getX() - resurveyColony.getX(), resurvey.getY() - resurveyColony.getY()),
+				resurvey.getStandardError()));
+		if (resurvey.isConverged(RESURVEY_MIN_FIXES, RESURVEY_MAX_ERROR)) {
+			message.append("\nReady to save.");
+		} else {
+			message.append("\nStand still on the colony.");
+		}
+		return message.toString();
+	}
+
+	/**
+	 * Stops the re-survey
+	 * @param save If the averaged position should be saved as the colony's position
+	 */
+	private void finishResurvey(boolean save) {
+		final PositionAverager averager = resurvey;
+		final Colony colony = resurveyColony;
+		resurvey = null;
+		resurveyColony = null;
+		resurveyDialog = null;
+		if (!save || averager == null || colonies == null || !colonies.contains(colony)) {
+			return;
+		}
+		provider.moveColony(colony, averager.getX(), averager.getY());
+		if (colony == selection.getSelectedColony()) {
+			locationPipeline.setDestination(colony.getX(), colony.getY());
+		}
+		layerManager.redrawLayers();
+	}
+
+	/**
+	 * Shows the residual of each control point in the current calibration
+	 */
+	private void showCalibration() {
+		new AlertDialog.Builder(this)
+				.setTitle(R.string.calibration)
+				.setMessage(calibration.getReport())
+				.setNeutralButton("OK", DIALOG_CLICK_NOOP).show();
+	}
+
+	/**
+	 * Update the colony markers after colonies have been reloaded.
+	 * Markers for changed colonies update themselves.
+	 * @param diff The colonies that were added, removed, or changed
+	 */
+	private void updateMarkers(ColonyDiff diff) {
+		for (Colony colony : diff.getRemoved()) {
+			if (colony == selection.getSelectedColony()) {
+				selection.setSelectedColony(null);
+			}
+			if (colony.getMarker() != null) {
+				layerManager.getLayers().remove(colony.getMarker());
+			}
+		}
+		// Add new markers below the location and route line layers
+		int index = layerManager.getLayers().indexOf(locationOverlay);
+		for (Colony colony : diff.getAdded()) {
+			final ColonyMarker marker = new ColonyMarker(colony);
+			marker.setVisible(visibleColonies == null || visibleColonies.contains(colony.getId()));
+			if (index >= 0) {
+				layerManager.getLayers().add(index++, marker);
+			} else {
+				layerManager.getLayers().add(marker);
+			}
+		}
+		layerManager.redrawLayers();
+	}
+
+	/**
+	 * Runs tasks on the UI thread
+	 */
+	private final Executor uiExecutor = new Executor() {
+		@Override
+		public void execute(Runnable command) {
+			runOnUiThread(command);
+		}
+	};
+
 	private void setUpMap() {
 
 		mapView = new ColonyMapView(this);
@@ -144,33 +749,50 @@ public class MainActivity extends Activity implements
 		FrameLayout layout = (FrameLayout) findViewById(R.id.map_view_frame);
 		layout.addView(mapView);
 
-		// Create a tile cache
-		tileCache = AndroidUtil.createTileCache(this, getPersistableId(),
-				mapView.getModel().displayModel.getTileSize(),
-				getScreenRatio(),
-				mapView.getModel().frameBufferModel.getOverdrawFactor());
-
 		layerManager = mapView.getLayerManager();
-
-		// Create a tile layer for OpenStreetMap data
-		TileRendererLayer tileRendererLayer = createTileRendererLayer(
-				tileCache,
-				initializePosition(mapView.getModel().mapViewPosition),
-				MAP_FILE, InternalRenderTheme.OSMARENDER, false);
-
-		layerManager.getLayers().add(tileRendererLayer);
 	}
 	
 	private void setUpRouteLine() {
-		final RouteLineLayer route = new RouteLineLayer(locationOverlay);
+		final RouteLineLayer route = new RouteLineLayer();
 		selection.addChangeListener(new ColonySelection.Listener() {
 			@Override
 			public void selectedColonyChanged(Colony oldColony, Colony newColony) {
-				route.setDestination(newColony.getMarker());
+				route.setDestination(newColony != null ? newColony.getMarker() : null);
+				if (newColony != null) {
+					locationPipeline.setDestination(newColony.getX(), newColony.getY());
+				} else {
+					locationPipeline.clearDestination();
+				}
+			}
+		});
+		locationPipeline.setListener(new LocationPipeline.Listener() {
+			@Override
+			public void locationChanged(double latitude, double longitude, double x, double y,
+					double distance, double bearing) {
+				route.setStart(latitude, longitude);
+				showDistance(distance, bearing);
 			}
 		});
 		layerManager.getLayers().add(route);
 	}
+
+	/**
+	 * Shows the distance and bearing to the selected colony below the title
+	 * @param distance The distance in meters, or NaN to show nothing
+	 * @param bearing The bearing in degrees
+	 */
+	private void showDistance(double distance, double bearing) {
+		final Colony selected = selection.getSelectedColony();
+		if (getActionBar() == null) {
+			return;
+		}
+		if (Double.isNaN(distance) || selected == null) {
+			getActionBar().setSubtitle(null);
+		} else {
+			getActionBar().setSubtitle(String.format(Locale.US, "Colony %d: %.0f m, bearing %03.0f\u00b0",
+					selected.getId(), distance, bearing));
+		}
+	}
 	
 	private void setUpLocationOverlay() {
 		locationOverlay = new NotifyingMyLocationOverlay(this,
@@ -178,13 +800,39 @@ public class MainActivity extends Activity implements
 				AndroidGraphicFactory.convertToBitmap(getMyLocationDrawable()));
 		layerManager.getLayers().add(locationOverlay);
 		// locationOverlay.enableMyLocation() gets called in onResume().
+
+		// Smooth fixes and work out what changed away from the UI thread
+		if (locationPipeline == null) {
+			locationPipeline = new LocationPipeline(mapView.getModel(), uiExecutor, LOCATION_PIXEL_THRESHOLD);
+		}
+		final LocationPipeline pipeline = locationPipeline;
+		locationOverlay.setLocationListener(new LocationListener() {
+			@Override
+			public void onLocationChanged(Location location) {
+				addResurveyFix(location);
+				pipeline.submit(location.getLatitude(), location.getLongitude(),
+						location.hasAccuracy() ? location.getAccuracy() : 0, location.getTime());
+			}
+
+			@Override
+			public void onProviderDisabled(String provider) {
+			}
+
+			@Override
+			public void onProviderEnabled(String provider) {
+			}
+
+			@Override
+			public void onStatusChanged(String provider, int status, Bundle extras) {
+			}
+		});
 	}
 
 	private MapViewPosition initializePosition(MapViewPosition mvp) {
 		LatLong center = mvp.getCenter();
 
 		if (center.equals(new LatLong(0, 0))) {
-			mvp.setMapPosition(START_POSITION);
+			mvp.setMapPosition(site.getStartPosition());
 		}
 		return mvp;
 	}
@@ -245,7 +893,11 @@ public class MainActivity extends Activity implements
 		final int colonyId = colonyData.getInt("colony_id");
 		Colony colony = colonies.getById(colonyId);
 		if(colonyData.containsKey("colony_visited")) {
-			colony.setVisited(colonyData.getBoolean("colony_visited"));
+			final boolean visited = colonyData.getBoolean("colony_visited");
+			if(visited && !colony.isVisited()) {
+				recordVisit(colony);
+			}
+			colony.setVisited(visited);
 		}
 		if(colonyData.containsKey("colony_active")) {
 			colony.setActive(colonyData.getBoolean("colony_active"));
@@ -256,6 +908,31 @@ public class MainActivity extends Activity implements
 		layerManager.redrawLayers();
 	}
 
+	/**
+	 * Add a visit to a colony, at the current time and location, to the observation log
+	 * @param colony The colony that was visited
+	 */
+	private void recordVisit(Colony colony) {
+		if(observationLog == null) {
+			return;
+		}
+		final Location location = locationOverlay != null ? locationOverlay.getLastLocation() : null;
+		final double latitude = location != null ? location.getLatitude() : Double.NaN;
+		final double longitude = location != null ? location.getLongitude() : Double.NaN;
+		final float accuracy = location != null && location.hasAccuracy() ? location.getAccuracy() : 0;
+		try {
+			observationLog.append(new Observation(colony.getId(), System.currentTimeMillis(), Build.SERIAL,
+					latitude, longitude, accuracy, Observation.NO_COUNT, null));
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public ThumbnailCache getThumbnailCache() {
+		return thumbnailCache;
+	}
+
 	@Override
 	public boolean onCreateOptionsMenu(Menu menu) {
 		getMenuInflater().inflate(R.menu.main, menu);
@@ -346,6 +1023,127 @@ public class MainActivity extends Activity implements
 			}
 		});
 		
+		// Filter by tag item
+		final MenuItem filterItem = menu.findItem(R.id.filter_tags_item);
+		filterItem.setOnMenuItemClickListener(new MenuItem.OnMenuItemClickListener() {
+			@Override
+			public boolean onMenuItemClick(MenuItem item) {
+				showTagFilterDialog();
+				return true;
+			}
+		});
+		
+		// Census year item
+		final MenuItem censusItem = menu.findItem(R.id.census_year_item);
+		censusItem.setOnMenuItemClickListener(new MenuItem.OnMenuItemClickListener() {
+			@Override
+			public boolean onMenuItemClick(MenuItem item) {
+				showCensusYearDialog();
+				return true;
+			}
+		});
+		
+		// Confirm position item
+		final MenuItem confirmItem = menu.findItem(R.id.confirm_position_item);
+		confirmItem.setOnMenuItemClickListener(new MenuItem.OnMenuItemClickListener() {
+			@Override
+			public boolean onMenuItemClick(MenuItem item) {
+				confirmPosition();
+				return true;
+			}
+		});
+		
+		// Re-survey item
+		final MenuItem resurveyItem = menu.findItem(R.id.resurvey_item);
+		resurveyItem.setOnMenuItemClickListener(new MenuItem.OnMenuItemClickListener() {
+			@Override
+			public boolean onMenuItemClick(MenuItem item) {
+				startResurvey();
+				return true;
+			}
+		});
+
+		// Site item
+		final MenuItem siteItem = menu.findItem(R.id.switch_site_item);
+		siteItem.setVisible(sites != null && sites.getSites().size() > 1);
+		siteItem.setOnMenuItemClickListener(new MenuItem.OnMenuItemClickListener() {
+			@Override
+			public boolean onMenuItemClick(MenuItem item) {
+				showSiteDialog();
+				return true;
+			}
+		});
+		
+		// Calibration item
+		final MenuItem calibrationItem = menu.findItem(R.id.calibration_item);
+		calibrationItem.setOnMenuItemClickListener(new MenuItem.OnMenuItemClickListener() {
+			@Override
+			public boolean onMenuItemClick(MenuItem item) {
+				showCalibration();
+				return true;
+			}
+		});
+		
+		// Import photos item
+		final MenuItem photosItem = menu.findItem(R.id.import_photos_item);
+		photosItem.setOnMenuItemClickListener(new MenuItem.OnMenuItemClickListener() {
+			@Override
+			public boolean onMenuItemClick(MenuItem item) {
+				importPhotos();
+				return true;
+			}
+		});
+		
+		// Import GPS waypoints item
+		final MenuItem gpsItem = menu.findItem(R.id.import_gps_item);
+		gpsItem.setOnMenuItemClickListener(new MenuItem.OnMenuItemClickListener() {
+			@Override
+			public boolean onMenuItemClick(MenuItem item) {
+				importGpsWaypoints();
+				return true;
+			}
+		});
+		
+		// Export changes item
+		final MenuItem exportItem = menu.findItem(R.id.export_changes_item);
+		exportItem.setOnMenuItemClickListener(new MenuItem.OnMenuItemClickListener() {
+			@Override
+			public boolean onMenuItemClick(MenuItem item) {
+				exportTodaysChanges();
+				return true;
+			}
+		});
+		
+		// GIS export item
+		final MenuItem gisItem = menu.findItem(R.id.export_gis_item);
+		gisItem.setOnMenuItemClickListener(new MenuItem.OnMenuItemClickListener() {
+			@Override
+			public boolean onMenuItemClick(MenuItem item) {
+				exportForGis();
+				return true;
+			}
+		});
+		
+		// Sync item
+		final MenuItem syncItem = menu.findItem(R.id.sync_item);
+		syncItem.setOnMenuItemClickListener(new MenuItem.OnMenuItemClickListener() {
+			@Override
+			public boolean onMenuItemClick(MenuItem item) {
+				syncWithServer();
+				return true;
+			}
+		});
+		
+		// Merge device files item
+		final MenuItem mergeItem = menu.findItem(R.id.merge_devices_item);
+		mergeItem.setOnMenuItemClickListener(new MenuItem.OnMenuItemClickListener() {
+			@Override
+			public boolean onMenuItemClick(MenuItem item) {
+				mergeDeviceFiles();
+				return true;
+			}
+		});
+		
 		// Check for updates item
 		final MenuItem checkForUpdatesItem = menu.findItem(R.id.check_for_updates_item);
 		checkForUpdatesItem.setOnMenuItemClickListener(new MenuItem.OnMenuItemClickListener() {
@@ -363,6 +1161,465 @@ public class MainActivity extends Activity implements
 		return true;
 	}
 
+	/**
+	 * Shows a dialog for choosing the tags whose colonies should be shown
+	 */
+	private void showTagFilterDialog() {
+		final List<String> names = provider.getTags().getNames();
+		if (names.isEmpty()) {
+			new AlertDialog.Builder(this)
+					.setTitle(R.string.filter_tags)
+					.setMessage("No tag files found in " + site.getDirectory().getAbsolutePath())
+					.setNeutralButton("OK", DIALOG_CLICK_NOOP).show();
+			return;
+		}
+		final boolean[] checked = new boolean[names.size()];
+		for (int i = 0; i < checked.length; i++) {
+			checked[i] = filterTags != null && filterTags.contains(names.get(i));
+		}
+		new AlertDialog.Builder(this)
+				.setTitle(R.string.filter_tags)
+				.setMultiChoiceItems(names.toArray(new String[names.size()]), checked,
+						new DialogInterface.OnMultiChoiceClickListener() {
+							@Override
+							public void onClick(DialogInterface dialog, int which, boolean isChecked) {
+								checked[which] = isChecked;
+							}
+						})
+				.setPositiveButton("Filter", new DialogInterface.OnClickListener() {
+					@Override
+					public void onClick(DialogInterface dialog, int which) {
+						final List<String> selected = new ArrayList<String>();
+						for (int i = 0; i < checked.length; i++) {
+							if (checked[i]) {
+								selected.add(names.get(i));
+							}
+						}
+						applyTagFilter(selected.isEmpty() ? null : selected);
+					}
+				})
+				.setNeutralButton("Show all", new DialogInterface.OnClickListener() {
+					@Override
+					public void onClick(DialogInterface dialog, int which) {
+						applyTagFilter(null);
+					}
+				}).show();
+	}
+
+	/**
+	 * Shows only the markers for colonies with at least one of some tags.
+	 * Only the markers whose visibility changes are updated.
+	 * @param tagNames The tag names, or null to show all colonies
+	 */
+	private void applyTagFilter(List<String> tagNames) {
+		filterTags = tagNames;
+		setVisibleColonies(tagNames != null ? provider.getTags().union(tagNames) : null);
+	}
+
+	/**
+	 * Shows only the markers for some colonies.
+	 * Only the markers whose visibility changes are updated.
+	 * @param newVisible The colonies to show, or null to show all colonies
+	 */
+	private void setVisibleColonies(TagSet newVisible) {
+		final TagSet all = TagSet.ofColonies(colonies);
+		final TagSet oldVisible = visibleColonies != null ? visibleColonies : all;
+		final TagSet shown = newVisible != null ? newVisible : all;
+
+		for (Colony colony : oldVisible.xor(shown).filter(colonies)) {
+			if (colony.getMarker() != null) {
+				colony.getMarker().setVisible(shown.contains(colony.getId()));
+			}
+		}
+		visibleColonies = newVisible;
+		layerManager.redrawLayers();
+	}
+
+	/**
+	 * Loads the census archive on a background thread if necessary, then
+	 * asks for a year and shows only the colonies that were active in it
+	 */
+	private void showCensusYearDialog() {
+		if (censusArchive != null) {
+			showCensusYears(censusArchive);
+			return;
+		}
+		final Site archiveSite = site;
+		final File archiveFile = site.getFile(CENSUS_ARCHIVE_FILE);
+		new Thread() {
+			@Override
+			public void run() {
+				try {
+					final CensusArchive archive = CensusArchive.read(archiveFile);
+					runOnUiThread(new Runnable() {
+						@Override
+						public void run() {
+							if (site != archiveSite) {
+								return;
+							}
+							censusArchive = archive;
+							showCensusYears(archive);
+						}
+					});
+				} catch (final IOException e) {
+					runOnUiThread(new Runnable() {
+						@Override
+						public void run() {
+							new AlertDialog.Builder(MainActivity.this)
+									.setTitle(R.string.census_year)
+									.setMessage("Could not read " + archiveFile.getAbsolutePath() + ": " + e.getMessage())
+									.setNeutralButton("OK", DIALOG_CLICK_NOOP).show();
+						}
+					});
+				}
+			}
+		}.start();
+	}
+
+	private void showCensusYears(final CensusArchive archive) {
+		final int[] years = archive.getYears();
+		final String[] labels = new String[years.length];
+		for (int i = 0; i < years.length; i++) {
+			labels[i] = years[i] + " (" + archive.getActive(years[i]).size() + " active)";
+		}
+		new AlertDialog.Builder(this)
+				.setTitle(R.string.census_year)
+				.setItems(labels, new DialogInterface.OnClickListener() {
+					@Override
+					public void onClick(DialogInterface dialog, int which) {
+						filterTags = null;
+						setVisibleColonies(archive.getActive(years[which]));
+					}
+				})
+				.setNeutralButton("Show all", new DialogInterface.OnClickListener() {
+					@Override
+					public void onClick(DialogInterface dialog, int which) {
+						filterTags = null;
+						setVisibleColonies(null);
+					}
+				}).show();
+	}
+
+	/**
+	 * Syncs colonies with the server named in {@link #SYNC_SERVER_FILE}
+	 * on a background thread, and shows the result
+	 */
+	private void syncWithServer() {
+		final File serverFile = site.getFile(SYNC_SERVER_FILE);
+		final File stateFile = site.getFile(SYNC_STATE_FILE);
+		final MemoryCardDataProvider syncProvider = provider;
+		new Thread() {
+			@Override
+			public void run() {
+				String title;
+				String message;
+				ColonyDiff diff = null;
+				try {
+					final BufferedReader reader = new BufferedReader(new FileReader(serverFile));
+					final String address;
+					try {
+						address = reader.readLine().trim();
+					}
+					finally {
+						reader.close();
+					}
+					final int colon = address.lastIndexOf(':');
+					final String host = colon == -1 ? address : address.substring(0, colon);
+					final int port = colon == -1 ? SyncServer.DEFAULT_PORT : Integer.parseInt(address.substring(colon + 1));
+
+					final SyncClient client = new SyncClient(syncProvider, Build.SERIAL, stateFile, uiExecutor);
+					final SyncClient.Result result = client.sync(host, port);
+					diff = result.diff;
+					title = "Sync complete";
+					message = result.toString();
+				} catch (IOException e) {
+					title = "Sync failed";
+					message = e.getMessage();
+				} catch (RuntimeException e) {
+					title = "Sync failed";
+					message = "Invalid server address in " + serverFile.getAbsolutePath();
+				}
+				final String finalTitle = title;
+				final String finalMessage = message;
+				final ColonyDiff finalDiff = diff;
+				runOnUiThread(new Runnable() {
+					@Override
+					public void run() {
+						if(finalDiff != null && provider == syncProvider) {
+							updateMarkers(finalDiff);
+						}
+						new AlertDialog.Builder(MainActivity.this)
+								.setTitle(finalTitle)
+								.setMessage(finalMessage)
+								.setNeutralButton("OK", DIALOG_CLICK_NOOP).show();
+					}
+				});
+			}
+		}.start();
+	}
+
+	/**
+	 * Writes the colonies modified since midnight to a compressed file
+	 * in {@link #EXPORT_DIR} on a background thread, and shows the result
+	 */
+	private void exportTodaysChanges() {
+		final Calendar midnight = Calendar.getInstance();
+		midnight.set(Calendar.HOUR_OF_DAY, 0);
+		midnight.set(Calendar.MINUTE, 0);
+		midnight.set(Calendar.SECOND, 0);
+		midnight.set(Calendar.MILLISECOND, 0);
+		final String name = "changes-" + new SimpleDateFormat("yyyy-MM-dd-HHmmss", Locale.US).format(new Date()) + ".json.gz";
+		final File exportDir = site.getFile(EXPORT_DIR);
+		final File file = new File(exportDir, name);
+		final MemoryCardDataProvider exportProvider = provider;
+
+		new Thread() {
+			@Override
+			public void run() {
+				String message;
+				try {
+					exportDir.mkdirs();
+					final int count = exportProvider.exportModifiedSince(midnight.getTime(), file);
+					message = "Wrote " + count + " changed colonies to " + file.getAbsolutePath();
+				} catch (IOException e) {
+					message = "Export failed: " + e.getMessage();
+				}
+				final String finalMessage = message;
+				runOnUiThread(new Runnable() {
+					@Override
+					public void run() {
+						new AlertDialog.Builder(MainActivity.this)
+								.setTitle("Export")
+								.setMessage(finalMessage)
+								.setNeutralButton("OK", DIALOG_CLICK_NOOP).show();
+					}
+				});
+			}
+		}.start();
+	}
+
+	/**
+	 * Reads the waypoint files in {@link #GPS_IMPORT_DIR} and converts them
+	 * to colonies on a background thread, then adds the new colonies and
+	 * shows the result
+	 */
+	private void importGpsWaypoints() {
+		final List<Colony> existing = new ArrayList<Colony>(colonies);
+		final File importDir = site.getFile(GPS_IMPORT_DIR);
+		final CoordinateTransformer transformer = CoordinateTransformer.getInstance();
+		final MemoryCardDataProvider importProvider = provider;
+		new Thread() {
+			@Override
+			public void run() {
+				String message;
+				SurveyImporter.Result prepared = null;
+				try {
+					final WaypointBuffer waypoints = new WaypointBuffer();
+					final File[] files = importDir.listFiles();
+					if (files != null) {
+						for (File file : files) {
+							if (file.isFile()) {
+								SurveyImporter.read(file, waypoints);
+							}
+						}
+					}
+					prepared = new SurveyImporter(transformer, GPS_IMPORT_MIN_DISTANCE)
+							.prepare(waypoints, existing);
+					message = "Read " + waypoints.size() + " waypoints from " + importDir.getAbsolutePath()
+							+ ". " + prepared + ".";
+				} catch (IOException e) {
+					message = "Import failed: " + e.getMessage();
+				}
+				final SurveyImporter.Result result = prepared;
+				final String finalMessage = message;
+				runOnUiThread(new Runnable() {
+					@Override
+					public void run() {
+						if (result != null && provider == importProvider) {
+							updateMarkers(SurveyImporter.commit(provider, result));
+						}
+						new AlertDialog.Builder(MainActivity.this)
+								.setTitle(R.string.import_gps)
+								.setMessage(finalMessage)
+								.setNeutralButton("OK", DIALOG_CLICK_NOOP).show();
+					}
+				});
+			}
+		}.start();
+	}
+
+	/**
+	 * Copies the photos in {@link #PHOTO_INBOX_DIR} into the photo store on a
+	 * background thread, adds them to their colonies, and shows the result.
+	 * A photo is removed from the inbox only after it has been added to its
+	 * colony. Photos whose colonies are not found are left in the inbox.
+	 */
+	private void importPhotos() {
+		final File inbox = site.getFile(PHOTO_INBOX_DIR);
+		final BlobStore store = photoStore;
+		final ColonyList siteColonies = colonies;
+		// Read on this thread, so the background thread does not use the colony list
+		final TagSet knownIds = TagSet.ofColonies(siteColonies);
+		final MemoryCardDataProvider photoProvider = provider;
+		new Thread() {
+			@Override
+			public void run() {
+				final List<File> stored = new ArrayList<File>();
+				final List<Integer> colonyIds = new ArrayList<Integer>();
+				final List<String> hashes = new ArrayList<String>();
+				int skipped = 0;
+				int unknown = 0;
+				final File[] files = inbox.listFiles();
+				if (files != null) {
+					for (File file : files) {
+						final String name = file.getName();
+						int end = 0;
+						while (end < name.length() && Character.isDigit(name.charAt(end))) {
+							end++;
+						}
+						if (end == 0 || !file.isFile()) {
+							skipped++;
+							continue;
+						}
+						try {
+							final int colonyId = Integer.parseInt(name.substring(0, end));
+							if (!knownIds.contains(colonyId)) {
+								unknown++;
+								continue;
+							}
+							hashes.add(store.put(file));
+							colonyIds.add(colonyId);
+							stored.add(file);
+						} catch (IOException e) {
+							e.printStackTrace();
+							skipped++;
+						} catch (NumberFormatException e) {
+							skipped++;
+						}
+					}
+				}
+				final int finalSkipped = skipped;
+				final int finalUnknown = unknown;
+				runOnUiThread(new Runnable() {
+					@Override
+					public void run() {
+						final List<File> linked = new ArrayList<File>();
+						int unknown = finalUnknown;
+						for (int i = 0; i < hashes.size(); i++) {
+							try {
+								final Colony colony = siteColonies.getById(colonyIds.get(i));
+								colony.addPhoto(hashes.get(i));
+								photoProvider.updateColony(colony);
+								linked.add(stored.get(i));
+							} catch (NoSuchColonyException e) {
+								// Removed since the import started
+								unknown++;
+							}
+						}
+						// The photos are now in the store and linked, so the inbox copies can go
+						new Thread() {
+							@Override
+							public void run() {
+								for (File file : linked) {
+									if (!file.delete()) {
+										System.err.println("Could not remove " + file.getAbsolutePath());
+									}
+								}
+							}
+						}.start();
+
+						String message = "Imported " + linked.size() + " photos from " + inbox.getAbsolutePath();
+						if (unknown != 0) {
+							message += ". Skipped " + unknown + " photos whose colonies were not found. They are still in the folder.";
+						}
+						if (finalSkipped != 0) {
+							message += ". Skipped " + finalSkipped + " files.";
+						}
+						new AlertDialog.Builder(MainActivity.this)
+								.setTitle(R.string.import_photos)
+								.setMessage(message)
+								.setNeutralButton("OK", DIALOG_CLICK_NOOP).show();
+					}
+				});
+			}
+		}.start();
+	}
+
+	/**
+	 * Writes all colonies as GeoJSON, KML and CSV files in {@link #EXPORT_DIR}
+	 * on a background thread, and shows the result
+	 */
+	private void exportForGis() {
+		final String baseName = "colonies-" + new SimpleDateFormat("yyyy-MM-dd-HHmmss", Locale.US).format(new Date());
+		final List<Colony> toExport = new ArrayList<Colony>(colonies);
+		final File exportDir = site.getFile(EXPORT_DIR);
+
+		new Thread() {
+			@Override
+			public void run() {
+				String message;
+				try {
+					exportDir.mkdirs();
+					final FileStorage storage = new FileStorage(exportDir);
+					final StringBuilder written = new StringBuilder();
+					for(ExportFormat format : new ExportFormat[] { new GeoJSONFormat(), new KMLFormat(), new CSVExportFormat() }) {
+						final String name = baseName + format.getExtension();
+						final int count = new ColonyExporter(format, null).export(toExport, storage, name);
+						written.append('\n').append(name).append(": ").append(count).append(" colonies");
+					}
+					message = "Wrote to " + exportDir.getAbsolutePath() + ":" + written;
+				} catch (IOException e) {
+					message = "Export failed: " + e.getMessage();
+				}
+				final String finalMessage = message;
+				runOnUiThread(new Runnable() {
+					@Override
+					public void run() {
+						new AlertDialog.Builder(MainActivity.this)
+								.setTitle("Export")
+								.setMessage(finalMessage)
+								.setNeutralButton("OK", DIALOG_CLICK_NOOP).show();
+					}
+				});
+			}
+		}.start();
+	}
+
+	/**
+	 * Merges the colony files in {@link #MERGE_DIR} on a background thread
+	 * and shows the result
+	 */
+	private void mergeDeviceFiles() {
+		final File mergeDir = site.getFile(MERGE_DIR);
+		new Thread() {
+			@Override
+			public void run() {
+				String title;
+				String message;
+				try {
+					final MultiDeviceMerger.Result result = MultiDeviceMerger.mergeDirectory(mergeDir);
+					title = "Merge complete";
+					message = result.toString() + ". Wrote " + MultiDeviceMerger.MERGED_FILE_NAME
+							+ " and " + MultiDeviceMerger.CONFLICT_FILE_NAME + " in " + mergeDir.getAbsolutePath() + ".";
+				} catch (IOException e) {
+					title = "Merge failed";
+					message = e.getMessage();
+				}
+				final String finalTitle = title;
+				final String finalMessage = message;
+				runOnUiThread(new Runnable() {
+					@Override
+					public void run() {
+						new AlertDialog.Builder(MainActivity.this)
+								.setTitle(finalTitle)
+								.setMessage(finalMessage)
+								.setNeutralButton("OK", DIALOG_CLICK_NOOP).show();
+					}
+				});
+			}
+		}.start();
+	}
+
 	private static final DialogInterface.OnClickListener DIALOG_CLICK_NOOP = new DialogInterface.OnClickListener() {
 		@Override
 		public void onClick(DialogInterface arg0, int arg1) {
@@ -370,11 +1627,29 @@ public class MainActivity extends Activity implements
 		}
 	};
 
+	@Override
+	protected void onDestroy() {
+		super.onDestroy();
+		closeSite();
+		thumbnailExecutor.shutdownNow();
+		if (locationPipeline != null) {
+			locationPipeline.shutdown();
+		}
+	}
+
 	@Override
 	protected void onPause() {
 		super.onPause();
 		// Pause location updates
 		locationOverlay.disableMyLocation();
+		// Save recorded visits
+		if(observationLog != null) {
+			try {
+				observationLog.flush();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
 	}
 
 	@Override
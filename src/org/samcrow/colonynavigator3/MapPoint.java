@@ -1,20 +1,18 @@
 package org.samcrow.colonynavigator3;
 
-import org.samcrow.colonynavigator3.data.Colony;
-
-
-
 /**
- * A latitude and longitude that is mapped to the location of a colony
+ * A latitude and longitude that is mapped to a local location, such as a
+ * colony or a surveyed benchmark
  * 
  * @author Sam Crow
  */
 public class MapPoint {
 
 	/**
-	 * A reference to the colony that this is the location of
+	 * The local location
 	 */
-	private Colony colony;
+	private double x;
+	private double y;
 
 	private double latitude;
 
@@ -23,12 +21,16 @@ public class MapPoint {
 	/**
 	 * Constructor
 	 * 
-	 * @param colony
+	 * @param x
+	 *            The local X-axis location
+	 * @param y
+	 *            The local Y-axis location
 	 * @param latitude
 	 * @param longitude
 	 */
-	public MapPoint(Colony colony, double latitude, double longitude) {
-		this.colony = colony;
+	public MapPoint(double x, double y, double latitude, double longitude) {
+		this.x = x;
+		this.y = y;
 		this.latitude = latitude;
 		this.longitude = longitude;
 	}
@@ -57,7 +59,7 @@ public class MapPoint {
 	 * @return The X location
 	 */
 	public double getX() {
-		return colony.getX();
+		return x;
 	}
 
 	/**
@@ -66,7 +68,7 @@ public class MapPoint {
 	 * @return The Y location
 	 */
 	public double getY() {
-		return colony.getY();
+		return y;
 	}
 
 }
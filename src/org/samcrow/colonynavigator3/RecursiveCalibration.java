@@ -0,0 +1,283 @@
+package org.samcrow.colonynavigator3;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Improves an affine calibration with GPS positions recorded while standing
+ * on colonies whose local coordinates are known, using recursive least
+ * squares.
+ *
+ * The result after any number of updates is the same as a weighted least
+ * squares fit to the original control points and all the confirmations, but
+ * each update only uses a 3x3 matrix, so it takes the same short time no
+ * matter how many points came before. The new coefficients are given to the
+ * existing transformer with {@link CoordinateTransformer#setCoefficients(double[])}.
+ *
+ * The state can be saved, so confirmations are kept after the application
+ * restarts. Saved state is only used with the calibration it started from.
+ *
+ * @author Sam Crow
+ */
+public class RecursiveCalibration {
+
+	private static final String BASE_KEY = "base";
+	private static final String COUNT_KEY = "count";
+	private static final String STATE_KEY = "state";
+
+	/** The number of values in a saved state: 2 origin, 6 coefficients, 9 covariance */
+	private static final int STATE_LENGTH = 17;
+
+	/** The fingerprint of the transformation that this started from */
+	private final long baseFingerprint;
+
+	/** The longitude and latitude that GPS coordinates are measured from */
+	private final double originLongitude;
+	private final double originLatitude;
+
+	/** x = rowX[0] u + rowX[1] v + rowX[2], and the same for y */
+	private final double[] rowX = new double[3];
+	private final double[] rowY = new double[3];
+
+	/**
+	 * The inverse of the weighted sum of [u v 1]^T [u v 1] over all points,
+	 * which is proportional to the covariance of the coefficients
+	 */
+	private final double[][] p = new double[3][3];
+
+	/** The number of confirmations used */
+	private int count;
+
+	/**
+	 * Constructor
+	 *
+	 * @param transformer
+	 *            The transformer to start from. It must be affine.
+	 * @param points
+	 *            The control points that the transformer was fitted to. Each
+	 *            has a weight of 1.
+	 * @throws IllegalArgumentException
+	 *             if the transformer is not affine, or the points are all on
+	 *             one line
+	 */
+	public RecursiveCalibration(CoordinateTransformer transformer, List<MapPoint> points) {
+		final double[] coefficients = transformer.getCoefficients();
+		if(coefficients[8] != 0 || coefficients[9] != 0) {
+			throw new IllegalArgumentException("Only affine transformations can be updated");
+		}
+		baseFingerprint = transformer.getFingerprint();
+		originLongitude = coefficients[0];
+		originLatitude = coefficients[1];
+		System.arraycopy(coefficients, 2, rowX, 0, 3);
+		System.arraycopy(coefficients, 5, rowY, 0, 3);
+
+		final double[][] normal = new double[3][3];
+		for(MapPoint point : points) {
+			final double[] phi = { point.getLongitude() - originLongitude, point.getLatitude() - originLatitude, 1 };
+			for(int i = 0; i < 3; i++) {
+				for(int j = 0; j < 3; j++) {
+					normal[i][j] += phi[i] * phi[j];
+				}
+			}
+		}
+		invert(normal, p);
+	}
+
+	private RecursiveCalibration(long baseFingerprint, int count, double[] state) {
+		this.baseFingerprint = baseFingerprint;
+		this.count = count;
+		originLongitude = state[0];
+		originLatitude = state[1];
+		System.arraycopy(state, 2, rowX, 0, 3);
+		System.arraycopy(state, 5, rowY, 0, 3);
+		for(int i = 0; i < 3; i++) {
+			System.arraycopy(state, 8 + 3 * i, p[i], 0, 3);
+		}
+	}
+
+	/**
+	 * Add a confirmation
+	 *
+	 * @param longitude
+	 *            The measured longitude
+	 * @param latitude
+	 *            The measured latitude
+	 * @param x
+	 *            The local X coordinate of the place where the longitude and
+	 *            latitude were measured
+	 * @param y
+	 *            The local Y coordinate
+	 * @param weight
+	 *            The weight of this confirmation compared to a control point.
+	 *            This should be the ratio of the variance of the control
+	 *            points to the variance of this measurement.
+	 */
+	public synchronized void update(double longitude, double latitude, double x, double y, double weight) {
+		if(!(weight > 0)) {
+			throw new IllegalArgumentException("Weight must be positive");
+		}
+		final double[] phi = { longitude - originLongitude, latitude - originLatitude, 1 };
+		final double[] pPhi = new double[3];
+		double phiPPhi = 0;
+		for(int i = 0; i < 3; i++) {
+			pPhi[i] = p[i][0] * phi[0] + p[i][1] * phi[1] + p[i][2] * phi[2];
+			phiPPhi += phi[i] * pPhi[i];
+		}
+		final double denominator = 1 / weight + phiPPhi;
+		final double errorX = x - (rowX[0] * phi[0] + rowX[1] * phi[1] + rowX[2]);
+		final double errorY = y - (rowY[0] * phi[0] + rowY[1] * phi[1] + rowY[2]);
+		for(int i = 0; i < 3; i++) {
+			final double gain = pPhi[i] / denominator;
+			rowX[i] += gain * errorX;
+			rowY[i] += gain * errorY;
+			for(int j = 0; j < 3; j++) {
+				p[i][j] -= gain * pPhi[j];
+			}
+		}
+		count++;
+	}
+
+	/**
+	 * Give the current coefficients to a transformer
+	 *
+	 * @param transformer
+	 *            The transformer to change
+	 */
+	public synchronized void apply(CoordinateTransformer transformer) {
+		transformer.setCoefficients(getCoefficients());
+	}
+
+	/**
+	 * @return The current coefficients, in the format returned by
+	 *         {@link CoordinateTransformer#getCoefficients()}
+	 */
+	public synchronized double[] getCoefficients() {
+		return new double[] { originLongitude, originLatitude, rowX[0], rowX[1], rowX[2], rowY[0], rowY[1],
+				rowY[2], 0, 0 };
+	}
+
+	/**
+	 * @return The number of confirmations used
+	 */
+	public synchronized int getCount() {
+		return count;
+	}
+
+	/**
+	 * Save the state
+	 *
+	 * @param file
+	 *            The file to write
+	 * @throws IOException
+	 *             if the file could not be written
+	 */
+	public synchronized void save(File file) throws IOException {
+		final StringBuilder state = new StringBuilder();
+		append(state, originLongitude);
+		append(state, originLatitude);
+		for(double value : rowX) {
+			append(state, value);
+		}
+		for(double value : rowY) {
+			append(state, value);
+		}
+		for(double[] row : p) {
+			for(double value : row) {
+				append(state, value);
+			}
+		}
+		final Properties properties = new Properties();
+		properties.setProperty(BASE_KEY, Long.toHexString(baseFingerprint));
+		properties.setProperty(COUNT_KEY, Integer.toString(count));
+		properties.setProperty(STATE_KEY, state.toString());
+
+		final OutputStream out = new FileOutputStream(file);
+		try {
+			properties.store(out, "Calibration updated from GPS confirmations. Delete to start again.");
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Read a saved state
+	 *
+	 * @param file
+	 *            The file to read
+	 * @param base
+	 *            The transformer that the calibration must have started from
+	 * @return The saved calibration, or null if the file does not exist,
+	 *         could not be read, or started from a different transformation
+	 */
+	public static RecursiveCalibration load(File file, CoordinateTransformer base) {
+		if(!file.exists()) {
+			return null;
+		}
+		try {
+			final Properties properties = new Properties();
+			final InputStream in = new FileInputStream(file);
+			try {
+				properties.load(in);
+			} finally {
+				in.close();
+			}
+			if(!Long.toHexString(base.getFingerprint()).equals(properties.getProperty(BASE_KEY))) {
+				return null;
+			}
+			final String[] parts = properties.getProperty(STATE_KEY, "").split(",");
+			if(parts.length != STATE_LENGTH) {
+				return null;
+			}
+			final double[] state = new double[STATE_LENGTH];
+			for(int i = 0; i < STATE_LENGTH; i++) {
+				state[i] = Double.parseDouble(parts[i]);
+			}
+			return new RecursiveCalibration(base.getFingerprint(),
+					Integer.parseInt(properties.getProperty(COUNT_KEY, "0")), state);
+		} catch (IOException e) {
+			e.printStackTrace();
+		} catch (NumberFormatException e) {
+			System.err.println("Invalid calibration state: " + e.getMessage());
+		}
+		return null;
+	}
+
+	private static void append(StringBuilder builder, double value) {
+		if(builder.length() != 0) {
+			builder.append(',');
+		}
+		// Double.toString gives the exact value back when parsed
+		builder.append(Double.toString(value));
+	}
+
+	/**
+	 * Invert a 3x3 matrix with its adjugate
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the matrix is singular
+	 */
+	private static void invert(double[][] m, double[][] inverse) {
+		final double c00 = m[1][1] * m[2][2] - m[1][2] * m[2][1];
+		final double c01 = m[1][2] * m[2][0] - m[1][0] * m[2][2];
+		final double c02 = m[1][0] * m[2][1] - m[1][1] * m[2][0];
+		final double determinant = m[0][0] * c00 + m[0][1] * c01 + m[0][2] * c02;
+		if(determinant == 0 || Double.isNaN(determinant)) {
+			throw new IllegalArgumentException("Points do not define a transformation (all on a line?)");
+		}
+		inverse[0][0] = c00 / determinant;
+		inverse[0][1] = (m[0][2] * m[2][1] - m[0][1] * m[2][2]) / determinant;
+		inverse[0][2] = (m[0][1] * m[1][2] - m[0][2] * m[1][1]) / determinant;
+		inverse[1][0] = c01 / determinant;
+		inverse[1][1] = (m[0][0] * m[2][2] - m[0][2] * m[2][0]) / determinant;
+		inverse[1][2] = (m[0][2] * m[1][0] - m[0][0] * m[1][2]) / determinant;
+		inverse[2][0] = c02 / determinant;
+		inverse[2][1] = (m[0][1] * m[2][0] - m[0][0] * m[2][1]) / determinant;
+		inverse[2][2] = (m[0][0] * m[1][1] - m[0][1] * m[1][0]) / determinant;
+	}
+}
@@ -0,0 +1,120 @@
+package org.samcrow.colonynavigator3;
+
+import java.io.File;
+
+import org.mapsforge.core.model.LatLong;
+import org.mapsforge.core.model.MapPosition;
+
+/**
+ * A field site: the directory that its colony data, calibration and other
+ * files are stored in, its map file and the initial map position.
+ *
+ * A site only describes where its data is. Nothing is loaded until the site
+ * is opened.
+ *
+ * @author Sam Crow
+ */
+public class Site {
+
+	private final String name;
+
+	private final File directory;
+
+	private final File mapFile;
+
+	private final MapPosition startPosition;
+
+	/**
+	 * Constructor
+	 *
+	 * @param name
+	 *            The name to show
+	 * @param directory
+	 *            The directory that the site's files are stored in
+	 * @param mapFile
+	 *            The map file
+	 * @param startPosition
+	 *            The position to show when the site is opened
+	 */
+	public Site(String name, File directory, File mapFile, MapPosition startPosition) {
+		this.name = name;
+		this.directory = directory;
+		this.mapFile = mapFile;
+		this.startPosition = startPosition;
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param name
+	 *            The name to show
+	 * @param directory
+	 *            The directory that the site's files are stored in
+	 * @param mapFile
+	 *            The map file
+	 * @param latitude
+	 *            The latitude of the position to show when the site is opened
+	 * @param longitude
+	 *            The longitude of the position to show when the site is opened
+	 * @param zoom
+	 *            The zoom level to show when the site is opened
+	 */
+	public Site(String name, File directory, File mapFile, double latitude, double longitude, byte zoom) {
+		this(name, directory, mapFile, new MapPosition(new LatLong(latitude, longitude), zoom));
+	}
+
+	/**
+	 * @return The name of this site
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return An identifier for this site made of only letters, digits and
+	 *         underscores, for naming its caches and preferences
+	 */
+	public String getId() {
+		final StringBuilder id = new StringBuilder(name.length());
+		for(int i = 0; i < name.length(); i++) {
+			final char c = name.charAt(i);
+			id.append(Character.isLetterOrDigit(c) ? c : '_');
+		}
+		return id.toString();
+	}
+
+	/**
+	 * @return The directory that the site's files are stored in
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @param name
+	 *            The name of a file
+	 * @return The file with the given name in this site's directory
+	 */
+	public File getFile(String name) {
+		return new File(directory, name);
+	}
+
+	/**
+	 * @return The map file
+	 */
+	public File getMapFile() {
+		return mapFile;
+	}
+
+	/**
+	 * @return The position to show when the site is opened
+	 */
+	public MapPosition getStartPosition() {
+		return startPosition;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
@@ -0,0 +1,257 @@
+package org.samcrow.colonynavigator3;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+import org.samcrow.colonynavigator3.data.Colony;
+
+/**
+ * The calibration of one site: the control points in the site's
+ * {@link #CONTROL_POINT_FILE}, and the updates to them from GPS
+ * confirmations that are saved in its {@link #RECALIBRATION_FILE}.
+ *
+ * The built-in control points were surveyed at one site, so only the site
+ * in that directory may go without a control point file. Any other site
+ * would have its colonies placed with another site's calibration, so it
+ * must have usable control points.
+ *
+ * @author Sam Crow
+ */
+public class SiteCalibration {
+
+	/**
+	 * The file of surveyed control points that colony coordinates are
+	 * calibrated from. If it does not exist, built-in points are used.
+	 */
+	public static final String CONTROL_POINT_FILE = "control_points.csv";
+
+	/**
+	 * The file that the calibration solved from {@link #CONTROL_POINT_FILE} is saved in
+	 */
+	public static final String CALIBRATION_CACHE_FILE = "calibration.cache";
+
+	/**
+	 * The file that the calibration updated from GPS confirmations is saved in
+	 */
+	public static final String RECALIBRATION_FILE = "recalibration.properties";
+
+	/**
+	 * The assumed accuracy of a control point, in meters. GPS confirmations
+	 * are weighted by the square of this divided by the GPS accuracy.
+	 */
+	private static final double CONTROL_POINT_ACCURACY = 1;
+
+	/** The largest GPS accuracy, in meters, that a confirmation can have */
+	private static final double MAX_CONFIRMATION_ACCURACY = 10;
+
+	/**
+	 * The largest distance in meters between the selected colony and the GPS
+	 * position for a confirmation to be used. Larger distances are more likely
+	 * to be the wrong colony than a calibration error.
+	 */
+	private static final double MAX_CONFIRMATION_DISTANCE = 15;
+
+	private final Site site;
+
+	/**
+	 * The calibration loaded from {@link #CONTROL_POINT_FILE}, or null if the
+	 * built-in points are used
+	 */
+	private final Calibration calibration;
+
+	/**
+	 * Why the site's control points were not used, or null
+	 */
+	private final String warning;
+
+	/**
+	 * Updates the calibration from GPS confirmations, or null if the
+	 * calibration cannot be updated or {@link #apply()} has not been called
+	 */
+	private RecursiveCalibration recalibration;
+
+	private SiteCalibration(Site site, Calibration calibration, String warning) {
+		this.site = site;
+		this.calibration = calibration;
+		this.warning = warning;
+	}
+
+	/**
+	 * Read the control points of a site. Nothing is changed until
+	 * {@link #apply()} is called.
+	 *
+	 * @param site
+	 *            The site
+	 * @param builtInDirectory
+	 *            The directory of the site that the built-in control points
+	 *            were surveyed at
+	 * @return The site's calibration
+	 * @throws IOException
+	 *             if the site is not the built-in site and its control
+	 *             points are missing or cannot be used
+	 */
+	public static SiteCalibration read(Site site, File builtInDirectory) throws IOException {
+		final File controlFile = site.getFile(CONTROL_POINT_FILE);
+		final boolean builtIn = isSameDirectory(site.getDirectory(), builtInDirectory);
+		if(!controlFile.exists()) {
+			if(builtIn) {
+				return new SiteCalibration(site, null, null);
+			}
+			throw new IOException("This site has no control points. Put them in "
+					+ controlFile.getAbsolutePath() + " with the columns name, x, y, latitude, longitude.");
+		}
+		try {
+			return new SiteCalibration(site, Calibration.load(controlFile, site.getFile(CALIBRATION_CACHE_FILE)), null);
+		} catch (Exception e) {
+			e.printStackTrace();
+			if(!builtIn) {
+				throw new IOException("Could not use " + controlFile.getAbsolutePath() + ": " + e.getMessage());
+			}
+			return new SiteCalibration(site, null, "Could not use " + controlFile.getAbsolutePath() + ": "
+					+ e.getMessage() + "\nThe built-in calibration will be used.");
+		}
+	}
+
+	/**
+	 * @param a
+	 *            A directory
+	 * @param b
+	 *            Another directory
+	 * @return If the two paths name the same directory, after resolving
+	 *         relative paths, "..", and symbolic links
+	 */
+	static boolean isSameDirectory(File a, File b) {
+		try {
+			return a.getCanonicalFile().equals(b.getCanonicalFile());
+		} catch (IOException e) {
+			e.printStackTrace();
+			return a.getAbsoluteFile().equals(b.getAbsoluteFile());
+		}
+	}
+
+	/**
+	 * @return Why the site's control points could not be used and the
+	 *         built-in points will be used instead, or null
+	 */
+	public String getWarning() {
+		return warning;
+	}
+
+	/**
+	 * Use this calibration for all coordinate transformations, and apply the
+	 * GPS confirmations saved with it
+	 */
+	public void apply() {
+		// Forget the previous site's transformer
+		CoordinateTransformer.setInstance(null);
+		if(calibration != null) {
+			CoordinateTransformer.setInstance(calibration.getTransformer());
+		}
+
+		final CoordinateTransformer transformer = CoordinateTransformer.getInstance();
+		recalibration = RecursiveCalibration.load(site.getFile(RECALIBRATION_FILE), transformer);
+		if(recalibration != null) {
+			recalibration.apply(transformer);
+			return;
+		}
+		try {
+			recalibration = new RecursiveCalibration(transformer,
+					calibration != null ? calibration.getPoints() : CoordinateTransformer.getBuiltInPoints());
+		} catch (IllegalArgumentException e) {
+			System.err.println("Calibration cannot be updated: " + e.getMessage());
+			recalibration = null;
+		}
+	}
+
+	/**
+	 * @return If GPS confirmations can be used to update this calibration
+	 */
+	public boolean canUpdate() {
+		return recalibration != null;
+	}
+
+	/**
+	 * Check if a GPS position can be used as a confirmation that the user is
+	 * standing on a colony
+	 *
+	 * @param colony
+	 *            The colony
+	 * @param longitude
+	 *            The GPS longitude
+	 * @param latitude
+	 *            The GPS latitude
+	 * @param accuracy
+	 *            The GPS accuracy in meters
+	 * @return Why the position cannot be used, or null if it can
+	 */
+	public String checkConfirmation(Colony colony, double longitude, double latitude, double accuracy) {
+		if(!canUpdate()) {
+			return "The calibration cannot be updated.";
+		}
+		if(accuracy > MAX_CONFIRMATION_ACCURACY) {
+			return String.format(Locale.US, "The GPS accuracy (%.0f m) is not good enough.", accuracy);
+		}
+		final double[] local = CoordinateTransformer.getInstance().toLocal(longitude, latitude);
+		final double distance = Math.hypot(local[0] - colony.getX(), local[1] - colony.getY());
+		if(distance > MAX_CONFIRMATION_DISTANCE) {
+			return String.format(Locale.US, "The GPS position is %.0f m from colony %d.", distance, colony.getId());
+		}
+		return null;
+	}
+
+	/**
+	 * Update the calibration with a GPS position measured while standing on
+	 * a colony, and save the updated calibration on another thread. The
+	 * position should be checked with
+	 * {@link #checkConfirmation(Colony, double, double, double)} first.
+	 *
+	 * Colony coordinates that were already transformed are not changed.
+	 *
+	 * @param colony
+	 *            The colony
+	 * @param longitude
+	 *            The GPS longitude
+	 * @param latitude
+	 *            The GPS latitude
+	 * @param accuracy
+	 *            The GPS accuracy in meters
+	 */
+	public void confirm(Colony colony, double longitude, double latitude, double accuracy) {
+		final double weight = (CONTROL_POINT_ACCURACY * CONTROL_POINT_ACCURACY) / Math.max(accuracy * accuracy, 1e-6);
+		recalibration.update(longitude, latitude, colony.getX(), colony.getY(), weight);
+		recalibration.apply(CoordinateTransformer.getInstance());
+
+		final RecursiveCalibration state = recalibration;
+		final File stateFile = site.getFile(RECALIBRATION_FILE);
+		new Thread() {
+			@Override
+			public void run() {
+				try {
+					state.save(stateFile);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}.start();
+	}
+
+	/**
+	 * @return A description of the calibration, with the residual of each
+	 *         control point and the number of GPS confirmations
+	 */
+	public String getReport() {
+		String message;
+		if(calibration != null) {
+			message = calibration.getReport();
+		} else {
+			message = "Using the built-in calibration. To calibrate from surveyed control points, put them in "
+					+ site.getFile(CONTROL_POINT_FILE).getAbsolutePath()
+					+ " with the columns name, x, y, latitude, longitude.";
+		}
+		if(recalibration != null && recalibration.getCount() != 0) {
+			message += "\nUpdated with " + recalibration.getCount() + " GPS confirmations.";
+		}
+		return message;
+	}
+}
@@ -0,0 +1,150 @@
+package org.samcrow.colonynavigator3;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The field sites that can be opened, read from a CSV file with one site
+ * on each line:
+ * <pre>
+ * # name, directory, map file, latitude, longitude, zoom
+ * Rodeo, rodeo, new-mexico.map, 31.872176, -109.040983, 17
+ * </pre>
+ * Relative directories and map files are in the directory that the file is
+ * in. Blank lines and lines starting with # are ignored.
+ *
+ * @author Sam Crow
+ */
+public class SiteRegistry {
+
+	/** The name of the file that sites are read from */
+	public static final String FILE_NAME = "sites.csv";
+
+	private final List<Site> sites;
+
+	/**
+	 * Constructor
+	 *
+	 * @param sites
+	 *            The sites. There must be at least one.
+	 */
+	public SiteRegistry(List<Site> sites) {
+		if(sites.isEmpty()) {
+			throw new IllegalArgumentException("At least one site is required");
+		}
+		this.sites = Collections.unmodifiableList(new ArrayList<Site>(sites));
+	}
+
+	/**
+	 * Read the sites in {@link #FILE_NAME} in a directory
+	 *
+	 * @param directory
+	 *            The directory to read from
+	 * @param defaultSite
+	 *            The site to use if the directory does not have a site file
+	 * @return The sites
+	 * @throws IOException
+	 *             if the file could not be read, has an invalid line, or
+	 *             has no sites
+	 */
+	public static SiteRegistry read(File directory, Site defaultSite) throws IOException {
+		final File file = new File(directory, FILE_NAME);
+		if(!file.exists()) {
+			return new SiteRegistry(Collections.singletonList(defaultSite));
+		}
+		final InputStream in = new FileInputStream(file);
+		try {
+			final List<Site> sites = read(in, directory);
+			if(sites.isEmpty()) {
+				throw new IOException("No sites in " + file.getAbsolutePath());
+			}
+			return new SiteRegistry(sites);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Read sites
+	 *
+	 * @param in
+	 *            The stream to read from. It is not closed.
+	 * @param directory
+	 *            The directory that relative paths are in
+	 * @return The sites
+	 * @throws IOException
+	 *             if the stream could not be read or a line is not valid
+	 */
+	public static List<Site> read(InputStream in, File directory) throws IOException {
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+		final List<Site> sites = new ArrayList<Site>();
+		int lineNumber = 0;
+		String line;
+		while((line = reader.readLine()) != null) {
+			lineNumber++;
+			line = line.trim();
+			if(line.length() == 0 || line.startsWith("#")) {
+				continue;
+			}
+			final String[] parts = line.split("\\s*,\\s*");
+			if(parts.length != 6) {
+				throw new IOException("Line " + lineNumber
+						+ ": expected name, directory, map file, latitude, longitude, zoom");
+			}
+			try {
+				sites.add(new Site(parts[0], resolve(directory, parts[1]), resolve(directory, parts[2]),
+						Double.parseDouble(parts[3]), Double.parseDouble(parts[4]), Byte.parseByte(parts[5])));
+			} catch (NumberFormatException e) {
+				throw new IOException("Line " + lineNumber + ": " + e.getMessage());
+			}
+		}
+		return sites;
+	}
+
+	private static File resolve(File directory, String path) {
+		final File file = new File(path);
+		return file.isAbsolute() ? file : new File(directory, path);
+	}
+
+	/**
+	 * @return The sites, in the order they were read
+	 */
+	public List<Site> getSites() {
+		return sites;
+	}
+
+	/**
+	 * @param name
+	 *            The name of a site
+	 * @return The site with the name, or the first site if none has that name
+	 */
+	public Site getSite(String name) {
+		for(Site site : sites) {
+			if(site.getName().equals(name)) {
+				return site;
+			}
+		}
+		return sites.get(0);
+	}
+
+	/**
+	 * @param preferred
+	 *            The site to try first
+	 * @return All the sites, in the order they should be tried when opening
+	 *         one: the preferred site, then the others in the order they were
+	 *         read
+	 */
+	public List<Site> getOpenOrder(Site preferred) {
+		final List<Site> order = new ArrayList<Site>(sites);
+		order.remove(preferred);
+		order.add(0, preferred);
+		return order;
+	}
+}
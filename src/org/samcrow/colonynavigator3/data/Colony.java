@@ -1,17 +1,21 @@
 package org.samcrow.colonynavigator3.data;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.joda.time.format.ISODateTimeFormat;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.mapsforge.core.model.LatLong;
+import org.mapsforge.map.layer.overlay.Marker;
 import org.samcrow.colonynavigator3.CoordinateTransformer;
-import org.samcrow.colonynavigator3.map.ColonyMarker;
 
 /**
  * Stores data for one colony
@@ -55,6 +59,35 @@ public class Colony implements Serializable, JSONSerializable,
 		this(0, 0, 0, false);
 	}
 
+	/**
+	 * Constructor for restoring a colony from storage. Unlike the setters,
+	 * this does not change the modified date/time.
+	 * 
+	 * @param id
+	 *            The colony's identifier
+	 * @param x
+	 *            The colony's X location in meters
+	 * @param y
+	 *            The colony's Y location in meters
+	 * @param active
+	 *            If the colony is active
+	 * @param visited
+	 *            If the colony has been visited
+	 * @param modified
+	 *            The date/time the colony was last modified, or null
+	 * @param attributes
+	 *            Additional attributes to copy, or null
+	 */
+	public Colony(int id, double x, double y, boolean active, boolean visited,
+			Date modified, Map<String, Object> attributes) {
+		this(id, x, y, active);
+		this.visited = visited;
+		this.modified = modified;
+		if (attributes != null) {
+			this.attributes.putAll(attributes);
+		}
+	}
+
 	/** The colony's identifier */
 	protected int id;
 
@@ -85,6 +118,14 @@ public class Colony implements Serializable, JSONSerializable,
 	 */
 	private Map<String, Object> attributes = new HashMap<String, Object>();
 
+	/**
+	 * The attribute that contains the hashes of this colony's photos,
+	 * separated by commas. Only the hashes are stored with the colony; the
+	 * photos are in a {@link org.samcrow.data.photo.BlobStore}. Sync messages
+	 * carry it through {@link #toJSON()} like any other attribute.
+	 */
+	public static final String PHOTOS_ATTRIBUTE = "photos";
+
 	/**
 	 * The date/time that this colony was modified. If it was not modified by
 	 * Colony Navigator since it was imported from the CSV file, this should be
@@ -95,7 +136,12 @@ public class Colony implements Serializable, JSONSerializable,
 
 	private transient ColonyChangeListener listener = null;
 	
-	private transient ColonyMarker marker = null;
+	/**
+	 * The marker that shows this colony on the map. This is a plain mapsforge
+	 * marker, not a ColonyMarker, so that this class does not depend on
+	 * Android graphics and can be used on a desktop JVM.
+	 */
+	private transient Marker marker = null;
 
 	/**
 	 * Get the colony's X-coordinate in meters east of the southwest corner
@@ -143,6 +189,61 @@ public class Colony implements Serializable, JSONSerializable,
 		notifyChanged();
 	}
 
+	/**
+	 * Set the colony's X- and Y-coordinates at once. Listeners are notified
+	 * only once.
+	 * 
+	 * @param x
+	 *            The colony's X-coordinate location
+	 * @param y
+	 *            The colony's Y-coordinate location
+	 */
+	public void setPosition(double x, double y) {
+		setPosition(x, y, null);
+	}
+
+	/**
+	 * Set the colony's X- and Y-coordinates and the latitude/longitude
+	 * position calculated from them. Listeners are notified only once, after
+	 * both have been set.
+	 * 
+	 * @param x
+	 *            The colony's X-coordinate location
+	 * @param y
+	 *            The colony's Y-coordinate location
+	 * @param latLon
+	 *            The position, or null to calculate it when it is next needed
+	 */
+	void setPosition(double x, double y, LatLong latLon) {
+		this.x = x;
+		this.y = y;
+		updateModifiedDate();
+		this.latLon = latLon;
+
+		notifyChanged();
+	}
+
+	/**
+	 * Copy the position, status, attributes and modified date/time of another
+	 * colony into this colony. Unlike the setters, this keeps the other
+	 * colony's modified date/time. Listeners are notified only once.
+	 *
+	 * @param other
+	 *            The colony to copy from
+	 */
+	public void setData(Colony other) {
+		this.x = other.x;
+		this.y = other.y;
+		this.active = other.active;
+		this.visited = other.visited;
+		this.modified = other.modified;
+		this.attributes.clear();
+		this.attributes.putAll(other.attributes);
+		latLon = null;
+
+		notifyChanged();
+	}
+
 	/**
 	 * Get if the colony is active
 	 * 
@@ -194,6 +295,84 @@ public class Colony implements Serializable, JSONSerializable,
 		return id;
 	}
 
+	/**
+	 * Get the additional attributes of this colony
+	 * 
+	 * @return An unmodifiable view of the attributes
+	 */
+	public Map<String, Object> getAttributes() {
+		return Collections.unmodifiableMap(attributes);
+	}
+
+	/**
+	 * Get the photos of this colony
+	 * 
+	 * @return The hashes of the photos in the photo store, in the order they
+	 *         were added
+	 */
+	public List<String> getPhotos() {
+		final Object photos = attributes.get(PHOTOS_ATTRIBUTE);
+		if (!(photos instanceof String) || ((String) photos).length() == 0) {
+			return new ArrayList<String>();
+		}
+		return new ArrayList<String>(Arrays.asList(((String) photos).split(",")));
+	}
+
+	/**
+	 * Add a photo to this colony
+	 * 
+	 * @param hash
+	 *            The hash of the photo in the photo store
+	 */
+	public void addPhoto(String hash) {
+		final List<String> photos = getPhotos();
+		if (!photos.contains(hash)) {
+			photos.add(hash);
+			setPhotos(photos);
+		}
+	}
+
+	/**
+	 * Remove a photo from this colony. The photo is not deleted from the
+	 * photo store.
+	 * 
+	 * @param hash
+	 *            The hash of the photo
+	 */
+	public void removePhoto(String hash) {
+		final List<String> photos = getPhotos();
+		if (photos.remove(hash)) {
+			setPhotos(photos);
+		}
+	}
+
+	private void setPhotos(List<String> photos) {
+		if (photos.isEmpty()) {
+			attributes.remove(PHOTOS_ATTRIBUTE);
+		} else {
+			final StringBuilder value = new StringBuilder();
+			for (String photo : photos) {
+				if (value.length() != 0) {
+					value.append(',');
+				}
+				value.append(photo);
+			}
+			attributes.put(PHOTOS_ATTRIBUTE, value.toString());
+		}
+		updateModifiedDate();
+		notifyChanged();
+	}
+
+	/**
+	 * Get the date/time that this colony was last modified
+	 * 
+	 * @return The modified date/time, or null if this colony has not been
+	 *         modified since it was imported
+	 */
+	public Date getModified() {
+		return modified;
+	}
+
 	/**
 	 * Update the modified date/time and set it to now. Every method that sets a
 	 * field should call this method.
@@ -230,7 +409,8 @@ public class Colony implements Serializable, JSONSerializable,
 
 			// Other attributes
 			if(!attributes.isEmpty()) {
-				object.put("attributes", attributes);
+				// A Map is not converted by put(), so it would be written as its toString()
+				object.put("attributes", new JSONObject(attributes));
 			}
 		} catch (JSONException e) {
 			e.printStackTrace();
@@ -326,10 +506,28 @@ public class Colony implements Serializable, JSONSerializable,
 		notifyChanged();
 	}
 
+	/**
+	 * Set the latitude/longitude position of this colony, calculated from its
+	 * current X and Y coordinates by {@link LatLonColumns}
+	 * 
+	 * @param latLon
+	 *            The position
+	 */
+	void setLatLon(LatLong latLon) {
+		this.latLon = latLon;
+	}
+
+	/**
+	 * @return true if the latitude/longitude position of this colony has been
+	 *         calculated since its position last changed
+	 */
+	boolean hasLatLon() {
+		return latLon != null;
+	}
+
 	public LatLong getLatLon() {
 		if (latLon == null) {
-			latLon = CoordinateTransformer.getInstance().toGps((float) x,
-					(float) y);
+			latLon = CoordinateTransformer.getInstance().toGps(x, y);
 		}
 		return latLon;
 	}
@@ -435,11 +633,11 @@ public class Colony implements Serializable, JSONSerializable,
 		return true;
 	}
 
-	public ColonyMarker getMarker() {
+	public Marker getMarker() {
 		return marker;
 	}
 
-	public void setMarker(ColonyMarker marker) {
+	public void setMarker(Marker marker) {
 		this.marker = marker;
 	}
 }
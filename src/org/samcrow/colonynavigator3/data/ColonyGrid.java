@@ -0,0 +1,115 @@
+package org.samcrow.colonynavigator3.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.samcrow.data.tile.TileKey;
+
+/**
+ * A spatial index of colonies in square cells, for finding the colonies
+ * near a point without checking every colony.
+ *
+ * The index does not watch colonies for changes. A colony that moves must
+ * be removed before it moves and added again afterwards.
+ *
+ * @author Sam Crow
+ */
+public class ColonyGrid {
+
+	/** The width and height of a cell in meters */
+	private final double cellSize;
+
+	/** Colonies in each cell */
+	private final Map<TileKey, List<Colony>> cells = new HashMap<TileKey, List<Colony>>();
+
+	/**
+	 * Constructor
+	 * @param cellSize The width and height of a cell in meters. Searches are
+	 * fastest when this is close to the search distance.
+	 */
+	public ColonyGrid(double cellSize) {
+		if(!(cellSize > 0)) {
+			throw new IllegalArgumentException("Cell size must be positive");
+		}
+		this.cellSize = cellSize;
+	}
+
+	/**
+	 * Create an index of some colonies
+	 * @param cellSize The width and height of a cell in meters
+	 * @param colonies The colonies to index
+	 */
+	public ColonyGrid(double cellSize, Iterable<? extends Colony> colonies) {
+		this(cellSize);
+		for(Colony colony : colonies) {
+			add(colony);
+		}
+	}
+
+	/**
+	 * Add a colony at its current position
+	 * @param colony The colony
+	 */
+	public void add(Colony colony) {
+		final TileKey key = TileKey.containing(colony.getX(), colony.getY(), cellSize);
+		List<Colony> cell = cells.get(key);
+		if(cell == null) {
+			cell = new ArrayList<Colony>(4);
+			cells.put(key, cell);
+		}
+		cell.add(colony);
+	}
+
+	/**
+	 * Remove a colony. The colony must be at the position where it was added.
+	 * @param colony The colony
+	 * @return true if the colony was removed
+	 */
+	public boolean remove(Colony colony) {
+		final TileKey key = TileKey.containing(colony.getX(), colony.getY(), cellSize);
+		final List<Colony> cell = cells.get(key);
+		if(cell == null || !cell.remove(colony)) {
+			return false;
+		}
+		if(cell.isEmpty()) {
+			cells.remove(key);
+		}
+		return true;
+	}
+
+	/**
+	 * Find the colony nearest to a point
+	 * @param x The X coordinate of the point
+	 * @param y The Y coordinate of the point
+	 * @param maxDistance The maximum distance to search, in meters
+	 * @return The nearest colony within the distance, or null if there is none
+	 */
+	public Colony nearest(double x, double y, double maxDistance) {
+		Colony nearest = null;
+		double nearestSquared = maxDistance * maxDistance;
+		final int minX = TileKey.index(x - maxDistance, cellSize);
+		final int maxX = TileKey.index(x + maxDistance, cellSize);
+		final int minY = TileKey.index(y - maxDistance, cellSize);
+		final int maxY = TileKey.index(y + maxDistance, cellSize);
+		for(int cellX = minX; cellX <= maxX; cellX++) {
+			for(int cellY = minY; cellY <= maxY; cellY++) {
+				final List<Colony> cell = cells.get(new TileKey(cellX, cellY));
+				if(cell == null) {
+					continue;
+				}
+				for(Colony colony : cell) {
+					final double dx = colony.getX() - x;
+					final double dy = colony.getY() - y;
+					final double distanceSquared = dx * dx + dy * dy;
+					if(distanceSquared <= nearestSquared) {
+						nearest = colony;
+						nearestSquared = distanceSquared;
+					}
+				}
+			}
+		}
+		return nearest;
+	}
+}
@@ -0,0 +1,129 @@
+package org.samcrow.colonynavigator3.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Named sets of colonies, such as the colonies assigned to a team or used in
+ * an experiment.
+ *
+ * Tags are kept separately from the colonies, so a tag list can be loaded or
+ * replaced without changing any {@link Colony}.
+ *
+ * @author Sam Crow
+ */
+public class ColonyTags {
+
+	/**
+	 * An interface for something that can be notified when tags change
+	 */
+	public interface Listener {
+		/**
+		 * Called after a tag has been added, replaced or removed
+		 * @param name The name of the tag
+		 */
+		public void tagChanged(String name);
+	}
+
+	/** Tag sets by name, sorted by name */
+	private final Map<String, TagSet> tags = new TreeMap<String, TagSet>();
+
+	private Listener listener;
+
+	/**
+	 * Set the listener to notify when tags change
+	 * @param listener The listener, or null
+	 */
+	public synchronized void setListener(Listener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Add or replace a tag
+	 * @param name The name of the tag
+	 * @param set The colonies with the tag
+	 */
+	public void put(String name, TagSet set) {
+		final Listener toNotify;
+		synchronized (this) {
+			final TagSet old = tags.put(name, set);
+			if(set.equals(old)) {
+				return;
+			}
+			toNotify = listener;
+		}
+		if(toNotify != null) {
+			toNotify.tagChanged(name);
+		}
+	}
+
+	/**
+	 * Add or replace several tags
+	 * @param newTags The tags to add, by name
+	 */
+	public void putAll(Map<String, TagSet> newTags) {
+		for(Map.Entry<String, TagSet> entry : newTags.entrySet()) {
+			put(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Remove a tag
+	 * @param name The name of the tag
+	 */
+	public void remove(String name) {
+		final Listener toNotify;
+		synchronized (this) {
+			if(tags.remove(name) == null) {
+				return;
+			}
+			toNotify = listener;
+		}
+		if(toNotify != null) {
+			toNotify.tagChanged(name);
+		}
+	}
+
+	/**
+	 * @param name The name of a tag
+	 * @return The colonies with the tag, or an empty set if there is no tag with the name
+	 */
+	public synchronized TagSet get(String name) {
+		final TagSet set = tags.get(name);
+		return set != null ? set : TagSet.EMPTY;
+	}
+
+	/**
+	 * @return The names of all the tags, sorted
+	 */
+	public synchronized List<String> getNames() {
+		return new ArrayList<String>(tags.keySet());
+	}
+
+	/**
+	 * @param names Tag names
+	 * @return The colonies with at least one of the tags
+	 */
+	public synchronized TagSet union(Collection<String> names) {
+		TagSet result = TagSet.EMPTY;
+		for(String name : names) {
+			result = result.or(get(name));
+		}
+		return result;
+	}
+
+	/**
+	 * @param names Tag names
+	 * @return The colonies with all of the tags, or an empty set if no names are given
+	 */
+	public synchronized TagSet intersection(Collection<String> names) {
+		TagSet result = null;
+		for(String name : names) {
+			result = result == null ? get(name) : result.and(get(name));
+		}
+		return result != null ? result : TagSet.EMPTY;
+	}
+}
@@ -0,0 +1,308 @@
+package org.samcrow.colonynavigator3.data;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.mapsforge.core.model.LatLong;
+import org.samcrow.colonynavigator3.CoordinateTransformer;
+
+/**
+ * The latitude and longitude of every colony, stored in columns and saved
+ * with the colony data.
+ *
+ * {@link #update(List, CoordinateTransformer)} compares each colony's X and
+ * Y coordinates with the ones its latitude and longitude were calculated
+ * from. Only colonies that have moved are transformed, all in one batch.
+ * The results are then given to the colonies, so
+ * {@link Colony#getLatLon()} does not need to transform them one at a time.
+ *
+ * The fingerprint of the transformer is saved too. If the transformer
+ * changes, every colony is transformed again by
+ * {@link #update(List, CoordinateTransformer)}, or only the colonies whose
+ * positions have moved more than a tolerance by
+ * {@link #reproject(List, CoordinateTransformer, double)}.
+ *
+ * @author Sam Crow
+ */
+public class LatLonColumns {
+
+	/** The first int in a saved file */
+	private static final int MAGIC = 0x4C4C434C;
+	/** The format version */
+	private static final int VERSION = 1;
+
+	/** The fingerprint of the transformer that calculated the positions */
+	private long fingerprint;
+
+	/** Colony IDs, in increasing order */
+	private int[] ids = new int[0];
+	/** The local coordinates that each position was calculated from */
+	private double[] x = new double[0];
+	private double[] y = new double[0];
+	/** The positions */
+	private double[] latitude = new double[0];
+	private double[] longitude = new double[0];
+
+	/** If the columns have changed since they were read or written */
+	private boolean dirty = false;
+
+	public LatLonColumns() {
+	}
+
+	/**
+	 * Read saved columns
+	 * @param stream The stream to read from. It is not closed.
+	 * @throws IOException if the columns could not be read
+	 */
+	public LatLonColumns(InputStream stream) throws IOException {
+		final DataInputStream in = new DataInputStream(stream);
+		if(in.readInt() != MAGIC) {
+			throw new IOException("Not a latitude/longitude file");
+		}
+		final int version = in.readInt();
+		if(version != VERSION) {
+			throw new IOException("Unsupported latitude/longitude file version " + version);
+		}
+		fingerprint = in.readLong();
+		final int count = in.readInt();
+		ids = new int[count];
+		for(int i = 0; i < count; i++) {
+			ids[i] = in.readInt();
+		}
+		x = readColumn(in, count);
+		y = readColumn(in, count);
+		latitude = readColumn(in, count);
+		longitude = readColumn(in, count);
+	}
+
+	/**
+	 * Calculate the positions of colonies that have moved or were not in
+	 * these columns, and set the positions of all the colonies.
+	 * Colonies that are no longer in the list are removed from the columns.
+	 * @param colonies The colonies
+	 * @param transformer The transformer to calculate positions with
+	 * @return The number of colonies whose positions were calculated
+	 */
+	public synchronized int update(List<? extends Colony> colonies, CoordinateTransformer transformer) {
+		final int count = colonies.size();
+		final boolean sameTransformer = transformer.getFingerprint() == fingerprint;
+
+		// Sorted by ID, as a ColonyList always is
+		final Colony[] sorted = colonies.toArray(new Colony[count]);
+		boolean isSorted = true;
+		for(int i = 1; i < count && isSorted; i++) {
+			isSorted = sorted[i - 1].getId() <= sorted[i].getId();
+		}
+		if(!isSorted) {
+			Arrays.sort(sorted);
+		}
+
+		final int[] newIds = new int[count];
+		final double[] newX = new double[count];
+		final double[] newY = new double[count];
+		final double[] newLatitude = new double[count];
+		final double[] newLongitude = new double[count];
+
+		// Indexes of colonies to transform, and their coordinates
+		final int[] changed = new int[count];
+		final double[] batch = new double[2 * count];
+		int changedCount = 0;
+
+		int old = 0;
+		for(int i = 0; i < count; i++) {
+			final Colony colony = sorted[i];
+			newIds[i] = colony.getId();
+			newX[i] = colony.getX();
+			newY[i] = colony.getY();
+			while(old < ids.length && ids[old] < newIds[i]) {
+				old++;
+			}
+			if(sameTransformer && old < ids.length && ids[old] == newIds[i] && x[old] == newX[i] && y[old] == newY[i]) {
+				newLatitude[i] = latitude[old];
+				newLongitude[i] = longitude[old];
+			}
+			else {
+				changed[changedCount] = i;
+				batch[2 * changedCount] = newX[i];
+				batch[2 * changedCount + 1] = newY[i];
+				changedCount++;
+			}
+		}
+
+		transformer.toGps(batch, batch, changedCount);
+		for(int j = 0; j < changedCount; j++) {
+			newLongitude[changed[j]] = batch[2 * j];
+			newLatitude[changed[j]] = batch[2 * j + 1];
+		}
+
+		// Give positions to colonies that have moved or have none
+		int next = 0;
+		for(int i = 0; i < count; i++) {
+			final boolean moved = next < changedCount && changed[next] == i;
+			if(moved) {
+				next++;
+			}
+			if(moved || !sorted[i].hasLatLon()) {
+				sorted[i].setLatLon(new LatLong(newLatitude[i], newLongitude[i]));
+			}
+		}
+
+		if(changedCount != 0 || count != ids.length) {
+			dirty = true;
+		}
+		fingerprint = transformer.getFingerprint();
+		ids = newIds;
+		x = newX;
+		y = newY;
+		latitude = newLatitude;
+		longitude = newLongitude;
+		return changedCount;
+	}
+
+	/**
+	 * After the transformer has been changed slightly, recalculate only the
+	 * positions that are now more than a tolerance from where they should be.
+	 * The saved positions are transformed back to local coordinates and
+	 * compared with the colonies' coordinates, all in one batch, and only the
+	 * colonies that are too far off are transformed again.
+	 * Colonies that are not in the columns, or have moved since the columns
+	 * were updated, are skipped; {@link #update(List, CoordinateTransformer)}
+	 * handles those.
+	 * @param colonies The colonies, which should be the ones last given to
+	 * {@link #update(List, CoordinateTransformer)}
+	 * @param transformer The changed transformer
+	 * @param tolerance The distance, in local units, that a position may be off by
+	 * @return The colonies whose positions were recalculated
+	 */
+	public synchronized List<Colony> reproject(List<? extends Colony> colonies, CoordinateTransformer transformer,
+			double tolerance) {
+		final int count = ids.length;
+		final double[] batch = new double[2 * count];
+		for(int i = 0; i < count; i++) {
+			batch[2 * i] = longitude[i];
+			batch[2 * i + 1] = latitude[i];
+		}
+		transformer.toLocal(batch, batch, count);
+
+		// Rows that are too far off, and their local coordinates
+		final int[] changed = new int[count];
+		int changedCount = 0;
+		final double toleranceSquared = tolerance * tolerance;
+		for(int i = 0; i < count; i++) {
+			final double dx = batch[2 * i] - x[i];
+			final double dy = batch[2 * i + 1] - y[i];
+			if(dx * dx + dy * dy > toleranceSquared) {
+				changed[changedCount] = i;
+				batch[2 * changedCount] = x[i];
+				batch[2 * changedCount + 1] = y[i];
+				changedCount++;
+			}
+		}
+		transformer.toGps(batch, batch, changedCount);
+		for(int j = 0; j < changedCount; j++) {
+			longitude[changed[j]] = batch[2 * j];
+			latitude[changed[j]] = batch[2 * j + 1];
+		}
+		// Every position is now within the tolerance
+		fingerprint = transformer.getFingerprint();
+
+		final List<Colony> reprojected = new ArrayList<Colony>(changedCount);
+		if(changedCount == 0) {
+			return reprojected;
+		}
+		dirty = true;
+		for(Colony colony : colonies) {
+			final int row = Arrays.binarySearch(ids, colony.getId());
+			if(row < 0 || Arrays.binarySearch(changed, 0, changedCount, row) < 0) {
+				continue;
+			}
+			if(x[row] == colony.getX() && y[row] == colony.getY()) {
+				colony.setLatLon(new LatLong(latitude[row], longitude[row]));
+				reprojected.add(colony);
+			}
+		}
+		return reprojected;
+	}
+
+	/**
+	 * Move one colony and calculate its new position, without checking any
+	 * other colonies. The colony's listener is notified once, after its new
+	 * latitude and longitude have been set.
+	 * If the colony is not in the columns, or they were calculated with a
+	 * different transformer, only the colony is changed and
+	 * {@link #update(List, CoordinateTransformer)} handles it later.
+	 * @param colony The colony to move
+	 * @param newX The new X coordinate
+	 * @param newY The new Y coordinate
+	 * @param transformer The transformer to calculate the position with
+	 */
+	public synchronized void move(Colony colony, double newX, double newY, CoordinateTransformer transformer) {
+		final double[] point = { newX, newY };
+		transformer.toGps(point, point, 1);
+		final int row = Arrays.binarySearch(ids, colony.getId());
+		if(row >= 0 && transformer.getFingerprint() == fingerprint) {
+			x[row] = newX;
+			y[row] = newY;
+			longitude[row] = point[0];
+			latitude[row] = point[1];
+			dirty = true;
+		}
+		colony.setPosition(newX, newY, new LatLong(point[1], point[0]));
+	}
+
+	/**
+	 * @return The number of colonies in the columns
+	 */
+	public synchronized int size() {
+		return ids.length;
+	}
+
+	/**
+	 * @return true if the columns have changed since they were read or last written
+	 */
+	public synchronized boolean isDirty() {
+		return dirty;
+	}
+
+	/**
+	 * Save the columns
+	 * @param stream The stream to write to. It is not closed.
+	 * @throws IOException if the columns could not be written
+	 */
+	public synchronized void write(OutputStream stream) throws IOException {
+		final DataOutputStream out = new DataOutputStream(stream);
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeLong(fingerprint);
+		out.writeInt(ids.length);
+		for(int id : ids) {
+			out.writeInt(id);
+		}
+		writeColumn(out, x);
+		writeColumn(out, y);
+		writeColumn(out, latitude);
+		writeColumn(out, longitude);
+		out.flush();
+		dirty = false;
+	}
+
+	private static double[] readColumn(DataInputStream in, int count) throws IOException {
+		final double[] column = new double[count];
+		for(int i = 0; i < count; i++) {
+			column[i] = in.readDouble();
+		}
+		return column;
+	}
+
+	private static void writeColumn(DataOutputStream out, double[] column) throws IOException {
+		for(double value : column) {
+			out.writeDouble(value);
+		}
+	}
+}
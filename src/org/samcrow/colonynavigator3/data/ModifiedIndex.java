@@ -0,0 +1,114 @@
+package org.samcrow.colonynavigator3.data;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An index of colonies ordered by the time they were last modified.
+ *
+ * Colonies that have never been modified are not included.
+ * The index does not watch colonies for changes. Call {@link #update(Colony)}
+ * after a colony is modified.
+ *
+ * @author Sam Crow
+ */
+public class ModifiedIndex {
+
+	/**
+	 * A position in the index: a modified time, with the colony ID to
+	 * separate colonies modified at the same time
+	 */
+	private static final class Key implements Comparable<Key> {
+		final long time;
+		final int id;
+
+		Key(long time, int id) {
+			this.time = time;
+			this.id = id;
+		}
+
+		@Override
+		public int compareTo(Key other) {
+			if(time != other.time) {
+				return time < other.time ? -1 : 1;
+			}
+			return id < other.id ? -1 : (id > other.id ? 1 : 0);
+		}
+	}
+
+	/** Colonies by modified time */
+	private final TreeMap<Key, Colony> byTime = new TreeMap<Key, Colony>();
+
+	/** The key each colony is currently stored under, by colony ID */
+	private final Map<Integer, Key> keys = new HashMap<Integer, Key>();
+
+	public ModifiedIndex() {
+	}
+
+	/**
+	 * Create an index of some colonies
+	 * @param colonies The colonies to index
+	 */
+	public ModifiedIndex(Iterable<Colony> colonies) {
+		for(Colony colony : colonies) {
+			update(colony);
+		}
+	}
+
+	/**
+	 * Add a colony to the index, or move it to the position for its current modified time
+	 * @param colony The colony
+	 */
+	public synchronized void update(Colony colony) {
+		remove(colony);
+		final Date modified = colony.getModified();
+		if(modified != null) {
+			final Key key = new Key(modified.getTime(), colony.getId());
+			byTime.put(key, colony);
+			keys.put(colony.getId(), key);
+		}
+	}
+
+	/**
+	 * Remove a colony from the index
+	 * @param colony The colony
+	 */
+	public synchronized void remove(Colony colony) {
+		final Key oldKey = keys.remove(colony.getId());
+		if(oldKey != null) {
+			byTime.remove(oldKey);
+		}
+	}
+
+	/**
+	 * Find the colonies modified after a time. This takes time proportional to
+	 * the logarithm of the size of the index plus the number of colonies found.
+	 * @param since The time
+	 * @return The colonies modified strictly after the time, from least to most recently modified
+	 */
+	public synchronized List<Colony> modifiedSince(Date since) {
+		final Key start = new Key(since.getTime(), Integer.MAX_VALUE);
+		return new ArrayList<Colony>(byTime.tailMap(start, false).values());
+	}
+
+	/**
+	 * @return The most recent modified time of any colony, or null if no colony has been modified
+	 */
+	public synchronized Date getLatest() {
+		if(byTime.isEmpty()) {
+			return null;
+		}
+		return new Date(byTime.lastKey().time);
+	}
+
+	/**
+	 * @return The number of colonies in the index
+	 */
+	public synchronized int size() {
+		return byTime.size();
+	}
+}
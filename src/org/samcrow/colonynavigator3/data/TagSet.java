@@ -0,0 +1,348 @@
+package org.samcrow.colonynavigator3.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable set of colony IDs, stored compressed as runs of consecutive IDs.
+ *
+ * Colony IDs in a tag list are often numbered in blocks, so a set of
+ * thousands of colonies may need only a few runs. Membership takes time
+ * proportional to the logarithm of the number of runs. Combining two sets
+ * takes time proportional to the total number of runs, and does not
+ * depend on how many colonies are in either set.
+ *
+ * @author Sam Crow
+ */
+public final class TagSet {
+
+	/** A set with no colonies */
+	public static final TagSet EMPTY = new TagSet(new int[0], 0);
+
+	private static final int AND = 0;
+	private static final int OR = 1;
+	private static final int AND_NOT = 2;
+	private static final int XOR = 3;
+
+	/**
+	 * The runs. Element 2i is the first ID of run i and element 2i + 1 is the last ID of run i.
+	 * Runs are sorted, do not overlap, and are separated by at least one missing ID.
+	 */
+	private final int[] runs;
+
+	/** The number of IDs in the set */
+	private final int size;
+
+	private TagSet(int[] runs, int size) {
+		this.runs = runs;
+		this.size = size;
+	}
+
+	/**
+	 * Create a set of IDs
+	 * @param ids The IDs, in any order. Duplicates are ignored.
+	 * @return A set containing the IDs
+	 */
+	public static TagSet of(int... ids) {
+		final int[] sorted = ids.clone();
+		Arrays.sort(sorted);
+		return fromSorted(sorted, sorted.length);
+	}
+
+	/**
+	 * Create a set of the IDs of some colonies
+	 * @param colonies The colonies
+	 * @return A set containing the ID of each colony
+	 */
+	public static TagSet ofColonies(List<? extends Colony> colonies) {
+		final int[] ids = new int[colonies.size()];
+		for(int i = 0; i < ids.length; i++) {
+			ids[i] = colonies.get(i).getId();
+		}
+		return of(ids);
+	}
+
+	/**
+	 * Create a set of IDs that are already sorted
+	 * @param ids The IDs, in increasing order. Duplicates are ignored.
+	 * @param count The number of elements of ids to use
+	 * @return A set containing the IDs
+	 */
+	public static TagSet fromSorted(int[] ids, int count) {
+		if(count == 0) {
+			return EMPTY;
+		}
+		int[] runs = new int[16];
+		int runCount = 0;
+		int size = 0;
+		int start = ids[0];
+		int end = ids[0];
+		for(int i = 1; i <= count; i++) {
+			if(i < count && (ids[i] == end || ids[i] == end + 1)) {
+				end = ids[i];
+				continue;
+			}
+			if(runCount + 2 > runs.length) {
+				runs = Arrays.copyOf(runs, runs.length * 2);
+			}
+			runs[runCount++] = start;
+			runs[runCount++] = end;
+			size += end - start + 1;
+			if(i < count) {
+				start = ids[i];
+				end = ids[i];
+			}
+		}
+		return new TagSet(Arrays.copyOf(runs, runCount), size);
+	}
+
+	/**
+	 * Create a set from runs of consecutive IDs, as returned by {@link #getRuns()}
+	 * @param runs The first and last ID of each run. Runs must be sorted and
+	 * must not overlap. Runs with no IDs between them are joined.
+	 * @return A set containing the IDs in the runs
+	 * @throws IllegalArgumentException if the runs are not sorted or overlap
+	 */
+	public static TagSet ofRuns(int[] runs) {
+		if(runs.length % 2 != 0) {
+			throw new IllegalArgumentException("Runs must have an even number of elements");
+		}
+		if(runs.length == 0) {
+			return EMPTY;
+		}
+		final int[] joined = new int[runs.length];
+		int length = 0;
+		int size = 0;
+		for(int run = 0; run < runs.length; run += 2) {
+			if(runs[run + 1] < runs[run] || (length != 0 && runs[run] <= joined[length - 1])) {
+				throw new IllegalArgumentException("Runs are not sorted or overlap at " + runs[run]);
+			}
+			if(length != 0 && runs[run] == joined[length - 1] + 1) {
+				joined[length - 1] = runs[run + 1];
+			}
+			else {
+				joined[length++] = runs[run];
+				joined[length++] = runs[run + 1];
+			}
+			size += runs[run + 1] - runs[run] + 1;
+		}
+		return new TagSet(Arrays.copyOf(joined, length), size);
+	}
+
+	/**
+	 * @param id A colony ID
+	 * @return true if this set contains the ID
+	 */
+	public boolean contains(int id) {
+		// Find the last run that starts at or before the ID
+		int low = 0;
+		int high = runs.length / 2 - 1;
+		while(low <= high) {
+			final int mid = (low + high) >>> 1;
+			if(runs[2 * mid] <= id) {
+				low = mid + 1;
+			}
+			else {
+				high = mid - 1;
+			}
+		}
+		return high >= 0 && id <= runs[2 * high + 1];
+	}
+
+	/**
+	 * @return The number of IDs in this set
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return true if this set contains no IDs
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return The number of runs of consecutive IDs that this set is stored as
+	 */
+	public int getRunCount() {
+		return runs.length / 2;
+	}
+
+	/**
+	 * @return The first ID of each run followed by the last ID of each run, in a new array
+	 */
+	public int[] getRuns() {
+		return runs.clone();
+	}
+
+	/**
+	 * @param other Another set
+	 * @return A set of the IDs in both this set and the other set
+	 */
+	public TagSet and(TagSet other) {
+		return combine(this, other, AND);
+	}
+
+	/**
+	 * @param other Another set
+	 * @return A set of the IDs in this set, the other set, or both
+	 */
+	public TagSet or(TagSet other) {
+		return combine(this, other, OR);
+	}
+
+	/**
+	 * @param other Another set
+	 * @return A set of the IDs in this set that are not in the other set
+	 */
+	public TagSet andNot(TagSet other) {
+		return combine(this, other, AND_NOT);
+	}
+
+	/**
+	 * @param other Another set
+	 * @return A set of the IDs in exactly one of this set and the other set
+	 */
+	public TagSet xor(TagSet other) {
+		return combine(this, other, XOR);
+	}
+
+	/**
+	 * @return The IDs in this set, in increasing order, in a new array
+	 */
+	public int[] toArray() {
+		final int[] ids = new int[size];
+		int index = 0;
+		for(int run = 0; run < runs.length; run += 2) {
+			// A long, so that this ends when a run ends at Integer.MAX_VALUE
+			for(long id = runs[run]; id <= runs[run + 1]; id++) {
+				ids[index++] = (int) id;
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * Find the colonies in a list whose IDs are in this set.
+	 * This takes time proportional to the size of the list plus the number of runs.
+	 * @param colonies The colonies, sorted by ID, as a {@link ColonyList} always is
+	 * @return The colonies whose IDs are in this set, in the same order
+	 */
+	public <C extends Colony> List<C> filter(List<C> colonies) {
+		final List<C> result = new ArrayList<C>();
+		int run = 0;
+		for(C colony : colonies) {
+			final int id = colony.getId();
+			while(run < runs.length && runs[run + 1] < id) {
+				run += 2;
+			}
+			if(run >= runs.length) {
+				break;
+			}
+			if(id >= runs[run]) {
+				result.add(colony);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Combine two sets by sweeping over the boundaries of their runs
+	 */
+	private static TagSet combine(TagSet a, TagSet b, int operation) {
+		final int[] result = new int[a.runs.length + b.runs.length];
+		int resultLength = 0;
+		int size = 0;
+
+		int aIndex = 0;
+		int bIndex = 0;
+		boolean inA = false;
+		boolean inB = false;
+		boolean inResult = false;
+		long resultStart = 0;
+		while(aIndex < a.runs.length || bIndex < b.runs.length) {
+			final long aBoundary = aIndex < a.runs.length ? boundary(a.runs, aIndex) : Long.MAX_VALUE;
+			final long bBoundary = bIndex < b.runs.length ? boundary(b.runs, bIndex) : Long.MAX_VALUE;
+			final long position = Math.min(aBoundary, bBoundary);
+			if(aBoundary == position) {
+				inA = !inA;
+				aIndex++;
+			}
+			if(bBoundary == position) {
+				inB = !inB;
+				bIndex++;
+			}
+
+			final boolean in = apply(operation, inA, inB);
+			if(in && !inResult) {
+				resultStart = position;
+				inResult = true;
+			}
+			else if(!in && inResult) {
+				result[resultLength++] = (int) resultStart;
+				result[resultLength++] = (int) (position - 1);
+				size += position - resultStart;
+				inResult = false;
+			}
+		}
+		if(resultLength == 0) {
+			return EMPTY;
+		}
+		return new TagSet(Arrays.copyOf(result, resultLength), size);
+	}
+
+	/**
+	 * @return The position where membership changes: the first ID of a run,
+	 * or one more than the last ID of a run
+	 */
+	private static long boundary(int[] runs, int index) {
+		return index % 2 == 0 ? runs[index] : (long) runs[index] + 1;
+	}
+
+	private static boolean apply(int operation, boolean a, boolean b) {
+		switch(operation) {
+		case AND:
+			return a && b;
+		case OR:
+			return a || b;
+		case AND_NOT:
+			return a && !b;
+		default:
+			return a != b;
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj) {
+			return true;
+		}
+		if(!(obj instanceof TagSet)) {
+			return false;
+		}
+		return Arrays.equals(runs, ((TagSet) obj).runs);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(runs);
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder("[");
+		for(int run = 0; run < runs.length; run += 2) {
+			if(run != 0) {
+				builder.append(", ");
+			}
+			builder.append(runs[run]);
+			if(runs[run + 1] != runs[run]) {
+				builder.append('-').append(runs[run + 1]);
+			}
+		}
+		return builder.append(']').toString();
+	}
+}
@@ -1,47 +1,76 @@
 package org.samcrow.colonynavigator3.map;
 
-import org.mapsforge.core.graphics.Bitmap;
+import org.mapsforge.core.graphics.Canvas;
+import org.mapsforge.core.model.BoundingBox;
 import org.mapsforge.core.model.LatLong;
 import org.mapsforge.core.model.Point;
-import org.mapsforge.map.android.graphics.AndroidGraphicFactory;
+import org.mapsforge.core.util.MercatorProjection;
 import org.mapsforge.map.layer.overlay.Marker;
 import org.samcrow.colonynavigator3.data.Colony;
 
+/**
+ * A marker for a colony. It has no bitmap of its own; it is drawn from the
+ * shared {@link MarkerAtlas} in the colony's current state.
+ */
 public class ColonyMarker extends Marker {
-	
+
 	private Colony colony;
-	
-	
+
+	private final MarkerAtlas atlas = MarkerAtlas.getInstance();
+
 	public ColonyMarker(Colony colony) {
-		super(colony.getLatLon(), bitmapForColony(colony), 0, 0);
-		
-		// Not memory-optimal:
-		// Create a new drawable to find the correct offsets
-		setHorizontalOffset(new ColonyDrawable(colony).getXOffset());
-		
+		super(colony.getLatLon(), null, 0, 0);
+
 		this.colony = colony;
 		// Make a link back
 		this.colony.setMarker(this);
-		
-		// Change the bitmap when the colony's drawable changes
+
+		// Change the position when the colony changes.
+		// The state is read from the colony when the marker is drawn.
 		colony.setOnChange(new Colony.ColonyChangeListener() {
 			@Override
 			public void onColonyChanged() {
-				setBitmap(bitmapForColony(ColonyMarker.this.colony));
+				setLatLong(ColonyMarker.this.colony.getLatLon());
 			}
 		});
 	}
-	
+
+	@Override
+	public synchronized void draw(BoundingBox boundingBox, byte zoomLevel, Canvas canvas, Point topLeftPoint) {
+		final LatLong position = getLatLong();
+		if(position == null) {
+			return;
+		}
+		final int tileSize = displayModel.getTileSize();
+		final int x = (int) (MercatorProjection.longitudeToPixelX(position.longitude, zoomLevel, tileSize) - topLeftPoint.x);
+		final int y = (int) (MercatorProjection.latitudeToPixelY(position.latitude, zoomLevel, tileSize) - topLeftPoint.y);
+		if(!atlas.isVisible(canvas, x, y)) {
+			return;
+		}
+		int state = 0;
+		if(colony.isFocusColony()) {
+			state |= MarkerAtlas.FOCUS;
+		}
+		if(colony.isVisited()) {
+			state |= MarkerAtlas.VISITED;
+		}
+		if(colony.isSelected()) {
+			state |= MarkerAtlas.SELECTED;
+		}
+		atlas.draw(canvas, x, y, state, colony.getId());
+	}
+
+	@Override
+	public synchronized boolean contains(Point center, Point point) {
+		return center.distance(point) <= MarkerAtlas.BG_RADIUS;
+	}
+
 	@Override
 	public boolean onTap(LatLong tapLatLong, Point layerXY, Point tapXY) {
-		
+
 		// Check if this colony was tapped
 		// TODO
-		
+
 		return false;
 	}
-	
-	private static Bitmap bitmapForColony(Colony colony) {
-		return AndroidGraphicFactory.convertToBitmap(new ColonyDrawable(colony));
-	}
 }
@@ -0,0 +1,340 @@
+package org.samcrow.colonynavigator3.map;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.model.Model;
+import org.samcrow.colonynavigator3.CoordinateTransformer;
+
+/**
+ * Processes location fixes on a background thread, so the UI thread only
+ * hears about positions that would visibly move something on the map.
+ *
+ * Each fix is converted to site coordinates and smoothed with a Kalman filter
+ * that assumes the user walks in random directions. The smoothed position is
+ * converted back to latitude and longitude, and the distance and bearing to
+ * the destination colony are calculated. The listener is only called, on the
+ * UI executor, when the smoothed position has moved at least a number of
+ * pixels at the current zoom level and more than its own standard deviation,
+ * or the destination has changed.
+ *
+ * Only the latest fix is kept while the background thread is busy. Processing
+ * a fix does not allocate any objects.
+ *
+ * @author Sam Crow
+ */
+public class LocationPipeline {
+
+	/**
+	 * Receives processed positions
+	 */
+	public interface Listener {
+		/**
+		 * Called on the UI executor when the smoothed position or the
+		 * destination changes
+		 * @param latitude The smoothed latitude
+		 * @param longitude The smoothed longitude
+		 * @param x The smoothed X coordinate, in meters east
+		 * @param y The smoothed Y coordinate, in meters north
+		 * @param distance The distance to the destination in meters, or NaN if there is no destination
+		 * @param bearing The direction to the destination in degrees clockwise from
+		 * north (the +Y axis), or NaN if there is no destination
+		 */
+		public void locationChanged(double latitude, double longitude, double x, double y, double distance, double bearing);
+	}
+
+	/**
+	 * How fast the variance of the position grows while no fixes arrive,
+	 * in square meters per second. About right for walking.
+	 */
+	private static final double PROCESS_NOISE = 2;
+
+	/** The accuracy, in meters, to assume for fixes that do not have one */
+	private static final double DEFAULT_ACCURACY = 10;
+
+	/** If fixes are further apart than this, in milliseconds, filtering starts again */
+	private static final long RESET_INTERVAL = 60000;
+
+	private final Model model;
+	private final Executor uiExecutor;
+	private final double pixelThreshold;
+
+	/** Processes fixes */
+	private final ExecutorService worker = Executors.newSingleThreadExecutor();
+
+	private volatile Listener listener;
+
+	// The latest fix that has not been processed. Guarded by this.
+	private boolean fixWaiting = false;
+	private double fixLatitude;
+	private double fixLongitude;
+	private double fixAccuracy;
+	private long fixTime;
+
+	// The destination. Guarded by this.
+	private boolean hasDestination = false;
+	private double destinationX;
+	private double destinationY;
+	private boolean destinationChanged = false;
+
+	/** If processing has been requested but has not yet started. Guarded by this. */
+	private boolean processQueued = false;
+
+	// Filter state. Used only on the worker thread.
+	/** The transformer that the filter state is in the coordinates of */
+	private CoordinateTransformer filterTransformer;
+	private boolean hasState = false;
+	private double stateX;
+	private double stateY;
+	/** The variance of stateX and of stateY, in square meters */
+	private double stateVariance;
+	private long stateTime;
+	private final double[] point = new double[2];
+	private boolean hasPublished = false;
+	private double publishedX;
+	private double publishedY;
+
+	// The values to give to the listener. Guarded by this.
+	private boolean publishQueued = false;
+	private double outLatitude;
+	private double outLongitude;
+	private double outX;
+	private double outY;
+	private double outDistance;
+	private double outBearing;
+
+	/**
+	 * Constructor
+	 * @param model The map view model, used to find the current zoom level
+	 * @param uiExecutor An executor that runs tasks on the UI thread
+	 * @param pixelThreshold The distance in pixels that the position must move
+	 * before the listener is called
+	 */
+	public LocationPipeline(Model model, Executor uiExecutor, double pixelThreshold) {
+		this.model = model;
+		this.uiExecutor = uiExecutor;
+		this.pixelThreshold = pixelThreshold;
+	}
+
+	/**
+	 * @param listener The listener to call, or null
+	 */
+	public void setListener(Listener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Add a fix. This can be called on any thread and returns quickly.
+	 * @param latitude The latitude
+	 * @param longitude The longitude
+	 * @param accuracy The accuracy in meters, or 0 if unknown
+	 * @param time The time of the fix, in milliseconds since the epoch
+	 */
+	public void submit(double latitude, double longitude, float accuracy, long time) {
+		synchronized(this) {
+			fixWaiting = true;
+			fixLatitude = latitude;
+			fixLongitude = longitude;
+			fixAccuracy = accuracy > 0 ? accuracy : DEFAULT_ACCURACY;
+			fixTime = time;
+		}
+		queueProcess();
+	}
+
+	/**
+	 * Set the position to calculate the distance and bearing to. The listener
+	 * is called with the new distance and bearing as soon as possible.
+	 * @param x The X coordinate of the destination
+	 * @param y The Y coordinate of the destination
+	 */
+	public void setDestination(double x, double y) {
+		synchronized(this) {
+			hasDestination = true;
+			destinationX = x;
+			destinationY = y;
+			destinationChanged = true;
+		}
+		queueProcess();
+	}
+
+	/**
+	 * Stop calculating the distance and bearing to a destination
+	 */
+	public void clearDestination() {
+		synchronized(this) {
+			hasDestination = false;
+			destinationChanged = true;
+		}
+		queueProcess();
+	}
+
+	/**
+	 * Stop processing. Fixes submitted after this are ignored.
+	 */
+	public void shutdown() {
+		synchronized(this) {
+			worker.shutdownNow();
+		}
+	}
+
+	private void queueProcess() {
+		// The check and the execute are done with the lock held, so shutdown()
+		// cannot happen between them and make execute() throw
+		synchronized(this) {
+			// Only one run needs to wait. It will use the latest fix when it starts.
+			if(processQueued || worker.isShutdown()) {
+				return;
+			}
+			processQueued = true;
+			worker.execute(processTask);
+		}
+	}
+
+	private final Runnable processTask = new Runnable() {
+		@Override
+		public void run() {
+			final boolean newFix;
+			final double latitude;
+			final double longitude;
+			final double accuracy;
+			final long time;
+			final boolean destination;
+			final double toX;
+			final double toY;
+			final boolean forcePublish;
+			synchronized(LocationPipeline.this) {
+				processQueued = false;
+				newFix = fixWaiting;
+				fixWaiting = false;
+				latitude = fixLatitude;
+				longitude = fixLongitude;
+				accuracy = fixAccuracy;
+				time = fixTime;
+				destination = hasDestination;
+				toX = destinationX;
+				toY = destinationY;
+				forcePublish = destinationChanged;
+				destinationChanged = false;
+			}
+
+			final CoordinateTransformer transformer = CoordinateTransformer.getInstance();
+			if(transformer != filterTransformer) {
+				// The site changed, so the state is in the wrong coordinates
+				filterTransformer = transformer;
+				hasState = false;
+				hasPublished = false;
+			}
+			if(newFix) {
+				point[0] = longitude;
+				point[1] = latitude;
+				transformer.toLocal(point, point, 1);
+				filter(point[0], point[1], accuracy * accuracy, time);
+			}
+			if(!hasState) {
+				return;
+			}
+
+			point[0] = stateX;
+			point[1] = stateY;
+			transformer.toGps(point, point, 1);
+			final double smoothedLongitude = point[0];
+			final double smoothedLatitude = point[1];
+
+			if(!forcePublish && hasPublished) {
+				final double metersPerPixel = MercatorProjection.calculateGroundResolution(smoothedLatitude,
+						model.mapViewPosition.getZoomLevel(), model.displayModel.getTileSize());
+				final double moved = Math.hypot(stateX - publishedX, stateY - publishedY);
+				// Movement smaller than the uncertainty of the position is
+				// probably noise, even if it would be visible when zoomed in
+				final double threshold = Math.max(pixelThreshold * metersPerPixel, Math.sqrt(stateVariance));
+				if(moved < threshold) {
+					return;
+				}
+			}
+			hasPublished = true;
+			publishedX = stateX;
+			publishedY = stateY;
+
+			double distance = Double.NaN;
+			double bearing = Double.NaN;
+			if(destination) {
+				final double dx = toX - stateX;
+				final double dy = toY - stateY;
+				distance = Math.hypot(dx, dy);
+				bearing = Math.toDegrees(Math.atan2(dx, dy));
+				if(bearing < 0) {
+					bearing += 360;
+				}
+			}
+
+			synchronized(LocationPipeline.this) {
+				outLatitude = smoothedLatitude;
+				outLongitude = smoothedLongitude;
+				outX = stateX;
+				outY = stateY;
+				outDistance = distance;
+				outBearing = bearing;
+				if(publishQueued) {
+					// The waiting task will read the new values
+					return;
+				}
+				publishQueued = true;
+			}
+			uiExecutor.execute(publishTask);
+		}
+	};
+
+	/**
+	 * Update the filter state with a measurement. Called on the worker thread.
+	 * @param x The measured X coordinate
+	 * @param y The measured Y coordinate
+	 * @param variance The variance of the measurement, in square meters
+	 * @param time The time of the measurement
+	 */
+	private void filter(double x, double y, double variance, long time) {
+		final long elapsed = time - stateTime;
+		if(!hasState || elapsed < 0 || elapsed > RESET_INTERVAL) {
+			hasState = true;
+			stateX = x;
+			stateY = y;
+			stateVariance = variance;
+			stateTime = time;
+			return;
+		}
+		// Predict: the user may have walked in any direction
+		stateVariance += PROCESS_NOISE * elapsed / 1000.0;
+		// Correct
+		final double gain = stateVariance / (stateVariance + variance);
+		stateX += gain * (x - stateX);
+		stateY += gain * (y - stateY);
+		stateVariance *= 1 - gain;
+		stateTime = time;
+	}
+
+	private final Runnable publishTask = new Runnable() {
+		@Override
+		public void run() {
+			final double latitude;
+			final double longitude;
+			final double x;
+			final double y;
+			final double distance;
+			final double bearing;
+			synchronized(LocationPipeline.this) {
+				publishQueued = false;
+				latitude = outLatitude;
+				longitude = outLongitude;
+				x = outX;
+				y = outY;
+				distance = outDistance;
+				bearing = outBearing;
+			}
+			final Listener current = listener;
+			if(current != null) {
+				current.locationChanged(latitude, longitude, x, y, distance, bearing);
+			}
+		}
+	};
+}
@@ -0,0 +1,238 @@
+package org.samcrow.colonynavigator3.map;
+
+import org.mapsforge.map.android.graphics.AndroidGraphicFactory;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Paint.FontMetrics;
+import android.graphics.Paint.Style;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * The images that colony markers are drawn from, shared by all markers.
+ *
+ * A marker's background, selection circle and point depend only on whether
+ * the colony is a focus colony, visited and selected, so each of those eight
+ * states is drawn once into one bitmap. The colony number is drawn one digit
+ * at a time from a strip of digit images. The memory used does not depend on
+ * the number of colonies, and drawing a marker does not allocate.
+ *
+ * @author Sam Crow
+ */
+public class MarkerAtlas {
+
+	/**
+	 * Background shape alpha (transparency), 0-255
+	 */
+	private static final int BG_ALPHA = 100;
+	/**
+	 * Background color for non-focus, non-visited colonies
+	 */
+	private static final int BG_NORMAL_COLOR = Color.argb(BG_ALPHA / 2, 100, 100, 100); // gray
+	/**
+	 * Background color for focus colonies
+	 */
+	private static final int BG_FOCUS_COLOR = Color.argb(BG_ALPHA, 115, 140, 255); // blue
+	/**
+	 * Background color for visited colonies, both focus and non-focus
+	 */
+	private static final int BG_VISITED_COLOR = Color.argb(BG_ALPHA, 77, 240, 101); // green
+
+	/**
+	 * Background circle radius
+	 */
+	public static final int BG_RADIUS = 20;
+
+	/**
+	 * Colony location point color
+	 */
+	private static final int POINT_COLOR = Color.BLACK;
+	/**
+	 * Colony number label color
+	 */
+	private static final int LABEL_COLOR = Color.BLACK;
+	/**
+	 * Colony location circle radius
+	 */
+	private static final int POINT_RADIUS = 3;
+	/**
+	 * Line color for the circle drawn around the selected colony
+	 */
+	private static final int SELECTED_CIRCLE_COLOR = Color.RED;
+	/**
+	 * Line width for the circle drawn around the selected colony
+	 */
+	private static final int SELECTED_CIRCLE_LINE_WIDTH = 5;
+
+	private static final float SELECTED_CIRCLE_RADIUS = BG_RADIUS - (SELECTED_CIRCLE_LINE_WIDTH / 2f);
+
+	/**
+	 * The horizontal distance from the center that the colony number text is offset
+	 */
+	private static final int TEXT_X_OFFSET = 5;
+
+	/** State flags, combined to find a cell in the state bitmap */
+	public static final int FOCUS = 1;
+	public static final int VISITED = 2;
+	public static final int SELECTED = 4;
+	private static final int STATE_COUNT = 8;
+
+	/** The width and height of each state cell */
+	private static final int CELL_SIZE = 2 * BG_RADIUS;
+
+	/** The characters in the digit strip */
+	private static final String GLYPHS = "-0123456789";
+
+	private static MarkerAtlas instance;
+
+	/** One cell for each state, in a row */
+	private final Bitmap states;
+
+	/** One image for each character in {@link #GLYPHS}, in a row */
+	private final Bitmap glyphs;
+	/** The left edge of each character in the strip */
+	private final int[] glyphLeft = new int[GLYPHS.length()];
+	/** The width of each character */
+	private final int[] glyphWidth = new int[GLYPHS.length()];
+	/** The distance from the baseline to the top of the strip */
+	private final int glyphAscent;
+	/** The furthest that any marker can extend to the right of its colony */
+	private final int maxRight;
+
+	// Reused while drawing. Guarded by this.
+	private final Rect source = new Rect();
+	private final Rect destination = new Rect();
+	private final int[] digits = new int[11];
+
+	/**
+	 * @return The atlas, which is created the first time this is called
+	 */
+	public static synchronized MarkerAtlas getInstance() {
+		if(instance == null) {
+			instance = new MarkerAtlas();
+		}
+		return instance;
+	}
+
+	private MarkerAtlas() {
+		final Paint paint = new Paint();
+		paint.setAntiAlias(true);
+
+		states = Bitmap.createBitmap(STATE_COUNT * CELL_SIZE, CELL_SIZE, Bitmap.Config.ARGB_8888);
+		final Canvas stateCanvas = new Canvas(states);
+		for(int state = 0; state < STATE_COUNT; state++) {
+			drawState(stateCanvas, paint, state * CELL_SIZE + BG_RADIUS, BG_RADIUS, state);
+		}
+
+		paint.setColor(LABEL_COLOR);
+		paint.setStyle(Style.FILL);
+		final FontMetrics metrics = paint.getFontMetrics();
+		glyphAscent = (int) Math.ceil(-metrics.ascent);
+		final int height = glyphAscent + (int) Math.ceil(metrics.descent);
+		int width = 0;
+		for(int i = 0; i < GLYPHS.length(); i++) {
+			glyphLeft[i] = width;
+			glyphWidth[i] = (int) Math.ceil(paint.measureText(String.valueOf(GLYPHS.charAt(i))));
+			width += glyphWidth[i];
+		}
+		int widest = 0;
+		for(int glyph = 0; glyph < glyphWidth.length; glyph++) {
+			widest = Math.max(widest, glyphWidth[glyph]);
+		}
+		maxRight = Math.max(BG_RADIUS, TEXT_X_OFFSET + digits.length * widest);
+		glyphs = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+		final Canvas glyphCanvas = new Canvas(glyphs);
+		for(int i = 0; i < GLYPHS.length(); i++) {
+			glyphCanvas.drawText(String.valueOf(GLYPHS.charAt(i)), glyphLeft[i], glyphAscent, paint);
+		}
+	}
+
+	/**
+	 * @param canvas A canvas
+	 * @param x The X pixel coordinate of a colony
+	 * @param y The Y pixel coordinate of a colony
+	 * @return true if part of the colony's marker might be on the canvas
+	 */
+	public boolean isVisible(org.mapsforge.core.graphics.Canvas canvas, int x, int y) {
+		return x + maxRight >= 0 && x - BG_RADIUS < canvas.getWidth() && y + BG_RADIUS >= 0
+				&& y - BG_RADIUS < canvas.getHeight();
+	}
+
+	/**
+	 * Draw a marker
+	 * @param canvas The canvas to draw on
+	 * @param x The X pixel coordinate of the colony
+	 * @param y The Y pixel coordinate of the colony
+	 * @param state The state flags: {@link #FOCUS}, {@link #VISITED} and {@link #SELECTED}
+	 * @param id The colony number to draw
+	 */
+	public synchronized void draw(org.mapsforge.core.graphics.Canvas canvas, int x, int y, int state, int id) {
+		final Canvas androidCanvas = AndroidGraphicFactory.getCanvas(canvas);
+
+		source.set(state * CELL_SIZE, 0, (state + 1) * CELL_SIZE, CELL_SIZE);
+		destination.set(x - BG_RADIUS, y - BG_RADIUS, x + BG_RADIUS, y + BG_RADIUS);
+		androidCanvas.drawBitmap(states, source, destination, null);
+
+		// Digits from least to most significant, without making a string
+		int count = 0;
+		long remaining = Math.abs((long) id);
+		do {
+			digits[count++] = (int) (remaining % 10) + 1;
+			remaining /= 10;
+		} while(remaining != 0);
+		if(id < 0) {
+			digits[count++] = 0;
+		}
+
+		// The text baseline is at the bottom of the font's descent below the point
+		final int baseline = y + glyphs.getHeight() - glyphAscent;
+		final int top = baseline - glyphAscent;
+		int left = x + TEXT_X_OFFSET;
+		for(int i = count - 1; i >= 0; i--) {
+			final int glyph = digits[i];
+			source.set(glyphLeft[glyph], 0, glyphLeft[glyph] + glyphWidth[glyph], glyphs.getHeight());
+			destination.set(left, top, left + glyphWidth[glyph], top + glyphs.getHeight());
+			androidCanvas.drawBitmap(glyphs, source, destination, null);
+			left += glyphWidth[glyph];
+		}
+	}
+
+	/**
+	 * Draw the background, selection circle and point for a state
+	 */
+	private static void drawState(Canvas canvas, Paint paint, float centerX, float centerY, int state) {
+		paint.setStyle(Style.FILL);
+		final boolean visited = (state & VISITED) != 0;
+		final boolean focus = (state & FOCUS) != 0;
+		if(visited && focus) {
+			// Draw a two-part circle
+			final RectF rect = new RectF(centerX - BG_RADIUS, centerY - BG_RADIUS, centerX + BG_RADIUS, centerY + BG_RADIUS);
+			// Draw left arc
+			paint.setColor(BG_VISITED_COLOR);
+			canvas.drawArc(rect, 90, 180, true, paint);
+			// Draw right arc
+			paint.setColor(BG_FOCUS_COLOR);
+			canvas.drawArc(rect, -90, 180, true, paint);
+		}
+		else {
+			paint.setColor(visited ? BG_VISITED_COLOR : (focus ? BG_FOCUS_COLOR : BG_NORMAL_COLOR));
+			canvas.drawCircle(centerX, centerY, BG_RADIUS, paint);
+		}
+
+		// Draw the circle around the colony if it is selected
+		if((state & SELECTED) != 0) {
+			paint.setStyle(Style.STROKE);
+			paint.setColor(SELECTED_CIRCLE_COLOR);
+			paint.setStrokeWidth(SELECTED_CIRCLE_LINE_WIDTH);
+			canvas.drawCircle(centerX, centerY, SELECTED_CIRCLE_RADIUS, paint);
+		}
+
+		// Draw colony location point
+		paint.setStyle(Style.FILL);
+		paint.setColor(POINT_COLOR);
+		canvas.drawCircle(centerX, centerY, POINT_RADIUS, paint);
+	}
+}
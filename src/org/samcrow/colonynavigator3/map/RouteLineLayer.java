@@ -8,42 +8,24 @@ import org.mapsforge.map.android.graphics.AndroidGraphicFactory;
 import org.mapsforge.map.layer.overlay.Marker;
 import org.mapsforge.map.layer.overlay.Polyline;
 
-import android.location.Location;
-import android.location.LocationListener;
-import android.os.Bundle;
-
+/**
+ * A line from the user's position to the selected colony.
+ *
+ * The start is set from the positions published by a {@link LocationPipeline},
+ * so the line is only redrawn when the user has visibly moved.
+ *
+ * @author Sam Crow
+ */
 public class RouteLineLayer extends Polyline {
 
-	private final NotifyingMyLocationOverlay locationLayer;
-	
 	private Marker destinationMarker = null;
+
+	/** If a start point has been set */
+	private boolean hasStart = false;
 	
-	public RouteLineLayer(NotifyingMyLocationOverlay location) {
+	public RouteLineLayer() {
 		super(getPaint(), AndroidGraphicFactory.INSTANCE);
 		
-		this.locationLayer = location;
-		// Set up location callback
-		locationLayer.setLocationListener(new LocationListener() {
-
-			@Override
-			public void onLocationChanged(Location location) {
-				updatePositions();
-			}
-
-			@Override
-			public void onProviderDisabled(String provider) {
-			}
-
-			@Override
-			public void onProviderEnabled(String provider) {
-			}
-
-			@Override
-			public void onStatusChanged(String provider, int status,
-					Bundle extras) {
-			}
-		});
-		
 		// Make room for a start point and an end point
 		getLatLongs().add(new LatLong(0, 0));
 		getLatLongs().add(new LatLong(0, 0));
@@ -57,19 +39,19 @@ public class RouteLineLayer extends Polyline {
 		updatePositions();
 	}
 
+	/**
+	 * Set the user's position. Called on the UI thread.
+	 * @param latitude The latitude
+	 * @param longitude The longitude
+	 */
+	public void setStart(double latitude, double longitude) {
+		setStartPoint(new LatLong(latitude, longitude));
+		hasStart = true;
+		updatePositions();
+	}
+
 	private void updatePositions() {
-		// Get latitude/longitude from location
-		if(locationLayer != null) {
-			Location location = locationLayer.getLastLocation();
-			if(location != null) {
-				setStartPoint(new LatLong(location.getLatitude(), location.getLongitude()));
-			}
-			else {
-				setVisible(false);
-				return;
-			}
-		}
-		else {
+		if(!hasStart) {
 			setVisible(false);
 			return;
 		}
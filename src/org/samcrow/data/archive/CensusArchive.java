@@ -0,0 +1,265 @@
+package org.samcrow.data.archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.samcrow.colonynavigator3.data.Colony;
+import org.samcrow.colonynavigator3.data.TagSet;
+import org.samcrow.data.io.DataStreams;
+import org.samcrow.data.io.VarInts;
+import org.samcrow.data.storage.FileStorage;
+import org.samcrow.data.storage.Storage;
+
+/**
+ * Many years of censuses of the same colonies, read from a file written by
+ * {@link CensusArchiveWriter}.
+ *
+ * The file stores, for each year, the colonies recorded and the colonies
+ * that were active, as run-compressed {@link TagSet}s. These are loaded when
+ * the archive is read, so finding the colonies active in a year takes
+ * constant time.
+ *
+ * The rest of the file stores the history of each colony, in order of ID.
+ * The state of a colony (absent, inactive or active) is stored as runs of
+ * years with the same state, and its position is stored only for years when
+ * it moved, as the difference from the previous position. Most colonies
+ * rarely change, so a colony's whole history usually takes a few bytes.
+ * Histories are kept compressed in memory and decoded when requested.
+ *
+ * Coordinates are stored to the nearest 1/{@link #SCALE}.
+ *
+ * @author Sam Crow
+ */
+public class CensusArchive {
+
+	/** The first int in an archive file */
+	static final int MAGIC = 0x43454E53;
+	/** The format version */
+	static final int VERSION = 1;
+	/** Coordinates are multiplied by this and rounded to integers when stored */
+	public static final int SCALE = 100;
+
+	// Colony states
+	static final int ABSENT = 0;
+	static final int INACTIVE = 1;
+	static final int ACTIVE = 2;
+
+	/** The years, in increasing order */
+	private final int[] years;
+	/** The colonies recorded in each year */
+	private final TagSet[] present;
+	/** The colonies active in each year */
+	private final TagSet[] active;
+
+	/** Colony IDs, in increasing order */
+	private final int[] ids;
+	/** The offset of each colony's history in {@link #data} */
+	private final int[] offsets;
+	/** The histories of all colonies */
+	private final byte[] data;
+
+	/**
+	 * Read an archive from a file
+	 * @param file The file
+	 * @return The archive
+	 * @throws IOException if the file could not be read or is not an archive
+	 */
+	public static CensusArchive read(File file) throws IOException {
+		return read(FileStorage.forFile(file), file.getName());
+	}
+
+	/**
+	 * Read an archive from a file. The file may be compressed; see {@link DataStreams}.
+	 * @param storage The storage containing the file
+	 * @param name The name of the file
+	 * @return The archive
+	 * @throws IOException if the file could not be read or is not an archive
+	 */
+	public static CensusArchive read(Storage storage, String name) throws IOException {
+		final InputStream in = DataStreams.openInput(storage, name);
+		try {
+			return new CensusArchive(in);
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Read an archive
+	 * @param stream The stream to read from. It is not closed.
+	 * @throws IOException if the archive could not be read
+	 */
+	public CensusArchive(InputStream stream) throws IOException {
+		final DataInputStream in = new DataInputStream(stream);
+		if(in.readInt() != MAGIC) {
+			throw new IOException("Not a census archive");
+		}
+		final int version = in.readInt();
+		if(version != VERSION) {
+			throw new IOException("Unsupported census archive version " + version);
+		}
+
+		years = new int[(int) VarInts.readUnsigned(in)];
+		int year = 0;
+		for(int i = 0; i < years.length; i++) {
+			year += (int) VarInts.readSigned(in);
+			years[i] = year;
+		}
+
+		present = new TagSet[years.length];
+		active = new TagSet[years.length];
+		for(int i = 0; i < years.length; i++) {
+			present[i] = readTagSet(in);
+			active[i] = readTagSet(in);
+		}
+
+		ids = new int[(int) VarInts.readUnsigned(in)];
+		int id = 0;
+		for(int i = 0; i < ids.length; i++) {
+			id += (int) VarInts.readSigned(in);
+			ids[i] = id;
+		}
+		offsets = new int[ids.length + 1];
+		for(int i = 0; i < ids.length; i++) {
+			offsets[i + 1] = offsets[i] + (int) VarInts.readUnsigned(in);
+		}
+		data = new byte[offsets[ids.length]];
+		in.readFully(data);
+	}
+
+	/**
+	 * @return The census years, in increasing order, in a new array
+	 */
+	public int[] getYears() {
+		return years.clone();
+	}
+
+	/**
+	 * @return The IDs of all colonies in the archive
+	 */
+	public TagSet getColonyIds() {
+		return TagSet.fromSorted(ids, ids.length);
+	}
+
+	/**
+	 * @param year A year
+	 * @return The colonies recorded in the census of the year, or an empty
+	 * set if there was no census in the year
+	 */
+	public TagSet getPresent(int year) {
+		final int index = Arrays.binarySearch(years, year);
+		return index >= 0 ? present[index] : TagSet.EMPTY;
+	}
+
+	/**
+	 * @param year A year
+	 * @return The colonies that were active in the year, or an empty
+	 * set if there was no census in the year
+	 */
+	public TagSet getActive(int year) {
+		final int index = Arrays.binarySearch(years, year);
+		return index >= 0 ? active[index] : TagSet.EMPTY;
+	}
+
+	/**
+	 * @param colonyId A colony ID
+	 * @return The history of the colony, or null if the colony is not in the archive
+	 */
+	public ColonyHistory getHistory(int colonyId) {
+		final int index = Arrays.binarySearch(ids, colonyId);
+		if(index < 0) {
+			return null;
+		}
+		try {
+			return decode(index);
+		} catch (IOException e) {
+			// Only possible if the data is corrupt
+			throw new IllegalStateException("Invalid history for colony " + colonyId, e);
+		}
+	}
+
+	/**
+	 * Get the colonies recorded in a census year, with their positions and
+	 * active states in that year
+	 * @param year A year
+	 * @return New colonies, in order of ID, or an empty list if there was no census in the year
+	 */
+	public List<Colony> getColonies(int year) {
+		final List<Colony> colonies = new ArrayList<Colony>();
+		for(int colonyId : getPresent(year).toArray()) {
+			final ColonyHistory history = getHistory(colonyId);
+			colonies.add(history.toColony(history.indexOf(year)));
+		}
+		return colonies;
+	}
+
+	/**
+	 * Decode the history of the colony at an index
+	 */
+	private ColonyHistory decode(int index) throws IOException {
+		final InputStream in = new ByteArrayInputStream(data, offsets[index], offsets[index + 1] - offsets[index]);
+
+		// States by year index
+		final int[] states = new int[years.length];
+		int presentCount = 0;
+		int yearIndex = 0;
+		final int runCount = (int) VarInts.readUnsigned(in);
+		for(int run = 0; run < runCount; run++) {
+			final long value = VarInts.readUnsigned(in);
+			final int state = (int) (value & 3);
+			final int length = (int) (value >>> 2);
+			Arrays.fill(states, yearIndex, yearIndex + length, state);
+			yearIndex += length;
+			if(state != ABSENT) {
+				presentCount += length;
+			}
+		}
+
+		// Position changes
+		final int changeCount = (int) VarInts.readUnsigned(in);
+		int nextChange = changeCount > 0 ? (int) VarInts.readUnsigned(in) : -1;
+		int changesRead = 0;
+		long x = 0;
+		long y = 0;
+
+		final int[] recordYears = new int[presentCount];
+		final double[] recordX = new double[presentCount];
+		final double[] recordY = new double[presentCount];
+		final boolean[] recordActive = new boolean[presentCount];
+		int record = 0;
+		for(int i = 0; i < years.length; i++) {
+			if(i == nextChange) {
+				x += VarInts.readSigned(in);
+				y += VarInts.readSigned(in);
+				changesRead++;
+				nextChange = changesRead < changeCount ? i + (int) VarInts.readUnsigned(in) : -1;
+			}
+			if(states[i] != ABSENT) {
+				recordYears[record] = years[i];
+				recordX[record] = (double) x / SCALE;
+				recordY[record] = (double) y / SCALE;
+				recordActive[record] = states[i] == ACTIVE;
+				record++;
+			}
+		}
+		return new ColonyHistory(ids[index], recordYears, recordX, recordY, recordActive);
+	}
+
+	private static TagSet readTagSet(InputStream in) throws IOException {
+		final int[] runs = new int[2 * (int) VarInts.readUnsigned(in)];
+		long previousEnd = 0;
+		for(int run = 0; run < runs.length; run += 2) {
+			runs[run] = (int) (previousEnd + VarInts.readSigned(in));
+			runs[run + 1] = (int) (runs[run] + VarInts.readUnsigned(in));
+			previousEnd = runs[run + 1];
+		}
+		return TagSet.ofRuns(runs);
+	}
+}
@@ -0,0 +1,206 @@
+package org.samcrow.data.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.samcrow.colonynavigator3.data.Colony;
+import org.samcrow.colonynavigator3.data.TagSet;
+import org.samcrow.data.io.DataStreams;
+import org.samcrow.data.io.VarInts;
+import org.samcrow.data.storage.Storage;
+
+/**
+ * Combines yearly censuses into a {@link CensusArchive} file.
+ *
+ * Add each census with {@link #addYear(int, Iterable)}, then call one of the
+ * write methods. The censuses are kept in memory until they are written.
+ *
+ * @author Sam Crow
+ */
+public class CensusArchiveWriter {
+
+	/** Colonies by ID, by year */
+	private final TreeMap<Integer, Map<Integer, Colony>> years = new TreeMap<Integer, Map<Integer, Colony>>();
+
+	/**
+	 * Add the census of a year. If a census has already been added for the
+	 * year, the colonies are added to it. If there are several colonies with
+	 * the same ID in a year, the last one is used.
+	 * @param year The year
+	 * @param colonies The colonies recorded in the census
+	 */
+	public void addYear(int year, Iterable<Colony> colonies) {
+		Map<Integer, Colony> census = years.get(year);
+		if(census == null) {
+			census = new HashMap<Integer, Colony>();
+			years.put(year, census);
+		}
+		for(Colony colony : colonies) {
+			census.put(colony.getId(), colony);
+		}
+	}
+
+	/**
+	 * Write the archive to a file
+	 * @param storage The storage to write to
+	 * @param name The name of the file. The file is compressed if this ends
+	 * with {@link DataStreams#GZIP_EXTENSION}.
+	 * @throws IOException if the file could not be written
+	 */
+	public void write(Storage storage, String name) throws IOException {
+		final OutputStream out = DataStreams.openOutput(storage, name);
+		try {
+			write(out);
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Write the archive
+	 * @param stream The stream to write to. It is not closed.
+	 * @throws IOException if the archive could not be written
+	 */
+	public void write(OutputStream stream) throws IOException {
+		final DataOutputStream out = new DataOutputStream(stream);
+		out.writeInt(CensusArchive.MAGIC);
+		out.writeInt(CensusArchive.VERSION);
+
+		final int[] yearList = new int[years.size()];
+		final List<Map<Integer, Colony>> censuses = new ArrayList<Map<Integer, Colony>>(years.values());
+		int index = 0;
+		for(Integer year : years.keySet()) {
+			yearList[index++] = year;
+		}
+
+		// Years
+		VarInts.writeUnsigned(out, yearList.length);
+		int previousYear = 0;
+		for(int year : yearList) {
+			VarInts.writeSigned(out, year - previousYear);
+			previousYear = year;
+		}
+
+		// Colonies present and active in each year
+		for(Map<Integer, Colony> census : censuses) {
+			final int[] present = new int[census.size()];
+			final int[] active = new int[census.size()];
+			int presentCount = 0;
+			int activeCount = 0;
+			for(Colony colony : census.values()) {
+				present[presentCount++] = colony.getId();
+				if(colony.isActive()) {
+					active[activeCount++] = colony.getId();
+				}
+			}
+			writeTagSet(out, TagSet.of(Arrays.copyOf(present, presentCount)));
+			writeTagSet(out, TagSet.of(Arrays.copyOf(active, activeCount)));
+		}
+
+		// Colony histories
+		final TreeSet<Integer> ids = new TreeSet<Integer>();
+		for(Map<Integer, Colony> census : censuses) {
+			ids.addAll(census.keySet());
+		}
+		final ByteArrayOutputStream data = new ByteArrayOutputStream();
+		final int[] lengths = new int[ids.size()];
+		index = 0;
+		for(Integer id : ids) {
+			final int start = data.size();
+			writeHistory(data, id, censuses);
+			lengths[index++] = data.size() - start;
+		}
+
+		VarInts.writeUnsigned(out, ids.size());
+		int previousId = 0;
+		for(Integer id : ids) {
+			VarInts.writeSigned(out, id - previousId);
+			previousId = id;
+		}
+		for(int length : lengths) {
+			VarInts.writeUnsigned(out, length);
+		}
+		data.writeTo(out);
+		out.flush();
+	}
+
+	/**
+	 * Write the history of one colony: its state in each year as runs,
+	 * then the years where its position changed, with the change in position
+	 */
+	private static void writeHistory(OutputStream out, int id, List<Map<Integer, Colony>> censuses) throws IOException {
+		final ByteArrayOutputStream runs = new ByteArrayOutputStream();
+		int runCount = 0;
+		int runState = -1;
+		int runLength = 0;
+
+		final ByteArrayOutputStream changes = new ByteArrayOutputStream();
+		int changeCount = 0;
+		int previousChangeYear = 0;
+		long previousX = 0;
+		long previousY = 0;
+		boolean hasPosition = false;
+
+		for(int yearIndex = 0; yearIndex < censuses.size(); yearIndex++) {
+			final Colony colony = censuses.get(yearIndex).get(id);
+			final int state = colony == null ? CensusArchive.ABSENT
+					: (colony.isActive() ? CensusArchive.ACTIVE : CensusArchive.INACTIVE);
+			if(state != runState && runLength != 0) {
+				VarInts.writeUnsigned(runs, ((long) runLength << 2) | runState);
+				runCount++;
+				runLength = 0;
+			}
+			runState = state;
+			runLength++;
+
+			if(colony != null) {
+				final long x = Math.round(colony.getX() * CensusArchive.SCALE);
+				final long y = Math.round(colony.getY() * CensusArchive.SCALE);
+				if(!hasPosition || x != previousX || y != previousY) {
+					VarInts.writeUnsigned(changes, yearIndex - previousChangeYear);
+					VarInts.writeSigned(changes, x - previousX);
+					VarInts.writeSigned(changes, y - previousY);
+					changeCount++;
+					previousChangeYear = yearIndex;
+					previousX = x;
+					previousY = y;
+					hasPosition = true;
+				}
+			}
+		}
+		if(runLength != 0) {
+			VarInts.writeUnsigned(runs, ((long) runLength << 2) | runState);
+			runCount++;
+		}
+
+		VarInts.writeUnsigned(out, runCount);
+		runs.writeTo(out);
+		VarInts.writeUnsigned(out, changeCount);
+		changes.writeTo(out);
+	}
+
+	/**
+	 * Write a tag set as the number of runs, then the gap before each run
+	 * and the length of each run
+	 */
+	private static void writeTagSet(OutputStream out, TagSet set) throws IOException {
+		final int[] runs = set.getRuns();
+		VarInts.writeUnsigned(out, runs.length / 2);
+		long previousEnd = 0;
+		for(int run = 0; run < runs.length; run += 2) {
+			VarInts.writeSigned(out, runs[run] - previousEnd);
+			VarInts.writeUnsigned(out, (long) runs[run + 1] - runs[run]);
+			previousEnd = runs[run + 1];
+		}
+	}
+}
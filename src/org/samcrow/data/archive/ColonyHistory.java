@@ -0,0 +1,103 @@
+package org.samcrow.data.archive;
+
+import org.samcrow.colonynavigator3.data.Colony;
+
+/**
+ * The history of one colony in a {@link CensusArchive}: its position and
+ * active state in each census year that it was recorded in
+ *
+ * @author Sam Crow
+ */
+public class ColonyHistory {
+
+	private final int id;
+	private final int[] years;
+	private final double[] x;
+	private final double[] y;
+	private final boolean[] active;
+
+	ColonyHistory(int id, int[] years, double[] x, double[] y, boolean[] active) {
+		this.id = id;
+		this.years = years;
+		this.x = x;
+		this.y = y;
+		this.active = active;
+	}
+
+	/**
+	 * @return The colony ID
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * @return The number of census years that the colony was recorded in
+	 */
+	public int size() {
+		return years.length;
+	}
+
+	/**
+	 * @param index The index of a record, from 0 to {@link #size()} - 1, in year order
+	 * @return The year of the record
+	 */
+	public int getYear(int index) {
+		return years[index];
+	}
+
+	/**
+	 * @param index The index of a record
+	 * @return The X coordinate of the colony in the year of the record
+	 */
+	public double getX(int index) {
+		return x[index];
+	}
+
+	/**
+	 * @param index The index of a record
+	 * @return The Y coordinate of the colony in the year of the record
+	 */
+	public double getY(int index) {
+		return y[index];
+	}
+
+	/**
+	 * @param index The index of a record
+	 * @return true if the colony was active in the year of the record
+	 */
+	public boolean isActive(int index) {
+		return active[index];
+	}
+
+	/**
+	 * @param year A year
+	 * @return The index of the record for the year, or -1 if the colony was not recorded in the year
+	 */
+	public int indexOf(int year) {
+		for(int i = 0; i < years.length; i++) {
+			if(years[i] == year) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param index The index of a record
+	 * @return A new colony with the position and active state of the record
+	 */
+	public Colony toColony(int index) {
+		return new Colony(id, x[index], y[index], active[index]);
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder("Colony ").append(id).append(':');
+		for(int i = 0; i < years.length; i++) {
+			builder.append(' ').append(years[i]).append(active[i] ? " active" : " inactive")
+					.append(" (").append(x[i]).append(", ").append(y[i]).append(')');
+		}
+		return builder.toString();
+	}
+}
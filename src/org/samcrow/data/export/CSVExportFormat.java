@@ -0,0 +1,84 @@
+package org.samcrow.data.export;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.joda.time.format.ISODateTimeFormat;
+import org.mapsforge.core.model.LatLong;
+import org.samcrow.colonynavigator3.data.Colony;
+
+/**
+ * Exports colonies as CSV with a header line and every colony field.
+ *
+ * Unlike {@link org.samcrow.data.io.CSVParser}, which writes the format of
+ * colonies.csv, this keeps fractional coordinates, the visited, focus and
+ * modified fields, and the attributes, which are written as one JSON object.
+ * Fields are quoted as described in RFC 4180 where necessary.
+ *
+ * @author Sam Crow
+ */
+public class CSVExportFormat implements ExportFormat {
+
+	/** The column names */
+	public static final String HEADER = "id,x,y,latitude,longitude,active,visited,focus,modified,attributes";
+
+	@Override
+	public String getExtension() {
+		return ".csv";
+	}
+
+	@Override
+	public void begin(Writer out) throws IOException {
+		out.write(HEADER);
+		out.write("\r\n");
+	}
+
+	@Override
+	public void write(Writer out, Colony colony, LatLong position) throws IOException {
+		out.write(String.valueOf(colony.getId()));
+		out.write(',');
+		out.write(String.valueOf(colony.getX()));
+		out.write(',');
+		out.write(String.valueOf(colony.getY()));
+		out.write(',');
+		out.write(String.valueOf(position.latitude));
+		out.write(',');
+		out.write(String.valueOf(position.longitude));
+		out.write(',');
+		out.write(String.valueOf(colony.isActive()));
+		out.write(',');
+		out.write(String.valueOf(colony.isVisited()));
+		out.write(',');
+		out.write(String.valueOf(colony.isFocusColony()));
+		out.write(',');
+		if(colony.getModified() != null) {
+			out.write(ISODateTimeFormat.dateTime().print(colony.getModified().getTime()));
+		}
+		out.write(',');
+		if(!colony.getAttributes().isEmpty()) {
+			final StringBuilder attributes = new StringBuilder();
+			JSONText.append(attributes, colony.getAttributes());
+			quote(out, attributes);
+		}
+		out.write("\r\n");
+	}
+
+	@Override
+	public void end(Writer out) throws IOException {
+	}
+
+	/**
+	 * Write a field in quotes, doubling any quotes in it
+	 */
+	private static void quote(Writer out, CharSequence field) throws IOException {
+		out.write('"');
+		for(int i = 0, max = field.length(); i < max; i++) {
+			final char c = field.charAt(i);
+			if(c == '"') {
+				out.write('"');
+			}
+			out.write(c);
+		}
+		out.write('"');
+	}
+}
@@ -0,0 +1,76 @@
+package org.samcrow.data.export;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import org.samcrow.colonynavigator3.CoordinateTransformer;
+import org.samcrow.colonynavigator3.data.Colony;
+import org.samcrow.data.io.DataStreams;
+import org.samcrow.data.storage.Storage;
+
+/**
+ * Exports colonies for use in GIS tools.
+ *
+ * Colonies are written one at a time, in one pass, through a buffered stream.
+ * Latitude and longitude are calculated with {@link CoordinateTransformer}
+ * as each colony is written and are not cached on the colonies.
+ *
+ * @author Sam Crow
+ */
+public class ColonyExporter {
+
+	private final ExportFormat format;
+	private final ColonyFilter filter;
+
+	/**
+	 * Constructor
+	 * @param format The format to write
+	 * @param filter The filter that chooses the colonies to write, or null to write all colonies
+	 */
+	public ColonyExporter(ExportFormat format, ColonyFilter filter) {
+		this.format = format;
+		this.filter = filter != null ? filter : ColonyFilters.ALL;
+	}
+
+	/**
+	 * Export colonies to a file
+	 * @param colonies The colonies to export
+	 * @param storage The storage to write to
+	 * @param name The name of the file. The file is compressed if this ends
+	 * with {@link DataStreams#GZIP_EXTENSION}.
+	 * @return The number of colonies written
+	 * @throws IOException if the file could not be written
+	 */
+	public int export(Iterable<Colony> colonies, Storage storage, String name) throws IOException {
+		final Writer out = new OutputStreamWriter(DataStreams.openOutput(storage, name), "UTF-8");
+		try {
+			return export(colonies, out);
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Export colonies
+	 * @param colonies The colonies to export
+	 * @param out The writer to write to. This should be buffered. It is not closed.
+	 * @return The number of colonies written
+	 * @throws IOException if writing failed
+	 */
+	public int export(Iterable<Colony> colonies, Writer out) throws IOException {
+		final CoordinateTransformer transformer = CoordinateTransformer.getInstance();
+		int count = 0;
+		format.begin(out);
+		for(Colony colony : colonies) {
+			if(filter.accept(colony)) {
+				format.write(out, colony, transformer.toGps(colony.getX(), colony.getY()));
+				count++;
+			}
+		}
+		format.end(out);
+		out.flush();
+		return count;
+	}
+}
@@ -0,0 +1,17 @@
+package org.samcrow.data.export;
+
+import org.samcrow.colonynavigator3.data.Colony;
+
+/**
+ * Chooses which colonies are exported
+ *
+ * @author Sam Crow
+ */
+public interface ColonyFilter {
+
+	/**
+	 * @param colony A colony
+	 * @return true if the colony should be exported
+	 */
+	public boolean accept(Colony colony);
+}
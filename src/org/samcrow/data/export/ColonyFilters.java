@@ -0,0 +1,110 @@
+package org.samcrow.data.export;
+
+import org.samcrow.colonynavigator3.data.Colony;
+import org.samcrow.colonynavigator3.data.TagSet;
+
+/**
+ * Common {@link ColonyFilter}s
+ *
+ * @author Sam Crow
+ */
+public class ColonyFilters {
+
+	private ColonyFilters() {}
+
+	/** A filter that accepts every colony */
+	public static final ColonyFilter ALL = new ColonyFilter() {
+		@Override
+		public boolean accept(Colony colony) {
+			return true;
+		}
+	};
+
+	/**
+	 * @param active The required active state
+	 * @return A filter that accepts colonies that are active, or inactive
+	 */
+	public static ColonyFilter active(final boolean active) {
+		return new ColonyFilter() {
+			@Override
+			public boolean accept(Colony colony) {
+				return colony.isActive() == active;
+			}
+		};
+	}
+
+	/**
+	 * @param visited The required visited state
+	 * @return A filter that accepts colonies that have, or have not, been visited
+	 */
+	public static ColonyFilter visited(final boolean visited) {
+		return new ColonyFilter() {
+			@Override
+			public boolean accept(Colony colony) {
+				return colony.isVisited() == visited;
+			}
+		};
+	}
+
+	/**
+	 * @param focus The required focus state
+	 * @return A filter that accepts focus colonies, or colonies that are not focus colonies
+	 */
+	public static ColonyFilter focus(final boolean focus) {
+		return new ColonyFilter() {
+			@Override
+			public boolean accept(Colony colony) {
+				return colony.isFocusColony() == focus;
+			}
+		};
+	}
+
+	/**
+	 * Create a filter that accepts colonies in a rectangle of local coordinates
+	 * @param minX The minimum X coordinate, in meters
+	 * @param minY The minimum Y coordinate, in meters
+	 * @param maxX The maximum X coordinate, in meters
+	 * @param maxY The maximum Y coordinate, in meters
+	 * @return A filter that accepts colonies inside or on the edge of the rectangle
+	 */
+	public static ColonyFilter region(final double minX, final double minY, final double maxX, final double maxY) {
+		return new ColonyFilter() {
+			@Override
+			public boolean accept(Colony colony) {
+				return colony.getX() >= minX && colony.getX() <= maxX
+						&& colony.getY() >= minY && colony.getY() <= maxY;
+			}
+		};
+	}
+
+	/**
+	 * @param tags A set of colony IDs
+	 * @return A filter that accepts colonies whose IDs are in the set
+	 */
+	public static ColonyFilter tagged(final TagSet tags) {
+		return new ColonyFilter() {
+			@Override
+			public boolean accept(Colony colony) {
+				return tags.contains(colony.getId());
+			}
+		};
+	}
+
+	/**
+	 * @param filters Some filters
+	 * @return A filter that accepts colonies accepted by all the filters
+	 */
+	public static ColonyFilter and(final ColonyFilter... filters) {
+		return new ColonyFilter() {
+			@Override
+			public boolean accept(Colony colony) {
+				for(ColonyFilter filter : filters) {
+					if(!filter.accept(colony)) {
+						return false;
+					}
+				}
+				return true;
+			}
+		};
+	}
+}
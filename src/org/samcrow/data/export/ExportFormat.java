@@ -0,0 +1,46 @@
+package org.samcrow.data.export;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.mapsforge.core.model.LatLong;
+import org.samcrow.colonynavigator3.data.Colony;
+
+/**
+ * A file format that colonies can be exported in.
+ *
+ * A format writes each colony as soon as it is given, so that exporting
+ * takes the same amount of memory however many colonies there are.
+ *
+ * @author Sam Crow
+ */
+public interface ExportFormat {
+
+	/**
+	 * @return The file name extension for this format, including the dot
+	 */
+	public String getExtension();
+
+	/**
+	 * Write the start of the document
+	 * @param out The writer to write to
+	 * @throws IOException
+	 */
+	public void begin(Writer out) throws IOException;
+
+	/**
+	 * Write one colony
+	 * @param out The writer to write to
+	 * @param colony The colony
+	 * @param position The colony's latitude and longitude
+	 * @throws IOException
+	 */
+	public void write(Writer out, Colony colony, LatLong position) throws IOException;
+
+	/**
+	 * Write the end of the document
+	 * @param out The writer to write to
+	 * @throws IOException
+	 */
+	public void end(Writer out) throws IOException;
+}
@@ -0,0 +1,76 @@
+package org.samcrow.data.export;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.joda.time.format.ISODateTimeFormat;
+import org.mapsforge.core.model.LatLong;
+import org.samcrow.colonynavigator3.data.Colony;
+
+/**
+ * Exports colonies as a GeoJSON FeatureCollection, with one Point feature
+ * for each colony. All colony fields are included as feature properties.
+ *
+ * @author Sam Crow
+ */
+public class GeoJSONFormat implements ExportFormat {
+
+	/** If a colony has been written since {@link #begin(Writer)} */
+	private boolean first;
+
+	@Override
+	public String getExtension() {
+		return ".geojson";
+	}
+
+	@Override
+	public void begin(Writer out) throws IOException {
+		first = true;
+		out.write("{\"type\":\"FeatureCollection\",\"features\":[\n");
+	}
+
+	@Override
+	public void write(Writer out, Colony colony, LatLong position) throws IOException {
+		if(!first) {
+			out.write(",\n");
+		}
+		first = false;
+
+		// GeoJSON positions are longitude first
+		out.write("{\"type\":\"Feature\",\"id\":");
+		out.write(String.valueOf(colony.getId()));
+		out.write(",\"geometry\":{\"type\":\"Point\",\"coordinates\":[");
+		out.write(String.valueOf(position.longitude));
+		out.write(',');
+		out.write(String.valueOf(position.latitude));
+		out.write("]},\"properties\":{\"id\":");
+		out.write(String.valueOf(colony.getId()));
+		out.write(",\"x\":");
+		out.write(String.valueOf(colony.getX()));
+		out.write(",\"y\":");
+		out.write(String.valueOf(colony.getY()));
+		out.write(",\"active\":");
+		out.write(String.valueOf(colony.isActive()));
+		out.write(",\"visited\":");
+		out.write(String.valueOf(colony.isVisited()));
+		out.write(",\"focus\":");
+		out.write(String.valueOf(colony.isFocusColony()));
+		out.write(",\"modified\":");
+		if(colony.getModified() == null) {
+			out.write("null");
+		}
+		else {
+			JSONText.appendString(out, ISODateTimeFormat.dateTime().print(colony.getModified().getTime()));
+		}
+		if(!colony.getAttributes().isEmpty()) {
+			out.write(",\"attributes\":");
+			JSONText.append(out, colony.getAttributes());
+		}
+		out.write("}}");
+	}
+
+	@Override
+	public void end(Writer out) throws IOException {
+		out.write("\n]}\n");
+	}
+}
@@ -0,0 +1,150 @@
+package org.samcrow.data.export;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Writes values as JSON text
+ *
+ * @author Sam Crow
+ */
+class JSONText {
+
+	private JSONText() {}
+
+	/**
+	 * Append a value as JSON
+	 * @param out Where to append the value
+	 * @param value A string, number, boolean, map, list, org.json value, or null.
+	 * Other objects are written as strings.
+	 * @throws IOException
+	 */
+	@SuppressWarnings("rawtypes")
+	static void append(Appendable out, Object value) throws IOException {
+		if(value == null || JSONObject.NULL.equals(value)) {
+			out.append("null");
+		}
+		else if(value instanceof Boolean) {
+			out.append(value.toString());
+		}
+		else if(value instanceof Number) {
+			final double number = ((Number) value).doubleValue();
+			if(Double.isNaN(number) || Double.isInfinite(number)) {
+				out.append("null");
+			}
+			else if(number == Math.rint(number) && Math.abs(number) < 1e15) {
+				out.append(String.valueOf((long) number));
+			}
+			else {
+				out.append(String.valueOf(number));
+			}
+		}
+		else if(value instanceof Map) {
+			out.append('{');
+			boolean first = true;
+			for(Object entryObject : ((Map) value).entrySet()) {
+				final Map.Entry entry = (Map.Entry) entryObject;
+				if(!first) {
+					out.append(',');
+				}
+				first = false;
+				appendString(out, String.valueOf(entry.getKey()));
+				out.append(':');
+				append(out, entry.getValue());
+			}
+			out.append('}');
+		}
+		else if(value instanceof List) {
+			out.append('[');
+			boolean first = true;
+			for(Object item : (List) value) {
+				if(!first) {
+					out.append(',');
+				}
+				first = false;
+				append(out, item);
+			}
+			out.append(']');
+		}
+		else if(value instanceof JSONObject) {
+			final JSONObject object = (JSONObject) value;
+			out.append('{');
+			boolean first = true;
+			try {
+				final Iterator keyIterator = object.keys();
+				while(keyIterator.hasNext()) {
+					final String key = (String) keyIterator.next();
+					if(!first) {
+						out.append(',');
+					}
+					first = false;
+					appendString(out, key);
+					out.append(':');
+					append(out, object.get(key));
+				}
+			} catch (JSONException e) {
+				throw new IOException(e.getMessage());
+			}
+			out.append('}');
+		}
+		else if(value instanceof JSONArray) {
+			final JSONArray array = (JSONArray) value;
+			out.append('[');
+			try {
+				for(int i = 0, max = array.length(); i < max; i++) {
+					if(i != 0) {
+						out.append(',');
+					}
+					append(out, array.get(i));
+				}
+			} catch (JSONException e) {
+				throw new IOException(e.getMessage());
+			}
+			out.append(']');
+		}
+		else {
+			appendString(out, value.toString());
+		}
+	}
+
+	/**
+	 * Append a string as a quoted JSON string
+	 */
+	static void appendString(Appendable out, String value) throws IOException {
+		out.append('"');
+		for(int i = 0, max = value.length(); i < max; i++) {
+			final char c = value.charAt(i);
+			switch(c) {
+			case '"':
+				out.append("\\\"");
+				break;
+			case '\\':
+				out.append("\\\\");
+				break;
+			case '\n':
+				out.append("\\n");
+				break;
+			case '\r':
+				out.append("\\r");
+				break;
+			case '\t':
+				out.append("\\t");
+				break;
+			default:
+				if(c < 0x20) {
+					out.append(String.format("\\u%04x", (int) c));
+				}
+				else {
+					out.append(c);
+				}
+			}
+		}
+		out.append('"');
+	}
+}
@@ -0,0 +1,98 @@
+package org.samcrow.data.export;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+import org.joda.time.format.ISODateTimeFormat;
+import org.mapsforge.core.model.LatLong;
+import org.samcrow.colonynavigator3.data.Colony;
+
+/**
+ * Exports colonies as a KML document, with one Placemark for each colony,
+ * named with the colony ID. All colony fields are included as ExtendedData.
+ *
+ * @author Sam Crow
+ */
+public class KMLFormat implements ExportFormat {
+
+	@Override
+	public String getExtension() {
+		return ".kml";
+	}
+
+	@Override
+	public void begin(Writer out) throws IOException {
+		out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		out.write("<kml xmlns=\"http://www.opengis.net/kml/2.2\">\n<Document>\n<name>Colonies</name>\n");
+	}
+
+	@Override
+	public void write(Writer out, Colony colony, LatLong position) throws IOException {
+		out.write("<Placemark><name>");
+		out.write(String.valueOf(colony.getId()));
+		out.write("</name><ExtendedData>");
+		data(out, "x", String.valueOf(colony.getX()));
+		data(out, "y", String.valueOf(colony.getY()));
+		data(out, "active", String.valueOf(colony.isActive()));
+		data(out, "visited", String.valueOf(colony.isVisited()));
+		data(out, "focus", String.valueOf(colony.isFocusColony()));
+		if(colony.getModified() != null) {
+			data(out, "modified", ISODateTimeFormat.dateTime().print(colony.getModified().getTime()));
+		}
+		for(Map.Entry<String, Object> entry : colony.getAttributes().entrySet()) {
+			final StringBuilder value = new StringBuilder();
+			if(entry.getValue() instanceof String) {
+				value.append((String) entry.getValue());
+			}
+			else {
+				JSONText.append(value, entry.getValue());
+			}
+			data(out, entry.getKey(), value.toString());
+		}
+		// KML coordinates are longitude first
+		out.write("</ExtendedData><Point><coordinates>");
+		out.write(String.valueOf(position.longitude));
+		out.write(',');
+		out.write(String.valueOf(position.latitude));
+		out.write("</coordinates></Point></Placemark>\n");
+	}
+
+	@Override
+	public void end(Writer out) throws IOException {
+		out.write("</Document>\n</kml>\n");
+	}
+
+	private static void data(Writer out, String name, String value) throws IOException {
+		out.write("<Data name=\"");
+		escape(out, name);
+		out.write("\"><value>");
+		escape(out, value);
+		out.write("</value></Data>");
+	}
+
+	/**
+	 * Write text with XML special characters escaped
+	 */
+	private static void escape(Writer out, String text) throws IOException {
+		for(int i = 0, max = text.length(); i < max; i++) {
+			final char c = text.charAt(i);
+			switch(c) {
+			case '<':
+				out.write("&lt;");
+				break;
+			case '>':
+				out.write("&gt;");
+				break;
+			case '&':
+				out.write("&amp;");
+				break;
+			case '"':
+				out.write("&quot;");
+				break;
+			default:
+				out.write(c);
+			}
+		}
+	}
+}
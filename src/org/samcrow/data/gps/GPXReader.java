@@ -0,0 +1,96 @@
+package org.samcrow.data.gps;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Reads waypoints from GPX files saved by handheld GPS units.
+ *
+ * Each wpt element becomes a waypoint. Its colony ID is taken from its
+ * name element; see {@link WaypointBuffer#parseId(String)}. Tracks and
+ * routes are ignored.
+ *
+ * @author Sam Crow
+ */
+public class GPXReader {
+
+	private GPXReader() {}
+
+	/**
+	 * Read waypoints
+	 * @param in The stream to read from. It is not closed.
+	 * @param waypoints The buffer to add waypoints to
+	 * @throws IOException if the stream could not be read or is not valid XML
+	 */
+	public static void read(InputStream in, final WaypointBuffer waypoints) throws IOException {
+		try {
+			SAXParserFactory.newInstance().newSAXParser().parse(new InputSource(in), new DefaultHandler() {
+				private boolean inWaypoint = false;
+				private boolean inName = false;
+				private double latitude;
+				private double longitude;
+				private final StringBuilder name = new StringBuilder();
+
+				@Override
+				public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+					final String element = elementName(localName, qName);
+					if(element.equals("wpt")) {
+						try {
+							latitude = Double.parseDouble(attributes.getValue("lat"));
+							longitude = Double.parseDouble(attributes.getValue("lon"));
+							inWaypoint = true;
+							name.setLength(0);
+						} catch (NumberFormatException e) {
+							System.err.println("Skipping waypoint with invalid position");
+						} catch (NullPointerException e) {
+							System.err.println("Skipping waypoint without position");
+						}
+					}
+					else if(inWaypoint && element.equals("name")) {
+						inName = true;
+					}
+				}
+
+				@Override
+				public void characters(char[] ch, int start, int length) {
+					if(inName) {
+						name.append(ch, start, length);
+					}
+				}
+
+				@Override
+				public void endElement(String uri, String localName, String qName) {
+					final String element = elementName(localName, qName);
+					if(element.equals("name")) {
+						inName = false;
+					}
+					else if(element.equals("wpt") && inWaypoint) {
+						waypoints.add(WaypointBuffer.parseId(name.toString()), latitude, longitude);
+						inWaypoint = false;
+					}
+				}
+			});
+		} catch (SAXException e) {
+			throw new IOException("Invalid GPX: " + e.getMessage());
+		} catch (ParserConfigurationException e) {
+			throw new IOException("Could not create XML parser: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @return The element name without any namespace prefix
+	 */
+	private static String elementName(String localName, String qName) {
+		final String name = localName != null && localName.length() != 0 ? localName : qName;
+		final int colon = name.indexOf(':');
+		return colon == -1 ? name : name.substring(colon + 1);
+	}
+}
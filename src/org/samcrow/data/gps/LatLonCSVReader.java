@@ -0,0 +1,88 @@
+package org.samcrow.data.gps;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * Reads waypoints from CSV files with latitude and longitude columns.
+ *
+ * If the first line is a header, the ID, latitude and longitude columns
+ * are found by name (id or name, lat or latitude, lon, lng or longitude).
+ * Otherwise the columns are ID, latitude, longitude. Lines that cannot be
+ * parsed are skipped.
+ *
+ * @author Sam Crow
+ */
+public class LatLonCSVReader {
+
+	private LatLonCSVReader() {}
+
+	/**
+	 * Read waypoints
+	 * @param in The stream to read from. It is not closed.
+	 * @param waypoints The buffer to add waypoints to
+	 * @throws IOException if the stream could not be read
+	 */
+	public static void read(InputStream in, WaypointBuffer waypoints) throws IOException {
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+		int idColumn = 0;
+		int latitudeColumn = 1;
+		int longitudeColumn = 2;
+		boolean firstLine = true;
+		int skipped = 0;
+		String line;
+		while((line = reader.readLine()) != null) {
+			line = line.trim();
+			if(line.length() == 0 || line.startsWith("#")) {
+				continue;
+			}
+			final String[] parts = line.split("\\s*,\\s*");
+			if(firstLine) {
+				firstLine = false;
+				if(isHeader(parts)) {
+					for(int i = 0; i < parts.length; i++) {
+						final String name = parts[i].toLowerCase();
+						if(name.equals("id") || name.equals("name")) {
+							idColumn = i;
+						}
+						else if(name.equals("lat") || name.equals("latitude")) {
+							latitudeColumn = i;
+						}
+						else if(name.equals("lon") || name.equals("lng") || name.equals("longitude")) {
+							longitudeColumn = i;
+						}
+					}
+					continue;
+				}
+			}
+			try {
+				waypoints.add(WaypointBuffer.parseId(parts[idColumn]),
+						Double.parseDouble(parts[latitudeColumn]), Double.parseDouble(parts[longitudeColumn]));
+			} catch (NumberFormatException e) {
+				skipped++;
+			} catch (ArrayIndexOutOfBoundsException e) {
+				skipped++;
+			}
+		}
+		if(skipped != 0) {
+			System.err.println("Skipped " + skipped + " invalid waypoint lines");
+		}
+	}
+
+	/**
+	 * @return true if a line is a header: none of its fields are numbers
+	 */
+	private static boolean isHeader(String[] parts) {
+		for(String part : parts) {
+			try {
+				Double.parseDouble(part);
+				return false;
+			} catch (NumberFormatException e) {
+				// Not a number
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,194 @@
+package org.samcrow.data.gps;
+
+import java.util.Arrays;
+
+/**
+ * Averages a stream of GPS positions, in local coordinates, taken while
+ * standing in one place.
+ *
+ * The mean and variance of the accepted positions are kept with Welford's
+ * method, so nothing is stored for each position. Accepted positions are
+ * also averaged in groups, and once there are a few groups the estimate is
+ * the median of the group means in each coordinate. That estimate is not
+ * pulled far by a short run of bad fixes, as the overall mean would be.
+ *
+ * After the first few positions, a position further from the estimate than
+ * a number of standard deviations is rejected and not used at all.
+ *
+ * Consecutive GPS fixes are not independent, so the standard error is an
+ * optimistic measure of how good the estimate is. {@link #isConverged(int, double)}
+ * also requires a minimum number of positions.
+ *
+ * @author Sam Crow
+ */
+public class PositionAverager {
+
+	/** The number of positions to accept before rejecting any */
+	private static final int MIN_BEFORE_REJECTING = 5;
+
+	/** The number of complete groups needed to use the median of their means */
+	private static final int MIN_GROUPS = 3;
+
+	/** Positions in each group */
+	private final int groupSize;
+
+	/** The distance, in standard deviations, beyond which positions are rejected */
+	private final double rejectDeviations;
+
+	/** The smallest standard deviation, in meters, used when rejecting positions */
+	private final double minDeviation;
+
+	// Welford's running mean and sum of squared differences
+	private int count = 0;
+	private double meanX = 0;
+	private double meanY = 0;
+	private double m2X = 0;
+	private double m2Y = 0;
+
+	private int rejected = 0;
+
+	// The group being filled
+	private int groupCount = 0;
+	private double groupSumX = 0;
+	private double groupSumY = 0;
+
+	// The means of complete groups
+	private int groups = 0;
+	private double[] groupX = new double[16];
+	private double[] groupY = new double[16];
+	/** Used to find medians */
+	private double[] sorted = new double[16];
+
+	/**
+	 * Constructor
+	 * @param groupSize The number of positions in each group
+	 * @param rejectDeviations The distance, in standard deviations from the
+	 * estimate, beyond which positions are rejected
+	 * @param minDeviation The smallest standard deviation, in meters, to use
+	 * when rejecting positions. This keeps good positions from being rejected
+	 * after a run of nearly identical fixes.
+	 */
+	public PositionAverager(int groupSize, double rejectDeviations, double minDeviation) {
+		if(groupSize < 1) {
+			throw new IllegalArgumentException("Group size must be at least 1");
+		}
+		this.groupSize = groupSize;
+		this.rejectDeviations = rejectDeviations;
+		this.minDeviation = minDeviation;
+	}
+
+	/**
+	 * Add a position
+	 * @param x The X coordinate
+	 * @param y The Y coordinate
+	 * @return true if the position was used, false if it was rejected
+	 */
+	public boolean add(double x, double y) {
+		if(count >= MIN_BEFORE_REJECTING) {
+			final double deviation = Math.max(getDeviation(), minDeviation);
+			if(Math.hypot(x - getX(), y - getY()) > rejectDeviations * deviation) {
+				rejected++;
+				return false;
+			}
+		}
+
+		count++;
+		final double dx = x - meanX;
+		final double dy = y - meanY;
+		meanX += dx / count;
+		meanY += dy / count;
+		m2X += dx * (x - meanX);
+		m2Y += dy * (y - meanY);
+
+		groupSumX += x;
+		groupSumY += y;
+		groupCount++;
+		if(groupCount == groupSize) {
+			if(groups == groupX.length) {
+				groupX = Arrays.copyOf(groupX, groups * 2);
+				groupY = Arrays.copyOf(groupY, groups * 2);
+				sorted = new double[groups * 2];
+			}
+			groupX[groups] = groupSumX / groupSize;
+			groupY[groups] = groupSumY / groupSize;
+			groups++;
+			groupCount = 0;
+			groupSumX = 0;
+			groupSumY = 0;
+		}
+		return true;
+	}
+
+	/**
+	 * @return The estimated X coordinate, or NaN if no positions have been accepted
+	 */
+	public double getX() {
+		if(groups >= MIN_GROUPS) {
+			return median(groupX);
+		}
+		return count != 0 ? meanX : Double.NaN;
+	}
+
+	/**
+	 * @return The estimated Y coordinate, or NaN if no positions have been accepted
+	 */
+	public double getY() {
+		if(groups >= MIN_GROUPS) {
+			return median(groupY);
+		}
+		return count != 0 ? meanY : Double.NaN;
+	}
+
+	/**
+	 * @return The standard deviation of the accepted positions from their
+	 * mean, as a distance in meters, or NaN if fewer than two have been accepted
+	 */
+	public double getDeviation() {
+		if(count < 2) {
+			return Double.NaN;
+		}
+		return Math.sqrt((m2X + m2Y) / (count - 1));
+	}
+
+	/**
+	 * @return The standard error of the mean, as a distance in meters, or NaN
+	 * if fewer than two positions have been accepted
+	 */
+	public double getStandardError() {
+		return getDeviation() / Math.sqrt(count);
+	}
+
+	/**
+	 * @param minCount The number of positions that must have been accepted
+	 * @param maxError The largest acceptable standard error, in meters
+	 * @return true if enough positions have been accepted and the standard
+	 * error is small enough
+	 */
+	public boolean isConverged(int minCount, double maxError) {
+		return count >= minCount && getStandardError() <= maxError;
+	}
+
+	/**
+	 * @return The number of positions accepted
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * @return The number of positions rejected
+	 */
+	public int getRejected() {
+		return rejected;
+	}
+
+	private double median(double[] values) {
+		System.arraycopy(values, 0, sorted, 0, groups);
+		Arrays.sort(sorted, 0, groups);
+		final int middle = groups / 2;
+		if(groups % 2 == 1) {
+			return sorted[middle];
+		}
+		return (sorted[middle - 1] + sorted[middle]) / 2;
+	}
+}
@@ -0,0 +1,167 @@
+package org.samcrow.data.gps;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.samcrow.colonynavigator3.CoordinateTransformer;
+import org.samcrow.colonynavigator3.data.Colony;
+import org.samcrow.colonynavigator3.data.ColonyGrid;
+import org.samcrow.colonynavigator3.data.ColonyList;
+import org.samcrow.data.io.DataStreams;
+import org.samcrow.data.merge.ColonyDiff;
+import org.samcrow.data.provider.ColonyProvider;
+
+/**
+ * Imports colonies surveyed with handheld GPS units.
+ *
+ * All waypoints are converted to local coordinates in one call to
+ * {@link CoordinateTransformer#toLocal(double[], double[], int)}. A waypoint
+ * is skipped if its colony ID is already used, or if it is within a minimum
+ * distance of an existing colony or of a waypoint imported before it.
+ * Waypoints without an ID in their names are given new IDs after the
+ * largest existing ID. Because of these checks, importing the same file
+ * again does not add anything.
+ *
+ * {@link #prepare(WaypointBuffer, List)} does not change any colonies, so it
+ * can run on a background thread. {@link #commit(ColonyProvider, Result)}
+ * then adds all the new colonies at once.
+ *
+ * @author Sam Crow
+ */
+public class SurveyImporter {
+
+	/**
+	 * The result of preparing an import
+	 */
+	public static class Result {
+		/** The new colonies, in waypoint order */
+		public final List<Colony> added = new ArrayList<Colony>();
+		/** The number of waypoints skipped because their IDs were already used */
+		public int duplicateIds = 0;
+		/** The number of waypoints skipped because they were too close to another colony */
+		public int tooClose = 0;
+		/** The number of new colonies that were given new IDs */
+		public int assignedIds = 0;
+
+		@Override
+		public String toString() {
+			return "Added " + added.size() + " colonies (" + assignedIds + " with new IDs), skipped "
+					+ duplicateIds + " with existing IDs and " + tooClose + " too close to another colony";
+		}
+	}
+
+	private final CoordinateTransformer transformer;
+
+	/** The minimum distance between a new colony and any other colony, in meters */
+	private final double minDistance;
+
+	/**
+	 * Constructor
+	 * @param transformer The transformer to convert GPS coordinates with
+	 * @param minDistance The minimum distance between a new colony and any other colony, in meters
+	 */
+	public SurveyImporter(CoordinateTransformer transformer, double minDistance) {
+		this.transformer = transformer;
+		this.minDistance = minDistance;
+	}
+
+	/**
+	 * Read waypoints from a GPX or CSV file, depending on its extension.
+	 * The file may be compressed; see {@link DataStreams}.
+	 * @param file The file
+	 * @param waypoints The buffer to add waypoints to
+	 * @throws IOException if the file could not be read
+	 */
+	public static void read(File file, WaypointBuffer waypoints) throws IOException {
+		String name = file.getName().toLowerCase();
+		if(DataStreams.isCompressedName(name)) {
+			name = name.substring(0, name.length() - DataStreams.GZIP_EXTENSION.length());
+		}
+		final InputStream in = DataStreams.openInput(file);
+		try {
+			if(name.endsWith(".gpx")) {
+				GPXReader.read(in, waypoints);
+			}
+			else {
+				LatLonCSVReader.read(in, waypoints);
+			}
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Convert waypoints to new colonies
+	 * @param waypoints The waypoints
+	 * @param existing The existing colonies. These are not modified.
+	 * @return The colonies to add, and the number of waypoints skipped
+	 */
+	public Result prepare(WaypointBuffer waypoints, List<Colony> existing) {
+		final Result result = new Result();
+		final int count = waypoints.size();
+
+		final double[] local = new double[count * 2];
+		transformer.toLocal(waypoints.getLonLat(), local, count);
+
+		final Set<Integer> usedIds = new HashSet<Integer>();
+		int maxId = 0;
+		for(Colony colony : existing) {
+			usedIds.add(colony.getId());
+			maxId = Math.max(maxId, colony.getId());
+		}
+		for(int i = 0; i < count; i++) {
+			if(waypoints.getId(i) != WaypointBuffer.NO_ID) {
+				maxId = Math.max(maxId, waypoints.getId(i));
+			}
+		}
+
+		final ColonyGrid grid = new ColonyGrid(Math.max(minDistance, 1), existing);
+		final Date now = new Date();
+		for(int i = 0; i < count; i++) {
+			int id = waypoints.getId(i);
+			final double x = local[2 * i];
+			final double y = local[2 * i + 1];
+			if(id != WaypointBuffer.NO_ID && usedIds.contains(id)) {
+				result.duplicateIds++;
+				continue;
+			}
+			if(grid.nearest(x, y, minDistance) != null) {
+				result.tooClose++;
+				continue;
+			}
+			if(id == WaypointBuffer.NO_ID) {
+				id = ++maxId;
+				result.assignedIds++;
+			}
+			// New colonies have a modified time so that they are saved, synced and exported
+			final Colony colony = new Colony(id, x, y, true, false, now, null);
+			usedIds.add(id);
+			grid.add(colony);
+			result.added.add(colony);
+		}
+		return result;
+	}
+
+	/**
+	 * Add prepared colonies to a provider and save them
+	 * @param provider The provider
+	 * @param result The result of {@link #prepare(WaypointBuffer, List)}
+	 * @return The changes to the provider's colonies
+	 */
+	public static ColonyDiff commit(ColonyProvider provider, Result result) {
+		final ColonyList colonies = provider.getColonies();
+		if(!result.added.isEmpty()) {
+			// One addAll, because every add sorts the list
+			colonies.addAll(result.added);
+			provider.updateColonies();
+		}
+		return new ColonyDiff(new ArrayList<Colony>(result.added), new ArrayList<Colony>(), new ArrayList<Colony>());
+	}
+}
@@ -0,0 +1,108 @@
+package org.samcrow.data.gps;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of GPS waypoints, stored in primitive arrays so that
+ * thousands of points can be read and transformed without allocating an
+ * object for each point
+ *
+ * @author Sam Crow
+ */
+public class WaypointBuffer {
+
+	/** The ID of a waypoint whose name does not contain a colony ID */
+	public static final int NO_ID = Integer.MIN_VALUE;
+
+	/** The colony ID of each waypoint, or {@link #NO_ID} */
+	private int[] ids = new int[64];
+	/** The longitude and latitude of each waypoint, in pairs */
+	private double[] lonLat = new double[128];
+	private int size = 0;
+
+	/**
+	 * Add a waypoint
+	 * @param id The colony ID, or {@link #NO_ID}
+	 * @param latitude The latitude in degrees
+	 * @param longitude The longitude in degrees
+	 */
+	public void add(int id, double latitude, double longitude) {
+		if(size == ids.length) {
+			ids = Arrays.copyOf(ids, size * 2);
+			lonLat = Arrays.copyOf(lonLat, size * 4);
+		}
+		ids[size] = id;
+		lonLat[2 * size] = longitude;
+		lonLat[2 * size + 1] = latitude;
+		size++;
+	}
+
+	/**
+	 * @return The number of waypoints
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param index A waypoint index
+	 * @return The colony ID of the waypoint, or {@link #NO_ID}
+	 */
+	public int getId(int index) {
+		return ids[index];
+	}
+
+	/**
+	 * @param index A waypoint index
+	 * @return The latitude of the waypoint
+	 */
+	public double getLatitude(int index) {
+		return lonLat[2 * index + 1];
+	}
+
+	/**
+	 * @param index A waypoint index
+	 * @return The longitude of the waypoint
+	 */
+	public double getLongitude(int index) {
+		return lonLat[2 * index];
+	}
+
+	/**
+	 * Get the longitude and latitude of all waypoints. The array may be
+	 * longer than twice {@link #size()}, and must not be modified.
+	 * @return The longitude of waypoint i at index 2i and its latitude at index 2i + 1
+	 */
+	double[] getLonLat() {
+		return lonLat;
+	}
+
+	/**
+	 * Find the colony ID in a waypoint name: the first sequence of digits,
+	 * so that "1234", "C1234" and "1234 new" are all colony 1234
+	 * @param name A waypoint name, or null
+	 * @return The colony ID, or {@link #NO_ID} if the name contains no digits
+	 */
+	public static int parseId(String name) {
+		if(name == null) {
+			return NO_ID;
+		}
+		int start = 0;
+		while(start < name.length() && !Character.isDigit(name.charAt(start))) {
+			start++;
+		}
+		int end = start;
+		while(end < name.length() && Character.isDigit(name.charAt(end))) {
+			end++;
+		}
+		if(start == end) {
+			return NO_ID;
+		}
+		try {
+			return Integer.parseInt(name.substring(start, end));
+		} catch (NumberFormatException e) {
+			// Too many digits
+			return NO_ID;
+		}
+	}
+}
@@ -1,79 +1,69 @@
 package org.samcrow.data.io;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.io.PrintStream;
-import java.util.HashSet;
 import java.util.Set;
 
 import org.samcrow.colonynavigator3.data.Colony;
+import org.samcrow.data.storage.FileStorage;
+import org.samcrow.data.storage.Storage;
 
 /**
- * Parses CSV files
+ * Parses CSV files. Files may be gzip-compressed; see {@link DataStreams}.
+ * Lines are parsed one at a time with {@link CSVStreamingParser}. If the file
+ * contains several colonies with the same ID, only the last one is returned.
  * @author Sam Crow
  */
 public class CSVFileParser extends CSVParser implements FileParser<Colony> {
 
-	protected File file;
+	protected final Storage storage;
+	protected final String name;
 
 	/**
 	 * Constructor
 	 * @param file The file to read from and write to
 	 */
 	public CSVFileParser(File file) {
-		this.file = file;
+		this(FileStorage.forFile(file), file.getName());
+	}
+
+	/**
+	 * Constructor
+	 * @param storage The storage containing the file
+	 * @param name The name of the file to read from and write to
+	 */
+	public CSVFileParser(Storage storage, String name) {
+		this.storage = storage;
+		this.name = name;
 	}
 
 	@Override
 	public Set<Colony> parse() {
-
-		Set<Colony> colonies = new HashSet<Colony>();
-
+		final ColonyCollector collector = new ColonyCollector();
 		try {
-			BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file)));
-
-			//Parse each line
-			while(true) {
-				String line = reader.readLine();
-				if(line == null) {
-					break;
-				}
-
-				Colony colony = parseOne(line);
-				//colony might be null if the line couldn't be parsed.
-				//Add it only if it was parsed successfully.
-				if(colony != null) {
-					colonies.add(colony);
-				}
-
+			final InputStream in = DataStreams.openInput(storage, name);
+			try {
+				new CSVStreamingParser().parse(in, collector);
+			}
+			finally {
+				in.close();
 			}
-
-			reader.close();
 		} catch (FileNotFoundException e) {
 			e.printStackTrace();
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
-
-		return colonies;
+		return collector.toSet();
 	}
 
 	@Override
 	public void write(Iterable<Colony> values) {
-		//Delete the file, if it exists, so that it can be rewritten from the beginning
-		file.delete();
+		//Opening the file for output replaces any existing content
 		try {
-			file.createNewFile();
-		} catch (IOException e1) {
-			e1.printStackTrace();
-		}
-
-		try {
-			PrintStream stream = new PrintStream(file);
+			PrintStream stream = new PrintStream(DataStreams.openOutput(storage, name));
 
 			for(Colony colony : values) {
 				stream.println(encodeOne(colony));
@@ -81,7 +71,7 @@ public class CSVFileParser extends CSVParser implements FileParser<Colony> {
 
 			stream.close();
 
-		} catch (FileNotFoundException e) {
+		} catch (IOException e) {
 			e.printStackTrace();
 		}
 
@@ -0,0 +1,51 @@
+package org.samcrow.data.io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+import org.samcrow.colonynavigator3.data.Colony;
+
+/**
+ * Reads colonies from CSV, one line at a time, using {@link CSVParser}
+ *
+ * @author Sam Crow
+ */
+public class CSVStreamingParser extends CSVParser implements StreamingParser {
+
+	@Override
+	public String getName() {
+		return "CSV";
+	}
+
+	/**
+	 * Accepts any text that does not start with a JSON object or array, after any
+	 * whitespace. Lines that are not colonies, like headers, are skipped when parsing.
+	 */
+	@Override
+	public boolean accepts(byte[] head, int length) {
+		final int first = DataStreams.firstNonWhitespace(head, length);
+		if(first == -1) {
+			return false;
+		}
+		final byte b = head[first];
+		return b >= 0x20 && b < 0x7f && b != '{' && b != '[';
+	}
+
+	@Override
+	public void parse(InputStream in, ColonySink sink) throws IOException {
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+		while(true) {
+			final String line = reader.readLine();
+			if(line == null) {
+				break;
+			}
+			final Colony colony = parseOne(line);
+			//colony might be null if the line couldn't be parsed.
+			if(colony != null) {
+				sink.accept(colony);
+			}
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package org.samcrow.data.io;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.samcrow.colonynavigator3.data.Colony;
+import org.samcrow.colonynavigator3.data.ColonyList;
+import org.samcrow.data.merge.ColonyMerger;
+
+/**
+ * A sink that collects colonies, keeping one colony for each ID.
+ *
+ * When a colony is received with the same ID as an earlier one, the copy with
+ * the later modified time is kept, or the later copy if the times are equal.
+ * This sink can receive colonies from several threads at once.
+ *
+ * @author Sam Crow
+ */
+public class ColonyCollector implements ColonySink {
+
+	private final Map<Integer, Colony> colonies = new HashMap<Integer, Colony>();
+
+	private int duplicates = 0;
+
+	@Override
+	public synchronized void accept(Colony colony) {
+		final Colony existing = colonies.put(colony.getId(), colony);
+		if(existing != null) {
+			duplicates++;
+			colonies.put(colony.getId(), ColonyMerger.resolve(existing, colony));
+		}
+	}
+
+	/**
+	 * @return The collected colonies, sorted by ID
+	 */
+	public synchronized ColonyList getColonies() {
+		return new ColonyList(new ArrayList<Colony>(colonies.values()));
+	}
+
+	/**
+	 * @return The collected colonies in a new set
+	 */
+	public synchronized Set<Colony> toSet() {
+		return new HashSet<Colony>(colonies.values());
+	}
+
+	/**
+	 * @return The number of colonies received that had the same ID as an earlier colony
+	 */
+	public synchronized int getDuplicateCount() {
+		return duplicates;
+	}
+}
@@ -0,0 +1,18 @@
+package org.samcrow.data.io;
+
+import org.samcrow.colonynavigator3.data.Colony;
+
+/**
+ * Something that colonies can be pushed to as they are parsed
+ *
+ * @author Sam Crow
+ */
+public interface ColonySink {
+
+	/**
+	 * Called for each colony that is parsed, in the order the colonies
+	 * appear in the source
+	 * @param colony The colony
+	 */
+	public void accept(Colony colony);
+}
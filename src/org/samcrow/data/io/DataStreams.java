@@ -0,0 +1,203 @@
+package org.samcrow.data.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.samcrow.data.storage.Storage;
+
+/**
+ * Opens streams for reading and writing data files, transparently
+ * compressing and decompressing gzip files.
+ *
+ * A file is read as gzip if it starts with the gzip magic bytes,
+ * regardless of its name. A file is written as gzip if its name ends
+ * with {@link #GZIP_EXTENSION}.
+ *
+ * Decompression happens as the stream is read, so parsing can start
+ * before the whole file has been read from the memory card.
+ *
+ * @author Sam Crow
+ */
+public class DataStreams {
+
+	/**
+	 * The file name extension, including the dot, that marks a file
+	 * that should be written compressed
+	 */
+	public static final String GZIP_EXTENSION = ".gz";
+
+	/**
+	 * The buffer size, in bytes, used for file streams.
+	 * Memory cards are much faster with large sequential reads and writes.
+	 */
+	static final int BUFFER_SIZE = 64 * 1024;
+
+	/** The first byte of the gzip header */
+	private static final int GZIP_MAGIC_0 = 0x1f;
+	/** The second byte of the gzip header */
+	private static final int GZIP_MAGIC_1 = 0x8b;
+
+	private DataStreams() {}
+
+	/**
+	 * Find the first byte that is not ASCII whitespace or a UTF-8 byte order mark
+	 * @param head Some bytes
+	 * @param length The number of valid bytes
+	 * @return The index of the first other byte, or -1 if there is none
+	 */
+	static int firstNonWhitespace(byte[] head, int length) {
+		int i = 0;
+		if(length >= 3 && (head[0] & 0xff) == 0xef && (head[1] & 0xff) == 0xbb && (head[2] & 0xff) == 0xbf) {
+			i = 3;
+		}
+		for(; i < length; i++) {
+			final byte b = head[i];
+			if(b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Open a file for reading
+	 * @param file The file to read
+	 * @return A buffered stream of the file's contents, decompressed if the file
+	 * is gzip-compressed
+	 * @throws IOException if the file could not be opened
+	 */
+	public static InputStream openInput(File file) throws IOException {
+		return wrapInput(new FileInputStream(file));
+	}
+
+	/**
+	 * Open a file in a storage for reading
+	 * @param storage The storage that contains the file
+	 * @param name The name of the file
+	 * @return A buffered stream of the file's contents, decompressed if the file
+	 * is gzip-compressed
+	 * @throws IOException if the file could not be opened
+	 */
+	public static InputStream openInput(Storage storage, String name) throws IOException {
+		return wrapInput(storage.openInput(name));
+	}
+
+	/**
+	 * Wrap a stream so that its contents are decompressed if they start
+	 * with a gzip header
+	 * @param in The stream to wrap
+	 * @return A buffered stream, decompressed if necessary
+	 * @throws IOException if the header could not be read
+	 */
+	public static InputStream wrapInput(InputStream in) throws IOException {
+		final BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+		if(isGzip(buffered)) {
+			return new BufferedInputStream(new GZIPInputStream(buffered, BUFFER_SIZE), BUFFER_SIZE);
+		}
+		return buffered;
+	}
+
+	/**
+	 * Open a file for writing, replacing any existing content
+	 * @param file The file to write
+	 * @return A buffered stream that writes to the file, compressing the data
+	 * if the file name ends with {@link #GZIP_EXTENSION}
+	 * @throws FileNotFoundException if the file could not be opened
+	 * @throws IOException if the gzip header could not be written
+	 */
+	public static OutputStream openOutput(File file) throws IOException {
+		return wrapOutput(new FileOutputStream(file), file.getName());
+	}
+
+	/**
+	 * Open a file in a storage for writing, replacing any existing content
+	 * @param storage The storage that contains the file
+	 * @param name The name of the file
+	 * @return A buffered stream that writes to the file, compressing the data
+	 * if the file name ends with {@link #GZIP_EXTENSION}
+	 * @throws IOException if the file could not be opened
+	 */
+	public static OutputStream openOutput(Storage storage, String name) throws IOException {
+		return wrapOutput(storage.openOutput(name), name);
+	}
+
+	private static OutputStream wrapOutput(OutputStream out, String name) throws IOException {
+		if(isCompressedName(name)) {
+			return new BufferedOutputStream(new GZIPOutputStream(out, BUFFER_SIZE), BUFFER_SIZE);
+		}
+		return new BufferedOutputStream(out, BUFFER_SIZE);
+	}
+
+	/**
+	 * @param file A file
+	 * @return true if the file's name marks it as compressed
+	 */
+	public static boolean isCompressedName(File file) {
+		return isCompressedName(file.getName());
+	}
+
+	/**
+	 * @param name A file name
+	 * @return true if the name marks the file as compressed
+	 */
+	public static boolean isCompressedName(String name) {
+		return name.endsWith(GZIP_EXTENSION);
+	}
+
+	/**
+	 * Find the file to use for some data, preferring an existing compressed
+	 * version
+	 * @param dir The directory to look in
+	 * @param name The name of the uncompressed file
+	 * @return The compressed version of the file if it exists, otherwise the
+	 * uncompressed version
+	 */
+	public static File find(File dir, String name) {
+		final File compressed = new File(dir, name + GZIP_EXTENSION);
+		if(compressed.exists()) {
+			return compressed;
+		}
+		return new File(dir, name);
+	}
+
+	/**
+	 * Find the file in a storage to use for some data, preferring an existing
+	 * compressed version
+	 * @param storage The storage to look in
+	 * @param name The name of the uncompressed file
+	 * @return The name of the compressed version of the file if it exists,
+	 * otherwise the uncompressed name
+	 */
+	public static String find(Storage storage, String name) {
+		final String compressed = name + GZIP_EXTENSION;
+		if(storage.exists(compressed)) {
+			return compressed;
+		}
+		return name;
+	}
+
+	/**
+	 * Check if a stream starts with the gzip magic bytes, without consuming them
+	 * @param in The stream to check. This must support mark/reset.
+	 * @return true if the stream appears to be gzip-compressed
+	 * @throws IOException
+	 */
+	private static boolean isGzip(InputStream in) throws IOException {
+		in.mark(2);
+		try {
+			return in.read() == GZIP_MAGIC_0 && in.read() == GZIP_MAGIC_1;
+		}
+		finally {
+			in.reset();
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package org.samcrow.data.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.samcrow.colonynavigator3.data.Colony;
+import org.samcrow.colonynavigator3.data.ModifiedIndex;
+import org.samcrow.data.storage.FileStorage;
+import org.samcrow.data.storage.Storage;
+
+/**
+ * Writes the colonies modified after a given time to a file.
+ *
+ * The file has the same format as colonies.json, sorted by colony ID, but
+ * contains only the changed colonies. It is normally written with gzip compression.
+ *
+ * @author Sam Crow
+ */
+public class DeltaExporter {
+
+	private final ModifiedIndex index;
+
+	/**
+	 * Constructor
+	 * @param index The index used to find modified colonies
+	 */
+	public DeltaExporter(ModifiedIndex index) {
+		this.index = index;
+	}
+
+	/**
+	 * Write the colonies modified after a time
+	 * @param since The time
+	 * @param file The file to write to
+	 * @return The number of colonies written
+	 * @throws IOException if the file could not be written
+	 */
+	public int export(Date since, File file) throws IOException {
+		return export(since, FileStorage.forFile(file), file.getName());
+	}
+
+	/**
+	 * Write the colonies modified after a time
+	 * @param since The time
+	 * @param storage The storage to write to
+	 * @param name The name of the file to write
+	 * @return The number of colonies written
+	 * @throws IOException if the file could not be written
+	 */
+	public int export(Date since, Storage storage, String name) throws IOException {
+		final List<Colony> changed = new ArrayList<Colony>(index.modifiedSince(since));
+		// Sort by ID, like every other colony file
+		Collections.sort(changed);
+
+		final JSONColonyWriter writer = new JSONColonyWriter(storage, name);
+		try {
+			for(Colony colony : changed) {
+				writer.write(colony);
+			}
+		}
+		finally {
+			writer.close();
+		}
+		return changed.size();
+	}
+}
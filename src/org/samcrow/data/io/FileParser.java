@@ -8,7 +8,8 @@ import java.util.Set;
  * and write a set of colonies to a file.
  * It is suggested that classes implementing this interface
  * have a constructor that takes a {@link File} as an argument
- * to specify the file that should be read from and written to.
+ * to specify the file that should be read from and written to,
+ * and one that takes a {@link org.samcrow.data.storage.Storage} and a file name.
  * @author Sam Crow
  * @param <T> The class to parse
  */
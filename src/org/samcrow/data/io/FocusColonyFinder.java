@@ -1,11 +1,14 @@
 package org.samcrow.data.io;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
 
+import org.samcrow.colonynavigator3.data.Colony;
 import org.samcrow.colonynavigator3.data.ColonyList;
+import org.samcrow.colonynavigator3.data.TagSet;
+import org.samcrow.data.storage.FileStorage;
+import org.samcrow.data.storage.Storage;
 
 /**
  * Reads colony numbers, one per line, from the a file and marks
@@ -16,44 +19,48 @@ import org.samcrow.colonynavigator3.data.ColonyList;
 public class FocusColonyFinder {
 
 	private final ColonyList colonies;
-	private final File focusFile;
-	
+	private final Storage storage;
+	private final String name;
+
 	public FocusColonyFinder(File focusFile, ColonyList colonies) {
-		this.focusFile = focusFile;
+		this(FileStorage.forFile(focusFile), focusFile.getName(), colonies);
+	}
+
+	/**
+	 * Constructor
+	 * @param storage The storage containing the focus colonies file
+	 * @param name The name of the focus colonies file
+	 * @param colonies The colonies to mark
+	 */
+	public FocusColonyFinder(Storage storage, String name, ColonyList colonies) {
+		this.storage = storage;
+		this.name = name;
 		this.colonies = colonies;
 	}
-	
+
 	/** Marks required colonies from the colony set as focused */
 	public void updateColonies() throws IOException {
-		
 
-		BufferedReader reader = new BufferedReader(new FileReader(focusFile));
+		for(Colony colony : readTags().filter(colonies)) {
+			colony.setFocusColony(true);
+		}
+
+	}
+
+	/**
+	 * Reads the colony numbers from the file. The file has the format
+	 * described in {@link TagFiles}.
+	 * @return The colony numbers
+	 * @throws IOException if the file could not be read
+	 */
+	public TagSet readTags() throws IOException {
+		InputStream in = DataStreams.openInput(storage, name);
 		try {
-			while(true) {
-				String line = reader.readLine();
-				if(line == null) {
-					break;
-				}
-				if(line.isEmpty()) {
-					continue;
-				}
-				
-				try {
-					int colonyId = Integer.valueOf(line);
-					
-					colonies.getById(colonyId).setFocusColony(true);
-				
-				} catch (NumberFormatException ex) {
-					continue;
-				}
-			}
+			return TagFiles.readTags(in);
 		}
 		finally {
-			if(reader != null) {
-				reader.close();
-			}
+			in.close();
 		}
-		
 	}
 
 }
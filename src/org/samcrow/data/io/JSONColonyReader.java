@@ -0,0 +1,257 @@
+package org.samcrow.data.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.joda.time.format.ISODateTimeFormat;
+import org.samcrow.colonynavigator3.data.Colony;
+import org.samcrow.data.io.JsonStreamReader.Token;
+import org.samcrow.data.storage.Storage;
+
+/**
+ * Reads colonies one at a time from a JSON file in the format written by
+ * {@link JSONFileParser}, without reading the whole file into memory.
+ *
+ * Entries in the colonies array that are not objects, or that have a field
+ * of the wrong type, are skipped. Text that is not valid JSON cannot be
+ * skipped, so it stops the reading with an IOException.
+ *
+ * @author Sam Crow
+ */
+public class JSONColonyReader implements Closeable {
+
+	private final JsonStreamReader reader;
+
+	/** If the reader is positioned inside the colonies array */
+	private boolean inArray = false;
+
+	/** If the end of the colonies array has been reached */
+	private boolean finished = false;
+
+	/** The number of entries that have been skipped */
+	private int skipped = 0;
+
+	/**
+	 * Open a file for reading. The file may be gzip-compressed.
+	 * @param file The file to read
+	 * @throws IOException if the file could not be opened
+	 */
+	public JSONColonyReader(File file) throws IOException {
+		this(DataStreams.openInput(file));
+	}
+
+	/**
+	 * Open a file in a storage for reading. The file may be gzip-compressed.
+	 * @param storage The storage containing the file
+	 * @param name The name of the file
+	 * @throws IOException if the file could not be opened
+	 */
+	public JSONColonyReader(Storage storage, String name) throws IOException {
+		this(DataStreams.openInput(storage, name));
+	}
+
+	/**
+	 * Constructor
+	 * @param in The stream to read from
+	 */
+	public JSONColonyReader(InputStream in) {
+		reader = new JsonStreamReader(new InputStreamReader(in, Charset.forName("UTF-8")));
+	}
+
+	/**
+	 * Read the next colony
+	 * @return The next colony, or null if there are no more colonies
+	 * @throws IOException if the file could not be read or is not in the expected format
+	 */
+	public Colony next() throws IOException {
+		if(finished) {
+			return null;
+		}
+		if(!inArray) {
+			if(!findColonies()) {
+				finished = true;
+				return null;
+			}
+			inArray = true;
+		}
+		while(reader.hasNext()) {
+			final Colony colony = readColony();
+			if(colony != null) {
+				return colony;
+			}
+			skipped++;
+		}
+		reader.endArray();
+		finished = true;
+		return null;
+	}
+
+	/**
+	 * @return The number of entries in the colonies array that were skipped
+	 * because they were not valid colonies
+	 */
+	public int getSkippedCount() {
+		return skipped;
+	}
+
+	/**
+	 * Move into the colonies array, skipping any other values in the root object
+	 * @return true if the colonies array was found
+	 * @throws IOException
+	 */
+	private boolean findColonies() throws IOException {
+		reader.beginObject();
+		while(reader.hasNext()) {
+			if(reader.nextName().equals("colonies")) {
+				reader.beginArray();
+				return true;
+			}
+			reader.skipValue();
+		}
+		return false;
+	}
+
+	/**
+	 * Read one entry of the colonies array
+	 * @return The colony, or null if the entry was skipped
+	 * @throws IOException if the content is not valid JSON
+	 */
+	private Colony readColony() throws IOException {
+		if(reader.peek() != Token.BEGIN_OBJECT) {
+			System.err.println("Skipping a colony entry that is not an object");
+			reader.skipValue();
+			return null;
+		}
+		boolean valid = true;
+		int id = 0;
+		double x = 0;
+		double y = 0;
+		boolean active = false;
+		boolean visited = false;
+		Date modified = null;
+		Map<String, Object> attributes = null;
+
+		reader.beginObject();
+		while(reader.hasNext()) {
+			final String name = reader.nextName();
+			if(reader.peek() == Token.NULL) {
+				reader.nextNull();
+				continue;
+			}
+			try {
+				if(name.equals("id")) {
+					id = reader.nextInt();
+				}
+				else if(name.equals("x")) {
+					x = reader.nextDouble();
+				}
+				else if(name.equals("y")) {
+					y = reader.nextDouble();
+				}
+				else if(name.equals("active")) {
+					active = reader.nextBoolean();
+				}
+				else if(name.equals("visited")) {
+					visited = reader.nextBoolean();
+				}
+				else if(name.equals("modified")) {
+					try {
+						modified = ISODateTimeFormat.dateTimeParser().parseDateTime(reader.nextString()).toDate();
+					} catch (IllegalArgumentException e) {
+						// Parse error
+						modified = null;
+					}
+				}
+				else if(name.equals("attributes") && reader.peek() == Token.BEGIN_OBJECT) {
+					attributes = readObject(reader);
+				}
+				else {
+					reader.skipValue();
+				}
+			} catch (NumberFormatException e) {
+				// The value has not been consumed
+				reader.skipValue();
+				valid = false;
+			} catch (IllegalStateException e) {
+				// A value of the wrong type, which has not been consumed
+				reader.skipValue();
+				valid = false;
+			}
+		}
+		reader.endObject();
+
+		if(!valid) {
+			System.err.println("Skipping colony " + id + ", which has a field of the wrong type");
+			return null;
+		}
+		return new Colony(id, x, y, active, visited, modified, attributes);
+	}
+
+	/**
+	 * Parse colony attributes from a JSON object, in the form used in colony files
+	 * @param json The JSON text
+	 * @return The attributes
+	 * @throws IOException if the text is not a JSON object
+	 */
+	public static Map<String, Object> parseAttributes(String json) throws IOException {
+		final JsonStreamReader reader = new JsonStreamReader(new StringReader(json));
+		try {
+			return readObject(reader);
+		} catch (IllegalStateException e) {
+			throw new IOException("Attributes are not a JSON object: " + json);
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	private static Map<String, Object> readObject(JsonStreamReader reader) throws IOException {
+		final Map<String, Object> map = new HashMap<String, Object>();
+		reader.beginObject();
+		while(reader.hasNext()) {
+			final String name = reader.nextName();
+			map.put(name, readValue(reader));
+		}
+		reader.endObject();
+		return map;
+	}
+
+	private static Object readValue(JsonStreamReader reader) throws IOException {
+		switch(reader.peek()) {
+		case BEGIN_OBJECT:
+			return readObject(reader);
+		case BEGIN_ARRAY:
+			final List<Object> list = new ArrayList<Object>();
+			reader.beginArray();
+			while(reader.hasNext()) {
+				list.add(readValue(reader));
+			}
+			reader.endArray();
+			return list;
+		case BOOLEAN:
+			return reader.nextBoolean();
+		case NUMBER:
+			return reader.nextDouble();
+		case NULL:
+			reader.nextNull();
+			return null;
+		default:
+			return reader.nextString();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
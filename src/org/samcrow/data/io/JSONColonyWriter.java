@@ -0,0 +1,186 @@
+package org.samcrow.data.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.joda.time.format.ISODateTimeFormat;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.samcrow.colonynavigator3.data.Colony;
+import org.samcrow.data.storage.Storage;
+
+/**
+ * Writes colonies one at a time to a JSON file in the format read by
+ * {@link JSONFileParser}, without building the whole document in memory.
+ *
+ * @author Sam Crow
+ */
+public class JSONColonyWriter implements Closeable {
+
+	private final JsonStreamWriter writer;
+
+	/**
+	 * Open a file for writing. The file is compressed if its name ends with
+	 * {@link DataStreams#GZIP_EXTENSION}.
+	 * @param file The file to write
+	 * @throws IOException if the file could not be opened
+	 */
+	public JSONColonyWriter(File file) throws IOException {
+		this(DataStreams.openOutput(file));
+	}
+
+	/**
+	 * Open a file in a storage for writing. The file is compressed if its name
+	 * ends with {@link DataStreams#GZIP_EXTENSION}.
+	 * @param storage The storage containing the file
+	 * @param name The name of the file
+	 * @throws IOException if the file could not be opened
+	 */
+	public JSONColonyWriter(Storage storage, String name) throws IOException {
+		this(DataStreams.openOutput(storage, name));
+	}
+
+	/**
+	 * Constructor
+	 * @param out The stream to write to
+	 * @throws IOException if the start of the document could not be written
+	 */
+	public JSONColonyWriter(OutputStream out) throws IOException {
+		this(out, null);
+	}
+
+	/**
+	 * Constructor
+	 * @param out The stream to write to
+	 * @param comment A comment for humans to put at the start of the document, or null
+	 * @throws IOException if the start of the document could not be written
+	 */
+	public JSONColonyWriter(OutputStream out, String comment) throws IOException {
+		writer = new JsonStreamWriter(new OutputStreamWriter(out, "UTF-8"));
+		writer.beginObject();
+		if(comment != null) {
+			writer.name("comment").value(comment);
+		}
+		writer.name("colonies");
+		writer.beginArray();
+	}
+
+	/**
+	 * Write a colony
+	 * @param colony The colony to write
+	 * @throws IOException
+	 */
+	public void write(Colony colony) throws IOException {
+		writer.beginObject();
+		writer.name("id").value(colony.getId());
+		writer.name("x").value(colony.getX());
+		writer.name("y").value(colony.getY());
+		writer.name("active").value(colony.isActive());
+		writer.name("visited").value(colony.isVisited());
+		writer.name("modified");
+		if(colony.getModified() == null) {
+			writer.nullValue();
+		}
+		else {
+			writer.value(ISODateTimeFormat.dateTime().print(colony.getModified().getTime()));
+		}
+		final Map<String, Object> attributes = colony.getAttributes();
+		if(!attributes.isEmpty()) {
+			writer.name("attributes");
+			writeValue(writer, attributes);
+		}
+		writer.endObject();
+	}
+
+	/**
+	 * Finish the document and close the stream
+	 */
+	@Override
+	public void close() throws IOException {
+		writer.endArray();
+		writer.endObject();
+		writer.close();
+	}
+
+	/**
+	 * Convert colony attributes to a JSON object, in the form used in colony files
+	 * @param attributes The attributes
+	 * @return The JSON text
+	 * @throws IOException if an attribute could not be converted
+	 */
+	public static String toJSON(Map<String, Object> attributes) throws IOException {
+		final StringWriter text = new StringWriter();
+		final JsonStreamWriter writer = new JsonStreamWriter(text);
+		writeValue(writer, attributes);
+		writer.close();
+		return text.toString();
+	}
+
+	@SuppressWarnings("rawtypes")
+	private static void writeValue(JsonStreamWriter writer, Object value) throws IOException {
+		if(value == null || JSONObject.NULL.equals(value)) {
+			writer.nullValue();
+		}
+		else if(value instanceof Boolean) {
+			writer.value((Boolean) value);
+		}
+		else if(value instanceof Number) {
+			writer.value((Number) value);
+		}
+		else if(value instanceof Map) {
+			writer.beginObject();
+			for(Object entryObject : ((Map) value).entrySet()) {
+				final Map.Entry entry = (Map.Entry) entryObject;
+				writer.name(String.valueOf(entry.getKey()));
+				writeValue(writer, entry.getValue());
+			}
+			writer.endObject();
+		}
+		else if(value instanceof List) {
+			writer.beginArray();
+			for(Object item : (List) value) {
+				writeValue(writer, item);
+			}
+			writer.endArray();
+		}
+		else if(value instanceof JSONObject) {
+			// Attributes read by Colony.fromJSON() may contain org.json values
+			final JSONObject object = (JSONObject) value;
+			writer.beginObject();
+			try {
+				final Iterator keyIterator = object.keys();
+				while(keyIterator.hasNext()) {
+					final String key = (String) keyIterator.next();
+					writer.name(key);
+					writeValue(writer, object.get(key));
+				}
+			} catch (JSONException e) {
+				throw new IOException(e.getMessage());
+			}
+			writer.endObject();
+		}
+		else if(value instanceof JSONArray) {
+			final JSONArray array = (JSONArray) value;
+			writer.beginArray();
+			try {
+				for(int i = 0, max = array.length(); i < max; i++) {
+					writeValue(writer, array.get(i));
+				}
+			} catch (JSONException e) {
+				throw new IOException(e.getMessage());
+			}
+			writer.endArray();
+		}
+		else {
+			writer.value(value.toString());
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package org.samcrow.data.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.samcrow.colonynavigator3.data.Colony;
+
+/**
+ * Reads colonies from JSON in the format of colonies.json, one colony at a time,
+ * using {@link JSONColonyReader}
+ *
+ * @author Sam Crow
+ */
+public class JSONStreamingParser implements StreamingParser {
+
+	@Override
+	public String getName() {
+		return "JSON";
+	}
+
+	/**
+	 * Accepts content that starts with an object, after any whitespace
+	 */
+	@Override
+	public boolean accepts(byte[] head, int length) {
+		final int first = DataStreams.firstNonWhitespace(head, length);
+		return first != -1 && head[first] == '{';
+	}
+
+	@Override
+	public void parse(InputStream in, ColonySink sink) throws IOException {
+		final JSONColonyReader reader = new JSONColonyReader(in);
+		while(true) {
+			final Colony colony = reader.next();
+			if(colony == null) {
+				break;
+			}
+			sink.accept(colony);
+		}
+	}
+}
@@ -0,0 +1,547 @@
+package org.samcrow.data.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads a JSON document one token at a time.
+ *
+ * This has the same methods and behavior as the parts of
+ * android.util.JsonReader that this application uses, but only depends on
+ * the Java standard library, so the code that reads colony files also runs
+ * on a desktop JVM.
+ *
+ * A method that finds a value of the wrong type throws an
+ * IllegalStateException, and {@link #nextInt()} and {@link #nextDouble()}
+ * throw a NumberFormatException for a value that is not a suitable number.
+ * In both cases the value is not consumed, so it can be read another way or
+ * skipped with {@link #skipValue()}. Text that is not valid JSON causes an
+ * IOException.
+ *
+ * @author Sam Crow
+ */
+public class JsonStreamReader implements Closeable {
+
+	/**
+	 * The kinds of tokens in a JSON document
+	 */
+	public enum Token {
+		BEGIN_ARRAY,
+		END_ARRAY,
+		BEGIN_OBJECT,
+		END_OBJECT,
+		NAME,
+		STRING,
+		NUMBER,
+		BOOLEAN,
+		NULL,
+		END_DOCUMENT,
+	}
+
+	// The states of each level of nesting
+	private static final int EMPTY_DOCUMENT = 0;
+	private static final int NONEMPTY_DOCUMENT = 1;
+	private static final int EMPTY_ARRAY = 2;
+	private static final int NONEMPTY_ARRAY = 3;
+	private static final int EMPTY_OBJECT = 4;
+	/** In an object, after a name and before its value */
+	private static final int DANGLING_NAME = 5;
+	private static final int NONEMPTY_OBJECT = 6;
+
+	private final Reader in;
+
+	private final char[] buffer = new char[8192];
+	private int position = 0;
+	private int limit = 0;
+
+	/** The line number of the next character, for error messages */
+	private int line = 1;
+
+	private int[] stack = new int[16];
+	private int stackSize = 0;
+
+	/** The next token, or null if it has not been read */
+	private Token peeked = null;
+
+	/** The text of the next token if it is a name, string, number or boolean */
+	private String peekedValue = null;
+
+	/**
+	 * Constructor
+	 * @param in The reader to read from
+	 */
+	public JsonStreamReader(Reader in) {
+		this.in = in;
+		push(EMPTY_DOCUMENT);
+	}
+
+	/**
+	 * @return The type of the next token, without consuming it
+	 * @throws IOException if the next token could not be read or is not valid JSON
+	 */
+	public Token peek() throws IOException {
+		if(peeked != null) {
+			return peeked;
+		}
+		final int state = stack[stackSize - 1];
+		int c;
+		switch(state) {
+		case EMPTY_ARRAY:
+		case NONEMPTY_ARRAY:
+			stack[stackSize - 1] = NONEMPTY_ARRAY;
+			c = nextNonWhitespace();
+			if(c == ']') {
+				return setPeeked(Token.END_ARRAY, null);
+			}
+			if(state == NONEMPTY_ARRAY) {
+				if(c != ',') {
+					throw syntaxError("Expected ',' or ']'");
+				}
+				c = nextNonWhitespace();
+			}
+			return readValue(c);
+		case EMPTY_OBJECT:
+		case NONEMPTY_OBJECT:
+			stack[stackSize - 1] = DANGLING_NAME;
+			c = nextNonWhitespace();
+			if(c == '}') {
+				return setPeeked(Token.END_OBJECT, null);
+			}
+			if(state == NONEMPTY_OBJECT) {
+				if(c != ',') {
+					throw syntaxError("Expected ',' or '}'");
+				}
+				c = nextNonWhitespace();
+			}
+			if(c != '"') {
+				throw syntaxError("Expected a name");
+			}
+			return setPeeked(Token.NAME, readString());
+		case DANGLING_NAME:
+			stack[stackSize - 1] = NONEMPTY_OBJECT;
+			if(nextNonWhitespace() != ':') {
+				throw syntaxError("Expected ':'");
+			}
+			return readValue(nextNonWhitespace());
+		case EMPTY_DOCUMENT:
+			stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+			return readValue(nextNonWhitespace());
+		default:
+			if(nextNonWhitespace() != -1) {
+				throw syntaxError("Expected the end of the document");
+			}
+			return setPeeked(Token.END_DOCUMENT, null);
+		}
+	}
+
+	/**
+	 * @return true if the current array or object has another element
+	 * @throws IOException if the next token could not be read or is not valid JSON
+	 */
+	public boolean hasNext() throws IOException {
+		final Token token = peek();
+		return token != Token.END_ARRAY && token != Token.END_OBJECT && token != Token.END_DOCUMENT;
+	}
+
+	/**
+	 * Consume the start of an array
+	 * @throws IOException if the next token could not be read or is not valid JSON
+	 * @throws IllegalStateException if the next token is not the start of an array
+	 */
+	public void beginArray() throws IOException {
+		expect(Token.BEGIN_ARRAY);
+		peeked = null;
+		push(EMPTY_ARRAY);
+	}
+
+	/**
+	 * Consume the end of the current array
+	 * @throws IOException if the next token could not be read or is not valid JSON
+	 * @throws IllegalStateException if the next token is not the end of an array
+	 */
+	public void endArray() throws IOException {
+		expect(Token.END_ARRAY);
+		peeked = null;
+		stackSize--;
+	}
+
+	/**
+	 * Consume the start of an object
+	 * @throws IOException if the next token could not be read or is not valid JSON
+	 * @throws IllegalStateException if the next token is not the start of an object
+	 */
+	public void beginObject() throws IOException {
+		expect(Token.BEGIN_OBJECT);
+		peeked = null;
+		push(EMPTY_OBJECT);
+	}
+
+	/**
+	 * Consume the end of the current object
+	 * @throws IOException if the next token could not be read or is not valid JSON
+	 * @throws IllegalStateException if the next token is not the end of an object
+	 */
+	public void endObject() throws IOException {
+		expect(Token.END_OBJECT);
+		peeked = null;
+		stackSize--;
+	}
+
+	/**
+	 * @return The next property name
+	 * @throws IOException if the next token could not be read or is not valid JSON
+	 * @throws IllegalStateException if the next token is not a name
+	 */
+	public String nextName() throws IOException {
+		expect(Token.NAME);
+		return consumeValue();
+	}
+
+	/**
+	 * @return The next string, or the text of the next number
+	 * @throws IOException if the next token could not be read or is not valid JSON
+	 * @throws IllegalStateException if the next token is not a string or number
+	 */
+	public String nextString() throws IOException {
+		final Token token = peek();
+		if(token != Token.STRING && token != Token.NUMBER) {
+			throw new IllegalStateException("Expected a string but was " + token + " on line " + line);
+		}
+		return consumeValue();
+	}
+
+	/**
+	 * @return The next boolean
+	 * @throws IOException if the next token could not be read or is not valid JSON
+	 * @throws IllegalStateException if the next token is not a boolean
+	 */
+	public boolean nextBoolean() throws IOException {
+		expect(Token.BOOLEAN);
+		return Boolean.parseBoolean(consumeValue());
+	}
+
+	/**
+	 * Consume the next null
+	 * @throws IOException if the next token could not be read or is not valid JSON
+	 * @throws IllegalStateException if the next token is not null
+	 */
+	public void nextNull() throws IOException {
+		expect(Token.NULL);
+		consumeValue();
+	}
+
+	/**
+	 * @return The next number, or string containing a number, as a double
+	 * @throws IOException if the next token could not be read or is not valid JSON
+	 * @throws IllegalStateException if the next token is not a number or string
+	 * @throws NumberFormatException if the value is not a number
+	 */
+	public double nextDouble() throws IOException {
+		final double value = Double.parseDouble(peekNumberText());
+		consumeValue();
+		return value;
+	}
+
+	/**
+	 * @return The next number, or string containing a number, as an int
+	 * @throws IOException if the next token could not be read or is not valid JSON
+	 * @throws IllegalStateException if the next token is not a number or string
+	 * @throws NumberFormatException if the value is not a number or cannot be
+	 * represented exactly as an int
+	 */
+	public int nextInt() throws IOException {
+		final String text = peekNumberText();
+		int value;
+		try {
+			value = Integer.parseInt(text);
+		} catch (NumberFormatException e) {
+			// Accept a double with no fractional part, such as 1.0 or 1e3
+			final double asDouble = Double.parseDouble(text);
+			value = (int) asDouble;
+			if(value != asDouble) {
+				throw new NumberFormatException("Expected an int but was " + text + " on line " + line);
+			}
+		}
+		consumeValue();
+		return value;
+	}
+
+	/**
+	 * Skip the next value. If it is an array or object, all of its contents are skipped.
+	 * @throws IOException if the value could not be read or is not valid JSON
+	 */
+	public void skipValue() throws IOException {
+		int depth = 0;
+		do {
+			switch(peek()) {
+			case BEGIN_ARRAY:
+				beginArray();
+				depth++;
+				break;
+			case BEGIN_OBJECT:
+				beginObject();
+				depth++;
+				break;
+			case END_ARRAY:
+				endArray();
+				depth--;
+				break;
+			case END_OBJECT:
+				endObject();
+				depth--;
+				break;
+			case END_DOCUMENT:
+				throw new IllegalStateException("No value to skip on line " + line);
+			default:
+				consumeValue();
+				break;
+			}
+		} while(depth > 0);
+	}
+
+	@Override
+	public void close() throws IOException {
+		peeked = null;
+		stackSize = 0;
+		in.close();
+	}
+
+	private String peekNumberText() throws IOException {
+		final Token token = peek();
+		if(token != Token.NUMBER && token != Token.STRING) {
+			throw new IllegalStateException("Expected a number but was " + token + " on line " + line);
+		}
+		return peekedValue;
+	}
+
+	private void expect(Token expected) throws IOException {
+		final Token token = peek();
+		if(token != expected) {
+			throw new IllegalStateException("Expected " + expected + " but was " + token + " on line " + line);
+		}
+	}
+
+	private String consumeValue() {
+		final String value = peekedValue;
+		peeked = null;
+		peekedValue = null;
+		return value;
+	}
+
+	private Token setPeeked(Token token, String value) {
+		peeked = token;
+		peekedValue = value;
+		return token;
+	}
+
+	private void push(int state) {
+		if(stackSize == stack.length) {
+			final int[] newStack = new int[stack.length * 2];
+			System.arraycopy(stack, 0, newStack, 0, stackSize);
+			stack = newStack;
+		}
+		stack[stackSize++] = state;
+	}
+
+	/**
+	 * Read a value, starting with its first character
+	 * @param c The first character, or -1 at the end of the input
+	 * @return The type of the value
+	 */
+	private Token readValue(int c) throws IOException {
+		switch(c) {
+		case '{':
+			return setPeeked(Token.BEGIN_OBJECT, null);
+		case '[':
+			return setPeeked(Token.BEGIN_ARRAY, null);
+		case '"':
+			return setPeeked(Token.STRING, readString());
+		case -1:
+			throw syntaxError("Unexpected end of the document");
+		default:
+			final String literal = readLiteral((char) c);
+			if(literal.equals("true") || literal.equals("false")) {
+				return setPeeked(Token.BOOLEAN, literal);
+			}
+			if(literal.equals("null")) {
+				return setPeeked(Token.NULL, null);
+			}
+			if(isNumber(literal)) {
+				return setPeeked(Token.NUMBER, literal);
+			}
+			throw syntaxError("Unexpected value " + literal);
+		}
+	}
+
+	/**
+	 * Read the rest of a string, after its opening quotation mark
+	 * @return The unescaped string
+	 */
+	private String readString() throws IOException {
+		final StringBuilder builder = new StringBuilder();
+		while(true) {
+			final int c = read();
+			if(c == -1) {
+				throw syntaxError("Unterminated string");
+			}
+			if(c == '"') {
+				return builder.toString();
+			}
+			if(c != '\\') {
+				if(c == '\n') {
+					line++;
+				}
+				builder.append((char) c);
+				continue;
+			}
+			final int escaped = read();
+			switch(escaped) {
+			case '"':
+			case '\\':
+			case '/':
+				builder.append((char) escaped);
+				break;
+			case 'b':
+				builder.append('\b');
+				break;
+			case 'f':
+				builder.append('\f');
+				break;
+			case 'n':
+				builder.append('\n');
+				break;
+			case 'r':
+				builder.append('\r');
+				break;
+			case 't':
+				builder.append('\t');
+				break;
+			case 'u':
+				int code = 0;
+				for(int i = 0; i < 4; i++) {
+					final int digit = Character.digit(read(), 16);
+					if(digit == -1) {
+						throw syntaxError("Invalid \\u escape");
+					}
+					code = (code << 4) | digit;
+				}
+				builder.append((char) code);
+				break;
+			default:
+				throw syntaxError("Invalid escape sequence");
+			}
+		}
+	}
+
+	/**
+	 * Read a number or a literal such as true
+	 * @param first The first character
+	 * @return The text of the value
+	 */
+	private String readLiteral(char first) throws IOException {
+		final StringBuilder builder = new StringBuilder();
+		builder.append(first);
+		while(true) {
+			if(position == limit && !fill()) {
+				break;
+			}
+			final char c = buffer[position];
+			if(!Character.isLetterOrDigit(c) && c != '-' && c != '+' && c != '.') {
+				break;
+			}
+			builder.append(c);
+			position++;
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * @return If the text is a number in JSON syntax
+	 */
+	private static boolean isNumber(String text) {
+		int i = 0;
+		final int length = text.length();
+		if(i < length && text.charAt(i) == '-') {
+			i++;
+		}
+		final int integerStart = i;
+		while(i < length && isDigit(text.charAt(i))) {
+			i++;
+		}
+		if(i == integerStart || (text.charAt(integerStart) == '0' && i - integerStart > 1)) {
+			return false;
+		}
+		if(i < length && text.charAt(i) == '.') {
+			i++;
+			final int fractionStart = i;
+			while(i < length && isDigit(text.charAt(i))) {
+				i++;
+			}
+			if(i == fractionStart) {
+				return false;
+			}
+		}
+		if(i < length && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+			i++;
+			if(i < length && (text.charAt(i) == '+' || text.charAt(i) == '-')) {
+				i++;
+			}
+			final int exponentStart = i;
+			while(i < length && isDigit(text.charAt(i))) {
+				i++;
+			}
+			if(i == exponentStart) {
+				return false;
+			}
+		}
+		return i == length;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	/**
+	 * @return The next character that is not whitespace, or -1 at the end of the input
+	 */
+	private int nextNonWhitespace() throws IOException {
+		while(true) {
+			final int c = read();
+			if(c == '\n') {
+				line++;
+			}
+			else if(c != ' ' && c != '\t' && c != '\r') {
+				return c;
+			}
+		}
+	}
+
+	/**
+	 * @return The next character, or -1 at the end of the input
+	 */
+	private int read() throws IOException {
+		if(position == limit && !fill()) {
+			return -1;
+		}
+		return buffer[position++];
+	}
+
+	/**
+	 * Read more characters into the buffer
+	 * @return false if the end of the input has been reached
+	 */
+	private boolean fill() throws IOException {
+		final int count = in.read(buffer, 0, buffer.length);
+		if(count <= 0) {
+			return false;
+		}
+		position = 0;
+		limit = count;
+		return true;
+	}
+
+	private IOException syntaxError(String message) {
+		return new IOException(message + " on line " + line);
+	}
+}
@@ -0,0 +1,290 @@
+package org.samcrow.data.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes a JSON document one token at a time, without indentation.
+ *
+ * This has the same methods and output as the parts of
+ * android.util.JsonWriter that this application uses, but only depends on
+ * the Java standard library, so the code that writes colony files also
+ * runs on a desktop JVM.
+ *
+ * @author Sam Crow
+ */
+public class JsonStreamWriter implements Closeable {
+
+	// The states of each level of nesting
+	private static final int EMPTY_DOCUMENT = 0;
+	private static final int NONEMPTY_DOCUMENT = 1;
+	private static final int EMPTY_ARRAY = 2;
+	private static final int NONEMPTY_ARRAY = 3;
+	private static final int EMPTY_OBJECT = 4;
+	/** In an object, after a name and before its value */
+	private static final int DANGLING_NAME = 5;
+	private static final int NONEMPTY_OBJECT = 6;
+
+	private final Writer out;
+
+	private int[] stack = new int[16];
+	private int stackSize = 0;
+
+	/**
+	 * Constructor
+	 * @param out The writer to write to
+	 */
+	public JsonStreamWriter(Writer out) {
+		this.out = out;
+		push(EMPTY_DOCUMENT);
+	}
+
+	/**
+	 * Start an array
+	 * @return this
+	 * @throws IOException if the output could not be written
+	 */
+	public JsonStreamWriter beginArray() throws IOException {
+		beforeValue();
+		push(EMPTY_ARRAY);
+		out.write('[');
+		return this;
+	}
+
+	/**
+	 * End the current array
+	 * @return this
+	 * @throws IOException if the output could not be written
+	 */
+	public JsonStreamWriter endArray() throws IOException {
+		return close(EMPTY_ARRAY, NONEMPTY_ARRAY, ']');
+	}
+
+	/**
+	 * Start an object
+	 * @return this
+	 * @throws IOException if the output could not be written
+	 */
+	public JsonStreamWriter beginObject() throws IOException {
+		beforeValue();
+		push(EMPTY_OBJECT);
+		out.write('{');
+		return this;
+	}
+
+	/**
+	 * End the current object
+	 * @return this
+	 * @throws IOException if the output could not be written
+	 */
+	public JsonStreamWriter endObject() throws IOException {
+		return close(EMPTY_OBJECT, NONEMPTY_OBJECT, '}');
+	}
+
+	/**
+	 * Write a property name. It must be followed by a value.
+	 * @param name The name
+	 * @return this
+	 * @throws IOException if the output could not be written
+	 */
+	public JsonStreamWriter name(String name) throws IOException {
+		if(name == null) {
+			throw new NullPointerException("name == null");
+		}
+		final int state = stack[stackSize - 1];
+		if(state == NONEMPTY_OBJECT) {
+			out.write(',');
+		}
+		else if(state != EMPTY_OBJECT) {
+			throw new IllegalStateException("A name must be inside an object and followed by a value");
+		}
+		stack[stackSize - 1] = DANGLING_NAME;
+		writeString(name);
+		out.write(':');
+		return this;
+	}
+
+	/**
+	 * Write a string value
+	 * @param value The value, or null to write null
+	 * @return this
+	 * @throws IOException if the output could not be written
+	 */
+	public JsonStreamWriter value(String value) throws IOException {
+		if(value == null) {
+			return nullValue();
+		}
+		beforeValue();
+		writeString(value);
+		return this;
+	}
+
+	/**
+	 * Write a boolean value
+	 * @param value The value
+	 * @return this
+	 * @throws IOException if the output could not be written
+	 */
+	public JsonStreamWriter value(boolean value) throws IOException {
+		beforeValue();
+		out.write(value ? "true" : "false");
+		return this;
+	}
+
+	/**
+	 * Write a number value
+	 * @param value The value
+	 * @return this
+	 * @throws IOException if the output could not be written
+	 * @throws IllegalArgumentException if the value is NaN or infinite
+	 */
+	public JsonStreamWriter value(double value) throws IOException {
+		if(Double.isNaN(value) || Double.isInfinite(value)) {
+			throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+		}
+		beforeValue();
+		out.write(Double.toString(value));
+		return this;
+	}
+
+	/**
+	 * Write a number value
+	 * @param value The value
+	 * @return this
+	 * @throws IOException if the output could not be written
+	 */
+	public JsonStreamWriter value(long value) throws IOException {
+		beforeValue();
+		out.write(Long.toString(value));
+		return this;
+	}
+
+	/**
+	 * Write a number value
+	 * @param value The value, or null to write null
+	 * @return this
+	 * @throws IOException if the output could not be written
+	 * @throws IllegalArgumentException if the value is NaN or infinite
+	 */
+	public JsonStreamWriter value(Number value) throws IOException {
+		if(value == null) {
+			return nullValue();
+		}
+		final String text = value.toString();
+		if(text.equals("NaN") || text.equals("Infinity") || text.equals("-Infinity")) {
+			throw new IllegalArgumentException("Numeric values must be finite, but was " + text);
+		}
+		beforeValue();
+		out.write(text);
+		return this;
+	}
+
+	/**
+	 * Write null
+	 * @return this
+	 * @throws IOException if the output could not be written
+	 */
+	public JsonStreamWriter nullValue() throws IOException {
+		beforeValue();
+		out.write("null");
+		return this;
+	}
+
+	/**
+	 * Flush and close the underlying writer
+	 * @throws IOException if the document is not complete or the writer could not be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		out.close();
+		if(stackSize > 1 || stack[0] != NONEMPTY_DOCUMENT) {
+			throw new IOException("Incomplete document");
+		}
+	}
+
+	private JsonStreamWriter close(int empty, int nonempty, char bracket) throws IOException {
+		final int state = stack[stackSize - 1];
+		if(state != empty && state != nonempty) {
+			throw new IllegalStateException("Nesting problem");
+		}
+		stackSize--;
+		out.write(bracket);
+		return this;
+	}
+
+	/**
+	 * Update the state before a value, writing a comma if needed
+	 */
+	private void beforeValue() throws IOException {
+		switch(stack[stackSize - 1]) {
+		case EMPTY_DOCUMENT:
+			stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+			break;
+		case EMPTY_ARRAY:
+			stack[stackSize - 1] = NONEMPTY_ARRAY;
+			break;
+		case NONEMPTY_ARRAY:
+			out.write(',');
+			break;
+		case DANGLING_NAME:
+			stack[stackSize - 1] = NONEMPTY_OBJECT;
+			break;
+		case NONEMPTY_DOCUMENT:
+			throw new IllegalStateException("JSON must have only one top-level value");
+		default:
+			throw new IllegalStateException("A value in an object must have a name");
+		}
+	}
+
+	private void push(int state) {
+		if(stackSize == stack.length) {
+			final int[] newStack = new int[stack.length * 2];
+			System.arraycopy(stack, 0, newStack, 0, stackSize);
+			stack = newStack;
+		}
+		stack[stackSize++] = state;
+	}
+
+	private void writeString(String value) throws IOException {
+		out.write('"');
+		for(int i = 0, length = value.length(); i < length; i++) {
+			final char c = value.charAt(i);
+			switch(c) {
+			case '"':
+			case '\\':
+				out.write('\\');
+				out.write(c);
+				break;
+			case '\t':
+				out.write("\\t");
+				break;
+			case '\b':
+				out.write("\\b");
+				break;
+			case '\n':
+				out.write("\\n");
+				break;
+			case '\r':
+				out.write("\\r");
+				break;
+			case '\f':
+				out.write("\\f");
+				break;
+			case '\u2028':
+			case '\u2029':
+				out.write(String.format("\\u%04x", (int) c));
+				break;
+			default:
+				if(c < 0x20) {
+					out.write(String.format("\\u%04x", (int) c));
+				}
+				else {
+					out.write(c);
+				}
+				break;
+			}
+		}
+		out.write('"');
+	}
+}
@@ -0,0 +1,129 @@
+package org.samcrow.data.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import org.samcrow.colonynavigator3.data.ColonyList;
+import org.samcrow.data.storage.Storage;
+
+/**
+ * Parses several colony files at the same time.
+ *
+ * Each file is parsed by {@link StreamingParsers}, so the files may be in
+ * different formats. As with {@link FileParser#parse()}, a file that cannot
+ * be read is reported and treated as empty.
+ *
+ * @author Sam Crow
+ */
+public class ParallelIngest {
+
+	/**
+	 * An executor that runs each task on a new thread
+	 */
+	private static final Executor THREAD_PER_TASK = new Executor() {
+		@Override
+		public void execute(Runnable task) {
+			new Thread(task, "ParallelIngest").start();
+		}
+	};
+
+	private ParallelIngest() {}
+
+	/**
+	 * Parse files into separate lists, each file on its own thread
+	 * @param storage The storage containing the files
+	 * @param names The names of the files
+	 * @return A list of colonies for each file, in the same order as the names
+	 */
+	public static List<ColonyList> parseAll(Storage storage, List<String> names) {
+		return parseAll(storage, names, THREAD_PER_TASK);
+	}
+
+	/**
+	 * Parse files into separate lists
+	 * @param storage The storage containing the files
+	 * @param names The names of the files
+	 * @param executor The executor to parse the files on
+	 * @return A list of colonies for each file, in the same order as the names.
+	 * Each list has one colony for each ID.
+	 */
+	public static List<ColonyList> parseAll(Storage storage, List<String> names, Executor executor) {
+		final List<ColonyCollector> collectors = new ArrayList<ColonyCollector>(names.size());
+		final List<FutureTask<Void>> tasks = new ArrayList<FutureTask<Void>>(names.size());
+		for(String name : names) {
+			final ColonyCollector collector = new ColonyCollector();
+			collectors.add(collector);
+			tasks.add(start(storage, name, collector, executor));
+		}
+		await(tasks, names);
+
+		final List<ColonyList> lists = new ArrayList<ColonyList>(collectors.size());
+		for(ColonyCollector collector : collectors) {
+			lists.add(collector.getColonies());
+		}
+		return lists;
+	}
+
+	/**
+	 * Parse files into one list, each file on its own thread
+	 * @param storage The storage containing the files
+	 * @param names The names of the files
+	 * @return The colonies from all the files, with one colony for each ID.
+	 * If several files contain a colony, the copy with the latest modified time is used.
+	 */
+	public static ColonyList ingest(Storage storage, List<String> names) {
+		return ingest(storage, names, THREAD_PER_TASK);
+	}
+
+	/**
+	 * Parse files into one list
+	 * @param storage The storage containing the files
+	 * @param names The names of the files
+	 * @param executor The executor to parse the files on
+	 * @return The colonies from all the files, with one colony for each ID.
+	 * If several files contain a colony, the copy with the latest modified time is used.
+	 */
+	public static ColonyList ingest(Storage storage, List<String> names, Executor executor) {
+		final ColonyCollector collector = new ColonyCollector();
+		final List<FutureTask<Void>> tasks = new ArrayList<FutureTask<Void>>(names.size());
+		for(String name : names) {
+			tasks.add(start(storage, name, collector, executor));
+		}
+		await(tasks, names);
+		return collector.getColonies();
+	}
+
+	private static FutureTask<Void> start(final Storage storage, final String name, final ColonySink sink, Executor executor) {
+		final FutureTask<Void> task = new FutureTask<Void>(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					StreamingParsers.parse(storage, name, sink);
+				} catch (IOException e) {
+					System.err.println("Could not read " + storage.describe(name));
+					e.printStackTrace();
+				}
+			}
+		}, null);
+		executor.execute(task);
+		return task;
+	}
+
+	private static void await(List<FutureTask<Void>> tasks, List<String> names) {
+		for(int i = 0; i < tasks.size(); i++) {
+			try {
+				tasks.get(i).get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (ExecutionException e) {
+				System.err.println("Failed to parse " + names.get(i));
+				e.getCause().printStackTrace();
+			}
+		}
+	}
+}
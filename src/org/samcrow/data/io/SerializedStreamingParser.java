@@ -0,0 +1,108 @@
+package org.samcrow.data.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Set;
+
+import org.samcrow.colonynavigator3.data.Colony;
+
+/**
+ * Reads colonies written with Java serialization, either one colony per
+ * object or as collections of colonies.
+ *
+ * Files on the memory card can come from anywhere, so only the classes that
+ * a colony or a collection of colonies can contain are deserialized. A stream
+ * that names any other class is rejected before that class is loaded.
+ *
+ * @author Sam Crow
+ */
+public class SerializedStreamingParser implements StreamingParser {
+
+	/** The first byte of a Java serialization stream */
+	private static final int MAGIC_0 = 0xac;
+	/** The second byte of a Java serialization stream */
+	private static final int MAGIC_1 = 0xed;
+
+	/** The names of the classes that may be deserialized */
+	private static final Set<String> ALLOWED_CLASSES = new HashSet<String>(Arrays.asList(
+			Colony.class.getName(),
+			// Collections of colonies, and attribute values
+			ArrayList.class.getName(), LinkedList.class.getName(),
+			HashSet.class.getName(), LinkedHashSet.class.getName(),
+			HashMap.class.getName(), LinkedHashMap.class.getName(),
+			Date.class.getName(), String.class.getName(),
+			Number.class.getName(), Integer.class.getName(), Long.class.getName(),
+			Double.class.getName(), Float.class.getName(), Short.class.getName(),
+			Byte.class.getName(), Boolean.class.getName(), Character.class.getName()));
+
+	/**
+	 * An object stream that only resolves classes in {@link SerializedStreamingParser#ALLOWED_CLASSES}
+	 */
+	private static class ColonyObjectInputStream extends ObjectInputStream {
+
+		public ColonyObjectInputStream(InputStream in) throws IOException {
+			super(in);
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass description) throws IOException, ClassNotFoundException {
+			if(!ALLOWED_CLASSES.contains(description.getName())) {
+				throw new InvalidClassException(description.getName(), "Not allowed in a colony file");
+			}
+			return super.resolveClass(description);
+		}
+
+		@Override
+		protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException {
+			throw new InvalidClassException("Proxy classes are not allowed in a colony file");
+		}
+	}
+
+	@Override
+	public String getName() {
+		return "serialized";
+	}
+
+	@Override
+	public boolean accepts(byte[] head, int length) {
+		return length >= 2 && (head[0] & 0xff) == MAGIC_0 && (head[1] & 0xff) == MAGIC_1;
+	}
+
+	@Override
+	public void parse(InputStream in, ColonySink sink) throws IOException {
+		final ObjectInputStream objects = new ColonyObjectInputStream(in);
+		while(true) {
+			final Object object;
+			try {
+				object = objects.readObject();
+			} catch (EOFException e) {
+				break;
+			} catch (ClassNotFoundException e) {
+				throw new IOException("Unknown class " + e.getMessage());
+			}
+			if(object instanceof Colony) {
+				sink.accept((Colony) object);
+			}
+			else if(object instanceof Collection) {
+				for(Object element : (Collection<?>) object) {
+					if(element instanceof Colony) {
+						sink.accept((Colony) element);
+					}
+				}
+			}
+		}
+	}
+}
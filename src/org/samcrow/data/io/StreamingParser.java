@@ -0,0 +1,41 @@
+package org.samcrow.data.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A parser that reads colonies from a stream and pushes each one to a
+ * {@link ColonySink} as soon as it has been read, so that colonies can be
+ * processed while the rest of the file is still being read.
+ *
+ * Implementations are registered with {@link StreamingParsers}, which chooses
+ * one for each file by looking at the start of its content.
+ *
+ * @author Sam Crow
+ */
+public interface StreamingParser {
+
+	/**
+	 * @return A short name for the format, for messages
+	 */
+	public String getName();
+
+	/**
+	 * Check if this parser can read some content
+	 * @param head The first bytes of the content, after decompression
+	 * @param length The number of valid bytes in head. This is smaller than
+	 * the array if the content is short.
+	 * @return true if the content appears to be in this parser's format
+	 */
+	public boolean accepts(byte[] head, int length);
+
+	/**
+	 * Parse colonies from a stream. Implementations should skip parts of the
+	 * content that cannot be parsed and continue with the rest, where the
+	 * format allows it.
+	 * @param in The stream to read. This is already decompressed. It is not closed.
+	 * @param sink The sink to push each colony to
+	 * @throws IOException if the stream could not be read
+	 */
+	public void parse(InputStream in, ColonySink sink) throws IOException;
+}
@@ -0,0 +1,125 @@
+package org.samcrow.data.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.samcrow.data.storage.FileStorage;
+import org.samcrow.data.storage.Storage;
+
+/**
+ * Chooses a {@link StreamingParser} for a file by looking at its content,
+ * and parses the file with it.
+ *
+ * Compressed files are decompressed first (see {@link DataStreams}), so every
+ * format can also be read compressed. The file name is not used, so a file
+ * can be read correctly even if its extension is wrong.
+ *
+ * CSV, JSON and Java-serialized colonies are registered by default. Other
+ * formats can be added with {@link #register(StreamingParser)}.
+ *
+ * @author Sam Crow
+ */
+public class StreamingParsers {
+
+	/** The number of bytes at the start of the content used to choose a parser */
+	private static final int HEAD_SIZE = 256;
+
+	/** The registered parsers, in the order they are tried */
+	private static final List<StreamingParser> parsers = new CopyOnWriteArrayList<StreamingParser>();
+	static {
+		parsers.add(new SerializedStreamingParser());
+		parsers.add(new JSONStreamingParser());
+		parsers.add(new CSVStreamingParser());
+	}
+
+	private StreamingParsers() {}
+
+	/**
+	 * Register a parser. Parsers registered with this method are tried before
+	 * the default parsers, most recently registered first.
+	 * @param parser The parser to register
+	 */
+	public static void register(StreamingParser parser) {
+		parsers.add(0, parser);
+	}
+
+	/**
+	 * Parse a file, choosing a parser based on its content
+	 * @param file The file
+	 * @param sink The sink to push each colony to
+	 * @throws IOException if the file could not be read, or no parser accepts its content
+	 */
+	public static void parse(File file, ColonySink sink) throws IOException {
+		parse(FileStorage.forFile(file), file.getName(), sink);
+	}
+
+	/**
+	 * Parse a file, choosing a parser based on its content
+	 * @param storage The storage containing the file
+	 * @param name The name of the file
+	 * @param sink The sink to push each colony to
+	 * @throws IOException if the file could not be read, or no parser accepts its content
+	 */
+	public static void parse(Storage storage, String name, ColonySink sink) throws IOException {
+		final InputStream in = DataStreams.openInput(storage, name);
+		try {
+			final byte[] head = new byte[HEAD_SIZE];
+			final int length = peek(in, head);
+			if(length == 0) {
+				// Empty file
+				return;
+			}
+			final StreamingParser parser = detect(head, length);
+			if(parser == null) {
+				throw new IOException("Unknown format in " + storage.describe(name));
+			}
+			parser.parse(in, sink);
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Choose a parser for some content
+	 * @param head The first bytes of the content
+	 * @param length The number of valid bytes in head
+	 * @return The first registered parser that accepts the content, or null if none does
+	 */
+	public static StreamingParser detect(byte[] head, int length) {
+		for(StreamingParser parser : parsers) {
+			if(parser.accepts(head, length)) {
+				return parser;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Read the start of a stream without consuming it
+	 * @param in The stream. This must support mark/reset.
+	 * @param head The array to read into
+	 * @return The number of bytes read
+	 * @throws IOException
+	 */
+	private static int peek(InputStream in, byte[] head) throws IOException {
+		in.mark(head.length);
+		try {
+			int length = 0;
+			while(length < head.length) {
+				final int count = in.read(head, length, head.length - length);
+				if(count == -1) {
+					break;
+				}
+				length += count;
+			}
+			return length;
+		}
+		finally {
+			in.reset();
+		}
+	}
+}
@@ -0,0 +1,199 @@
+package org.samcrow.data.io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.samcrow.colonynavigator3.data.TagSet;
+import org.samcrow.data.storage.Storage;
+
+/**
+ * Reads and writes tag files: lists of colony IDs, like focus_colonies.txt.
+ *
+ * Each line of a tag file contains one colony ID, or a range of IDs written
+ * as <code>first-last</code>. Other lines are ignored.
+ *
+ * A named tag is stored in a file called <code>tag_</code><i>name</i><code>.txt</code>,
+ * which may be gzip-compressed like other data files.
+ *
+ * @author Sam Crow
+ */
+public class TagFiles {
+
+	/** The start of the name of every tag file */
+	public static final String PREFIX = "tag_";
+	/** The end of the name of every uncompressed tag file */
+	public static final String SUFFIX = ".txt";
+
+	private TagFiles() {}
+
+	/**
+	 * Read all the tag files in a storage
+	 * @param storage The storage
+	 * @return A tag set for each tag file that could be read, by tag name
+	 */
+	public static Map<String, TagSet> readAll(Storage storage) {
+		final Map<String, TagSet> tags = new HashMap<String, TagSet>();
+		for(String fileName : storage.list()) {
+			final String tagName = tagName(fileName);
+			if(tagName == null) {
+				continue;
+			}
+			try {
+				tags.put(tagName, read(storage, fileName));
+			} catch (IOException e) {
+				System.err.println("Could not read tag file " + storage.describe(fileName));
+				e.printStackTrace();
+			}
+		}
+		return tags;
+	}
+
+	/**
+	 * Get the tag name from the name of a file
+	 * @param fileName The file name
+	 * @return The tag name, or null if the file is not a tag file
+	 */
+	public static String tagName(String fileName) {
+		String name = fileName;
+		if(DataStreams.isCompressedName(name)) {
+			name = name.substring(0, name.length() - DataStreams.GZIP_EXTENSION.length());
+		}
+		if(!name.startsWith(PREFIX) || !name.endsWith(SUFFIX) || name.length() == PREFIX.length() + SUFFIX.length()) {
+			return null;
+		}
+		return name.substring(PREFIX.length(), name.length() - SUFFIX.length());
+	}
+
+	/**
+	 * @param tagName A tag name
+	 * @return The name of the uncompressed file for the tag
+	 */
+	public static String fileName(String tagName) {
+		return PREFIX + tagName + SUFFIX;
+	}
+
+	/**
+	 * Read a tag file
+	 * @param storage The storage containing the file
+	 * @param name The name of the file
+	 * @return The IDs in the file
+	 * @throws IOException if the file could not be read
+	 */
+	public static TagSet read(Storage storage, String name) throws IOException {
+		final InputStream in = DataStreams.openInput(storage, name);
+		try {
+			return readTags(in);
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Write a tag file. Runs of three or more consecutive IDs are written as ranges.
+	 * @param storage The storage to write to
+	 * @param name The name of the file. The file is compressed if this ends with
+	 * {@link DataStreams#GZIP_EXTENSION}.
+	 * @param tags The IDs to write
+	 * @throws IOException if the file could not be written
+	 */
+	public static void write(Storage storage, String name, TagSet tags) throws IOException {
+		final PrintStream out = new PrintStream(DataStreams.openOutput(storage, name));
+		try {
+			final int[] runs = tags.getRuns();
+			for(int run = 0; run < runs.length; run += 2) {
+				final int first = runs[run];
+				final int last = runs[run + 1];
+				if((long) last - first >= 2) {
+					out.println(first + "-" + last);
+				}
+				else {
+					// A long, so that this ends when last is Integer.MAX_VALUE
+					for(long id = first; id <= last; id++) {
+						out.println(id);
+					}
+				}
+			}
+		}
+		finally {
+			out.close();
+		}
+		if(out.checkError()) {
+			throw new IOException("Could not write " + storage.describe(name));
+		}
+	}
+
+	/**
+	 * Read colony IDs from a stream in the tag file format.
+	 * Ranges are kept as ranges, so the memory used depends on the number of
+	 * lines and not on the number of IDs. Ranges that end before they start
+	 * are ignored.
+	 * @param in The stream to read. This is not closed.
+	 * @return The colony IDs
+	 * @throws IOException if the stream could not be read
+	 */
+	public static TagSet readTags(InputStream in) throws IOException {
+		// Each range, with its first ID in the high half so that sorting orders by first ID
+		long[] ranges = new long[64];
+		int count = 0;
+
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+		while(true) {
+			final String line = reader.readLine();
+			if(line == null) {
+				break;
+			}
+			final String trimmed = line.trim();
+			if(trimmed.isEmpty()) {
+				continue;
+			}
+
+			try {
+				final int dash = trimmed.indexOf('-', 1);
+				final int first;
+				final int last;
+				if(dash == -1) {
+					first = Integer.parseInt(trimmed);
+					last = first;
+				}
+				else {
+					first = Integer.parseInt(trimmed.substring(0, dash).trim());
+					last = Integer.parseInt(trimmed.substring(dash + 1).trim());
+				}
+				if(last < first) {
+					System.err.println("Ignoring tag range that ends before it starts: " + trimmed);
+					continue;
+				}
+				if(count == ranges.length) {
+					ranges = Arrays.copyOf(ranges, count * 2);
+				}
+				ranges[count++] = ((long) first << 32) | (last & 0xFFFFFFFFL);
+			} catch (NumberFormatException ex) {
+				continue;
+			}
+		}
+
+		// Merge ranges that overlap or touch
+		Arrays.sort(ranges, 0, count);
+		final int[] runs = new int[count * 2];
+		int length = 0;
+		for(int i = 0; i < count; i++) {
+			final int first = (int) (ranges[i] >> 32);
+			final int last = (int) ranges[i];
+			if(length != 0 && first <= (long) runs[length - 1] + 1) {
+				runs[length - 1] = Math.max(runs[length - 1], last);
+			}
+			else {
+				runs[length++] = first;
+				runs[length++] = last;
+			}
+		}
+		return TagSet.ofRuns(Arrays.copyOf(runs, length));
+	}
+}
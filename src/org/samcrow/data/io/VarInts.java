@@ -0,0 +1,74 @@
+package org.samcrow.data.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Reads and writes variable-length integers: 7 bits per byte, least
+ * significant first, with the high bit set on every byte except the last.
+ * Signed values are zigzag-encoded so that small negative values are short.
+ *
+ * @author Sam Crow
+ */
+public class VarInts {
+
+	private VarInts() {}
+
+	/**
+	 * Write a non-negative value
+	 * @param out The stream to write to
+	 * @param value The value
+	 * @throws IOException if the value could not be written
+	 */
+	public static void writeUnsigned(OutputStream out, long value) throws IOException {
+		while((value & ~0x7FL) != 0) {
+			out.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	/**
+	 * Write a value that may be negative
+	 * @param out The stream to write to
+	 * @param value The value
+	 * @throws IOException if the value could not be written
+	 */
+	public static void writeSigned(OutputStream out, long value) throws IOException {
+		writeUnsigned(out, (value << 1) ^ (value >> 63));
+	}
+
+	/**
+	 * Read a value written by {@link #writeUnsigned(OutputStream, long)}
+	 * @param in The stream to read from
+	 * @return The value
+	 * @throws IOException if the stream ended or the value is invalid
+	 */
+	public static long readUnsigned(InputStream in) throws IOException {
+		long value = 0;
+		for(int shift = 0; shift < 64; shift += 7) {
+			final int b = in.read();
+			if(b == -1) {
+				throw new EOFException();
+			}
+			value |= (long) (b & 0x7F) << shift;
+			if((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Invalid variable-length integer");
+	}
+
+	/**
+	 * Read a value written by {@link #writeSigned(OutputStream, long)}
+	 * @param in The stream to read from
+	 * @return The value
+	 * @throws IOException if the stream ended or the value is invalid
+	 */
+	public static long readSigned(InputStream in) throws IOException {
+		final long value = readUnsigned(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
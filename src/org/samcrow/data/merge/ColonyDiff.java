@@ -0,0 +1,120 @@
+package org.samcrow.data.merge;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.samcrow.colonynavigator3.data.Colony;
+
+/**
+ * The differences between two versions of a set of colonies
+ *
+ * @author Sam Crow
+ */
+public class ColonyDiff {
+
+	private final List<Colony> added;
+	private final List<Colony> removed;
+	private final List<Colony> changed;
+
+	/**
+	 * Constructor
+	 * @param added The colonies that were added
+	 * @param removed The colonies that were removed
+	 * @param changed The colonies that were changed
+	 */
+	public ColonyDiff(List<Colony> added, List<Colony> removed, List<Colony> changed) {
+		this.added = added;
+		this.removed = removed;
+		this.changed = changed;
+	}
+
+	/**
+	 * Find the differences between two versions of a set of colonies.
+	 *
+	 * Both inputs must be sorted by ID. This takes time proportional to
+	 * the total number of colonies.
+	 *
+	 * @param oldColonies The old version, sorted by ID
+	 * @param newColonies The new version, sorted by ID
+	 * @return The differences. The added and changed lists contain colonies
+	 * from newColonies. The removed list contains colonies from oldColonies.
+	 */
+	public static ColonyDiff compute(List<Colony> oldColonies, List<Colony> newColonies) {
+		final List<Colony> added = new ArrayList<Colony>();
+		final List<Colony> removed = new ArrayList<Colony>();
+		final List<Colony> changed = new ArrayList<Colony>();
+
+		int oldIndex = 0;
+		int newIndex = 0;
+		final int oldSize = oldColonies.size();
+		final int newSize = newColonies.size();
+
+		while(oldIndex < oldSize || newIndex < newSize) {
+			if(newIndex >= newSize) {
+				removed.add(oldColonies.get(oldIndex++));
+				continue;
+			}
+			if(oldIndex >= oldSize) {
+				added.add(newColonies.get(newIndex++));
+				continue;
+			}
+
+			final Colony oldColony = oldColonies.get(oldIndex);
+			final Colony newColony = newColonies.get(newIndex);
+			if(oldColony.getId() < newColony.getId()) {
+				removed.add(oldColony);
+				oldIndex++;
+			}
+			else if(newColony.getId() < oldColony.getId()) {
+				added.add(newColony);
+				newIndex++;
+			}
+			else {
+				if(!oldColony.equals(newColony)) {
+					changed.add(newColony);
+				}
+				oldIndex++;
+				newIndex++;
+			}
+		}
+
+		return new ColonyDiff(added, removed, changed);
+	}
+
+	/**
+	 * @return The colonies that were added
+	 */
+	public List<Colony> getAdded() {
+		return Collections.unmodifiableList(added);
+	}
+
+	/**
+	 * @return The colonies that were removed
+	 */
+	public List<Colony> getRemoved() {
+		return Collections.unmodifiableList(removed);
+	}
+
+	/**
+	 * @return The colonies that were changed
+	 */
+	public List<Colony> getChanged() {
+		return Collections.unmodifiableList(changed);
+	}
+
+	/**
+	 * @return true if there are no differences
+	 */
+	public boolean isEmpty() {
+		return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return added.size() + " added, " + removed.size() + " removed, " + changed.size() + " changed";
+	}
+}
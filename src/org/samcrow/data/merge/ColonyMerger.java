@@ -0,0 +1,138 @@
+package org.samcrow.data.merge;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.samcrow.colonynavigator3.data.Colony;
+import org.samcrow.colonynavigator3.data.ColonyList;
+
+/**
+ * Merges two sets of colonies in one pass.
+ *
+ * Both inputs must be sorted by colony ID, as a {@link ColonyList} always is.
+ * The merge walks both lists side by side, like the merge step of a merge sort,
+ * so it takes time proportional to the total number of colonies and never
+ * searches either list.
+ *
+ * When a colony is in both sets, the copy from the supplement is used unless
+ * the copy from the base has a later modified time.
+ *
+ * @author Sam Crow
+ */
+public class ColonyMerger {
+
+	private ColonyMerger() {}
+
+	/**
+	 * Merge two sets of colonies
+	 * @param base The base colonies, sorted by ID
+	 * @param supplement The supplement colonies, sorted by ID
+	 * @param report A report to record the outcome for each colony in,
+	 * or null if no report is needed
+	 * @return A new list of colonies. This list contains references to the same
+	 * colony objects referred to by the input lists.
+	 */
+	public static ColonyList merge(List<Colony> base, List<Colony> supplement, MergeReport report) {
+		final List<Colony> merged = new ArrayList<Colony>(Math.max(base.size(), supplement.size()));
+
+		int baseIndex = 0;
+		int supplementIndex = 0;
+		final int baseSize = base.size();
+		final int supplementSize = supplement.size();
+
+		while(baseIndex < baseSize || supplementIndex < supplementSize) {
+
+			final int baseId = baseIndex < baseSize ? base.get(baseIndex).getId() : Integer.MAX_VALUE;
+			final int supplementId = supplementIndex < supplementSize ? supplement.get(supplementIndex).getId() : Integer.MAX_VALUE;
+
+			if(supplementIndex >= supplementSize || (baseIndex < baseSize && baseId < supplementId)) {
+				// Only in the base
+				final Colony colony = newestWithId(base, baseIndex);
+				baseIndex = skipId(base, baseIndex);
+				merged.add(colony);
+				if(report != null) {
+					report.addBaseOnly(baseId);
+				}
+			}
+			else if(baseIndex >= baseSize || supplementId < baseId) {
+				// Only in the supplement
+				final Colony colony = newestWithId(supplement, supplementIndex);
+				supplementIndex = skipId(supplement, supplementIndex);
+				merged.add(colony);
+				if(report != null) {
+					report.addSupplementOnly(supplementId);
+				}
+			}
+			else {
+				// In both
+				final Colony baseColony = newestWithId(base, baseIndex);
+				final Colony supplementColony = newestWithId(supplement, supplementIndex);
+				baseIndex = skipId(base, baseIndex);
+				supplementIndex = skipId(supplement, supplementIndex);
+
+				merged.add(resolve(baseColony, supplementColony));
+
+				if(report != null) {
+					if(baseColony.equals(supplementColony)) {
+						report.addUnchanged(baseId);
+					}
+					else if(baseColony.getModified() != null && supplementColony.getModified() != null) {
+						report.addConflict(baseId);
+					}
+					else {
+						report.addChanged(baseId);
+					}
+				}
+			}
+		}
+
+		// The merged list is already in order, so this sort finishes in one pass
+		return new ColonyList(merged);
+	}
+
+	/**
+	 * Choose between two copies of the same colony
+	 * @param older The copy that should be replaced if the times are equal
+	 * @param newer The copy that should be kept if the times are equal
+	 * @return newer, unless older has a strictly later modified time
+	 */
+	public static Colony resolve(Colony older, Colony newer) {
+		final Date olderModified = older.getModified();
+		final Date newerModified = newer.getModified();
+		if(olderModified != null && (newerModified == null || olderModified.after(newerModified))) {
+			return older;
+		}
+		return newer;
+	}
+
+	/**
+	 * Find the colony to use from a run of colonies with the same ID.
+	 * Normally the run has only one colony.
+	 * @param colonies The colonies, sorted by ID
+	 * @param start The index of the first colony in the run
+	 * @return The most recently modified colony in the run
+	 */
+	private static Colony newestWithId(List<Colony> colonies, int start) {
+		Colony result = colonies.get(start);
+		final int id = result.getId();
+		for(int i = start + 1, max = colonies.size(); i < max && colonies.get(i).getId() == id; i++) {
+			result = resolve(result, colonies.get(i));
+		}
+		return result;
+	}
+
+	/**
+	 * @param colonies The colonies, sorted by ID
+	 * @param start The index of the first colony in a run with the same ID
+	 * @return The index of the first colony after the run
+	 */
+	private static int skipId(List<Colony> colonies, int start) {
+		final int id = colonies.get(start).getId();
+		int i = start + 1;
+		while(i < colonies.size() && colonies.get(i).getId() == id) {
+			i++;
+		}
+		return i;
+	}
+}
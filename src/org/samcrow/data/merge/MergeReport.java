@@ -0,0 +1,92 @@
+package org.samcrow.data.merge;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Describes what happened during a merge of two sets of colonies.
+ *
+ * Every colony ID seen during the merge is placed in exactly one of the
+ * categories below.
+ *
+ * @author Sam Crow
+ */
+public class MergeReport {
+
+	private final List<Integer> baseOnly = new ArrayList<Integer>();
+	private final List<Integer> supplementOnly = new ArrayList<Integer>();
+	private final List<Integer> unchanged = new ArrayList<Integer>();
+	private final List<Integer> changed = new ArrayList<Integer>();
+	private final List<Integer> conflicts = new ArrayList<Integer>();
+
+	void addBaseOnly(int id) {
+		baseOnly.add(id);
+	}
+
+	void addSupplementOnly(int id) {
+		supplementOnly.add(id);
+	}
+
+	void addUnchanged(int id) {
+		unchanged.add(id);
+	}
+
+	void addChanged(int id) {
+		changed.add(id);
+	}
+
+	void addConflict(int id) {
+		conflicts.add(id);
+	}
+
+	/**
+	 * @return The IDs of colonies that were only in the base set
+	 */
+	public List<Integer> getBaseOnly() {
+		return Collections.unmodifiableList(baseOnly);
+	}
+
+	/**
+	 * @return The IDs of colonies that were only in the supplement set
+	 */
+	public List<Integer> getSupplementOnly() {
+		return Collections.unmodifiableList(supplementOnly);
+	}
+
+	/**
+	 * @return The IDs of colonies that were identical in both sets
+	 */
+	public List<Integer> getUnchanged() {
+		return Collections.unmodifiableList(unchanged);
+	}
+
+	/**
+	 * @return The IDs of colonies that were different in the two sets,
+	 * where at most one of the copies had a modified time
+	 */
+	public List<Integer> getChanged() {
+		return Collections.unmodifiableList(changed);
+	}
+
+	/**
+	 * @return The IDs of colonies that were different in the two sets,
+	 * where both copies had been modified. These were resolved by
+	 * taking the copy with the later modified time.
+	 */
+	public List<Integer> getConflicts() {
+		return Collections.unmodifiableList(conflicts);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "Merge: " + baseOnly.size() + " base only, "
+				+ supplementOnly.size() + " supplement only, "
+				+ unchanged.size() + " unchanged, "
+				+ changed.size() + " changed, "
+				+ conflicts.size() + " conflicts";
+	}
+}
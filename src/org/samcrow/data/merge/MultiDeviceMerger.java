@@ -0,0 +1,367 @@
+package org.samcrow.data.merge;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.samcrow.colonynavigator3.data.Colony;
+import org.samcrow.data.io.DataStreams;
+import org.samcrow.data.io.JSONColonyReader;
+import org.samcrow.data.io.JSONColonyWriter;
+
+/**
+ * Merges the colony files from several devices that started from a common base.
+ *
+ * This is a three-way merge: for each colony and each field, a device is
+ * considered to have changed the field if its value differs from the base.
+ * If only one device changed a field, or all devices that changed it agree,
+ * that value is used. If devices made different changes, the value from the
+ * device whose copy of the colony has the latest modified time is used, and
+ * the conflict is logged.
+ *
+ * A colony missing from a device file but present in the base was deleted on
+ * that device. It is left out of the merged file unless another device changed it.
+ *
+ * All inputs must be sorted by colony ID, as files written by this application are.
+ * The files are read one colony at a time and merged in one pass, so memory use
+ * does not depend on the number of colonies.
+ *
+ * @author Sam Crow
+ */
+public class MultiDeviceMerger {
+
+	/**
+	 * Counts of what happened during a merge
+	 */
+	public static class Result {
+		/** The number of colonies written to the merged file */
+		public int colonies;
+		/** The number of colonies that were changed on at least one device */
+		public int changed;
+		/** The number of colonies that were deleted */
+		public int deleted;
+		/** The number of fields with conflicting changes */
+		public int conflicts;
+
+		@Override
+		public String toString() {
+			return colonies + " colonies, " + changed + " changed, " + deleted + " deleted, " + conflicts + " conflicts";
+		}
+	}
+
+	/** The fields that are merged separately */
+	private static final String[] FIELDS = { "x", "y", "active", "visited", "attributes" };
+
+	/**
+	 * Reads one input file and keeps the next colony from it
+	 */
+	private static class Cursor {
+		final String name;
+		final JSONColonyReader reader;
+		Colony current;
+
+		Cursor(String name, File file) throws IOException {
+			this.name = name;
+			this.reader = new JSONColonyReader(file);
+			advance();
+		}
+
+		/** Move to the next colony */
+		void advance() throws IOException {
+			final Colony next = reader.next();
+			if(next != null && current != null && next.getId() <= current.getId()) {
+				throw new IOException(name + " is not sorted by colony ID (colony " + next.getId()
+						+ " follows colony " + current.getId() + ")");
+			}
+			current = next;
+		}
+
+		/** @return The current colony if it has the given ID, otherwise null */
+		Colony take(int id) {
+			return current != null && current.getId() == id ? current : null;
+		}
+	}
+
+	/** The name of the base file in a merge directory */
+	public static final String BASE_FILE_NAME = "base.json";
+	/** The name of the merged output file in a merge directory */
+	public static final String MERGED_FILE_NAME = "merged.json";
+	/** The name of the conflict log file in a merge directory */
+	public static final String CONFLICT_FILE_NAME = "conflicts.txt";
+
+	private MultiDeviceMerger() {}
+
+	/**
+	 * Merge all the colony files in a directory.
+	 * 
+	 * The directory may contain a base file named {@link #BASE_FILE_NAME}.
+	 * Every other file whose name ends with .json or .json.gz, except
+	 * {@link #MERGED_FILE_NAME}, is treated as a device file. The merged
+	 * colonies are written to {@link #MERGED_FILE_NAME} and conflicts are
+	 * described in {@link #CONFLICT_FILE_NAME}.
+	 * 
+	 * @param dir The directory
+	 * @return Counts of what happened
+	 * @throws IOException if a file could not be read or written, or an input is not sorted
+	 */
+	public static Result mergeDirectory(File dir) throws IOException {
+		final File base = DataStreams.find(dir, BASE_FILE_NAME);
+		final List<File> devices = new ArrayList<File>();
+		final File[] files = dir.listFiles();
+		if(files != null) {
+			for(File file : files) {
+				final String name = file.getName();
+				if(file.equals(base) || name.startsWith(MERGED_FILE_NAME)) {
+					continue;
+				}
+				if(name.endsWith(".json") || name.endsWith(".json" + DataStreams.GZIP_EXTENSION)) {
+					devices.add(file);
+				}
+			}
+		}
+		if(devices.isEmpty()) {
+			throw new IOException("No device files found in " + dir.getAbsolutePath());
+		}
+		Collections.sort(devices);
+
+		final PrintWriter conflictLog = new PrintWriter(new File(dir, CONFLICT_FILE_NAME));
+		try {
+			return merge(base.exists() ? base : null, devices, new File(dir, MERGED_FILE_NAME), conflictLog);
+		}
+		finally {
+			conflictLog.close();
+		}
+	}
+
+	/**
+	 * Merge colony files
+	 * @param base The file that all devices started from, or null if there is no common base
+	 * @param devices The files from each device
+	 * @param output The file to write the merged colonies to
+	 * @param conflictLog A writer for a description of each conflict, one per line
+	 * @return Counts of what happened
+	 * @throws IOException if a file could not be read or written, or an input is not sorted
+	 */
+	public static Result merge(File base, List<File> devices, File output, PrintWriter conflictLog) throws IOException {
+		final Result result = new Result();
+
+		final Cursor baseCursor = base != null ? new Cursor(base.getName(), base) : null;
+		final List<Cursor> deviceCursors = new ArrayList<Cursor>(devices.size());
+		final JSONColonyWriter writer = new JSONColonyWriter(output);
+		try {
+			for(File device : devices) {
+				deviceCursors.add(new Cursor(device.getName(), device));
+			}
+
+			final Colony[] versions = new Colony[deviceCursors.size()];
+			while(true) {
+				// Find the lowest ID among all inputs
+				int id = Integer.MAX_VALUE;
+				boolean any = false;
+				if(baseCursor != null && baseCursor.current != null) {
+					id = baseCursor.current.getId();
+					any = true;
+				}
+				for(Cursor cursor : deviceCursors) {
+					if(cursor.current != null) {
+						id = Math.min(id, cursor.current.getId());
+						any = true;
+					}
+				}
+				if(!any) {
+					break;
+				}
+
+				final Colony baseColony = baseCursor != null ? baseCursor.take(id) : null;
+				for(int i = 0; i < versions.length; i++) {
+					versions[i] = deviceCursors.get(i).take(id);
+				}
+
+				final Colony merged = mergeColony(id, baseColony, versions, deviceCursors, conflictLog, result);
+				if(merged != null) {
+					writer.write(merged);
+					result.colonies++;
+				}
+
+				if(baseColony != null) {
+					baseCursor.advance();
+				}
+				for(int i = 0; i < versions.length; i++) {
+					if(versions[i] != null) {
+						deviceCursors.get(i).advance();
+					}
+				}
+			}
+		}
+		finally {
+			writer.close();
+			if(baseCursor != null) {
+				baseCursor.reader.close();
+			}
+			for(Cursor cursor : deviceCursors) {
+				cursor.reader.close();
+			}
+		}
+		conflictLog.flush();
+		return result;
+	}
+
+	/**
+	 * Merge the versions of one colony
+	 * @return The merged colony, or null if it was deleted
+	 */
+	private static Colony mergeColony(int id, Colony base, Colony[] versions, List<Cursor> cursors,
+			PrintWriter conflictLog, Result result) {
+
+		boolean changed = false;
+		boolean deleted = false;
+		Date modified = null;
+		for(Colony version : versions) {
+			if(version == null) {
+				deleted |= base != null;
+			}
+			else {
+				changed |= base == null || !sameData(base, version);
+				modified = later(modified, version.getModified());
+			}
+		}
+
+		if(deleted && !changed) {
+			// Deleted on some device and not changed on any
+			result.deleted++;
+			return null;
+		}
+		if(changed) {
+			result.changed++;
+		}
+		if(deleted) {
+			conflictLog.println("Colony " + id + ": deleted on some devices but changed on others; keeping the changes");
+			result.conflicts++;
+		}
+
+		final Object[] values = new Object[FIELDS.length];
+		for(int field = 0; field < FIELDS.length; field++) {
+			values[field] = mergeField(id, field, base, versions, cursors, conflictLog, result);
+		}
+
+		if(base != null) {
+			modified = later(modified, base.getModified());
+		}
+		@SuppressWarnings("unchecked")
+		final Map<String, Object> attributes = (Map<String, Object>) values[4];
+		return new Colony(id, (Double) values[0], (Double) values[1], (Boolean) values[2], (Boolean) values[3],
+				modified, attributes);
+	}
+
+	/**
+	 * Choose the value of one field
+	 */
+	private static Object mergeField(int id, int field, Colony base, Colony[] versions, List<Cursor> cursors,
+			PrintWriter conflictLog, Result result) {
+		final Object baseValue = base != null ? fieldValue(base, field) : null;
+
+		Object winner = baseValue;
+		Date winnerModified = null;
+		int winnerIndex = -1;
+		boolean conflict = false;
+
+		for(int i = 0; i < versions.length; i++) {
+			final Colony version = versions[i];
+			if(version == null) {
+				continue;
+			}
+			final Object value = fieldValue(version, field);
+			if(base != null && value.equals(baseValue)) {
+				// Not changed on this device
+				continue;
+			}
+			if(winnerIndex == -1) {
+				winner = value;
+				winnerModified = version.getModified();
+				winnerIndex = i;
+				continue;
+			}
+			if(value.equals(winner)) {
+				winnerModified = later(winnerModified, version.getModified());
+				continue;
+			}
+			conflict = true;
+			final Date modified = version.getModified();
+			if(modified != null && (winnerModified == null || modified.after(winnerModified))) {
+				winner = value;
+				winnerModified = modified;
+				winnerIndex = i;
+			}
+		}
+
+		if(conflict) {
+			result.conflicts++;
+			final StringBuilder message = new StringBuilder();
+			message.append("Colony ").append(id).append(" field ").append(FIELDS[field]).append(':');
+			for(int i = 0; i < versions.length; i++) {
+				if(versions[i] != null) {
+					message.append(' ').append(cursors.get(i).name).append('=').append(fieldValue(versions[i], field));
+				}
+			}
+			message.append("; using ").append(winner).append(" from ").append(cursors.get(winnerIndex).name);
+			conflictLog.println(message);
+		}
+
+		return winner != null ? winner : defaultValue(field);
+	}
+
+	private static Object fieldValue(Colony colony, int field) {
+		switch(field) {
+		case 0:
+			return colony.getX();
+		case 1:
+			return colony.getY();
+		case 2:
+			return colony.isActive();
+		case 3:
+			return colony.isVisited();
+		default:
+			return colony.getAttributes();
+		}
+	}
+
+	private static Object defaultValue(int field) {
+		switch(field) {
+		case 0:
+		case 1:
+			return 0.0;
+		case 2:
+		case 3:
+			return false;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * @return true if the merged fields of two colonies are equal
+	 */
+	private static boolean sameData(Colony a, Colony b) {
+		for(int field = 0; field < FIELDS.length; field++) {
+			if(!fieldValue(a, field).equals(fieldValue(b, field))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static Date later(Date a, Date b) {
+		if(a == null) {
+			return b;
+		}
+		if(b == null) {
+			return a;
+		}
+		return b.after(a) ? b : a;
+	}
+}
@@ -0,0 +1,114 @@
+package org.samcrow.data.observation;
+
+/**
+ * A record of one visit to a colony.
+ *
+ * Observations are immutable.
+ *
+ * @author Sam Crow
+ */
+public class Observation {
+
+	/** The value of {@link #getCount()} when nothing was counted */
+	public static final int NO_COUNT = -1;
+
+	private final int colonyId;
+	private final long time;
+	private final String observer;
+	private final double latitude;
+	private final double longitude;
+	private final float accuracy;
+	private final int count;
+	private final String notes;
+
+	/**
+	 * Constructor
+	 * @param colonyId The ID of the colony that was visited
+	 * @param time The time of the visit, in milliseconds since the epoch
+	 * @param observer The person or device that made the observation, or null
+	 * @param latitude The latitude of the GPS fix, or NaN if there was no fix
+	 * @param longitude The longitude of the GPS fix, or NaN if there was no fix
+	 * @param accuracy The accuracy of the GPS fix in meters, or 0 if unknown
+	 * @param count The number of ants counted, or {@link #NO_COUNT}
+	 * @param notes Notes about the visit, or null
+	 */
+	public Observation(int colonyId, long time, String observer, double latitude,
+			double longitude, float accuracy, int count, String notes) {
+		this.colonyId = colonyId;
+		this.time = time;
+		this.observer = observer != null ? observer : "";
+		this.latitude = latitude;
+		this.longitude = longitude;
+		this.accuracy = accuracy;
+		this.count = count;
+		this.notes = notes != null ? notes : "";
+	}
+
+	/**
+	 * @return The ID of the colony that was visited
+	 */
+	public int getColonyId() {
+		return colonyId;
+	}
+
+	/**
+	 * @return The time of the visit, in milliseconds since the epoch
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * @return The person or device that made the observation, or an empty string
+	 */
+	public String getObserver() {
+		return observer;
+	}
+
+	/**
+	 * @return true if this observation has a GPS fix
+	 */
+	public boolean hasFix() {
+		return !Double.isNaN(latitude) && !Double.isNaN(longitude);
+	}
+
+	/**
+	 * @return The latitude of the GPS fix, or NaN if there was no fix
+	 */
+	public double getLatitude() {
+		return latitude;
+	}
+
+	/**
+	 * @return The longitude of the GPS fix, or NaN if there was no fix
+	 */
+	public double getLongitude() {
+		return longitude;
+	}
+
+	/**
+	 * @return The accuracy of the GPS fix in meters, or 0 if unknown
+	 */
+	public float getAccuracy() {
+		return accuracy;
+	}
+
+	/**
+	 * @return The number of ants counted, or {@link #NO_COUNT}
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * @return Notes about the visit, or an empty string
+	 */
+	public String getNotes() {
+		return notes;
+	}
+
+	@Override
+	public String toString() {
+		return "Observation of colony " + colonyId + " at " + time + " by " + observer;
+	}
+}
@@ -0,0 +1,425 @@
+package org.samcrow.data.observation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.samcrow.data.io.VarInts;
+
+/**
+ * An append-only log of colony visits, stored in a file.
+ *
+ * Observations are collected into blocks of up to {@link #BLOCK_SIZE}.
+ * Each block is stored by column: all the colony IDs, then all the times,
+ * then all the observers, and so on. IDs and times are stored as
+ * variable-length differences from the previous row, and each block stores
+ * each observer name once, so a block takes much less space than the same
+ * observations stored one after another.
+ *
+ * A block is appended to the file when it is full or when {@link #flush()}
+ * is called. Observations that have not been flushed are kept in memory
+ * and are lost if the application stops without flushing.
+ *
+ * When the log is opened, the colony ID column of every block is read to
+ * build an index of where each colony's observations are. Finding the
+ * observations of a colony reads only the blocks that contain them.
+ *
+ * File format: a header of {@link #MAGIC} and {@link #VERSION} (ints),
+ * then blocks. Each block starts with the number of bytes in the rest of
+ * the block, the number of rows, and the number of bytes in the ID column (ints).
+ *
+ * @author Sam Crow
+ */
+public class ObservationLog {
+
+	/** The maximum number of observations in a block */
+	public static final int BLOCK_SIZE = 128;
+
+	/** The first int in a log file */
+	private static final int MAGIC = 0x4F42534C;
+	/** The format version */
+	private static final int VERSION = 1;
+	/** The number of bytes in the file header */
+	private static final int HEADER_LENGTH = 8;
+
+	private final File file;
+
+	/** The offset in the file of each block */
+	private long[] blockOffsets = new long[16];
+	/** The number of blocks in the file */
+	private int blockCount = 0;
+	/** The length of the file, up to the end of the last complete block */
+	private long length;
+
+	/**
+	 * The positions of the observations of each colony, by colony ID.
+	 * A position is a block index in the upper 32 bits and a row in the
+	 * lower 32 bits. Observations that have not been flushed have the block
+	 * index {@link #blockCount}.
+	 */
+	private final Map<Integer, Positions> index = new HashMap<Integer, Positions>();
+
+	/** Observations that have not been written to the file */
+	private final List<Observation> pending = new ArrayList<Observation>(BLOCK_SIZE);
+
+	/** The total number of observations */
+	private int size = 0;
+
+	/**
+	 * Open a log, creating the file if it does not exist.
+	 * If the last block in the file is incomplete, because the application
+	 * stopped while writing it, it is removed.
+	 * @param file The file
+	 * @throws IOException if the file could not be read or created, or is not an observation log
+	 */
+	public ObservationLog(File file) throws IOException {
+		this.file = file;
+		if(!file.exists() || file.length() == 0) {
+			final DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+			}
+			finally {
+				out.close();
+			}
+			length = HEADER_LENGTH;
+		}
+		else {
+			readIndex();
+		}
+	}
+
+	/**
+	 * Add an observation to the end of the log
+	 * @param observation The observation
+	 * @throws IOException if a full block could not be written
+	 */
+	public synchronized void append(Observation observation) throws IOException {
+		pending.add(observation);
+		addPosition(observation.getColonyId(), blockCount, pending.size() - 1);
+		size++;
+		if(pending.size() >= BLOCK_SIZE) {
+			flush();
+		}
+	}
+
+	/**
+	 * Write all observations that are in memory to the file
+	 * @throws IOException if the file could not be written
+	 */
+	public synchronized void flush() throws IOException {
+		if(pending.isEmpty()) {
+			return;
+		}
+		final byte[] block = encode(pending);
+		final FileOutputStream out = new FileOutputStream(file, true);
+		try {
+			out.write(block);
+			out.getFD().sync();
+		}
+		finally {
+			out.close();
+		}
+		addBlock(length);
+		length += block.length;
+		pending.clear();
+	}
+
+	/**
+	 * Flush the log. The log should not be used after it is closed.
+	 * @throws IOException if the file could not be written
+	 */
+	public void close() throws IOException {
+		flush();
+	}
+
+	/**
+	 * @return The total number of observations in the log
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * @param colonyId A colony ID
+	 * @return The number of observations of the colony
+	 */
+	public synchronized int getVisitCount(int colonyId) {
+		final Positions positions = index.get(colonyId);
+		return positions != null ? positions.size : 0;
+	}
+
+	/**
+	 * Get all observations of a colony
+	 * @param colonyId A colony ID
+	 * @return The observations of the colony, in the order they were added
+	 * @throws IOException if the file could not be read
+	 */
+	public synchronized List<Observation> getVisits(int colonyId) throws IOException {
+		final Positions positions = index.get(colonyId);
+		if(positions == null) {
+			return new ArrayList<Observation>();
+		}
+		final List<Observation> visits = new ArrayList<Observation>(positions.size);
+		RandomAccessFile in = null;
+		try {
+			int decodedBlock = -1;
+			Observation[] rows = null;
+			for(int i = 0; i < positions.size; i++) {
+				final int block = (int) (positions.values[i] >>> 32);
+				final int row = (int) positions.values[i];
+				if(block == blockCount) {
+					visits.add(pending.get(row));
+					continue;
+				}
+				// Positions are in increasing order, so each block is decoded once
+				if(block != decodedBlock) {
+					if(in == null) {
+						in = new RandomAccessFile(file, "r");
+					}
+					rows = readBlock(in, blockOffsets[block]);
+					decodedBlock = block;
+				}
+				visits.add(rows[row]);
+			}
+		}
+		finally {
+			if(in != null) {
+				in.close();
+			}
+		}
+		return visits;
+	}
+
+	/**
+	 * Read the ID column of each block to build the index
+	 */
+	private void readIndex() throws IOException {
+		final RandomAccessFile in = new RandomAccessFile(file, "rw");
+		try {
+			if(in.readInt() != MAGIC) {
+				throw new IOException(file + " is not an observation log");
+			}
+			final int version = in.readInt();
+			if(version != VERSION) {
+				throw new IOException("Unsupported observation log version " + version + " in " + file);
+			}
+			long offset = HEADER_LENGTH;
+			final long fileLength = in.length();
+			while(offset < fileLength) {
+				in.seek(offset);
+				try {
+					final int blockLength = in.readInt();
+					final long end = offset + 4 + blockLength;
+					if(end > fileLength) {
+						break;
+					}
+					final int rows = in.readInt();
+					final byte[] ids = new byte[in.readInt()];
+					in.readFully(ids);
+					final InputStream idIn = new ByteArrayInputStream(ids);
+					int id = 0;
+					for(int row = 0; row < rows; row++) {
+						id += (int) VarInts.readSigned(idIn);
+						addPosition(id, blockCount, row);
+					}
+					size += rows;
+					addBlock(offset);
+					offset = end;
+				} catch (EOFException e) {
+					break;
+				}
+			}
+			if(offset < fileLength) {
+				System.err.println("Removing incomplete block at the end of " + file);
+				in.setLength(offset);
+			}
+			length = offset;
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Read and decode a block
+	 */
+	private static Observation[] readBlock(RandomAccessFile file, long offset) throws IOException {
+		file.seek(offset);
+		final byte[] block = new byte[file.readInt()];
+		file.readFully(block);
+		final DataInputStream in = new DataInputStream(new ByteArrayInputStream(block));
+
+		final int rows = in.readInt();
+		in.readInt();
+		final int[] ids = new int[rows];
+		int id = 0;
+		for(int row = 0; row < rows; row++) {
+			id += (int) VarInts.readSigned(in);
+			ids[row] = id;
+		}
+
+		final long[] times = new long[rows];
+		long time = in.readLong();
+		for(int row = 0; row < rows; row++) {
+			time += VarInts.readSigned(in);
+			times[row] = time;
+		}
+
+		final String[] observerNames = new String[(int) VarInts.readUnsigned(in)];
+		for(int i = 0; i < observerNames.length; i++) {
+			observerNames[i] = readString(in);
+		}
+		final String[] observers = new String[rows];
+		for(int row = 0; row < rows; row++) {
+			observers[row] = observerNames[(int) VarInts.readUnsigned(in)];
+		}
+
+		final double[] latitudes = new double[rows];
+		for(int row = 0; row < rows; row++) {
+			latitudes[row] = in.readDouble();
+		}
+		final double[] longitudes = new double[rows];
+		for(int row = 0; row < rows; row++) {
+			longitudes[row] = in.readDouble();
+		}
+		final float[] accuracies = new float[rows];
+		for(int row = 0; row < rows; row++) {
+			accuracies[row] = in.readFloat();
+		}
+		final int[] counts = new int[rows];
+		for(int row = 0; row < rows; row++) {
+			counts[row] = (int) VarInts.readSigned(in);
+		}
+
+		final Observation[] observations = new Observation[rows];
+		for(int row = 0; row < rows; row++) {
+			observations[row] = new Observation(ids[row], times[row], observers[row],
+					latitudes[row], longitudes[row], accuracies[row], counts[row], readString(in));
+		}
+		return observations;
+	}
+
+	/**
+	 * Encode observations as a block
+	 */
+	private static byte[] encode(List<Observation> observations) throws IOException {
+		final int rows = observations.size();
+
+		final ByteArrayOutputStream ids = new ByteArrayOutputStream();
+		int previousId = 0;
+		for(Observation observation : observations) {
+			VarInts.writeSigned(ids, observation.getColonyId() - previousId);
+			previousId = observation.getColonyId();
+		}
+
+		final ByteArrayOutputStream columnBytes = new ByteArrayOutputStream();
+		final DataOutputStream columns = new DataOutputStream(columnBytes);
+
+		long previousTime = observations.get(0).getTime();
+		columns.writeLong(previousTime);
+		for(Observation observation : observations) {
+			VarInts.writeSigned(columns, observation.getTime() - previousTime);
+			previousTime = observation.getTime();
+		}
+
+		final Map<String, Integer> observerIndexes = new LinkedHashMap<String, Integer>();
+		for(Observation observation : observations) {
+			if(!observerIndexes.containsKey(observation.getObserver())) {
+				observerIndexes.put(observation.getObserver(), observerIndexes.size());
+			}
+		}
+		VarInts.writeUnsigned(columns, observerIndexes.size());
+		for(String observer : observerIndexes.keySet()) {
+			writeString(columns, observer);
+		}
+		for(Observation observation : observations) {
+			VarInts.writeUnsigned(columns, observerIndexes.get(observation.getObserver()));
+		}
+
+		for(Observation observation : observations) {
+			columns.writeDouble(observation.getLatitude());
+		}
+		for(Observation observation : observations) {
+			columns.writeDouble(observation.getLongitude());
+		}
+		for(Observation observation : observations) {
+			columns.writeFloat(observation.getAccuracy());
+		}
+		for(Observation observation : observations) {
+			VarInts.writeSigned(columns, observation.getCount());
+		}
+		for(Observation observation : observations) {
+			writeString(columns, observation.getNotes());
+		}
+		columns.flush();
+
+		final ByteArrayOutputStream blockBytes = new ByteArrayOutputStream(12 + ids.size() + columnBytes.size());
+		final DataOutputStream block = new DataOutputStream(blockBytes);
+		block.writeInt(8 + ids.size() + columnBytes.size());
+		block.writeInt(rows);
+		block.writeInt(ids.size());
+		ids.writeTo(block);
+		columnBytes.writeTo(block);
+		block.flush();
+		return blockBytes.toByteArray();
+	}
+
+	private void addBlock(long offset) {
+		if(blockCount == blockOffsets.length) {
+			blockOffsets = Arrays.copyOf(blockOffsets, blockOffsets.length * 2);
+		}
+		blockOffsets[blockCount++] = offset;
+	}
+
+	private void addPosition(int colonyId, int block, int row) {
+		Positions positions = index.get(colonyId);
+		if(positions == null) {
+			positions = new Positions();
+			index.put(colonyId, positions);
+		}
+		positions.add(((long) block << 32) | row);
+	}
+
+	/**
+	 * A growable list of positions
+	 */
+	private static class Positions {
+		long[] values = new long[4];
+		int size = 0;
+
+		void add(long position) {
+			if(size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = position;
+		}
+	}
+
+	private static void writeString(OutputStream out, String value) throws IOException {
+		final byte[] bytes = value.getBytes("UTF-8");
+		VarInts.writeUnsigned(out, bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		final byte[] bytes = new byte[(int) VarInts.readUnsigned(in)];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+}
@@ -0,0 +1,175 @@
+package org.samcrow.data.photo;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A content-addressed store of files, such as photos, in a directory.
+ *
+ * Each file is named with the SHA-1 hash of its content, so adding the same
+ * photo twice stores it once, and a colony can refer to a photo by its hash
+ * without storing the photo itself. Files are stored in subdirectories
+ * named with the first two characters of the hash, to keep directories small.
+ *
+ * @author Sam Crow
+ */
+public class BlobStore {
+
+	/** The number of characters in a hash */
+	public static final int HASH_LENGTH = 40;
+
+	private final File dir;
+
+	/**
+	 * Constructor
+	 * @param dir The directory to store files in. It will be created if necessary.
+	 */
+	public BlobStore(File dir) {
+		this.dir = dir;
+	}
+
+	/**
+	 * @return The directory that files are stored in
+	 */
+	public File getDirectory() {
+		return dir;
+	}
+
+	/**
+	 * Add a file to the store
+	 * @param file The file to copy into the store
+	 * @return The hash of the file
+	 * @throws IOException if the file could not be read or stored
+	 */
+	public String put(File file) throws IOException {
+		final InputStream in = new FileInputStream(file);
+		try {
+			return put(in);
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Add content to the store. The content is copied to a temporary file
+	 * while it is hashed, then moved to its name.
+	 * @param in The stream to read the content from. It is not closed.
+	 * @return The hash of the content
+	 * @throws IOException if the content could not be read or stored
+	 */
+	public String put(InputStream in) throws IOException {
+		dir.mkdirs();
+		final MessageDigest digest = newDigest();
+		final File temp = File.createTempFile("blob", ".tmp", dir);
+		try {
+			final OutputStream out = new FileOutputStream(temp);
+			try {
+				final byte[] buffer = new byte[8192];
+				int count;
+				while((count = in.read(buffer)) != -1) {
+					digest.update(buffer, 0, count);
+					out.write(buffer, 0, count);
+				}
+			}
+			finally {
+				out.close();
+			}
+
+			final String hash = toHex(digest.digest());
+			final File target = getFile(hash);
+			if(!target.exists()) {
+				target.getParentFile().mkdirs();
+				if(!temp.renameTo(target)) {
+					throw new IOException("Could not move " + temp + " to " + target);
+				}
+			}
+			return hash;
+		}
+		finally {
+			// Already moved if the content was new
+			temp.delete();
+		}
+	}
+
+	/**
+	 * @param hash A hash
+	 * @return true if the store contains content with the hash
+	 */
+	public boolean contains(String hash) {
+		return isValidHash(hash) && getFile(hash).isFile();
+	}
+
+	/**
+	 * Open stored content for reading
+	 * @param hash The hash of the content
+	 * @return A stream of the content
+	 * @throws IOException if the store does not contain the content or it could not be opened
+	 */
+	public InputStream open(String hash) throws IOException {
+		return new FileInputStream(getFile(hash));
+	}
+
+	/**
+	 * Remove content from the store
+	 * @param hash The hash of the content
+	 * @return true if the content was removed
+	 */
+	public boolean delete(String hash) {
+		return isValidHash(hash) && getFile(hash).delete();
+	}
+
+	/**
+	 * @param hash A hash
+	 * @return The file that content with the hash is stored in. The file may not exist.
+	 * @throws IllegalArgumentException if the hash is not valid
+	 */
+	public File getFile(String hash) {
+		if(!isValidHash(hash)) {
+			throw new IllegalArgumentException("Invalid hash " + hash);
+		}
+		return new File(new File(dir, hash.substring(0, 2)), hash);
+	}
+
+	/**
+	 * @param hash A string
+	 * @return true if the string is a valid hash: {@link #HASH_LENGTH} lowercase hexadecimal digits
+	 */
+	public static boolean isValidHash(String hash) {
+		if(hash == null || hash.length() != HASH_LENGTH) {
+			return false;
+		}
+		for(int i = 0; i < HASH_LENGTH; i++) {
+			final char c = hash.charAt(i);
+			if(!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform supports SHA-1
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		final char[] digits = "0123456789abcdef".toCharArray();
+		final char[] hex = new char[bytes.length * 2];
+		for(int i = 0; i < bytes.length; i++) {
+			hex[2 * i] = digits[(bytes[i] >> 4) & 0xF];
+			hex[2 * i + 1] = digits[bytes[i] & 0xF];
+		}
+		return new String(hex);
+	}
+}
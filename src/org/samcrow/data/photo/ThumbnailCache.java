@@ -0,0 +1,241 @@
+package org.samcrow.data.photo;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+/**
+ * Creates and caches thumbnails of photos in a {@link BlobStore}.
+ *
+ * Thumbnails are created on a background executor. A full-size photo is
+ * decoded at the smallest power-of-two reduction that is still at least the
+ * thumbnail size, then scaled. Each thumbnail is also saved in a thumbnail
+ * directory, so a photo is decoded at full size only once.
+ *
+ * Decoded thumbnails are kept in memory, up to a maximum number of bytes.
+ * When the limit is exceeded, the least recently used thumbnails are removed.
+ *
+ * @author Sam Crow
+ */
+public class ThumbnailCache {
+
+	/**
+	 * An interface for something that receives thumbnails
+	 */
+	public interface Callback {
+		/**
+		 * Called when a thumbnail is available
+		 * @param hash The hash of the photo
+		 * @param thumbnail The thumbnail, or null if the photo could not be read
+		 */
+		public void thumbnailLoaded(String hash, Bitmap thumbnail);
+	}
+
+	/** The JPEG quality of saved thumbnails */
+	private static final int THUMBNAIL_QUALITY = 85;
+
+	private final BlobStore store;
+	private final File thumbnailDir;
+	private final int size;
+	private final long maxBytes;
+	private final Executor loadExecutor;
+	private final Executor callbackExecutor;
+
+	/** Thumbnails by hash, in access order */
+	private final LinkedHashMap<String, Bitmap> cache = new LinkedHashMap<String, Bitmap>(32, 0.75f, true);
+	/** The total size of the thumbnails in {@link #cache} */
+	private long cachedBytes = 0;
+
+	/** Callbacks waiting for each thumbnail that is being loaded */
+	private final Map<String, List<Callback>> loading = new HashMap<String, List<Callback>>();
+
+	/**
+	 * Constructor
+	 * @param store The store that contains the photos
+	 * @param thumbnailDir The directory to save thumbnails in
+	 * @param size The maximum width and height of a thumbnail, in pixels
+	 * @param maxBytes The maximum total size of the thumbnails kept in memory
+	 * @param loadExecutor The executor that thumbnails are created on. This should not be the UI thread.
+	 * @param callbackExecutor The executor that callbacks are run on, normally the UI thread
+	 */
+	public ThumbnailCache(BlobStore store, File thumbnailDir, int size, long maxBytes,
+			Executor loadExecutor, Executor callbackExecutor) {
+		this.store = store;
+		this.thumbnailDir = thumbnailDir;
+		this.size = size;
+		this.maxBytes = maxBytes;
+		this.loadExecutor = loadExecutor;
+		this.callbackExecutor = callbackExecutor;
+	}
+
+	/**
+	 * @param hash The hash of a photo
+	 * @return The thumbnail of the photo if it is in memory, otherwise null
+	 */
+	public synchronized Bitmap getCached(String hash) {
+		return cache.get(hash);
+	}
+
+	/**
+	 * Get the thumbnail of a photo. If the thumbnail is in memory, the
+	 * callback is called immediately on the calling thread. Otherwise the
+	 * thumbnail is loaded in the background and the callback is called later
+	 * on the callback executor.
+	 * @param hash The hash of the photo
+	 * @param callback The callback to give the thumbnail to
+	 */
+	public void get(final String hash, Callback callback) {
+		final Bitmap cached;
+		synchronized (this) {
+			cached = cache.get(hash);
+			if(cached == null) {
+				List<Callback> waiting = loading.get(hash);
+				if(waiting != null) {
+					// Already loading
+					waiting.add(callback);
+					return;
+				}
+				waiting = new ArrayList<Callback>();
+				waiting.add(callback);
+				loading.put(hash, waiting);
+			}
+		}
+		if(cached != null) {
+			callback.thumbnailLoaded(hash, cached);
+			return;
+		}
+		loadExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				load(hash);
+			}
+		});
+	}
+
+	/**
+	 * Remove all thumbnails from memory
+	 */
+	public synchronized void clear() {
+		cache.clear();
+		cachedBytes = 0;
+	}
+
+	/**
+	 * Load a thumbnail, add it to the cache, and notify the waiting callbacks
+	 */
+	private void load(final String hash) {
+		Bitmap thumbnail = null;
+		try {
+			thumbnail = readThumbnail(hash);
+		} catch (IOException e) {
+			e.printStackTrace();
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+		}
+
+		final List<Callback> waiting;
+		synchronized (this) {
+			if(thumbnail != null) {
+				add(hash, thumbnail);
+			}
+			waiting = loading.remove(hash);
+		}
+		final Bitmap result = thumbnail;
+		callbackExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				for(Callback callback : waiting) {
+					callback.thumbnailLoaded(hash, result);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Read a saved thumbnail, or create one from the photo
+	 */
+	private Bitmap readThumbnail(String hash) throws IOException {
+		final File thumbnailFile = new File(thumbnailDir, hash + "_" + size + ".jpg");
+		if(thumbnailFile.isFile()) {
+			final Bitmap saved = BitmapFactory.decodeFile(thumbnailFile.getPath(), null);
+			if(saved != null) {
+				return saved;
+			}
+		}
+
+		final String path = store.getFile(hash).getPath();
+		final BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inJustDecodeBounds = true;
+		BitmapFactory.decodeFile(path, options);
+		if(options.outWidth <= 0 || options.outHeight <= 0) {
+			throw new IOException("Could not read image " + hash);
+		}
+
+		options.inJustDecodeBounds = false;
+		options.inSampleSize = 1;
+		while(Math.max(options.outWidth, options.outHeight) / (options.inSampleSize * 2) >= size) {
+			options.inSampleSize *= 2;
+		}
+		final Bitmap sampled = BitmapFactory.decodeFile(path, options);
+		if(sampled == null) {
+			throw new IOException("Could not decode image " + hash);
+		}
+
+		final float scale = Math.min(1, (float) size / Math.max(sampled.getWidth(), sampled.getHeight()));
+		final Bitmap thumbnail;
+		if(scale < 1) {
+			thumbnail = Bitmap.createScaledBitmap(sampled,
+					Math.max(1, Math.round(sampled.getWidth() * scale)),
+					Math.max(1, Math.round(sampled.getHeight() * scale)), true);
+			sampled.recycle();
+		}
+		else {
+			thumbnail = sampled;
+		}
+
+		thumbnailDir.mkdirs();
+		final OutputStream out = new FileOutputStream(thumbnailFile);
+		try {
+			thumbnail.compress(Bitmap.CompressFormat.JPEG, THUMBNAIL_QUALITY, out);
+		}
+		finally {
+			out.close();
+		}
+		return thumbnail;
+	}
+
+	/**
+	 * Add a thumbnail to the cache and remove the least recently used
+	 * thumbnails until the cache is within its size limit.
+	 * Evicted bitmaps are not recycled, because they may still be displayed.
+	 */
+	private void add(String hash, Bitmap thumbnail) {
+		final Bitmap old = cache.put(hash, thumbnail);
+		if(old != null) {
+			cachedBytes -= old.getByteCount();
+		}
+		cachedBytes += thumbnail.getByteCount();
+
+		final Iterator<Map.Entry<String, Bitmap>> iterator = cache.entrySet().iterator();
+		while(cachedBytes > maxBytes && iterator.hasNext()) {
+			final Map.Entry<String, Bitmap> eldest = iterator.next();
+			if(eldest.getKey().equals(hash)) {
+				// Always keep the newest thumbnail
+				continue;
+			}
+			cachedBytes -= eldest.getValue().getByteCount();
+			iterator.remove();
+		}
+	}
+}
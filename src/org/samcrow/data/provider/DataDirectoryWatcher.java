@@ -0,0 +1,53 @@
+package org.samcrow.data.provider;
+
+import java.io.File;
+
+import android.os.FileObserver;
+
+/**
+ * Watches a directory and reports when a file in it has been completely
+ * written or moved into it.
+ *
+ * Events are reported on a background thread owned by the system.
+ * The watcher must be kept referenced while it is in use, or it will stop
+ * watching when it is garbage collected.
+ *
+ * @author Sam Crow
+ */
+public class DataDirectoryWatcher extends FileObserver {
+
+	/**
+	 * An interface for something that can be notified when a file changes
+	 */
+	public interface Listener {
+		/**
+		 * Called on a background thread when a file has changed
+		 * @param file The file that changed
+		 */
+		public void onFileChanged(File file);
+	}
+
+	private static final int EVENTS = CLOSE_WRITE | MOVED_TO;
+
+	private final File dir;
+	private final Listener listener;
+
+	/**
+	 * Constructor. Call {@link #startWatching()} to begin watching.
+	 * @param dir The directory to watch
+	 * @param listener The listener to notify
+	 */
+	public DataDirectoryWatcher(File dir, Listener listener) {
+		super(dir.getAbsolutePath(), EVENTS);
+		this.dir = dir;
+		this.listener = listener;
+	}
+
+	@Override
+	public void onEvent(int event, String path) {
+		if(path == null || (event & EVENTS) == 0) {
+			return;
+		}
+		listener.onFileChanged(new File(dir, path));
+	}
+}
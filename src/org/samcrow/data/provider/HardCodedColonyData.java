@@ -0,0 +1,110 @@
+package org.samcrow.data.provider;
+
+/**
+ * The colonies provided by {@link HardCodedColonyProvider}, stored as parallel arrays
+ * sorted by colony ID.
+ * 
+ * Generated by tools/GenerateHardCodedColonies.java from tools/hardcoded_colonies.csv.
+ * Do not edit.
+ */
+final class HardCodedColonyData {
+
+	private HardCodedColonyData() {}
+
+	/** Colony IDs */
+	static final short[] IDS = {
+		3, 6, 7, 8, 10, 14, 15, 16, 17, 18, 22, 23, 24, 25, 26, 28,
+		29, 30, 32, 35, 38, 39, 42, 45, 46, 48, 49, 50, 51, 52, 53, 55,
+		56, 57, 58, 63, 64, 68, 74, 78, 82, 83, 85, 86, 89, 90, 91, 92,
+		98, 99, 101, 102, 103, 104, 105, 106, 107, 108, 110, 111, 112, 113, 114, 115,
+		116, 120, 121, 126, 127, 129, 130, 131, 132, 133, 134, 135, 136, 137, 138, 139,
+		140, 141, 142, 144, 145, 146, 147, 149, 150, 151, 152, 153, 154, 155, 156, 157,
+		158, 159, 160, 163, 164, 165, 166, 167, 171, 172, 173, 174, 175, 176, 177, 178,
+		179, 180, 181, 185, 186, 187, 190, 191, 192, 193, 194, 195, 196, 197, 198, 199,
+		201, 203, 204, 205, 206, 207, 208, 209, 210, 225, 226, 228, 229, 253, 259, 271,
+		273, 282, 283, 286, 300, 303, 330, 342, 347, 367, 393, 415, 428, 429, 442, 452,
+		462, 486, 495, 501, 509, 519, 520, 537, 539, 542, 547, 549, 550, 553, 562, 567,
+		572, 573, 576, 577, 579, 582, 583, 587, 588, 590, 592, 599, 600, 607, 612, 613,
+		615, 621, 627, 628, 629, 631, 635, 646, 649, 650, 651, 664, 665, 666, 671, 672,
+		683, 685, 686, 691, 692, 695, 699, 720, 726, 728, 732, 735, 737, 740, 742, 743,
+		747, 757, 758, 769, 770, 781, 783, 786, 787, 789, 795, 801, 806, 810, 812, 816,
+		817, 821, 823, 825, 833, 834, 839, 848, 855, 858, 859, 863, 866, 867, 868, 869,
+		871, 872, 881, 887, 890, 898, 900, 901, 904, 905, 907, 908, 911, 913, 919, 920,
+		922, 925, 927, 928, 933, 934, 936, 939, 940, 941, 944, 945, 948, 949, 954, 960,
+		961, 962, 964, 965, 966, 967, 969, 977, 978, 979, 980, 981, 982, 985, 986, 988,
+		990, 993, 995, 996, 997,
+	};
+
+	/** X-coordinates in meters */
+	static final short[] X = {
+		333, 159, 434, 1253, 758, 415, 593, 989, 613, 290, 979, 1144, 594, 463, 597, 431,
+		853, 130, 326, 221, 1275, 928, 1171, 530, 12, 35, 68, 41, -42, 574, 688, 269,
+		696, 878, 291, 603, 621, 710, 289, 371, 853, 796, 1066, 1008, 1032, 638, 331, 331,
+		471, 361, 1231, 1188, 902, 1080, 579, 374, 613, 271, 114, 868, 33, 231, 109, 159,
+		1068, 875, 1051, 777, 293, 215, 455, 563, 108, 1256, 343, 54, 56, 143, 122, 79,
+		1250, 1283, 468, 826, 26, 131, 1116, 890, 820, 686, 670, 250, 639, 213, 195, 44,
+		925, 101, 201, 218, 174, -6, 324, 583, 628, 916, 976, 1078, 1230, 92, 1037, 933,
+		703, 695, 388, 241, 251, 157, 1250, 922, 696, 793, 688, 181, 341, 140, 197, 1034,
+		483, 414, 391, 173, 630, 405, 1117, 842, 245, 251, 433, 427, 288, 184, 65, 835,
+		365, 927, 870, 674, 183, 390, -53, 129, 432, 82, 395, 38, 655, 726, 1101, 1013,
+		333, 764, 280, 542, 976, 326, -9, 645, 61, 829, 762, 389, 1131, 163, 106, 110,
+		815, 833, 237, 352, 1101, 839, 487, 275, 894, 380, 247, 25, 445, 1100, 1280, 1028,
+		1051, 254, 885, 324, 1139, 598, -68, 128, 1216, 1225, 328, 972, 457, 127, 699, 943,
+		317, 612, 597, 488, 743, 243, 666, 487, 6, 401, 151, 453, 512, 283, 513, 526,
+		732, 1194, 726, 391, 298, 648, 578, 326, 213, 1164, 299, 60, 226, 544, 1192, 958,
+		876, 1136, 1234, 415, 777, 374, 636, 230, 503, 77, 155, 542, 504, 48, 514, 186,
+		284, 557, 1014, 298, 320, 902, 1047, 1, 780, 1137, 844, 138, 650, 750, 497, 737,
+		463, 1296, 1055, 1227, 906, 589, -8, 428, 324, 260, 239, 229, 366, 287, 1207, 186,
+		548, 68, 1116, 743, 1185, 977, 515, 1141, 1164, 1264, 1324, 1025, 956, 676, 798, 678,
+		908, 527, 642, 768, 693,
+	};
+
+	/** Y-coordinates in meters */
+	static final short[] Y = {
+		146, 455, 517, 575, 575, 622, 428, 682, 703, 252, 520, 523, 312, 264, 673, 661,
+		306, 130, 483, 602, 334, 386, 297, 751, 502, 474, 416, 342, 355, 486, 400, 705,
+		634, 431, 554, 348, 315, 214, 593, 629, 576, 754, 240, 454, 474, 184, 342, 372,
+		330, 298, 677, 360, 527, 419, 287, 401, 251, 412, 457, 286, 586, 61, 762, 734,
+		561, 203, 263, 325, 230, 217, 430, 636, 370, 666, 649, 404, 368, 605, 335, 352,
+		611, 450, 693, 588, 377, 303, 411, 254, 193, 274, 147, 384, 664, 361, 383, 429,
+		300, 434, 203, 174, 126, 545, 638, 534, 731, 811, 412, 393, 427, 602, 205, 216,
+		511, 487, 724, 652, 797, 798, 611, 528, 375, 362, 483, 779, 712, 72, 435, 711,
+		444, 333, 269, 159, 288, 136, 472, 351, 772, 555, 590, 563, 504, 678, 268, 487,
+		483, 760, 529, 554, 408, 670, 601, 522, 457, 512, 550, 114, 769, 748, 782, 601,
+		779, 833, 200, 675, 774, 719, 176, 225, 229, 779, 674, 344, 730, 233, 200, 110,
+		464, 613, 123, 573, 678, 670, 781, 279, 694, 226, 507, 270, 189, 288, 513, 385,
+		625, 184, 821, 246, 791, 201, 535, 271, 632, 728, 216, 608, 632, 585, 666, 688,
+		184, 574, 279, 667, 631, 447, 352, 482, 324, 593, 476, 546, 193, 738, 250, 356,
+		481, 576, 405, 470, 381, 611, 260, 586, 781, 480, 328, 150, 738, 406, 454, 631,
+		617, 233, 280, 493, 514, 239, 456, 314, 599, 756, 344, 279, 630, 658, 290, 277,
+		451, 592, 551, 213, 518, 460, 462, 140, 598, 571, 236, 166, 499, 427, 528, 291,
+		589, 277, 509, 777, 585, 391, 304, 241, 435, 483, 228, 279, 678, 628, 400, 478,
+		327, 707, 523, 367, 659, 330, 337, 662, 630, 362, 289, 667, 576, 610, 619, 865,
+		630, 548, 409, 181, 450,
+	};
+
+	/** Active states */
+	static final boolean[] ACTIVE = {
+		true, true, true, true, true, true, true, true, true, true, true, true, true, true, true, true,
+		true, true, true, true, false, true, true, true, true, true, true, true, true, true, true, true,
+		true, true, true, true, true, true, true, true, true, false, true, true, false, true, true, true,
+		true, true, true, false, false, true, true, true, true, true, true, false, true, true, true, true,
+		true, true, true, true, true, false, true, true, true, true, true, true, true, true, true, true,
+		false, true, true, true, true, true, true, true, true, true, true, true, true, true, true, true,
+		true, true, true, true, true, true, true, true, true, true, true, true, true, true, true, true,
+		true, true, true, true, true, true, true, false, false, false, false, false, false, true, false, true,
+		false, false, false, false, false, false, false, false, false, false, false, false, false, true, true, true,
+		true, true, true, true, true, true, true, true, true, true, true, true, true, true, true, true,
+		true, true, true, true, true, true, true, true, true, true, true, true, true, true, true, true,
+		true, true, true, true, true, true, true, true, true, true, true, true, true, true, true, true,
+		true, true, true, false, true, true, true, true, true, true, true, true, true, true, true, true,
+		true, true, true, true, true, true, true, true, true, true, true, true, true, true, true, true,
+		true, true, true, true, true, true, true, true, true, true, true, true, true, true, true, true,
+		true, true, true, true, true, true, true, true, true, true, true, true, true, true, true, true,
+		true, true, true, true, true, true, true, true, true, true, true, true, true, true, true, true,
+		true, true, true, true, true, true, true, true, true, true, true, true, true, true, true, true,
+		true, true, true, true, true, true, true, true, true, true, true, true, true, true, true, true,
+		true, true, true, true, true,
+	};
+
+}
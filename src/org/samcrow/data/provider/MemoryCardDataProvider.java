@@ -2,29 +2,121 @@ package org.samcrow.data.provider;
 
 import java.io.File;
 import java.io.IOException;
-
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.samcrow.colonynavigator3.CoordinateTransformer;
 import org.samcrow.colonynavigator3.data.Colony;
 import org.samcrow.colonynavigator3.data.ColonyList;
+import org.samcrow.colonynavigator3.data.ColonyList.NoSuchColonyException;
+import org.samcrow.colonynavigator3.data.ColonyTags;
+import org.samcrow.colonynavigator3.data.LatLonColumns;
+import org.samcrow.colonynavigator3.data.ModifiedIndex;
+import org.samcrow.colonynavigator3.data.TagSet;
 import org.samcrow.data.io.CSVFileParser;
+import org.samcrow.data.io.DataStreams;
+import org.samcrow.data.io.DeltaExporter;
 import org.samcrow.data.io.FileParser;
 import org.samcrow.data.io.FocusColonyFinder;
 import org.samcrow.data.io.JSONFileParser;
+import org.samcrow.data.io.ParallelIngest;
+import org.samcrow.data.io.TagFiles;
+import org.samcrow.data.merge.ColonyDiff;
+import org.samcrow.data.merge.ColonyMerger;
+import org.samcrow.data.merge.MergeReport;
+import org.samcrow.data.sql.SQLDatabase;
+import org.samcrow.data.storage.FileStorage;
+import org.samcrow.data.storage.Storage;
 
 /**
  * Provides colonies from data stored on the memory card.
- * This class first looks for a CSV file named colonies.csv in the directory specified by {@link #kDir}.
+ * This class first looks for a CSV file named colonies.csv in the directory specified by {@link #kDir},
+ * or in the {@link Storage} passed to the constructor.
  * It parses that data.
  * Then it looks for a JSON file named colonies.json in the same directory and parses that data.
- * In the event of any conflict between the two files, the version in colonies.json takes precedence.
+ * In the event of any conflict between the two files, the version in colonies.json takes precedence,
+ * unless the version in colonies.csv has a later modified time.
  * 
  * When writing colony data, this implementation writes it to colonies.json. It does not modify colonies.csv.
  * 
+ * Any of these files may instead be stored gzip-compressed, with .gz appended to its name.
+ * If both a compressed and an uncompressed version of a file exist, the compressed version is used.
+ * 
+ * If a database is passed to the constructor, the colonies are kept in it (see
+ * {@link SQLiteColonyProvider}) instead of being read from colonies.json. The first time
+ * the database is used, it is filled from colonies.json. Changes to one colony are then
+ * written to the database as one row, and colonies.json is rewritten only by
+ * {@link #updateColonies()} and {@link #close()}, so that it stays current for the
+ * desktop tools.
+ * 
+ * Tag files (see {@link TagFiles}) in the same directory are loaded into {@link #getTags()}.
+ * 
+ * After {@link #startWatching(Executor, ReloadListener)} is called, changes to colonies.csv,
+ * focus_colonies.txt and tag files are loaded while the application is running. Only the colonies that
+ * differ from the previous version of the file are updated.
+ * 
  * @author Sam Crow
  */
 public class MemoryCardDataProvider implements ColonyProvider {
 
+	/**
+	 * An interface for something that can be notified when colonies have been
+	 * reloaded because a file changed
+	 */
+	public interface ReloadListener {
+		/**
+		 * Called after colonies have been reloaded.
+		 * This is called on the thread used by the Executor passed to
+		 * {@link MemoryCardDataProvider#startWatching(Executor, ReloadListener)}.
+		 * @param diff The colonies that were added to, removed from, or changed in
+		 * the list returned by {@link MemoryCardDataProvider#getColonies()}
+		 */
+		public void coloniesReloaded(ColonyDiff diff);
+	}
+
 	private ColonyList colonies = new ColonyList();
 
+	/**
+	 * The colonies in {@link #colonies}, ordered by modified time
+	 */
+	private ModifiedIndex modifiedIndex;
+
+	/**
+	 * The latitude and longitude of each colony, saved so that they are
+	 * calculated again only when colonies move
+	 */
+	private LatLonColumns latLonColumns;
+
+	/**
+	 * The colonies from the most recently read version of the CSV file.
+	 * These are separate objects from the colonies in {@link #colonies}.
+	 * This is set by the constructor and then only on the watcher thread,
+	 * while holding {@link #csvLock}.
+	 */
+	private volatile ColonyList csvColonies = new ColonyList();
+
+	/**
+	 * Held while comparing a new version of the CSV file with {@link #csvColonies}
+	 * and replacing it
+	 */
+	private final Object csvLock = new Object();
+
+	/**
+	 * The tags read from tag files
+	 */
+	private final ColonyTags tags = new ColonyTags();
+
+	/**
+	 * The IDs from the most recently read version of the focus colonies file, sorted
+	 */
+	private TagSet focusIds = TagSet.EMPTY;
+
 	/**
 	 * The absolute path to the folder where data should be read and written.
 	 * This must begin and end with a slash.
@@ -43,73 +135,543 @@ public class MemoryCardDataProvider implements ColonyProvider {
 	 */
 	private static final String kJsonFileName = "colonies.json";
 
+	/**
+	 * The name, including the file extension, of the focus colonies file to use
+	 */
+	private static final String kFocusFileName = "focus_colonies.txt";
+
+	/**
+	 * The name of the file that the latitude and longitude of each colony are saved in
+	 */
+	private static final String kLatLonFileName = "colonies.latlon";
+
+	/**
+	 * The storage where data is read and written
+	 */
+	private final Storage storage;
+
+	private DataDirectoryWatcher watcher;
+	private Executor reloadExecutor;
+	private ReloadListener reloadListener;
+
+	/**
+	 * The name of the JSON file that colonies are read from and written to
+	 */
+	private final String jsonName;
+
+	/**
+	 * The database that colonies are kept in, or null if they are kept only in the JSON file
+	 */
+	private final SQLiteColonyProvider store;
+
+	/**
+	 * If colonies have been written to {@link #store} since the JSON file was last written
+	 */
+	private volatile boolean jsonStale = false;
+
+	/**
+	 * Constructor. Reads data from the directory specified by {@link #kDir}.
+	 */
 	public MemoryCardDataProvider() {
-		File dir = new File(kDir);
-		//Create the directory if it doesn't already exist
-		dir.mkdirs();
+		this(createDefaultStorage());
+	}
+
+	/**
+	 * Constructor
+	 * @param storage The storage to read data from and write data to
+	 */
+	public MemoryCardDataProvider(Storage storage) {
+		this(storage, null);
+	}
+
+	/**
+	 * Constructor
+	 * @param storage The storage to read data from and write data to
+	 * @param database The database to keep colonies in, or null to keep them only in
+	 * colonies.json. If the database cannot be read, it is closed and colonies.json is used.
+	 */
+	public MemoryCardDataProvider(Storage storage, SQLDatabase database) {
+		this.storage = storage;
 
-		File csvFile = new File(kDir+kCsvFileName);
-		File jsonFile = new File(kDir+kJsonFileName);
+		String csvName = DataStreams.find(storage, kCsvFileName);
+		jsonName = DataStreams.find(storage, kJsonFileName);
+		final boolean csvExists = storage.exists(csvName);
+		final boolean jsonExists = storage.exists(jsonName);
 
-		//Verify that this application has permission to write each of the files
-		if(csvFile.exists()) assert csvFile.canWrite();
-		if(jsonFile.exists()) assert jsonFile.canWrite();
+		SQLiteColonyProvider openedStore = null;
+		if(database != null) {
+			try {
+				openedStore = new SQLiteColonyProvider(database, jsonExists ? new JSONFileParser(storage, jsonName) : null);
+			} catch (IOException e) {
+				System.err.println("Could not read the colony database, using " + storage.describe(jsonName));
+				e.printStackTrace();
+				database.close();
+			}
+		}
+		store = openedStore;
+
+		//Case 0: colonies are kept in the database, which has been filled from the JSON file if necessary
+		if(store != null) {
+			final ColonyList stored = store.getColonies();
+			//Write the JSON file later if it does not exist
+			jsonStale = !jsonExists;
+			if(csvExists) {
+				csvColonies = new ColonyList(new CSVFileParser(storage, csvName).parse());
+				colonies = extend(copyCsvColonies(csvColonies), stored);
+
+				//Save only the colonies that came from the CSV file
+				final List<Colony> fromCsv = new ArrayList<Colony>();
+				for(Colony colony : colonies) {
+					if(!containsSame(stored, colony)) {
+						fromCsv.add(colony);
+					}
+				}
+				if(!fromCsv.isEmpty()) {
+					store.write(fromCsv);
+					jsonStale = true;
+				}
+			}
+			else {
+				colonies = stored;
+			}
+			if(colonies.isEmpty() && !csvExists && !jsonExists) {
+				System.err.println("Neither "+storage.describe(csvName)+" or "+storage.describe(jsonName)+" exists, and the database is empty.");
+			}
+		}
 
 		//Case 1: Application hasn't been run before
 		//colonies.csv exists, colonies.json does not
-		if(csvFile.exists() && !jsonFile.exists()) {
+		else if(csvExists && !jsonExists) {
 
 			//Read the CSV and get the colonies into memory
-			FileParser<Colony> csvParser = new CSVFileParser(csvFile);
-			colonies = new ColonyList(csvParser.parse());
+			FileParser<Colony> csvParser = new CSVFileParser(storage, csvName);
+			csvColonies = new ColonyList(csvParser.parse());
+			colonies = copyCsvColonies(csvColonies);
 
 			//Write the JSON file from memory
-			FileParser<Colony> jsonParser = new JSONFileParser(jsonFile);
+			FileParser<Colony> jsonParser = new JSONFileParser(storage, jsonName);
 			jsonParser.write(colonies);
 		}
 
 		//Case 2: both files exist
-		else if(csvFile.exists() && jsonFile.exists()) {
+		else if(csvExists && jsonExists) {
 
 
-			FileParser<Colony> csvParser = new CSVFileParser(csvFile);
-			ColonyList csvColonies = new ColonyList(csvParser.parse());
+			//Parse both files at the same time
+			List<ColonyList> parsed = ParallelIngest.parseAll(storage, Arrays.asList(csvName, jsonName));
+			csvColonies = parsed.get(0);
+			ColonyList jsonColonies = parsed.get(1);
 
 			//Write the JSON file from memory
-			FileParser<Colony> jsonParser = new JSONFileParser(jsonFile);
-			ColonyList jsonColonies = new ColonyList(jsonParser.parse());
+			FileParser<Colony> jsonParser = new JSONFileParser(storage, jsonName);
 
 			//Put into memory the colonies from the CSV updated with colonies from the JSON file
-			colonies = extend(csvColonies, jsonColonies);
+			colonies = extend(copyCsvColonies(csvColonies), jsonColonies);
 
 			//Write the JSON file from memory
 			jsonParser.write(colonies);
 		}
 
 		//Cases 3: CSV doesn't exist, JSON does
-		else if(!csvFile.exists() && jsonFile.exists()) {
+		else if(!csvExists && jsonExists) {
 			//Use the JSON file
-			FileParser<Colony> jsonParser = new JSONFileParser(jsonFile);
+			FileParser<Colony> jsonParser = new JSONFileParser(storage, jsonName);
 			colonies.clear();
 			colonies.addAll(jsonParser.parse());
 		}
 
 		else {
-			String message = "Neither "+csvFile.getAbsolutePath()+" or "+jsonFile.getAbsolutePath()+" exists! Failed to get colonies from the memory card.";
+			String message = "Neither "+storage.describe(csvName)+" or "+storage.describe(jsonName)+" exists! Failed to get colonies from the memory card.";
 			System.err.println(message);
 		}
 		
 
 		//Look for focus_colonies.txt
-		File focusFile = new File(kDir+"focus_colonies.txt");
-		if(focusFile.exists() && focusFile.canRead()) {
+		String focusName = DataStreams.find(storage, kFocusFileName);
+		if(storage.exists(focusName)) {
 			try {
-				new FocusColonyFinder(focusFile, colonies).updateColonies();
+				TagSet newFocusIds = new FocusColonyFinder(storage, focusName, colonies).readTags();
+				applyFocusIds(newFocusIds);
 			} catch (IOException e) {
 				System.err.println("Could not read focus colonies file");
 				e.printStackTrace();
 			}
 		}
+
+		tags.putAll(TagFiles.readAll(storage));
+
+		modifiedIndex = new ModifiedIndex(colonies);
+
+		latLonColumns = readLatLonColumns();
+		saveLatLonColumns();
+	}
+
+	/**
+	 * Read the saved latitude and longitude columns
+	 * @return The columns, or empty columns if they could not be read
+	 */
+	private LatLonColumns readLatLonColumns() {
+		if(storage.exists(kLatLonFileName)) {
+			try {
+				final InputStream in = DataStreams.openInput(storage, kLatLonFileName);
+				try {
+					return new LatLonColumns(in);
+				}
+				finally {
+					in.close();
+				}
+			} catch (IOException e) {
+				System.err.println("Could not read " + storage.describe(kLatLonFileName) + ", recalculating positions");
+				e.printStackTrace();
+			}
+		}
+		return new LatLonColumns();
+	}
+
+	/**
+	 * Calculate the positions of colonies that have moved, and save the
+	 * positions if any have changed. File write tasks may run at the same
+	 * time, so only one can save at a time.
+	 */
+	private void saveLatLonColumns() {
+		synchronized (latLonColumns) {
+			latLonColumns.update(colonies, CoordinateTransformer.getInstance());
+			if(!latLonColumns.isDirty()) {
+				return;
+			}
+			try {
+				final OutputStream out = DataStreams.openOutput(storage, kLatLonFileName);
+				try {
+					latLonColumns.write(out);
+				}
+				finally {
+					out.close();
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Recalculate the positions of colonies that are now more than a
+	 * tolerance from where {@link CoordinateTransformer#getInstance()} puts
+	 * them, after its coefficients have changed. The positions are saved with
+	 * the next file write.
+	 * @param tolerance The distance, in meters, that a position may be off by
+	 * @return The colonies whose positions changed
+	 */
+	public List<Colony> reprojectColonies(double tolerance) {
+		synchronized (latLonColumns) {
+			return latLonColumns.reproject(colonies, CoordinateTransformer.getInstance(), tolerance);
+		}
+	}
+
+	/**
+	 * Move a colony to a new position, calculate only its latitude and
+	 * longitude, and save it. The colony is changed once, so its marker
+	 * is updated once.
+	 * @param colony The colony to move
+	 * @param x The new X coordinate
+	 * @param y The new Y coordinate
+	 */
+	public void moveColony(Colony colony, double x, double y) {
+		synchronized (latLonColumns) {
+			latLonColumns.move(colony, x, y, CoordinateTransformer.getInstance());
+		}
+		updateColony(colony);
+	}
+
+	/**
+	 * @return The tags read from tag files (see {@link TagFiles}). After
+	 * {@link #startWatching(Executor, ReloadListener)} is called, these are
+	 * updated on the executor when a tag file changes.
+	 */
+	public ColonyTags getTags() {
+		return tags;
+	}
+
+	/**
+	 * @return A storage for the directory specified by {@link #kDir}, which is
+	 * created if it doesn't already exist
+	 */
+	private static Storage createDefaultStorage() {
+		File dir = new File(kDir);
+		dir.mkdirs();
+		return new FileStorage(dir);
+	}
+
+	/**
+	 * Write the colonies modified after a time to a file.
+	 * This method blocks while the file is written.
+	 * @param since The time
+	 * @param file The file to write. This is compressed if its name ends with .gz.
+	 * @return The number of colonies written
+	 * @throws IOException if the file could not be written
+	 */
+	public int exportModifiedSince(Date since, File file) throws IOException {
+		return new DeltaExporter(modifiedIndex).export(since, file);
+	}
+
+	/**
+	 * Start watching the data directory for changes to the CSV and focus colonies files.
+	 * 
+	 * Changed files are read and compared with their previous versions on a background thread.
+	 * The differences are then applied to the colonies, and the listener is notified,
+	 * using the provided executor. This should normally run tasks on the UI thread.
+	 * 
+	 * @param executor The executor used to change colonies and notify the listener
+	 * @param listener The listener to notify
+	 * @throws UnsupportedOperationException if this provider's storage is not
+	 * a directory on the file system
+	 */
+	public void startWatching(Executor executor, ReloadListener listener) {
+		if(!(storage instanceof FileStorage)) {
+			throw new UnsupportedOperationException("Only a directory on the file system can be watched");
+		}
+		stopWatching();
+		reloadExecutor = executor;
+		reloadListener = listener;
+		watcher = new DataDirectoryWatcher(((FileStorage) storage).getDirectory(), new DataDirectoryWatcher.Listener() {
+			@Override
+			public void onFileChanged(File file) {
+				final String name = file.getName();
+				if(name.equals(kCsvFileName) || name.equals(kCsvFileName + DataStreams.GZIP_EXTENSION)) {
+					reloadCsv(name);
+				}
+				else if(name.equals(kFocusFileName) || name.equals(kFocusFileName + DataStreams.GZIP_EXTENSION)) {
+					reloadFocus(name);
+				}
+				else if(TagFiles.tagName(name) != null) {
+					reloadTag(name);
+				}
+			}
+		});
+		watcher.startWatching();
+	}
+
+	/**
+	 * Stop watching the data directory for changes
+	 */
+	public void stopWatching() {
+		if(watcher != null) {
+			watcher.stopWatching();
+			watcher = null;
+		}
+	}
+
+	/**
+	 * Read a changed CSV file and apply the differences from the previous version.
+	 * Called on the watcher thread.
+	 * @param name The name of the CSV file
+	 */
+	private void reloadCsv(String name) {
+		final ColonyList newCsvColonies = new ColonyList(new CSVFileParser(storage, name).parse());
+		long fileTime = new File(((FileStorage) storage).getDirectory(), name).lastModified();
+		if(fileTime == 0) {
+			fileTime = System.currentTimeMillis();
+		}
+		final Date fileModified = new Date(fileTime);
+		final ColonyDiff fileDiff;
+		// Compare and replace together, so that each version is compared with the one before it
+		synchronized(csvLock) {
+			fileDiff = ColonyDiff.compute(csvColonies, newCsvColonies);
+			csvColonies = newCsvColonies;
+		}
+		if(fileDiff.isEmpty()) {
+			return;
+		}
+
+		reloadExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				final ColonyDiff applied = applyCsvDiff(fileDiff, fileModified);
+				if(applied.isEmpty()) {
+					return;
+				}
+				reloadListener.coloniesReloaded(applied);
+				updateColonies();
+			}
+		});
+	}
+
+	/**
+	 * Apply changes in the CSV file to the colonies in memory.
+	 * Colonies removed from the file are removed. Colonies added to the file
+	 * are added, unless they are already present. Colonies that moved in the file
+	 * are moved, unless they were edited in memory after the file was written.
+	 * That choice is made by {@link ColonyMerger#resolve(Colony, Colony)}, with
+	 * the file's modified time as the time of the file's version.
+	 * @param fileDiff The differences between the old and new versions of the file
+	 * @param fileModified The time the new version of the file was written
+	 * @return The colonies in memory that were added, removed, or changed
+	 */
+	private ColonyDiff applyCsvDiff(ColonyDiff fileDiff, Date fileModified) {
+		final List<Colony> added = new ArrayList<Colony>();
+		final List<Colony> removed = new ArrayList<Colony>();
+		final List<Colony> changed = new ArrayList<Colony>();
+		final List<Integer> conflicts = new ArrayList<Integer>();
+
+		for(Colony csvColony : fileDiff.getRemoved()) {
+			Colony colony = findById(csvColony.getId());
+			if(colony != null) {
+				removed.add(colony);
+				modifiedIndex.remove(colony);
+			}
+		}
+		for(Colony csvColony : fileDiff.getAdded()) {
+			if(findById(csvColony.getId()) == null) {
+				added.add(copyCsvColony(csvColony));
+			}
+		}
+		for(Colony csvColony : fileDiff.getChanged()) {
+			Colony colony = findById(csvColony.getId());
+			if(colony == null) {
+				added.add(copyCsvColony(csvColony));
+			}
+			else if(colony.getX() != csvColony.getX() || colony.getY() != csvColony.getY()) {
+				final Colony fileVersion = new Colony(csvColony.getId(), csvColony.getX(), csvColony.getY(),
+						csvColony.isActive(), false, fileModified, null);
+				if(ColonyMerger.resolve(colony, fileVersion) == colony) {
+					// Edited after the file was written
+					conflicts.add(colony.getId());
+					continue;
+				}
+				colony.setPosition(csvColony.getX(), csvColony.getY());
+				modifiedIndex.update(colony);
+				changed.add(colony);
+			}
+		}
+		if(!conflicts.isEmpty()) {
+			System.err.println("Colonies "+conflicts+" moved in the CSV file but were edited later, so the edits were kept");
+		}
+		if(store != null && !removed.isEmpty()) {
+			store.remove(removed);
+		}
+
+		// Remove and add in bulk so that the list is sorted only once for each
+		if(!removed.isEmpty()) {
+			colonies.removeAll(new HashSet<Colony>(removed));
+		}
+		if(!added.isEmpty()) {
+			colonies.addAll(added);
+		}
+
+		return new ColonyDiff(added, removed, changed);
+	}
+
+	/**
+	 * Read a changed focus colonies file and apply the differences from the previous version.
+	 * Called on the watcher thread.
+	 * @param name The name of the focus colonies file
+	 */
+	private void reloadFocus(String name) {
+		final TagSet newFocusIds;
+		try {
+			newFocusIds = new FocusColonyFinder(storage, name, colonies).readTags();
+		} catch (IOException e) {
+			System.err.println("Could not read focus colonies file");
+			e.printStackTrace();
+			return;
+		}
+
+		reloadExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				final List<Colony> changed = applyFocusIds(newFocusIds);
+				if(!changed.isEmpty()) {
+					reloadListener.coloniesReloaded(new ColonyDiff(new ArrayList<Colony>(), new ArrayList<Colony>(), changed));
+				}
+			}
+		});
+	}
+
+	/**
+	 * Read a changed tag file and replace the tag.
+	 * Called on the watcher thread.
+	 * @param name The name of the tag file
+	 */
+	private void reloadTag(String name) {
+		final TagSet set;
+		try {
+			set = TagFiles.read(storage, name);
+		} catch (IOException e) {
+			System.err.println("Could not read tag file");
+			e.printStackTrace();
+			return;
+		}
+		final String tagName = TagFiles.tagName(name);
+
+		reloadExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				tags.put(tagName, set);
+			}
+		});
+	}
+
+	/**
+	 * Mark colonies as focus colonies or not focus colonies, changing only the colonies
+	 * whose state differs from the previous set of focus IDs
+	 * @param newFocusIds The new focus colony IDs
+	 * @return The colonies that were changed
+	 */
+	private List<Colony> applyFocusIds(TagSet newFocusIds) {
+		final List<Colony> changed = new ArrayList<Colony>();
+		// Only the IDs in exactly one of the old and new sets can change
+		for(Colony colony : focusIds.xor(newFocusIds).filter(colonies)) {
+			final boolean focus = newFocusIds.contains(colony.getId());
+			if(colony.isFocusColony() != focus) {
+				colony.setFocusColony(focus);
+				changed.add(colony);
+			}
+		}
+
+		focusIds = newFocusIds;
+		return changed;
+	}
+
+	/**
+	 * @param colonyId A colony ID
+	 * @return The colony in memory with the given ID, or null if none exists
+	 */
+	private Colony findById(int colonyId) {
+		try {
+			return colonies.getById(colonyId);
+		} catch (NoSuchColonyException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Copy colonies read from the CSV file, so that the colonies in memory can be changed
+	 * while the CSV versions are kept for comparison
+	 * @param csvColonies The colonies read from the CSV file
+	 * @return A list of copies
+	 */
+	private static ColonyList copyCsvColonies(ColonyList csvColonies) {
+		List<Colony> copies = new ArrayList<Colony>(csvColonies.size());
+		for(Colony colony : csvColonies) {
+			copies.add(copyCsvColony(colony));
+		}
+		return new ColonyList(copies);
+	}
+
+	private static Colony copyCsvColony(Colony colony) {
+		return new Colony(colony.getId(), colony.getX(), colony.getY(), colony.isActive());
+	}
+
+	/**
+	 * @param list A list of colonies
+	 * @param colony A colony
+	 * @return true if the list contains the same colony object, not only one with the same ID
+	 */
+	private static boolean containsSame(ColonyList list, Colony colony) {
+		try {
+			return list.getById(colony.getId()) == colony;
+		} catch (NoSuchColonyException e) {
+			return false;
+		}
 	}
 
 
@@ -126,7 +688,13 @@ public class MemoryCardDataProvider implements ColonyProvider {
 	 */
 	@Override
 	public void updateColonies() throws UnsupportedOperationException {
-		new FileWriteTask().start();
+		for(Colony colony : colonies) {
+			modifiedIndex.update(colony);
+		}
+		if(store != null) {
+			store.write(colonies);
+		}
+		new FileWriteTask(true).start();
 	}
 
 	/* (non-Javadoc)
@@ -135,8 +703,31 @@ public class MemoryCardDataProvider implements ColonyProvider {
 	@Override
 	public void updateColony(Colony colony)
 			throws UnsupportedOperationException {
-		new FileWriteTask().start();
+		modifiedIndex.update(colony);
+		if(store != null) {
+			store.updateColony(colony);
+			jsonStale = true;
+			new FileWriteTask(false).start();
+		}
+		else {
+			new FileWriteTask(true).start();
+		}
+	}
 
+	/**
+	 * Stop watching the data directory. If colonies are kept in a database, write any
+	 * changes that are only in the database to the JSON file and close the database.
+	 * This blocks until both have been written. This provider must not be
+	 * changed after this method is called.
+	 */
+	public void close() {
+		stopWatching();
+		if(store != null) {
+			if(jsonStale) {
+				new FileWriteTask(true).run();
+			}
+			store.close();
+		}
 	}
 
 	/**
@@ -147,8 +738,8 @@ public class MemoryCardDataProvider implements ColonyProvider {
 	 * <ul>
 	 * <li>Every colony in supplement but not base included as-is</li>
 	 * <li>Every colony in base but not supplement included as-is</li>
-	 * <li>For every colony in both sets, the copy from base will be ignored
-	 * and the copy from supplement will be used</li>
+	 * <li>For every colony in both sets, the copy from supplement will be used,
+	 * unless the copy from base has a later modified time</li>
 	 * </ul>
 	 * Colonies are considered equal if their IDs as returned by {@link Colony#getId()}
 	 * are the same.
@@ -161,50 +752,42 @@ public class MemoryCardDataProvider implements ColonyProvider {
 	 */
 	private ColonyList extend(ColonyList base, ColonyList supplement) {
 		//Note: base and supplement contain references to different colony objects with the same IDs
-
-		ColonyList finalSet = new ColonyList();
-
-		for(Colony colony : base) {
-			int id = colony.getId();
-
-			Colony supplementColony = supplement.getById(id);
-			if(supplementColony != null) {
-				//It's in the supplement set, so just use the version from the supplement
-				finalSet.add(supplementColony);
-			}
-			else {
-				//This colony isn't in the supplement. Use the version from the base.
-				finalSet.add(colony);
-			}
-		}
-		//Add every colony that's in the supplement
-		for(Colony supplementColony : supplement) {
-			int id = supplementColony.getId();
-
-			Colony baseColony = base.getById(id);
-			if(baseColony == null) {
-				//If this colony is in the base set, it's already been added.
-				//Here, it isn't in the base set, so it's added to the final set.
-				finalSet.add(supplementColony);
-			}
+		//Both lists are sorted by ID, so they can be merged in one pass.
+		MergeReport report = new MergeReport();
+		ColonyList finalSet = ColonyMerger.merge(base, supplement, report);
+		if(!report.getConflicts().isEmpty()) {
+			System.err.println("Conflicting changes to colonies "+report.getConflicts()+" resolved by modified time");
 		}
-
 		return finalSet;
 	}
 
 	/**
-	 * A thread that writes the colonies to the JSON file
+	 * A thread that writes the colonies to the JSON file and saves their positions
 	 * 
 	 * @author Sam Crow
 	 */
 	private class FileWriteTask extends Thread {
 
+		/** If the JSON file should be written */
+		private final boolean writeJson;
+
+		/**
+		 * Constructor
+		 * @param writeJson true to write the JSON file, false to only save the
+		 * positions. Colonies kept in a database are already saved.
+		 */
+		public FileWriteTask(boolean writeJson) {
+			this.writeJson = writeJson;
+		}
+
 		@Override
 		public void run() {
-			File file = new File(kDir+kJsonFileName);
-
-			FileParser<Colony> parser = new JSONFileParser(file);
-			parser.write(colonies);
+			if(writeJson) {
+				jsonStale = false;
+				FileParser<Colony> parser = new JSONFileParser(storage, jsonName);
+				parser.write(colonies);
+			}
+			saveLatLonColumns();
 
 		}
 	}
@@ -0,0 +1,535 @@
+package org.samcrow.data.provider;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.samcrow.colonynavigator3.data.Colony;
+import org.samcrow.colonynavigator3.data.ColonyList;
+import org.samcrow.colonynavigator3.data.TagSet;
+import org.samcrow.data.io.FileParser;
+import org.samcrow.data.io.JSONColonyReader;
+import org.samcrow.data.io.JSONColonyWriter;
+import org.samcrow.data.sql.SQLDatabase;
+
+/**
+ * Provides colonies from an SQLite database.
+ *
+ * The database should be opened in write-ahead logging mode, as
+ * {@link org.samcrow.data.sql.AndroidSQLDatabase} and
+ * {@link org.samcrow.data.sql.JDBCSQLDatabase} do, so that each small
+ * transaction is an append to the log instead of a rewrite of the database.
+ * The first time a database is used, it is filled with the colonies from
+ * another source, normally colonies.json or colonies.csv.
+ *
+ * Calls to {@link #updateColony(Colony)}, {@link #updateColonies()},
+ * {@link #write(Collection)} and {@link #remove(Collection)} copy the colony data
+ * and queue it to be written on a background thread with one prepared statement.
+ * Changes that arrive while a write is in progress are combined and written
+ * in one transaction, and only the latest change to each colony is written.
+ *
+ * In addition to the list of all colonies, this class can find colonies
+ * by area and by flags using indexes in the database.
+ *
+ * @author Sam Crow
+ */
+public class SQLiteColonyProvider implements ColonyProvider {
+
+	/** Flag bit for active colonies */
+	public static final int FLAG_ACTIVE = 1;
+	/** Flag bit for visited colonies */
+	public static final int FLAG_VISITED = 2;
+
+	/**
+	 * The size, in meters, of the square spatial buckets used to index colonies by area
+	 */
+	public static final double BUCKET_SIZE = 50;
+
+	/** The schema version, stored in the database's user_version */
+	private static final int SCHEMA_VERSION = 1;
+
+	private static final String SELECT_ALL = "SELECT id, x, y, flags, modified, attributes FROM colonies ORDER BY id";
+	private static final String UPSERT = "INSERT OR REPLACE INTO colonies (id, x, y, bucket_x, bucket_y, flags, modified, attributes) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+	private static final String DELETE = "DELETE FROM colonies WHERE id = ?";
+
+	/**
+	 * A copy of the data from one colony, taken when a change was requested
+	 */
+	private static class Row {
+		int id;
+		/** If the colony should be deleted instead of written */
+		boolean deleted;
+		double x;
+		double y;
+		int flags;
+		Date modified;
+		String attributes;
+
+		static Row fromColony(Colony colony) {
+			final Row row = new Row();
+			row.id = colony.getId();
+			row.x = colony.getX();
+			row.y = colony.getY();
+			row.flags = flagsOf(colony);
+			row.modified = colony.getModified();
+			final Map<String, Object> attributes = colony.getAttributes();
+			if(!attributes.isEmpty()) {
+				try {
+					row.attributes = JSONColonyWriter.toJSON(attributes);
+				} catch (IOException e) {
+					System.err.println("Could not save the attributes of colony " + row.id);
+					e.printStackTrace();
+				}
+			}
+			return row;
+		}
+
+		static Row deletion(Colony colony) {
+			final Row row = new Row();
+			row.id = colony.getId();
+			row.deleted = true;
+			return row;
+		}
+	}
+
+	private final SQLDatabase database;
+
+	private final ColonyList colonies;
+
+	/** If the database was empty and was filled from the migration source */
+	private final boolean migrated;
+
+	/** The thread that writes to and queries the database */
+	private final ExecutorService writer = Executors.newSingleThreadExecutor();
+
+	/** Rows waiting to be written, by colony ID. Guarded by itself. */
+	private final Map<Integer, Row> pending = new LinkedHashMap<Integer, Row>();
+
+	/** If a flush task has been submitted and has not yet taken the pending rows */
+	private boolean flushScheduled = false;
+
+	/** The upsert statement. Used only on the writer thread. */
+	private SQLDatabase.Statement upsertStatement;
+
+	/** The delete statement. Used only on the writer thread. */
+	private SQLDatabase.Statement deleteStatement;
+
+	/**
+	 * Constructor. This creates the tables if necessary and reads all the
+	 * colonies, so it blocks.
+	 * @param database The database to use. This provider closes it in {@link #close()}.
+	 * @param migrationSource The source of colonies to put in the database if
+	 * it has none, or null to start with no colonies
+	 * @throws IOException if the database could not be read
+	 */
+	public SQLiteColonyProvider(SQLDatabase database, FileParser<Colony> migrationSource) throws IOException {
+		this.database = database;
+		createSchema();
+
+		ColonyList loaded = readAll();
+		if(loaded.isEmpty() && migrationSource != null) {
+			loaded = new ColonyList(migrationSource.parse());
+			final List<Row> rows = new ArrayList<Row>(loaded.size());
+			for(Colony colony : loaded) {
+				rows.add(Row.fromColony(colony));
+			}
+			callOnWriter(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					writeRows(rows);
+					return null;
+				}
+			});
+			migrated = true;
+		}
+		else {
+			migrated = false;
+		}
+		colonies = loaded;
+	}
+
+	/**
+	 * @return true if the database had no colonies when this provider was
+	 * created and was filled from the migration source
+	 */
+	public boolean wasMigrated() {
+		return migrated;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.samcrow.data.provider.ColonyProvider#getColonies()
+	 */
+	@Override
+	public ColonyList getColonies() {
+		return colonies;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.samcrow.data.provider.ColonyProvider#updateColonies()
+	 */
+	@Override
+	public void updateColonies() throws UnsupportedOperationException {
+		write(colonies);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.samcrow.data.provider.ColonyProvider#updateColony(org.samcrow.data.Colony)
+	 */
+	@Override
+	public void updateColony(Colony colony)
+			throws UnsupportedOperationException {
+		final List<Row> rows = new ArrayList<Row>(1);
+		rows.add(Row.fromColony(colony));
+		enqueue(rows);
+	}
+
+	/**
+	 * Queue colonies to be written, adding them to the database or replacing
+	 * the rows with the same IDs. The colonies do not need to be the objects
+	 * in {@link #getColonies()}, and are not added to it.
+	 * @param changed The colonies to write
+	 */
+	public void write(Collection<Colony> changed) {
+		final List<Row> rows = new ArrayList<Row>(changed.size());
+		for(Colony colony : changed) {
+			rows.add(Row.fromColony(colony));
+		}
+		enqueue(rows);
+	}
+
+	/**
+	 * Queue colonies to be deleted from the database. They are not removed
+	 * from {@link #getColonies()}.
+	 * @param removed The colonies to delete
+	 */
+	public void remove(Collection<Colony> removed) {
+		final List<Row> rows = new ArrayList<Row>(removed.size());
+		for(Colony colony : removed) {
+			rows.add(Row.deletion(colony));
+		}
+		enqueue(rows);
+	}
+
+	/**
+	 * Find the IDs of the colonies within a rectangular area.
+	 * This runs after all changes already queued have been written, and
+	 * blocks until it is done.
+	 * @param minX The minimum X-coordinate in meters
+	 * @param minY The minimum Y-coordinate in meters
+	 * @param maxX The maximum X-coordinate in meters
+	 * @param maxY The maximum Y-coordinate in meters
+	 * @return The IDs of the colonies in the area
+	 * @throws IOException if the database could not be queried
+	 */
+	public TagSet findIdsInArea(double minX, double minY, double maxX, double maxY) throws IOException {
+		final String[] args = new String[] {
+				String.valueOf(bucket(minX)), String.valueOf(bucket(maxX)),
+				String.valueOf(bucket(minY)), String.valueOf(bucket(maxY)),
+				String.valueOf(minX), String.valueOf(maxX),
+				String.valueOf(minY), String.valueOf(maxY),
+		};
+		return queryIds("SELECT id FROM colonies"
+				+ " WHERE bucket_x BETWEEN ? AND ? AND bucket_y BETWEEN ? AND ?"
+				+ " AND x BETWEEN ? AND ? AND y BETWEEN ? AND ?"
+				+ " ORDER BY id", args);
+	}
+
+	/**
+	 * Find the IDs of the colonies whose flags match a pattern.
+	 * This runs after all changes already queued have been written, and
+	 * blocks until it is done.
+	 *
+	 * For example, <code>findIdsWithFlags(FLAG_ACTIVE | FLAG_VISITED, FLAG_ACTIVE)</code>
+	 * finds the active colonies that have not been visited.
+	 *
+	 * @param mask The flags to check, a combination of {@link #FLAG_ACTIVE}
+	 * and {@link #FLAG_VISITED}
+	 * @param value The required values of the flags in mask
+	 * @return The IDs of the colonies with matching flags
+	 * @throws IOException if the database could not be queried
+	 */
+	public TagSet findIdsWithFlags(int mask, int value) throws IOException {
+		// List every combination of flags that matches, so that the index can be used
+		final StringBuilder values = new StringBuilder();
+		final int allFlags = FLAG_ACTIVE | FLAG_VISITED;
+		for(int flags = 0; flags <= allFlags; flags++) {
+			if((flags & mask) == (value & mask)) {
+				if(values.length() != 0) {
+					values.append(',');
+				}
+				values.append(flags);
+			}
+		}
+		return queryIds("SELECT id FROM colonies WHERE flags IN (" + values + ") ORDER BY id", null);
+	}
+
+	/**
+	 * Write all queued changes and close the database. This blocks until
+	 * the changes have been written. This provider must not be used after
+	 * this method is called.
+	 */
+	public void close() {
+		writer.execute(new Runnable() {
+			@Override
+			public void run() {
+				if(upsertStatement != null) {
+					upsertStatement.close();
+				}
+				if(deleteStatement != null) {
+					deleteStatement.close();
+				}
+				database.close();
+			}
+		});
+		writer.shutdown();
+		try {
+			if(!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+				System.err.println("Timed out waiting for colonies to be written to the database");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Create the table and indexes if the database does not have them
+	 * @throws IOException if the schema could not be created
+	 */
+	private void createSchema() throws IOException {
+		final int version;
+		final SQLDatabase.Rows rows = database.query("PRAGMA user_version", null);
+		try {
+			version = rows.next() ? rows.getInt(0) : 0;
+		}
+		finally {
+			rows.close();
+		}
+		if(version == SCHEMA_VERSION) {
+			return;
+		}
+		if(version != 0) {
+			throw new IOException("Unknown colony database version " + version);
+		}
+
+		boolean successful = false;
+		database.beginTransaction();
+		try {
+			// id is the row ID, so it is indexed without a separate index
+			database.execute("CREATE TABLE colonies ("
+					+ "id INTEGER PRIMARY KEY, "
+					+ "x REAL NOT NULL, "
+					+ "y REAL NOT NULL, "
+					+ "bucket_x INTEGER NOT NULL, "
+					+ "bucket_y INTEGER NOT NULL, "
+					+ "flags INTEGER NOT NULL, "
+					+ "modified INTEGER, "
+					+ "attributes TEXT)");
+			database.execute("CREATE INDEX colonies_bucket ON colonies (bucket_x, bucket_y)");
+			database.execute("CREATE INDEX colonies_flags ON colonies (flags)");
+			database.execute("PRAGMA user_version = " + SCHEMA_VERSION);
+			successful = true;
+		}
+		finally {
+			database.endTransaction(successful);
+		}
+	}
+
+	/**
+	 * Queue rows to be written, replacing any older pending rows for the same colonies
+	 * @param rows The rows to write
+	 */
+	private void enqueue(Collection<Row> rows) {
+		synchronized(pending) {
+			for(Row row : rows) {
+				// Remove first so that the latest changes are written last
+				pending.remove(row.id);
+				pending.put(row.id, row);
+			}
+			if(!flushScheduled) {
+				flushScheduled = true;
+				writer.execute(flushTask);
+			}
+		}
+	}
+
+	/**
+	 * Takes all pending rows and writes them in one transaction
+	 */
+	private final Runnable flushTask = new Runnable() {
+		@Override
+		public void run() {
+			final List<Row> rows;
+			synchronized(pending) {
+				rows = new ArrayList<Row>(pending.values());
+				pending.clear();
+				flushScheduled = false;
+			}
+			try {
+				writeRows(rows);
+			} catch (IOException e) {
+				System.err.println("Could not write " + rows.size() + " colonies to the database");
+				e.printStackTrace();
+			}
+		}
+	};
+
+	/**
+	 * Write rows to the database in one transaction. This is called only on
+	 * the writer thread.
+	 * @param rows The rows to write
+	 * @throws IOException if the rows could not be written
+	 */
+	private void writeRows(Collection<Row> rows) throws IOException {
+		if(upsertStatement == null) {
+			upsertStatement = database.compile(UPSERT);
+			deleteStatement = database.compile(DELETE);
+		}
+		final SQLDatabase.Statement upsert = upsertStatement;
+		final SQLDatabase.Statement delete = deleteStatement;
+
+		boolean successful = false;
+		database.beginTransaction();
+		try {
+			for(Row row : rows) {
+				if(row.deleted) {
+					delete.bindLong(1, row.id);
+					delete.execute();
+					continue;
+				}
+				upsert.bindLong(1, row.id);
+				upsert.bindDouble(2, row.x);
+				upsert.bindDouble(3, row.y);
+				upsert.bindLong(4, bucket(row.x));
+				upsert.bindLong(5, bucket(row.y));
+				upsert.bindLong(6, row.flags);
+				if(row.modified != null) {
+					upsert.bindLong(7, row.modified.getTime());
+				}
+				else {
+					upsert.bindNull(7);
+				}
+				if(row.attributes != null) {
+					upsert.bindString(8, row.attributes);
+				}
+				else {
+					upsert.bindNull(8);
+				}
+				upsert.execute();
+			}
+			successful = true;
+		}
+		finally {
+			database.endTransaction(successful);
+		}
+	}
+
+	/**
+	 * Read all the colonies from the database
+	 * @return The colonies
+	 * @throws IOException if the colonies could not be read
+	 */
+	private ColonyList readAll() throws IOException {
+		final List<Colony> list = new ArrayList<Colony>();
+		final SQLDatabase.Rows rows = database.query(SELECT_ALL, null);
+		try {
+			while(rows.next()) {
+				final int id = rows.getInt(0);
+				final int flags = rows.getInt(3);
+				final Date modified = rows.isNull(4) ? null : new Date(rows.getLong(4));
+				Map<String, Object> attributes = null;
+				if(!rows.isNull(5)) {
+					try {
+						attributes = JSONColonyReader.parseAttributes(rows.getString(5));
+					} catch (IOException e) {
+						System.err.println("Could not read the attributes of colony " + id);
+						e.printStackTrace();
+					}
+				}
+
+				list.add(new Colony(id, rows.getDouble(1), rows.getDouble(2),
+						(flags & FLAG_ACTIVE) != 0, (flags & FLAG_VISITED) != 0, modified, attributes));
+			}
+		}
+		finally {
+			rows.close();
+		}
+		// Already in ID order
+		return new ColonyList(list);
+	}
+
+	/**
+	 * Run a query on the writer thread that returns colony IDs in order in its first column
+	 * @param sql The query
+	 * @param args The query arguments
+	 * @return The returned IDs
+	 * @throws IOException if the query failed
+	 */
+	private TagSet queryIds(final String sql, final String[] args) throws IOException {
+		return callOnWriter(new Callable<TagSet>() {
+			@Override
+			public TagSet call() throws IOException {
+				int[] ids = new int[64];
+				int count = 0;
+				final SQLDatabase.Rows rows = database.query(sql, args);
+				try {
+					while(rows.next()) {
+						if(count == ids.length) {
+							final int[] larger = new int[ids.length * 2];
+							System.arraycopy(ids, 0, larger, 0, count);
+							ids = larger;
+						}
+						ids[count++] = rows.getInt(0);
+					}
+				}
+				finally {
+					rows.close();
+				}
+				return TagSet.fromSorted(ids, count);
+			}
+		});
+	}
+
+	/**
+	 * Run a task on the writer thread, after the tasks already queued, and wait for it
+	 * @param task The task to run
+	 * @return The value returned by the task
+	 * @throws IOException if the task threw an exception or the wait was interrupted
+	 */
+	private <T> T callOnWriter(Callable<T> task) throws IOException {
+		try {
+			return writer.submit(task).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the database");
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Database task failed", e.getCause());
+		}
+	}
+
+	private static int flagsOf(Colony colony) {
+		int flags = 0;
+		if(colony.isActive()) {
+			flags |= FLAG_ACTIVE;
+		}
+		if(colony.isVisited()) {
+			flags |= FLAG_VISITED;
+		}
+		return flags;
+	}
+
+	private static long bucket(double coordinate) {
+		return (long) Math.floor(coordinate / BUCKET_SIZE);
+	}
+}
@@ -0,0 +1,168 @@
+package org.samcrow.data.sql;
+
+import java.io.File;
+import java.io.IOException;
+
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * An SQLite database opened with the Android database classes.
+ * The Android classes report errors with unchecked exceptions, which are
+ * converted to IOExceptions.
+ *
+ * @author Sam Crow
+ */
+public class AndroidSQLDatabase implements SQLDatabase {
+
+	private final SQLiteDatabase database;
+
+	private AndroidSQLDatabase(SQLiteDatabase database) {
+		this.database = database;
+	}
+
+	/**
+	 * Open a database, creating it if it does not exist, and enable write-ahead logging
+	 * @param file The database file. Its directory is created if necessary.
+	 * @return The open database
+	 * @throws IOException if the database could not be opened
+	 */
+	public static AndroidSQLDatabase open(File file) throws IOException {
+		file.getParentFile().mkdirs();
+		try {
+			final SQLiteDatabase database = SQLiteDatabase.openOrCreateDatabase(file, null);
+			database.enableWriteAheadLogging();
+			return new AndroidSQLDatabase(database);
+		} catch (SQLException e) {
+			throw new IOException("Could not open database " + file.getAbsolutePath(), e);
+		}
+	}
+
+	@Override
+	public void execute(String sql) throws IOException {
+		try {
+			database.execSQL(sql);
+		} catch (SQLException e) {
+			throw new IOException("Could not run " + sql, e);
+		}
+	}
+
+	@Override
+	public Rows query(String sql, String[] args) throws IOException {
+		final Cursor cursor;
+		try {
+			cursor = database.rawQuery(sql, args);
+		} catch (SQLException e) {
+			throw new IOException("Could not run " + sql, e);
+		}
+		return new Rows() {
+			@Override
+			public boolean next() {
+				return cursor.moveToNext();
+			}
+
+			@Override
+			public boolean isNull(int column) {
+				return cursor.isNull(column);
+			}
+
+			@Override
+			public int getInt(int column) {
+				return cursor.getInt(column);
+			}
+
+			@Override
+			public long getLong(int column) {
+				return cursor.getLong(column);
+			}
+
+			@Override
+			public double getDouble(int column) {
+				return cursor.getDouble(column);
+			}
+
+			@Override
+			public String getString(int column) {
+				return cursor.getString(column);
+			}
+
+			@Override
+			public void close() {
+				cursor.close();
+			}
+		};
+	}
+
+	@Override
+	public Statement compile(final String sql) throws IOException {
+		final SQLiteStatement statement;
+		try {
+			statement = database.compileStatement(sql);
+		} catch (SQLException e) {
+			throw new IOException("Could not compile " + sql, e);
+		}
+		return new Statement() {
+			@Override
+			public void bindLong(int index, long value) {
+				statement.bindLong(index, value);
+			}
+
+			@Override
+			public void bindDouble(int index, double value) {
+				statement.bindDouble(index, value);
+			}
+
+			@Override
+			public void bindString(int index, String value) {
+				statement.bindString(index, value);
+			}
+
+			@Override
+			public void bindNull(int index) {
+				statement.bindNull(index);
+			}
+
+			@Override
+			public void execute() throws IOException {
+				try {
+					statement.execute();
+				} catch (SQLException e) {
+					throw new IOException("Could not run " + sql, e);
+				}
+			}
+
+			@Override
+			public void close() {
+				statement.close();
+			}
+		};
+	}
+
+	@Override
+	public void beginTransaction() throws IOException {
+		try {
+			database.beginTransaction();
+		} catch (SQLException e) {
+			throw new IOException("Could not begin a transaction", e);
+		}
+	}
+
+	@Override
+	public void endTransaction(boolean successful) throws IOException {
+		try {
+			if(successful) {
+				database.setTransactionSuccessful();
+			}
+			database.endTransaction();
+		} catch (SQLException e) {
+			throw new IOException("Could not end a transaction", e);
+		}
+	}
+
+	@Override
+	public void close() {
+		database.close();
+	}
+}
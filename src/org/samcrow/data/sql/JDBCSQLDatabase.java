@@ -0,0 +1,243 @@
+package org.samcrow.data.sql;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * An SQLite database opened through JDBC, for use on a desktop JVM.
+ * This needs an SQLite JDBC driver that accepts <code>jdbc:sqlite:</code>
+ * URLs, such as org.xerial:sqlite-jdbc, on the class path.
+ *
+ * All threads share one connection, so their statements run one at a time.
+ *
+ * @author Sam Crow
+ */
+public class JDBCSQLDatabase implements SQLDatabase {
+
+	private final Connection connection;
+
+	private JDBCSQLDatabase(Connection connection) {
+		this.connection = connection;
+	}
+
+	/**
+	 * Open a database, creating it if it does not exist, and enable write-ahead logging
+	 * @param file The database file. Its directory is created if necessary.
+	 * @return The open database
+	 * @throws IOException if the database could not be opened
+	 */
+	public static JDBCSQLDatabase open(File file) throws IOException {
+		file.getAbsoluteFile().getParentFile().mkdirs();
+		try {
+			final Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+			final JDBCSQLDatabase database = new JDBCSQLDatabase(connection);
+			database.execute("PRAGMA journal_mode=WAL");
+			return database;
+		} catch (SQLException e) {
+			throw new IOException("Could not open database " + file.getAbsolutePath(), e);
+		}
+	}
+
+	@Override
+	public void execute(String sql) throws IOException {
+		try {
+			final java.sql.Statement statement = connection.createStatement();
+			try {
+				statement.execute(sql);
+			}
+			finally {
+				statement.close();
+			}
+		} catch (SQLException e) {
+			throw new IOException("Could not run " + sql, e);
+		}
+	}
+
+	@Override
+	public Rows query(final String sql, String[] args) throws IOException {
+		final ResultSet results;
+		try {
+			final PreparedStatement statement = connection.prepareStatement(sql);
+			if(args != null) {
+				for(int i = 0; i < args.length; i++) {
+					statement.setString(i + 1, args[i]);
+				}
+			}
+			results = statement.executeQuery();
+		} catch (SQLException e) {
+			throw new IOException("Could not run " + sql, e);
+		}
+		return new Rows() {
+			@Override
+			public boolean next() throws IOException {
+				try {
+					return results.next();
+				} catch (SQLException e) {
+					throw new IOException("Could not read a row of " + sql, e);
+				}
+			}
+
+			@Override
+			public boolean isNull(int column) throws IOException {
+				try {
+					return results.getObject(column + 1) == null;
+				} catch (SQLException e) {
+					throw new IOException("Could not read a row of " + sql, e);
+				}
+			}
+
+			@Override
+			public int getInt(int column) throws IOException {
+				try {
+					return results.getInt(column + 1);
+				} catch (SQLException e) {
+					throw new IOException("Could not read a row of " + sql, e);
+				}
+			}
+
+			@Override
+			public long getLong(int column) throws IOException {
+				try {
+					return results.getLong(column + 1);
+				} catch (SQLException e) {
+					throw new IOException("Could not read a row of " + sql, e);
+				}
+			}
+
+			@Override
+			public double getDouble(int column) throws IOException {
+				try {
+					return results.getDouble(column + 1);
+				} catch (SQLException e) {
+					throw new IOException("Could not read a row of " + sql, e);
+				}
+			}
+
+			@Override
+			public String getString(int column) throws IOException {
+				try {
+					return results.getString(column + 1);
+				} catch (SQLException e) {
+					throw new IOException("Could not read a row of " + sql, e);
+				}
+			}
+
+			@Override
+			public void close() {
+				try {
+					results.getStatement().close();
+				} catch (SQLException e) {
+					e.printStackTrace();
+				}
+			}
+		};
+	}
+
+	@Override
+	public Statement compile(final String sql) throws IOException {
+		final PreparedStatement statement;
+		try {
+			statement = connection.prepareStatement(sql);
+		} catch (SQLException e) {
+			throw new IOException("Could not compile " + sql, e);
+		}
+		return new Statement() {
+			@Override
+			public void bindLong(int index, long value) throws IOException {
+				try {
+					statement.setLong(index, value);
+				} catch (SQLException e) {
+					throw new IOException("Could not bind a value to " + sql, e);
+				}
+			}
+
+			@Override
+			public void bindDouble(int index, double value) throws IOException {
+				try {
+					statement.setDouble(index, value);
+				} catch (SQLException e) {
+					throw new IOException("Could not bind a value to " + sql, e);
+				}
+			}
+
+			@Override
+			public void bindString(int index, String value) throws IOException {
+				try {
+					statement.setString(index, value);
+				} catch (SQLException e) {
+					throw new IOException("Could not bind a value to " + sql, e);
+				}
+			}
+
+			@Override
+			public void bindNull(int index) throws IOException {
+				try {
+					statement.setNull(index, Types.NULL);
+				} catch (SQLException e) {
+					throw new IOException("Could not bind a value to " + sql, e);
+				}
+			}
+
+			@Override
+			public void execute() throws IOException {
+				try {
+					statement.execute();
+				} catch (SQLException e) {
+					throw new IOException("Could not run " + sql, e);
+				}
+			}
+
+			@Override
+			public void close() {
+				try {
+					statement.close();
+				} catch (SQLException e) {
+					e.printStackTrace();
+				}
+			}
+		};
+	}
+
+	@Override
+	public void beginTransaction() throws IOException {
+		try {
+			connection.setAutoCommit(false);
+		} catch (SQLException e) {
+			throw new IOException("Could not begin a transaction", e);
+		}
+	}
+
+	@Override
+	public void endTransaction(boolean successful) throws IOException {
+		try {
+			try {
+				if(successful) {
+					connection.commit();
+				}
+				else {
+					connection.rollback();
+				}
+			}
+			finally {
+				connection.setAutoCommit(true);
+			}
+		} catch (SQLException e) {
+			throw new IOException("Could not end a transaction", e);
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+}
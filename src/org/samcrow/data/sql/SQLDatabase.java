@@ -0,0 +1,118 @@
+package org.samcrow.data.sql;
+
+import java.io.IOException;
+
+/**
+ * An open SQLite database.
+ *
+ * {@link org.samcrow.data.provider.SQLiteColonyProvider} uses this interface
+ * instead of the Android database classes, so that it can also be run on a
+ * desktop JVM with a JDBC driver. {@link AndroidSQLDatabase} is used in the
+ * application and {@link JDBCSQLDatabase} is used by tests and desktop tools.
+ *
+ * Implementations are opened in write-ahead logging mode, so that queries
+ * can run while a transaction is being written.
+ *
+ * @author Sam Crow
+ */
+public interface SQLDatabase {
+
+	/**
+	 * The rows returned by a query. The cursor starts before the first row.
+	 * Columns are numbered from 0.
+	 */
+	public interface Rows {
+		/**
+		 * Move to the next row
+		 * @return true if there is another row, false if all rows have been read
+		 * @throws IOException if the row could not be read
+		 */
+		public boolean next() throws IOException;
+
+		public boolean isNull(int column) throws IOException;
+
+		public int getInt(int column) throws IOException;
+
+		public long getLong(int column) throws IOException;
+
+		public double getDouble(int column) throws IOException;
+
+		public String getString(int column) throws IOException;
+
+		/**
+		 * Release the rows. This must be called when the rows are no longer needed.
+		 */
+		public void close();
+	}
+
+	/**
+	 * A compiled statement that can be run many times with different
+	 * arguments. Parameters are numbered from 1. A statement must be used
+	 * only by one thread at a time.
+	 */
+	public interface Statement {
+
+		public void bindLong(int index, long value) throws IOException;
+
+		public void bindDouble(int index, double value) throws IOException;
+
+		public void bindString(int index, String value) throws IOException;
+
+		public void bindNull(int index) throws IOException;
+
+		/**
+		 * Run the statement with the bound arguments. The arguments stay
+		 * bound until they are replaced.
+		 * @throws IOException if the statement failed
+		 */
+		public void execute() throws IOException;
+
+		/**
+		 * Release the statement
+		 */
+		public void close();
+	}
+
+	/**
+	 * Run one SQL statement that does not return rows
+	 * @param sql The statement
+	 * @throws IOException if the statement failed
+	 */
+	public void execute(String sql) throws IOException;
+
+	/**
+	 * Run a query
+	 * @param sql The query
+	 * @param args The values of the query's parameters, or null if it has none
+	 * @return The rows returned
+	 * @throws IOException if the query failed
+	 */
+	public Rows query(String sql, String[] args) throws IOException;
+
+	/**
+	 * Compile a statement to be run many times
+	 * @param sql The statement
+	 * @return The compiled statement
+	 * @throws IOException if the statement could not be compiled
+	 */
+	public Statement compile(String sql) throws IOException;
+
+	/**
+	 * Begin a transaction. Every call must be followed by a call to
+	 * {@link #endTransaction(boolean)} on the same thread.
+	 * @throws IOException if the transaction could not be started
+	 */
+	public void beginTransaction() throws IOException;
+
+	/**
+	 * End the current transaction
+	 * @param successful true to commit the changes, false to roll them back
+	 * @throws IOException if the changes could not be committed
+	 */
+	public void endTransaction(boolean successful) throws IOException;
+
+	/**
+	 * Close the database
+	 */
+	public void close();
+}
@@ -0,0 +1,94 @@
+package org.samcrow.data.storage;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores files in a directory on the file system
+ *
+ * @author Sam Crow
+ */
+public class FileStorage implements Storage {
+
+	private final File dir;
+
+	/**
+	 * Constructor
+	 * @param dir The directory to store files in. This does not need to exist
+	 * until a file is written.
+	 */
+	public FileStorage(File dir) {
+		this.dir = dir;
+	}
+
+	/**
+	 * Create a storage for the directory containing a file
+	 * @param file The file
+	 * @return A storage in which the file can be accessed by {@link File#getName()}
+	 */
+	public static FileStorage forFile(File file) {
+		return new FileStorage(file.getAbsoluteFile().getParentFile());
+	}
+
+	/**
+	 * @return The directory that files are stored in
+	 */
+	public File getDirectory() {
+		return dir;
+	}
+
+	/**
+	 * @param name The name of a file
+	 * @return The file on the file system with that name
+	 */
+	public File getFile(String name) {
+		return new File(dir, name);
+	}
+
+	@Override
+	public InputStream openInput(String name) throws IOException {
+		return new FileInputStream(getFile(name));
+	}
+
+	@Override
+	public OutputStream openOutput(String name) throws IOException {
+		dir.mkdirs();
+		return new FileOutputStream(getFile(name));
+	}
+
+	@Override
+	public boolean exists(String name) {
+		return getFile(name).exists();
+	}
+
+	@Override
+	public String[] list() {
+		final File[] files = dir.listFiles();
+		if(files == null) {
+			return new String[0];
+		}
+		final List<String> names = new ArrayList<String>(files.length);
+		for(File file : files) {
+			if(file.isFile()) {
+				names.add(file.getName());
+			}
+		}
+		return names.toArray(new String[names.size()]);
+	}
+
+	@Override
+	public boolean delete(String name) {
+		return getFile(name).delete();
+	}
+
+	@Override
+	public String describe(String name) {
+		return getFile(name).getAbsolutePath();
+	}
+}
@@ -0,0 +1,86 @@
+package org.samcrow.data.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stores files in memory. This is useful for testing and for measuring
+ * parsing speed without any storage delays.
+ *
+ * A file written through {@link #openOutput(String)} appears when its
+ * stream is closed.
+ *
+ * @author Sam Crow
+ */
+public class MemoryStorage implements Storage {
+
+	private final Map<String, byte[]> files = new HashMap<String, byte[]>();
+
+	/**
+	 * Set the content of a file
+	 * @param name The name of the file
+	 * @param content The content. This is not copied.
+	 */
+	public synchronized void put(String name, byte[] content) {
+		files.put(name, content);
+	}
+
+	/**
+	 * Get the content of a file
+	 * @param name The name of the file
+	 * @return The content, or null if the file does not exist. This is not copied.
+	 */
+	public synchronized byte[] get(String name) {
+		return files.get(name);
+	}
+
+	@Override
+	public InputStream openInput(String name) throws IOException {
+		final byte[] content = get(name);
+		if(content == null) {
+			throw new FileNotFoundException(describe(name));
+		}
+		return new ByteArrayInputStream(content);
+	}
+
+	@Override
+	public OutputStream openOutput(final String name) throws IOException {
+		return new ByteArrayOutputStream() {
+			private boolean closed = false;
+
+			@Override
+			public void close() throws IOException {
+				if(!closed) {
+					closed = true;
+					put(name, toByteArray());
+				}
+			}
+		};
+	}
+
+	@Override
+	public synchronized boolean exists(String name) {
+		return files.containsKey(name);
+	}
+
+	@Override
+	public synchronized String[] list() {
+		return files.keySet().toArray(new String[files.size()]);
+	}
+
+	@Override
+	public synchronized boolean delete(String name) {
+		return files.remove(name) != null;
+	}
+
+	@Override
+	public String describe(String name) {
+		return "memory:" + name;
+	}
+}
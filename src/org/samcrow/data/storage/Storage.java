@@ -0,0 +1,61 @@
+package org.samcrow.data.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A place where named data files can be read and written.
+ *
+ * The readers and writers in {@link org.samcrow.data.io} use this interface
+ * instead of opening files directly, so that they can be run against memory
+ * or a simulated slow memory card as well as the real file system.
+ *
+ * Names are plain file names, without directories.
+ *
+ * @author Sam Crow
+ */
+public interface Storage {
+
+	/**
+	 * Open a file for reading
+	 * @param name The name of the file
+	 * @return A stream of the file's contents. This may not be buffered.
+	 * @throws java.io.FileNotFoundException if the file does not exist
+	 * @throws IOException if the file could not be opened
+	 */
+	public InputStream openInput(String name) throws IOException;
+
+	/**
+	 * Open a file for writing, replacing any existing content.
+	 * The new content may not be visible to readers until the stream is closed.
+	 * @param name The name of the file
+	 * @return A stream that writes to the file. This may not be buffered.
+	 * @throws IOException if the file could not be opened
+	 */
+	public OutputStream openOutput(String name) throws IOException;
+
+	/**
+	 * @param name The name of a file
+	 * @return true if the file exists
+	 */
+	public boolean exists(String name);
+
+	/**
+	 * @return The names of all the files in this storage, in no particular order
+	 */
+	public String[] list();
+
+	/**
+	 * Delete a file
+	 * @param name The name of the file
+	 * @return true if the file was deleted
+	 */
+	public boolean delete(String name);
+
+	/**
+	 * @param name The name of a file
+	 * @return A description of where the file is, for messages
+	 */
+	public String describe(String name);
+}
@@ -0,0 +1,186 @@
+package org.samcrow.data.storage;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * Wraps another storage and slows it down to simulate a slow memory card.
+ *
+ * Opening a file takes a fixed latency, and data is read and written no
+ * faster than a fixed bandwidth. The numbers of bytes read and written are
+ * counted.
+ *
+ * @author Sam Crow
+ */
+public class ThrottledStorage implements Storage {
+
+	private final Storage storage;
+	private final long latencyMillis;
+	private final long bytesPerSecond;
+
+	private long bytesRead = 0;
+	private long bytesWritten = 0;
+
+	/**
+	 * Constructor
+	 * @param storage The storage to wrap
+	 * @param latencyMillis The time, in milliseconds, to wait when a file is opened
+	 * @param bytesPerSecond The largest number of bytes that a stream reads or writes
+	 * each second, or 0 for no limit
+	 */
+	public ThrottledStorage(Storage storage, long latencyMillis, long bytesPerSecond) {
+		this.storage = storage;
+		this.latencyMillis = latencyMillis;
+		this.bytesPerSecond = bytesPerSecond;
+	}
+
+	/**
+	 * @return The total number of bytes read from all files
+	 */
+	public synchronized long getBytesRead() {
+		return bytesRead;
+	}
+
+	/**
+	 * @return The total number of bytes written to all files
+	 */
+	public synchronized long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	@Override
+	public InputStream openInput(String name) throws IOException {
+		sleep(latencyMillis);
+		return new ThrottledInputStream(storage.openInput(name));
+	}
+
+	@Override
+	public OutputStream openOutput(String name) throws IOException {
+		sleep(latencyMillis);
+		return new ThrottledOutputStream(storage.openOutput(name));
+	}
+
+	@Override
+	public boolean exists(String name) {
+		return storage.exists(name);
+	}
+
+	@Override
+	public String[] list() {
+		return storage.list();
+	}
+
+	@Override
+	public boolean delete(String name) {
+		return storage.delete(name);
+	}
+
+	@Override
+	public String describe(String name) {
+		return storage.describe(name) + " (throttled)";
+	}
+
+	private static void sleep(long millis) throws IOException {
+		if(millis <= 0) {
+			return;
+		}
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException();
+		}
+	}
+
+	/**
+	 * Keeps the transfer rate of one stream at or below {@link ThrottledStorage#bytesPerSecond}
+	 */
+	private class Throttle {
+		private final long start = System.currentTimeMillis();
+		private long transferred = 0;
+
+		/**
+		 * Record a transfer and wait until it would have finished at the limited rate
+		 * @param count The number of bytes transferred
+		 */
+		void transferred(int count) throws IOException {
+			if(count <= 0 || bytesPerSecond <= 0) {
+				return;
+			}
+			transferred += count;
+			final long due = start + transferred * 1000 / bytesPerSecond;
+			sleep(due - System.currentTimeMillis());
+		}
+	}
+
+	private class ThrottledInputStream extends FilterInputStream {
+		private final Throttle throttle = new Throttle();
+
+		ThrottledInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			final int value = super.read();
+			if(value != -1) {
+				counted(1);
+			}
+			return value;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			final int count = super.read(buffer, offset, length);
+			counted(count);
+			return count;
+		}
+
+		@Override
+		public long skip(long count) throws IOException {
+			final long skipped = super.skip(count);
+			throttle.transferred((int) skipped);
+			return skipped;
+		}
+
+		private void counted(int count) throws IOException {
+			if(count > 0) {
+				synchronized (ThrottledStorage.this) {
+					bytesRead += count;
+				}
+				throttle.transferred(count);
+			}
+		}
+	}
+
+	private class ThrottledOutputStream extends FilterOutputStream {
+		private final Throttle throttle = new Throttle();
+
+		ThrottledOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int value) throws IOException {
+			out.write(value);
+			counted(1);
+		}
+
+		@Override
+		public void write(byte[] buffer, int offset, int length) throws IOException {
+			// FilterOutputStream writes one byte at a time by default
+			out.write(buffer, offset, length);
+			counted(length);
+		}
+
+		private void counted(int count) throws IOException {
+			synchronized (ThrottledStorage.this) {
+				bytesWritten += count;
+			}
+			throttle.transferred(count);
+		}
+	}
+}
@@ -0,0 +1,438 @@
+package org.samcrow.data.sync;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.samcrow.colonynavigator3.data.Colony;
+import org.samcrow.colonynavigator3.data.ColonyList;
+import org.samcrow.colonynavigator3.data.ColonyList.NoSuchColonyException;
+import org.samcrow.data.merge.ColonyDiff;
+import org.samcrow.data.merge.ColonyMerger;
+import org.samcrow.data.provider.ColonyProvider;
+
+/**
+ * Syncs the colonies of a {@link ColonyProvider} with a {@link SyncServer}.
+ *
+ * A sync first pushes the colonies edited on this device since they were
+ * last synced, in batches. Several batches are sent before waiting for the
+ * server to acknowledge them. It then pulls the colonies that the server has
+ * received since the last pull.
+ *
+ * A colony counts as edited when its modified time is different from the one
+ * recorded when it was last sent or received (see {@link SyncedTimes}).
+ * Colonies received from other devices keep those devices' modified times,
+ * which can be ahead of this device's clock, so the times are only compared
+ * for equality and never used as a position to continue from.
+ *
+ * The pull position is saved in a state file after each batch is received,
+ * and the synced times after the sync, or when it fails. If the connection is
+ * lost, the next sync continues from the last completed batch. Anything sent
+ * or received again because its progress was not saved is recognized by the
+ * other side as a copy it already has.
+ *
+ * @author Sam Crow
+ */
+public class SyncClient {
+
+	/**
+	 * What happened during a sync
+	 */
+	public static class Result {
+		/** The number of colonies sent to the server */
+		public int pushed;
+		/** The number of sent colonies that the server stored */
+		public int accepted;
+		/** The number of colonies received from the server */
+		public int pulled;
+		/** The colonies that were added or changed locally */
+		public ColonyDiff diff;
+
+		@Override
+		public String toString() {
+			return "Sent " + pushed + " colonies (" + accepted + " new to the server), received " + pulled;
+		}
+	}
+
+	/** The largest number of colonies in one pushed batch */
+	private static final int BATCH_SIZE = 200;
+	/** The largest number of pushed batches that can be waiting for acknowledgement */
+	private static final int WINDOW = 4;
+	/** The largest number of colonies to request in one pull */
+	private static final int PULL_LIMIT = 500;
+	/** Timeout for connecting, in milliseconds */
+	private static final int CONNECT_TIMEOUT = 10000;
+	/** Timeout for reading a response, in milliseconds */
+	private static final int READ_TIMEOUT = 30000;
+
+	private static final String KEY_CURSOR = "cursor";
+	private static final String KEY_EPOCH = "epoch";
+
+	/**
+	 * A batch of colonies to push
+	 */
+	private static class Batch {
+		final JSONArray colonies = new JSONArray();
+		/** The ID of each colony, in increasing order */
+		final int[] ids = new int[BATCH_SIZE];
+		/** The modified time of each colony */
+		final long[] times = new long[BATCH_SIZE];
+		int count;
+		int sequence;
+	}
+
+	private final ColonyProvider provider;
+	private final String name;
+	private final File stateFile;
+	/** The file that {@link #synced} is saved in */
+	private final File syncedFile;
+	private final Executor executor;
+
+	/** The server version of the last change received */
+	private long cursor = 0;
+	/** The server epoch that {@link #cursor} belongs to, or null */
+	private String epoch = null;
+	/** The modified time of each colony when it was last synced */
+	private final SyncedTimes synced = new SyncedTimes();
+
+	private int nextSequence = 1;
+
+	/**
+	 * Constructor
+	 * @param provider The provider whose colonies should be synced
+	 * @param name A name for this device, shown on the server
+	 * @param stateFile The file to save progress in
+	 * @param executor An executor that runs tasks on the thread that
+	 * the provider's colonies are used on
+	 */
+	public SyncClient(ColonyProvider provider, String name, File stateFile, Executor executor) {
+		this.provider = provider;
+		this.name = name;
+		this.stateFile = stateFile;
+		this.syncedFile = new File(stateFile.getPath() + ".synced");
+		this.executor = executor;
+		loadState();
+	}
+
+	/**
+	 * Sync with a server. This method blocks until the sync is done
+	 * and must not be called on the executor's thread.
+	 * @param host The server host name or address
+	 * @param port The server port
+	 * @return What happened
+	 * @throws IOException if the connection failed or the server reported an error.
+	 * Any batches completed before the failure are not sent again.
+	 */
+	public Result sync(String host, int port) throws IOException {
+		final Result result = new Result();
+		final Socket socket = new Socket();
+		try {
+			socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT);
+			socket.setSoTimeout(READ_TIMEOUT);
+			socket.setTcpNoDelay(true);
+			final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+			final JSONObject hello = new JSONObject();
+			hello.put("protocol", SyncMessage.PROTOCOL_VERSION);
+			hello.put("client", name);
+			final JSONObject welcome = request(in, out, SyncMessage.HELLO, hello, SyncMessage.HELLO);
+			final String serverEpoch = welcome.optString("epoch", null);
+			if(welcome.optLong("version", 0) < cursor
+					|| (serverEpoch != null && epoch != null && !serverEpoch.equals(epoch))) {
+				// The server has been reset or replaced. Send and get everything again.
+				synced.clear();
+				cursor = 0;
+			}
+			else if(serverEpoch != null && epoch == null) {
+				// The first sync with a server that has epochs. The cursor may be
+				// from before a restart that renumbered the versions.
+				cursor = 0;
+			}
+			epoch = serverEpoch;
+
+			try {
+				push(in, out, result);
+				pull(in, out, result);
+			}
+			finally {
+				saveState();
+				saveSynced();
+			}
+
+			new SyncMessage(SyncMessage.BYE, nextSequence++, new JSONObject()).write(out);
+			out.flush();
+		} catch (JSONException e) {
+			throw new IOException("Invalid message: " + e.getMessage());
+		} finally {
+			socket.close();
+		}
+		return result;
+	}
+
+	private void push(DataInputStream in, DataOutputStream out, Result result) throws IOException, JSONException {
+		final List<Batch> batches = runOnExecutor(new Callable<List<Batch>>() {
+			@Override
+			public List<Batch> call() {
+				return makeBatches();
+			}
+		});
+
+		// Send up to WINDOW batches before waiting for an acknowledgement
+		final LinkedList<Batch> inFlight = new LinkedList<Batch>();
+		int next = 0;
+		while(next < batches.size() || !inFlight.isEmpty()) {
+			while(inFlight.size() < WINDOW && next < batches.size()) {
+				final Batch batch = batches.get(next++);
+				batch.sequence = nextSequence++;
+				final JSONObject body = new JSONObject();
+				body.put("colonies", batch.colonies);
+				new SyncMessage(SyncMessage.PUSH, batch.sequence, body).write(out);
+				inFlight.add(batch);
+			}
+			out.flush();
+
+			final Batch batch = inFlight.removeFirst();
+			final JSONObject ack = response(SyncMessage.read(in), batch.sequence, SyncMessage.ACK);
+			result.pushed += batch.colonies.length();
+			result.accepted += ack.optInt("accepted", 0);
+			synced.putAll(batch.ids, batch.times, batch.count);
+		}
+	}
+
+	/**
+	 * Divide the colonies edited since they were last synced into batches
+	 */
+	private List<Batch> makeBatches() {
+		final ColonyList colonies = provider.getColonies();
+		final List<Batch> batches = new ArrayList<Batch>();
+		if(colonies == null) {
+			return batches;
+		}
+		Batch batch = null;
+		// In ID order, because the list is sorted
+		for(Colony colony : colonies) {
+			final Date modified = colony.getModified();
+			if(modified == null || synced.get(colony.getId()) == modified.getTime()) {
+				continue;
+			}
+			if(batch == null || batch.count == BATCH_SIZE) {
+				batch = new Batch();
+				batches.add(batch);
+			}
+			batch.colonies.put(colony.toJSON());
+			batch.ids[batch.count] = colony.getId();
+			batch.times[batch.count] = modified.getTime();
+			batch.count++;
+		}
+		return batches;
+	}
+
+	private void pull(DataInputStream in, DataOutputStream out, Result result) throws IOException, JSONException {
+		final List<Colony> added = new ArrayList<Colony>();
+		final List<Colony> changed = new ArrayList<Colony>();
+		boolean more = true;
+		while(more) {
+			final JSONObject request = new JSONObject();
+			request.put("since", cursor);
+			request.put("limit", PULL_LIMIT);
+			final JSONObject changes = request(in, out, SyncMessage.PULL, request, SyncMessage.CHANGES);
+
+			final List<Colony> received = SyncMessage.fromJSON(changes.optJSONArray("colonies"));
+			result.pulled += received.size();
+			runOnExecutor(new Callable<Void>() {
+				@Override
+				public Void call() {
+					apply(received, added, changed);
+					return null;
+				}
+			});
+			cursor = changes.getLong("cursor");
+			more = changes.optBoolean("more", false) && !received.isEmpty();
+			saveState();
+		}
+		result.diff = new ColonyDiff(added, new ArrayList<Colony>(), changed);
+	}
+
+	/**
+	 * Store colonies received from the server in the provider, and record
+	 * the ones that are now the same here as on the server as synced
+	 */
+	private void apply(List<Colony> received, List<Colony> added, List<Colony> changed) {
+		final ColonyList colonies = provider.getColonies();
+		if(colonies == null) {
+			return;
+		}
+		final List<Colony> newColonies = new ArrayList<Colony>();
+		final SortedMap<Integer, Long> nowSynced = new TreeMap<Integer, Long>();
+		for(Colony colony : received) {
+			Colony local;
+			try {
+				local = colonies.getById(colony.getId());
+			} catch (NoSuchColonyException e) {
+				local = null;
+			}
+			if(local == null) {
+				newColonies.add(colony);
+			}
+			else if(!isEcho(local, colony) && ColonyMerger.resolve(local, colony) == colony
+					&& !sameData(local, colony)) {
+				local.setData(colony);
+				changed.add(local);
+			}
+			else if(!isEcho(local, colony) && !sameData(local, colony)) {
+				// The local copy is newer and still needs to be sent
+				continue;
+			}
+			if(colony.getModified() != null) {
+				nowSynced.put(colony.getId(), colony.getModified().getTime());
+			}
+		}
+		final int[] ids = new int[nowSynced.size()];
+		final long[] times = new long[ids.length];
+		int index = 0;
+		for(Map.Entry<Integer, Long> entry : nowSynced.entrySet()) {
+			ids[index] = entry.getKey();
+			times[index++] = entry.getValue();
+		}
+		synced.putAll(ids, times, ids.length);
+		if(!newColonies.isEmpty()) {
+			// One addAll, because every add sorts the list
+			colonies.addAll(newColonies);
+			added.addAll(newColonies);
+		}
+		if(!newColonies.isEmpty() || !changed.isEmpty()) {
+			provider.updateColonies();
+		}
+	}
+
+	/**
+	 * @return true if a received colony has the same modified time as the
+	 * local colony, so it is the same edit coming back (usually one this
+	 * client pushed) and the local copy is already up to date
+	 */
+	private static boolean isEcho(Colony local, Colony received) {
+		return local.getModified() != null && local.getModified().equals(received.getModified());
+	}
+
+	private static boolean sameData(Colony a, Colony b) {
+		return a.getX() == b.getX() && a.getY() == b.getY() && a.isActive() == b.isActive()
+				&& a.isVisited() == b.isVisited() && a.getAttributes().equals(b.getAttributes())
+				&& (a.getModified() == null ? b.getModified() == null : a.getModified().equals(b.getModified()));
+	}
+
+	/**
+	 * Send a request and wait for its response
+	 */
+	private JSONObject request(DataInputStream in, DataOutputStream out, byte type, JSONObject body, byte responseType)
+			throws IOException {
+		final int sequence = nextSequence++;
+		new SyncMessage(type, sequence, body).write(out);
+		out.flush();
+		return response(SyncMessage.read(in), sequence, responseType);
+	}
+
+	/**
+	 * Check that a response has the expected sequence number and type
+	 * @return The body of the response
+	 * @throws IOException if the response is an error or is not the expected response
+	 */
+	private static JSONObject response(SyncMessage response, int sequence, byte type) throws IOException {
+		if(response.getType() == SyncMessage.ERROR) {
+			throw new IOException("Server error: " + response.getBody().optString("message"));
+		}
+		if(response.getSequence() != sequence || response.getType() != type) {
+			throw new IOException("Unexpected response " + response + " to request #" + sequence);
+		}
+		return response.getBody();
+	}
+
+	/**
+	 * Run a task on the executor and wait for it to finish
+	 */
+	private <T> T runOnExecutor(Callable<T> callable) throws IOException {
+		final FutureTask<T> task = new FutureTask<T>(callable);
+		executor.execute(task);
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			throw new IOException("Interrupted");
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	private void loadState() {
+		if(!stateFile.exists()) {
+			return;
+		}
+		final Properties state = new Properties();
+		try {
+			final FileInputStream in = new FileInputStream(stateFile);
+			try {
+				state.load(in);
+			}
+			finally {
+				in.close();
+			}
+			cursor = Long.parseLong(state.getProperty(KEY_CURSOR, "0"));
+			epoch = state.getProperty(KEY_EPOCH);
+			if(syncedFile.exists()) {
+				synced.read(syncedFile);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		} catch (NumberFormatException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private void saveState() {
+		final Properties state = new Properties();
+		state.setProperty(KEY_CURSOR, String.valueOf(cursor));
+		if(epoch != null) {
+			state.setProperty(KEY_EPOCH, epoch);
+		}
+		try {
+			final FileOutputStream out = new FileOutputStream(stateFile);
+			try {
+				state.store(out, "Colony sync state");
+			}
+			finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private void saveSynced() {
+		try {
+			synced.write(syncedFile);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package org.samcrow.data.sync;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.samcrow.colonynavigator3.data.Colony;
+
+/**
+ * One message of the sync protocol.
+ *
+ * On the wire, a message is a type byte, a sequence number, the length of the body,
+ * and the body: a gzip-compressed JSON object. A response has the same sequence number
+ * as the request it answers, so a client can send several requests before reading
+ * the responses.
+ *
+ * @author Sam Crow
+ */
+public class SyncMessage {
+
+	/** The version of the protocol, sent in {@link #HELLO} messages */
+	public static final int PROTOCOL_VERSION = 1;
+
+	/**
+	 * Sent by the client first, with its name, and answered by the server
+	 * with its current version
+	 */
+	public static final byte HELLO = 1;
+	/** Sent by the client with a batch of changed colonies */
+	public static final byte PUSH = 2;
+	/** Sent by the server after it has stored the colonies from a {@link #PUSH} */
+	public static final byte ACK = 3;
+	/** Sent by the client to request the colonies changed after a version */
+	public static final byte PULL = 4;
+	/** Sent by the server in response to a {@link #PULL} */
+	public static final byte CHANGES = 5;
+	/** Sent by the server when a request could not be handled */
+	public static final byte ERROR = 6;
+	/** Sent by the client before it disconnects */
+	public static final byte BYE = 7;
+
+	/** The largest body that will be read, to guard against corrupt streams */
+	private static final int MAX_BODY_LENGTH = 16 * 1024 * 1024;
+
+	private final byte type;
+	private final int sequence;
+	private final JSONObject body;
+
+	/**
+	 * Constructor
+	 * @param type The message type
+	 * @param sequence The sequence number
+	 * @param body The body
+	 */
+	public SyncMessage(byte type, int sequence, JSONObject body) {
+		this.type = type;
+		this.sequence = sequence;
+		this.body = body;
+	}
+
+	public byte getType() {
+		return type;
+	}
+
+	public int getSequence() {
+		return sequence;
+	}
+
+	public JSONObject getBody() {
+		return body;
+	}
+
+	/**
+	 * Write this message
+	 * @param out The stream to write to. This is not flushed.
+	 * @throws IOException
+	 */
+	public void write(DataOutputStream out) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final Writer writer = new OutputStreamWriter(new GZIPOutputStream(bytes), "UTF-8");
+		writer.write(body.toString());
+		writer.close();
+
+		out.writeByte(type);
+		out.writeInt(sequence);
+		out.writeInt(bytes.size());
+		bytes.writeTo(out);
+	}
+
+	/**
+	 * Read a message
+	 * @param in The stream to read from
+	 * @return The message
+	 * @throws IOException if the stream could not be read, or did not contain a valid message
+	 */
+	public static SyncMessage read(DataInputStream in) throws IOException {
+		final byte type = in.readByte();
+		final int sequence = in.readInt();
+		final int length = in.readInt();
+		if(length < 0 || length > MAX_BODY_LENGTH) {
+			throw new IOException("Invalid message length " + length);
+		}
+		final byte[] compressed = new byte[length];
+		in.readFully(compressed);
+
+		final Reader reader = new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(compressed)), "UTF-8");
+		final StringBuilder text = new StringBuilder();
+		final char[] buffer = new char[4096];
+		int count;
+		while((count = reader.read(buffer)) != -1) {
+			text.append(buffer, 0, count);
+		}
+		reader.close();
+
+		try {
+			return new SyncMessage(type, sequence, new JSONObject(text.toString()));
+		} catch (JSONException e) {
+			throw new IOException("Invalid message body: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Convert colonies into a JSON array
+	 * @param colonies The colonies
+	 * @return An array with one object per colony
+	 */
+	public static JSONArray toJSON(Collection<Colony> colonies) {
+		final JSONArray array = new JSONArray();
+		for(Colony colony : colonies) {
+			array.put(colony.toJSON());
+		}
+		return array;
+	}
+
+	/**
+	 * Read colonies from a JSON array
+	 * @param array The array, or null
+	 * @return The colonies in the array, or an empty list if the array is null
+	 * @throws JSONException if an element of the array is not an object
+	 */
+	public static List<Colony> fromJSON(JSONArray array) throws JSONException {
+		if(array == null) {
+			return new ArrayList<Colony>();
+		}
+		final List<Colony> colonies = new ArrayList<Colony>(array.length());
+		for(int i = 0, max = array.length(); i < max; i++) {
+			final Colony colony = new Colony();
+			colony.fromJSON(array.getJSONObject(i));
+			colonies.add(colony);
+		}
+		return colonies;
+	}
+
+	@Override
+	public String toString() {
+		return "SyncMessage type " + type + " #" + sequence;
+	}
+}
@@ -0,0 +1,457 @@
+package org.samcrow.data.sync;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.samcrow.colonynavigator3.data.Colony;
+import org.samcrow.data.io.DataStreams;
+import org.samcrow.data.merge.ColonyMerger;
+
+/**
+ * A server that field devices sync colonies with, normally run on a laptop
+ * at the base station.
+ *
+ * The server gives every change it stores a version number, one more than
+ * the previous change. A client remembers the highest version it has
+ * received and asks only for changes after it, so a sync that is interrupted
+ * can continue from where it stopped. When a client sends a colony that the
+ * server already has, the copy with the later modified time is kept, as in
+ * {@link ColonyMerger#resolve(Colony, Colony)}.
+ *
+ * The version of each colony is saved in the file with the colonies, so
+ * versions stay the same when the server is restarted. The server also has
+ * an epoch, a random ID that is saved in the file and sent to clients. If the
+ * file is lost or replaced, the server starts a new epoch, and clients that
+ * see a different epoch pull everything again instead of trusting their
+ * saved position.
+ *
+ * This class uses only the standard Java library and org.json, so it can
+ * run on any JVM.
+ *
+ * @author Sam Crow
+ */
+public class SyncServer {
+
+	/** The port that the server listens on by default */
+	public static final int DEFAULT_PORT = 7531;
+
+	/** The largest number of colonies sent in one {@link SyncMessage#CHANGES} message */
+	private static final int MAX_PULL_LIMIT = 1000;
+
+	/** The file that colonies are loaded from and saved to, or null */
+	private final File file;
+
+	/** Colonies by ID */
+	private final Map<Integer, Colony> colonies = new HashMap<Integer, Colony>();
+	/** The version of the last change to each colony, by colony ID */
+	private final Map<Integer, Long> versions = new HashMap<Integer, Long>();
+	/** Colonies by the version of their last change */
+	private final TreeMap<Long, Colony> byVersion = new TreeMap<Long, Colony>();
+	/** The version of the most recent change */
+	private long version = 0;
+	/** Identifies this numbering of versions */
+	private String epoch;
+	/** If there are changes that have not been saved to the file */
+	private boolean dirty = false;
+	/** Held while saving, so that an older copy never replaces a newer one */
+	private final Object saveLock = new Object();
+
+	private ServerSocket serverSocket;
+	private final Set<Socket> clients = new HashSet<Socket>();
+
+	/**
+	 * Constructor
+	 * @param file The file to load colonies from and save them to, or null
+	 * to keep colonies only in memory
+	 */
+	public SyncServer(File file) {
+		this.file = file;
+		if(file != null && file.exists()) {
+			try {
+				restore(load(file));
+			} catch (IOException e) {
+				e.printStackTrace();
+			} catch (JSONException e) {
+				e.printStackTrace();
+			}
+		}
+		if(epoch == null) {
+			// No saved versions, so they are numbered from the start again
+			epoch = UUID.randomUUID().toString();
+			dirty = !colonies.isEmpty();
+		}
+	}
+
+	/**
+	 * Restore the colonies, versions and epoch from the contents of a file.
+	 * Colonies without a saved version, as in a file not written by this class,
+	 * are given new versions. If any are, a new epoch is started.
+	 */
+	private synchronized void restore(JSONObject root) throws JSONException {
+		final List<Colony> loaded = SyncMessage.fromJSON(root.optJSONArray("colonies"));
+		final JSONObject savedVersions = root.optJSONObject("versions");
+		final List<Colony> unversioned = new ArrayList<Colony>();
+		for(Colony colony : loaded) {
+			final String key = String.valueOf(colony.getId());
+			if(savedVersions == null || !savedVersions.has(key)) {
+				unversioned.add(colony);
+				continue;
+			}
+			final long colonyVersion = savedVersions.getLong(key);
+			colonies.put(colony.getId(), colony);
+			versions.put(colony.getId(), colonyVersion);
+			byVersion.put(colonyVersion, colony);
+			version = Math.max(version, colonyVersion);
+		}
+		version = Math.max(version, root.optLong("version", 0));
+		epoch = unversioned.isEmpty() ? root.optString("epoch", null) : null;
+		for(Colony colony : unversioned) {
+			store(colony);
+		}
+		dirty = !unversioned.isEmpty();
+	}
+
+	/**
+	 * Read a file in the format of colonies.json, with the additional fields
+	 * written by {@link #save()}
+	 */
+	private static JSONObject load(File file) throws IOException {
+		final Reader reader = new InputStreamReader(DataStreams.openInput(file), "UTF-8");
+		final StringBuilder text = new StringBuilder();
+		try {
+			final char[] buffer = new char[4096];
+			int count;
+			while((count = reader.read(buffer)) != -1) {
+				text.append(buffer, 0, count);
+			}
+		}
+		finally {
+			reader.close();
+		}
+		try {
+			return new JSONObject(text.toString());
+		} catch (JSONException e) {
+			throw new IOException("Invalid colony file " + file + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Start accepting connections on a background thread
+	 * @param port The port to listen on, or 0 to choose any free port
+	 * @throws IOException if the port could not be opened
+	 */
+	public synchronized void start(int port) throws IOException {
+		serverSocket = new ServerSocket(port);
+		final ServerSocket socket = serverSocket;
+		final Thread acceptThread = new Thread("SyncServer accept") {
+			@Override
+			public void run() {
+				acceptLoop(socket);
+			}
+		};
+		acceptThread.setDaemon(true);
+		acceptThread.start();
+	}
+
+	/**
+	 * @return The port that the server is listening on
+	 */
+	public synchronized int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Stop accepting connections, disconnect all clients, and save
+	 */
+	public void stop() {
+		synchronized (this) {
+			try {
+				if(serverSocket != null) {
+					serverSocket.close();
+				}
+				for(Socket client : clients) {
+					client.close();
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			clients.clear();
+		}
+		save();
+	}
+
+	/**
+	 * @return The version of the most recent change
+	 */
+	public synchronized long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return The ID of this server's numbering of versions
+	 */
+	public synchronized String getEpoch() {
+		return epoch;
+	}
+
+	/**
+	 * @return A copy of every colony that the server has, in no particular order
+	 */
+	public synchronized List<Colony> getColonies() {
+		return new ArrayList<Colony>(colonies.values());
+	}
+
+	/**
+	 * Write the colonies to the file, if there is a file and anything has changed.
+	 * Saves are done one at a time, so when this returns, any save started
+	 * earlier on another thread has finished too.
+	 */
+	public void save() {
+		synchronized (saveLock) {
+			final JSONObject root = new JSONObject();
+			final List<Colony> toSave;
+			try {
+				synchronized (this) {
+					if(file == null || !dirty) {
+						return;
+					}
+					// Colonies are immutable once stored, so only the list needs to be copied here
+					toSave = new ArrayList<Colony>(colonies.values());
+					final JSONObject savedVersions = new JSONObject();
+					for(Map.Entry<Integer, Long> entry : versions.entrySet()) {
+						savedVersions.put(String.valueOf(entry.getKey()), entry.getValue().longValue());
+					}
+					root.put("versions", savedVersions);
+					root.put("version", version);
+					root.put("epoch", epoch);
+					dirty = false;
+				}
+				root.put("colonies", SyncMessage.toJSON(toSave));
+				final Writer writer = new OutputStreamWriter(DataStreams.openOutput(file), "UTF-8");
+				try {
+					writer.write(root.toString());
+				}
+				finally {
+					writer.close();
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+				// Try again next time
+				synchronized (this) {
+					dirty = true;
+				}
+			} catch (JSONException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Store a colony received from a client
+	 * @param colony The colony
+	 * @return true if the colony was stored, false if the server already had
+	 * the same or a more recently modified copy
+	 */
+	synchronized boolean store(Colony colony) {
+		final Colony existing = colonies.get(colony.getId());
+		if(existing != null) {
+			if(ColonyMerger.resolve(existing, colony) != colony
+					|| (existing.equals(colony) && existing.getAttributes().equals(colony.getAttributes()))) {
+				return false;
+			}
+			byVersion.remove(versions.get(colony.getId()));
+		}
+		version++;
+		colonies.put(colony.getId(), colony);
+		versions.put(colony.getId(), version);
+		byVersion.put(version, colony);
+		dirty = true;
+		return true;
+	}
+
+	/**
+	 * Find the colonies changed after a version
+	 * @param since The version
+	 * @param limit The largest number of colonies to return
+	 * @param cursor An array with one element, which is set to the version
+	 * to ask for changes after next time
+	 * @return The colonies, in the order they were changed
+	 */
+	synchronized List<Colony> changesSince(long since, int limit, long[] cursor) {
+		final List<Colony> changes = new ArrayList<Colony>();
+		cursor[0] = since;
+		final SortedMap<Long, Colony> after = byVersion.tailMap(since + 1);
+		for(Map.Entry<Long, Colony> entry : after.entrySet()) {
+			if(changes.size() >= limit) {
+				break;
+			}
+			changes.add(entry.getValue());
+			cursor[0] = entry.getKey();
+		}
+		return changes;
+	}
+
+	private void acceptLoop(ServerSocket socket) {
+		while(!socket.isClosed()) {
+			try {
+				final Socket client = socket.accept();
+				synchronized (this) {
+					clients.add(client);
+				}
+				final Thread clientThread = new Thread("SyncServer " + client.getRemoteSocketAddress()) {
+					@Override
+					public void run() {
+						serve(client);
+					}
+				};
+				clientThread.setDaemon(true);
+				clientThread.start();
+			} catch (SocketException e) {
+				// Socket closed by stop()
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Handle requests from one client until it disconnects
+	 */
+	private void serve(Socket client) {
+		try {
+			final DataInputStream in = new DataInputStream(new BufferedInputStream(client.getInputStream()));
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(client.getOutputStream()));
+
+			while(true) {
+				final SyncMessage request = SyncMessage.read(in);
+				if(request.getType() == SyncMessage.BYE) {
+					break;
+				}
+				final SyncMessage response = handle(request);
+				response.write(out);
+				// Responses to pipelined requests can share a packet
+				if(in.available() == 0) {
+					out.flush();
+				}
+			}
+		} catch (EOFException e) {
+			// Client disconnected
+		} catch (SocketException e) {
+			// Connection lost or closed by stop()
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			synchronized (this) {
+				clients.remove(client);
+			}
+			try {
+				client.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			save();
+		}
+	}
+
+	private SyncMessage handle(SyncMessage request) {
+		final JSONObject response = new JSONObject();
+		try {
+			switch(request.getType()) {
+			case SyncMessage.HELLO: {
+				final int protocol = request.getBody().optInt("protocol", 0);
+				if(protocol != SyncMessage.PROTOCOL_VERSION) {
+					return error(request, "Unsupported protocol version " + protocol);
+				}
+				System.out.println("Sync from " + request.getBody().optString("client", "unknown client"));
+				response.put("protocol", SyncMessage.PROTOCOL_VERSION);
+				response.put("version", getVersion());
+				response.put("epoch", getEpoch());
+				return new SyncMessage(SyncMessage.HELLO, request.getSequence(), response);
+			}
+			case SyncMessage.PUSH: {
+				int accepted = 0;
+				for(Colony colony : SyncMessage.fromJSON(request.getBody().optJSONArray("colonies"))) {
+					if(store(colony)) {
+						accepted++;
+					}
+				}
+				response.put("accepted", accepted);
+				response.put("version", getVersion());
+				return new SyncMessage(SyncMessage.ACK, request.getSequence(), response);
+			}
+			case SyncMessage.PULL: {
+				final long since = request.getBody().optLong("since", 0);
+				final int limit = Math.max(1, Math.min(MAX_PULL_LIMIT, request.getBody().optInt("limit", MAX_PULL_LIMIT)));
+				final long[] cursor = new long[1];
+				final List<Colony> changes = changesSince(since, limit, cursor);
+				response.put("colonies", SyncMessage.toJSON(changes));
+				response.put("cursor", cursor[0]);
+				response.put("more", cursor[0] < getVersion());
+				return new SyncMessage(SyncMessage.CHANGES, request.getSequence(), response);
+			}
+			default:
+				return error(request, "Unknown message type " + request.getType());
+			}
+		} catch (JSONException e) {
+			return error(request, e.getMessage());
+		}
+	}
+
+	private static SyncMessage error(SyncMessage request, String message) {
+		final JSONObject body = new JSONObject();
+		try {
+			body.put("message", message);
+		} catch (JSONException e) {
+			e.printStackTrace();
+		}
+		return new SyncMessage(SyncMessage.ERROR, request.getSequence(), body);
+	}
+
+	/**
+	 * Run a server from the command line
+	 * @param args The file to store colonies in, and optionally the port to listen on
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		if(args.length < 1) {
+			System.err.println("Usage: SyncServer colonies.json [port]");
+			System.exit(1);
+		}
+		final int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+		final SyncServer server = new SyncServer(new File(args[0]));
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				server.stop();
+			}
+		});
+		server.start(port);
+		System.out.println("Listening on port " + server.getPort() + " with " + server.getColonies().size() + " colonies");
+		while(true) {
+			Thread.sleep(Long.MAX_VALUE);
+		}
+	}
+}
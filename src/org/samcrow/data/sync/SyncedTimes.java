@@ -0,0 +1,129 @@
+package org.samcrow.data.sync;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The modified time of each colony as it was when it was last synced,
+ * either sent to the server or received from it.
+ *
+ * A colony whose modified time is different from the one recorded here has
+ * been edited on this device since it was last synced. This does not depend
+ * on the order of the times, so it works when devices' clocks disagree.
+ *
+ * IDs are kept in sorted arrays, so the memory used is 12 bytes per colony.
+ *
+ * @author Sam Crow
+ */
+class SyncedTimes {
+
+	/** The value returned by {@link #get(int)} for a colony that has not been synced */
+	static final long NONE = Long.MIN_VALUE;
+
+	private int[] ids = new int[0];
+	private long[] times = new long[0];
+
+	/**
+	 * @param id A colony ID
+	 * @return The colony's modified time when it was last synced, or {@link #NONE}
+	 */
+	long get(int id) {
+		final int index = Arrays.binarySearch(ids, id);
+		return index >= 0 ? times[index] : NONE;
+	}
+
+	/**
+	 * Record the modified times of colonies that have been synced
+	 * @param newIds The colony IDs, sorted in increasing order
+	 * @param newTimes The modified time of each colony
+	 * @param count The number of elements of newIds and newTimes to use
+	 */
+	void putAll(int[] newIds, long[] newTimes, int count) {
+		// Merge the two sorted lists
+		final int[] mergedIds = new int[ids.length + count];
+		final long[] mergedTimes = new long[mergedIds.length];
+		int length = 0;
+		int oldIndex = 0;
+		int newIndex = 0;
+		while(oldIndex < ids.length || newIndex < count) {
+			if(newIndex >= count || (oldIndex < ids.length && ids[oldIndex] < newIds[newIndex])) {
+				mergedIds[length] = ids[oldIndex];
+				mergedTimes[length++] = times[oldIndex++];
+			}
+			else {
+				if(oldIndex < ids.length && ids[oldIndex] == newIds[newIndex]) {
+					// Replaced
+					oldIndex++;
+				}
+				mergedIds[length] = newIds[newIndex];
+				mergedTimes[length++] = newTimes[newIndex++];
+			}
+		}
+		ids = Arrays.copyOf(mergedIds, length);
+		times = Arrays.copyOf(mergedTimes, length);
+	}
+
+	/**
+	 * Forget every colony, so that all of them are synced again
+	 */
+	void clear() {
+		ids = new int[0];
+		times = new long[0];
+	}
+
+	/**
+	 * @return The number of colonies recorded
+	 */
+	int size() {
+		return ids.length;
+	}
+
+	/**
+	 * Read the times from a file written by {@link #write(File)}
+	 * @param file The file
+	 * @throws IOException if the file could not be read
+	 */
+	void read(File file) throws IOException {
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			final int count = in.readInt();
+			final int[] newIds = new int[count];
+			final long[] newTimes = new long[count];
+			for(int i = 0; i < count; i++) {
+				newIds[i] = in.readInt();
+				newTimes[i] = in.readLong();
+			}
+			ids = newIds;
+			times = newTimes;
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Write the times to a file
+	 * @param file The file
+	 * @throws IOException if the file could not be written
+	 */
+	void write(File file) throws IOException {
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			out.writeInt(ids.length);
+			for(int i = 0; i < ids.length; i++) {
+				out.writeInt(ids[i]);
+				out.writeLong(times[i]);
+			}
+		}
+		finally {
+			out.close();
+		}
+	}
+}
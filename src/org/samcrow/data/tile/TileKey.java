@@ -0,0 +1,61 @@
+package org.samcrow.data.tile;
+
+/**
+ * Identifies one square tile of the local colony coordinate grid
+ *
+ * @author Sam Crow
+ */
+public final class TileKey {
+
+	/** The tile's column, counting east from the local zero point */
+	public final int x;
+	/** The tile's row, counting north from the local zero point */
+	public final int y;
+
+	public TileKey(int x, int y) {
+		this.x = x;
+		this.y = y;
+	}
+
+	/**
+	 * Find the tile that contains a point
+	 * @param localX The point's X-coordinate in meters
+	 * @param localY The point's Y-coordinate in meters
+	 * @param tileSize The tile size in meters
+	 * @return The key of the tile containing the point
+	 */
+	public static TileKey containing(double localX, double localY, double tileSize) {
+		return new TileKey(index(localX, tileSize), index(localY, tileSize));
+	}
+
+	/**
+	 * @param coordinate A coordinate in meters
+	 * @param tileSize The tile size in meters
+	 * @return The index of the column or row containing the coordinate
+	 */
+	public static int index(double coordinate, double tileSize) {
+		return (int) Math.floor(coordinate / tileSize);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * x + y;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof TileKey)) {
+			return false;
+		}
+		TileKey other = (TileKey) obj;
+		return x == other.x && y == other.y;
+	}
+
+	@Override
+	public String toString() {
+		return "Tile (" + x + ", " + y + ")";
+	}
+}
@@ -0,0 +1,151 @@
+package org.samcrow.colonynavigator3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mapsforge.core.model.LatLong;
+
+/**
+ * Tests for {@link CoordinateTransformer} and {@link RecursiveCalibration}
+ *
+ * @author Sam Crow
+ */
+public class CoordinateTransformerTest {
+
+	/** About one millimeter, in degrees of latitude */
+	private static final double DEGREE_TOLERANCE = 1e-8;
+
+	/** The largest acceptable error in local coordinates, in meters */
+	private static final double METER_TOLERANCE = 1e-6;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static CoordinateTransformer builtIn() {
+		return CoordinateTransformer.fit(CoordinateTransformer.getBuiltInPoints());
+	}
+
+	@Test
+	public void fitsControlPoints() {
+		final List<MapPoint> points = CoordinateTransformer.getBuiltInPoints();
+		final CoordinateTransformer transformer = CoordinateTransformer.fit(points);
+		for(MapPoint point : points) {
+			final double[] local = transformer.toLocal(point.getLongitude(), point.getLatitude());
+			// The built-in points are surveyed, so allow some residual
+			assertEquals(point.getX(), local[0], 1);
+			assertEquals(point.getY(), local[1], 1);
+		}
+	}
+
+	@Test
+	public void localToGpsAndBack() {
+		final CoordinateTransformer transformer = builtIn();
+		for(double x = -100; x <= 1500; x += 97.5) {
+			for(double y = -100; y <= 1000; y += 81.25) {
+				final LatLong gps = transformer.toGps(x, y);
+				final double[] local = transformer.toLocal(gps.longitude, gps.latitude);
+				assertEquals(x, local[0], METER_TOLERANCE);
+				assertEquals(y, local[1], METER_TOLERANCE);
+			}
+		}
+	}
+
+	@Test
+	public void batchMatchesSinglePoints() {
+		final CoordinateTransformer transformer = builtIn();
+		final double[] local = { 0, 0, 123.25, 456.5, 1300, 800 };
+		final double[] lonLat = new double[local.length];
+		transformer.toGps(local, lonLat, 3);
+		for(int i = 0; i < 3; i++) {
+			final LatLong gps = transformer.toGps(local[2 * i], local[2 * i + 1]);
+			assertEquals(gps.longitude, lonLat[2 * i], DEGREE_TOLERANCE);
+			assertEquals(gps.latitude, lonLat[2 * i + 1], DEGREE_TOLERANCE);
+		}
+
+		// In place
+		final double[] back = lonLat.clone();
+		transformer.toLocal(back, back, 3);
+		for(int i = 0; i < local.length; i++) {
+			assertEquals(local[i], back[i], METER_TOLERANCE);
+		}
+	}
+
+	@Test
+	public void coefficientsRecreateTheTransformation() {
+		final CoordinateTransformer transformer = builtIn();
+		final CoordinateTransformer copy = CoordinateTransformer.fromCoefficients(transformer.getCoefficients());
+		assertEquals(transformer.getFingerprint(), copy.getFingerprint());
+		final LatLong expected = transformer.toGps(321, 654);
+		final LatLong actual = copy.toGps(321, 654);
+		assertEquals(expected.latitude, actual.latitude, 0);
+		assertEquals(expected.longitude, actual.longitude, 0);
+	}
+
+	@Test
+	public void confirmationsCorrectAShift() {
+		final List<MapPoint> points = CoordinateTransformer.getBuiltInPoints();
+		final CoordinateTransformer transformer = CoordinateTransformer.fit(points);
+
+		// The true transformation puts everything 4 m east and 3 m south of the calibration
+		final double[] trueCoefficients = transformer.getCoefficients();
+		trueCoefficients[4] += 4;
+		trueCoefficients[7] -= 3;
+		final CoordinateTransformer truth = CoordinateTransformer.fromCoefficients(trueCoefficients);
+
+		final RecursiveCalibration calibration = new RecursiveCalibration(transformer, points);
+		for(int i = 0; i < 200; i++) {
+			final double x = (i * 37) % 1300;
+			final double y = (i * 53) % 800;
+			final LatLong gps = truth.toGps(x, y);
+			// Confirmations are weighted far above the control points
+			calibration.update(gps.longitude, gps.latitude, x, y, 100);
+		}
+		calibration.apply(transformer);
+		assertEquals(200, calibration.getCount());
+
+		final double[] expected = truth.toLocal(-109.04, 31.871);
+		final double[] actual = transformer.toLocal(-109.04, 31.871);
+		assertEquals(expected[0], actual[0], 0.05);
+		assertEquals(expected[1], actual[1], 0.05);
+	}
+
+	@Test
+	public void savedCalibrationIsRestored() throws IOException {
+		final List<MapPoint> points = CoordinateTransformer.getBuiltInPoints();
+		final CoordinateTransformer base = CoordinateTransformer.fit(points);
+		final RecursiveCalibration calibration = new RecursiveCalibration(base, points);
+		final LatLong gps = base.toGps(500, 400);
+		calibration.update(gps.longitude, gps.latitude + 1e-5, 500, 400, 2);
+
+		final File file = folder.newFile("recalibration.properties");
+		calibration.save(file);
+
+		final RecursiveCalibration restored = RecursiveCalibration.load(file, base);
+		assertNotNull(restored);
+		assertEquals(1, restored.getCount());
+		final double[] expected = calibration.getCoefficients();
+		final double[] actual = restored.getCoefficients();
+		assertEquals(expected.length, actual.length);
+		for(int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], actual[i], Math.abs(expected[i]) * 1e-12);
+		}
+
+		// Confirmations made with one calibration are not used with another
+		final double[] otherCoefficients = base.getCoefficients();
+		otherCoefficients[4] += 1;
+		assertNull(RecursiveCalibration.load(file, CoordinateTransformer.fromCoefficients(otherCoefficients)));
+	}
+
+	@Test
+	public void missingStateIsNotLoaded() {
+		assertNull(RecursiveCalibration.load(new File(folder.getRoot(), "missing.properties"), builtIn()));
+	}
+}
@@ -0,0 +1,133 @@
+package org.samcrow.colonynavigator3.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link TagSet}
+ *
+ * @author Sam Crow
+ */
+public class TagSetTest {
+
+	private static final int MAX = Integer.MAX_VALUE;
+
+	@Test
+	public void ofJoinsConsecutiveIds() {
+		final TagSet set = TagSet.of(9, 3, 1, 2, 9, 5);
+		assertArrayEquals(new int[] { 1, 3, 5, 5, 9, 9 }, set.getRuns());
+		assertEquals(5, set.size());
+		assertArrayEquals(new int[] { 1, 2, 3, 5, 9 }, set.toArray());
+		assertTrue(set.contains(2));
+		assertFalse(set.contains(4));
+		assertFalse(set.contains(10));
+		assertFalse(set.contains(0));
+	}
+
+	@Test
+	public void emptySets() {
+		assertSame(TagSet.EMPTY, TagSet.of());
+		assertSame(TagSet.EMPTY, TagSet.ofRuns(new int[0]));
+		assertTrue(TagSet.EMPTY.isEmpty());
+		assertFalse(TagSet.EMPTY.contains(0));
+		assertEquals(TagSet.EMPTY, TagSet.of(1, 2).and(TagSet.of(3)));
+	}
+
+	@Test
+	public void ofRunsJoinsTouchingRuns() {
+		final TagSet set = TagSet.ofRuns(new int[] { 1, 3, 4, 6, 10, 10 });
+		assertArrayEquals(new int[] { 1, 6, 10, 10 }, set.getRuns());
+		assertEquals(7, set.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void ofRunsRejectsOverlap() {
+		TagSet.ofRuns(new int[] { 1, 5, 5, 6 });
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void ofRunsRejectsBackwardRun() {
+		TagSet.ofRuns(new int[] { 5, 1 });
+	}
+
+	@Test
+	public void setOperations() {
+		// 1-10 and 20-30, against 5-25
+		final TagSet a = TagSet.ofRuns(new int[] { 1, 10, 20, 30 });
+		final TagSet b = TagSet.ofRuns(new int[] { 5, 25 });
+
+		assertEquals(TagSet.ofRuns(new int[] { 5, 10, 20, 25 }), a.and(b));
+		assertEquals(12, a.and(b).size());
+		assertEquals(TagSet.ofRuns(new int[] { 1, 30 }), a.or(b));
+		assertEquals(30, a.or(b).size());
+		assertEquals(TagSet.ofRuns(new int[] { 1, 4, 26, 30 }), a.andNot(b));
+		assertEquals(TagSet.ofRuns(new int[] { 11, 19 }), b.andNot(a));
+		assertEquals(TagSet.ofRuns(new int[] { 1, 4, 11, 19, 26, 30 }), a.xor(b));
+		assertEquals(18, a.xor(b).size());
+	}
+
+	@Test
+	public void operationsMatchSetsOfIds() {
+		final TagSet a = TagSet.of(1, 2, 3, 7, 8, 100, 101, 102, 200);
+		final TagSet b = TagSet.of(3, 4, 5, 6, 7, 101, 150, 200, 201);
+		for(int id = 0; id <= 210; id++) {
+			final boolean inA = a.contains(id);
+			final boolean inB = b.contains(id);
+			assertEquals(inA && inB, a.and(b).contains(id));
+			assertEquals(inA || inB, a.or(b).contains(id));
+			assertEquals(inA && !inB, a.andNot(b).contains(id));
+			assertEquals(inA != inB, a.xor(b).contains(id));
+		}
+	}
+
+	@Test
+	public void runsEndingAtMaxValue() {
+		final TagSet top = TagSet.ofRuns(new int[] { MAX - 2, MAX });
+		assertEquals(3, top.size());
+		assertTrue(top.contains(MAX));
+		assertFalse(top.contains(MAX - 3));
+		assertArrayEquals(new int[] { MAX - 2, MAX - 1, MAX }, top.toArray());
+
+		final TagSet other = TagSet.of(5, MAX);
+		assertEquals(TagSet.of(MAX), top.and(other));
+		assertEquals(TagSet.ofRuns(new int[] { 5, 5, MAX - 2, MAX }), top.or(other));
+		assertEquals(4, top.or(other).size());
+		assertEquals(TagSet.ofRuns(new int[] { MAX - 2, MAX - 1 }), top.andNot(other));
+		assertEquals(TagSet.ofRuns(new int[] { 5, 5, MAX - 2, MAX - 1 }), top.xor(other));
+		assertSame(TagSet.EMPTY, top.xor(top));
+	}
+
+	@Test
+	public void ofSortedIdsEndingAtMaxValue() {
+		final TagSet set = TagSet.fromSorted(new int[] { MAX - 1, MAX, MAX }, 3);
+		assertArrayEquals(new int[] { MAX - 1, MAX }, set.getRuns());
+		assertEquals(2, set.size());
+	}
+
+	@Test
+	public void negativeIds() {
+		final TagSet set = TagSet.of(-2, -1, 0, 1);
+		assertArrayEquals(new int[] { -2, 1 }, set.getRuns());
+		assertEquals(TagSet.of(-2, -1), set.andNot(TagSet.ofRuns(new int[] { 0, MAX })));
+	}
+
+	@Test
+	public void filterKeepsOrder() {
+		final List<Colony> colonies = new ArrayList<Colony>();
+		for(int id = 1; id <= 10; id++) {
+			colonies.add(new Colony(id, 0, 0, false));
+		}
+		final List<Colony> filtered = TagSet.of(2, 3, 9, 50).filter(colonies);
+		assertEquals(Arrays.asList(colonies.get(1), colonies.get(2), colonies.get(8)), filtered);
+		assertTrue(TagSet.EMPTY.filter(colonies).isEmpty());
+	}
+}
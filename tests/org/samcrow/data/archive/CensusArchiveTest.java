@@ -0,0 +1,114 @@
+package org.samcrow.data.archive;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.samcrow.colonynavigator3.data.Colony;
+import org.samcrow.colonynavigator3.data.TagSet;
+import org.samcrow.data.storage.MemoryStorage;
+
+/**
+ * Tests that a {@link CensusArchive} reads back what {@link CensusArchiveWriter} wrote
+ *
+ * @author Sam Crow
+ */
+public class CensusArchiveTest {
+
+	private CensusArchiveWriter writer;
+
+	@Before
+	public void setUp() {
+		writer = new CensusArchiveWriter();
+		// Colony 1 is in every year and moves once, colony 2 disappears,
+		// and colony 40 appears in the last year.
+		writer.addYear(1990, Arrays.asList(new Colony(1, 10.5, 20.25, true), new Colony(2, -3, 4, false)));
+		writer.addYear(1991, Arrays.asList(new Colony(1, 10.5, 20.25, false), new Colony(2, -3, 4, true)));
+		writer.addYear(1995, Arrays.asList(new Colony(1, 11.01, 19.99, true), new Colony(40, 1000, 2000, true)));
+	}
+
+	private CensusArchive writeAndRead() throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		writer.write(bytes);
+		return new CensusArchive(new ByteArrayInputStream(bytes.toByteArray()));
+	}
+
+	@Test
+	public void yearsAndTags() throws IOException {
+		final CensusArchive archive = writeAndRead();
+		assertArrayEquals(new int[] { 1990, 1991, 1995 }, archive.getYears());
+		assertEquals(TagSet.of(1, 2, 40), archive.getColonyIds());
+		assertEquals(TagSet.of(1, 2), archive.getPresent(1990));
+		assertEquals(TagSet.of(1), archive.getActive(1990));
+		assertEquals(TagSet.of(2), archive.getActive(1991));
+		assertEquals(TagSet.of(1, 40), archive.getPresent(1995));
+		assertEquals(TagSet.EMPTY, archive.getPresent(1992));
+		assertEquals(TagSet.EMPTY, archive.getActive(1992));
+	}
+
+	@Test
+	public void histories() throws IOException {
+		final CensusArchive archive = writeAndRead();
+
+		final ColonyHistory first = archive.getHistory(1);
+		assertEquals(1, first.getId());
+		assertEquals(3, first.size());
+		assertEquals(1990, first.getYear(0));
+		assertEquals(10.5, first.getX(0), 0);
+		assertEquals(20.25, first.getY(0), 0);
+		assertTrue(first.isActive(0));
+		assertFalse(first.isActive(1));
+		assertEquals(1995, first.getYear(2));
+		// Stored to the nearest 1/SCALE
+		assertEquals(11.01, first.getX(2), 0.5 / CensusArchive.SCALE);
+		assertEquals(19.99, first.getY(2), 0.5 / CensusArchive.SCALE);
+
+		final ColonyHistory second = archive.getHistory(2);
+		assertEquals(2, second.size());
+		assertEquals(-1, second.indexOf(1995));
+		assertEquals(-3, second.getX(1), 0);
+
+		final ColonyHistory last = archive.getHistory(40);
+		assertEquals(1, last.size());
+		assertEquals(1995, last.getYear(0));
+		assertEquals(2000, last.getY(0), 0);
+
+		assertNull(archive.getHistory(3));
+	}
+
+	@Test
+	public void coloniesOfAYear() throws IOException {
+		final List<Colony> colonies = writeAndRead().getColonies(1991);
+		assertEquals(2, colonies.size());
+		assertEquals(1, colonies.get(0).getId());
+		assertFalse(colonies.get(0).isActive());
+		assertEquals(2, colonies.get(1).getId());
+		assertTrue(colonies.get(1).isActive());
+		assertEquals(4, colonies.get(1).getY(), 0);
+		assertTrue(writeAndRead().getColonies(2000).isEmpty());
+	}
+
+	@Test
+	public void compressedFile() throws IOException {
+		final MemoryStorage storage = new MemoryStorage();
+		writer.write(storage, "census_archive.bin.gz");
+		final CensusArchive archive = CensusArchive.read(storage, "census_archive.bin.gz");
+		assertArrayEquals(new int[] { 1990, 1991, 1995 }, archive.getYears());
+		assertEquals(TagSet.of(1, 40), archive.getActive(1995));
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsOtherFiles() throws IOException {
+		new CensusArchive(new ByteArrayInputStream(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }));
+	}
+}
@@ -0,0 +1,115 @@
+package org.samcrow.data.gps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link PositionAverager}
+ *
+ * @author Sam Crow
+ */
+public class PositionAveragerTest {
+
+	/** Large enough that no position is rejected */
+	private static final double NEVER_REJECT = 1e9;
+
+	@Test
+	public void noPositions() {
+		final PositionAverager averager = new PositionAverager(5, 3, 1);
+		assertTrue(Double.isNaN(averager.getX()));
+		assertTrue(Double.isNaN(averager.getY()));
+		assertTrue(Double.isNaN(averager.getStandardError()));
+		assertFalse(averager.isConverged(0, 100));
+	}
+
+	@Test
+	public void meanBeforeThreeGroups() {
+		final PositionAverager averager = new PositionAverager(5, NEVER_REJECT, 1);
+		averager.add(1, 10);
+		averager.add(2, 20);
+		averager.add(6, 30);
+		assertEquals(3, averager.getX(), 1e-12);
+		assertEquals(20, averager.getY(), 1e-12);
+		assertEquals(3, averager.getCount());
+	}
+
+	@Test
+	public void medianOfGroupMeans() {
+		// Each position is its own group, so the estimate is the median position
+		final PositionAverager averager = new PositionAverager(1, NEVER_REJECT, 1);
+		averager.add(0, 0);
+		averager.add(0, 0);
+		averager.add(100, 100);
+		assertEquals(0, averager.getX(), 0);
+		assertEquals(0, averager.getY(), 0);
+
+		averager.add(2, 4);
+		// Even number of groups: the mean of the middle two
+		assertEquals(1, averager.getX(), 0);
+		assertEquals(2, averager.getY(), 0);
+	}
+
+	@Test
+	public void incompleteGroupIsNotInTheMedian() {
+		final PositionAverager averager = new PositionAverager(2, NEVER_REJECT, 1);
+		for(int i = 0; i < 6; i++) {
+			averager.add(10, 10);
+		}
+		// A partial group far away
+		averager.add(50, 50);
+		assertEquals(10, averager.getX(), 0);
+		assertEquals(10, averager.getY(), 0);
+	}
+
+	@Test
+	public void manyGroups() {
+		// More groups than the initial capacity
+		final PositionAverager averager = new PositionAverager(1, NEVER_REJECT, 1);
+		for(int i = 0; i < 40; i++) {
+			averager.add(i, -i);
+		}
+		assertEquals(40, averager.getCount());
+		assertEquals(19.5, averager.getX(), 0);
+		assertEquals(-19.5, averager.getY(), 0);
+	}
+
+	@Test
+	public void rejectsDistantPositions() {
+		final PositionAverager averager = new PositionAverager(5, 3, 1);
+		// Nearly identical fixes, so the minimum deviation is used
+		for(int i = 0; i < 5; i++) {
+			assertTrue(averager.add(i * 0.01, 0));
+		}
+		assertFalse(averager.add(50, 50));
+		assertTrue(averager.add(1, 1));
+		assertEquals(6, averager.getCount());
+		assertEquals(1, averager.getRejected());
+	}
+
+	@Test
+	public void noRejectionForTheFirstPositions() {
+		final PositionAverager averager = new PositionAverager(5, 3, 1);
+		assertTrue(averager.add(0, 0));
+		assertTrue(averager.add(1000, 1000));
+		assertEquals(0, averager.getRejected());
+	}
+
+	@Test
+	public void convergesWithEnoughPositions() {
+		final PositionAverager averager = new PositionAverager(5, 3, 1);
+		for(int i = 0; i < 30; i++) {
+			averager.add((i % 3) * 0.1, (i % 2) * 0.1);
+		}
+		assertTrue(averager.isConverged(30, 0.5));
+		assertFalse(averager.isConverged(31, 0.5));
+		assertFalse(averager.isConverged(30, 0.001));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsEmptyGroups() {
+		new PositionAverager(0, 3, 1);
+	}
+}
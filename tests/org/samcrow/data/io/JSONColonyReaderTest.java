@@ -0,0 +1,85 @@
+package org.samcrow.data.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.samcrow.colonynavigator3.data.Colony;
+
+/**
+ * Tests that {@link JSONColonyReader} reads what {@link JSONColonyWriter} wrote
+ *
+ * @author Sam Crow
+ */
+public class JSONColonyReaderTest {
+
+	private static JSONColonyReader reader(String json) throws IOException {
+		return new JSONColonyReader(new ByteArrayInputStream(json.getBytes("UTF-8")));
+	}
+
+	@Test
+	public void writeAndRead() throws IOException {
+		final Map<String, Object> attributes = new HashMap<String, Object>();
+		attributes.put("notes", "\"Quoted\"\nand \u00e9\u2028");
+		attributes.put("count", 12.5);
+		final Colony first = new Colony(1, 10.25, -20.5, true, false, new Date(1400000000000L), attributes);
+		final Colony second = new Colony(2, 0, 0, false, true, null, null);
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final JSONColonyWriter writer = new JSONColonyWriter(bytes, "A comment");
+		writer.write(first);
+		writer.write(second);
+		writer.close();
+
+		final JSONColonyReader reader = new JSONColonyReader(new ByteArrayInputStream(bytes.toByteArray()));
+		final Colony readFirst = reader.next();
+		assertEquals(1, readFirst.getId());
+		assertEquals(10.25, readFirst.getX(), 0);
+		assertEquals(-20.5, readFirst.getY(), 0);
+		assertTrue(readFirst.isActive());
+		assertFalse(readFirst.isVisited());
+		assertEquals(first.getModified(), readFirst.getModified());
+		assertEquals(attributes, readFirst.getAttributes());
+
+		final Colony readSecond = reader.next();
+		assertEquals(2, readSecond.getId());
+		assertTrue(readSecond.isVisited());
+		assertNull(readSecond.getModified());
+
+		assertNull(reader.next());
+		assertNull(reader.next());
+		reader.close();
+	}
+
+	@Test
+	public void skipsInvalidEntries() throws IOException {
+		final JSONColonyReader reader = reader("{\"other\": [1, {\"a\": [true, null]}], \"colonies\": ["
+				+ "5, {\"id\": \"x\", \"x\": 1}, {\"id\": 7, \"x\": 1.5, \"y\": -2e1, \"extra\": {\"z\": [1]}},"
+				+ " {\"id\": 8.5}, {\"id\": 9.0, \"active\": 1}, {\"id\": 10.0}]}");
+		assertEquals(7, reader.next().getId());
+		assertEquals(10, reader.next().getId());
+		assertNull(reader.next());
+		assertEquals(4, reader.getSkippedCount());
+		reader.close();
+	}
+
+	@Test
+	public void noColonies() throws IOException {
+		assertNull(reader("{\"comment\": \"empty\"}").next());
+		assertNull(reader("{\"colonies\": []}").next());
+	}
+
+	@Test(expected = IOException.class)
+	public void invalidJSON() throws IOException {
+		reader("{\"colonies\": [{\"id\": 1,}]}").next();
+	}
+}
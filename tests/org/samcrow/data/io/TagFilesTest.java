@@ -0,0 +1,65 @@
+package org.samcrow.data.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+import org.samcrow.colonynavigator3.data.TagSet;
+import org.samcrow.data.storage.MemoryStorage;
+
+/**
+ * Tests for {@link TagFiles}
+ *
+ * @author Sam Crow
+ */
+public class TagFilesTest {
+
+	private static final int MAX = Integer.MAX_VALUE;
+
+	private static TagSet read(String text) throws IOException {
+		return TagFiles.readTags(new ByteArrayInputStream(text.getBytes("UTF-8")));
+	}
+
+	@Test
+	public void readsIdsAndRanges() throws IOException {
+		final TagSet tags = read("12\n3-5\n  7 \nnot an id\n\n6\n");
+		assertArrayEquals(new int[] { 3, 7, 12, 12 }, tags.getRuns());
+	}
+
+	@Test
+	public void joinsOverlappingRanges() throws IOException {
+		final TagSet tags = read("10-20\n1-3\n15-30\n4\n");
+		assertArrayEquals(new int[] { 1, 4, 10, 30 }, tags.getRuns());
+	}
+
+	@Test
+	public void largeRangesAreNotExpanded() throws IOException {
+		final TagSet tags = read("1-2000000000\n");
+		assertEquals(2000000000, tags.size());
+		assertEquals(1, tags.getRunCount());
+	}
+
+	@Test
+	public void rangeEndingAtMaxValue() throws IOException {
+		final TagSet tags = read((MAX - 2) + "-" + MAX + "\n" + MAX + "\n");
+		assertArrayEquals(new int[] { MAX - 2, MAX }, tags.getRuns());
+	}
+
+	@Test
+	public void skipsBackwardRanges() throws IOException {
+		assertEquals(TagSet.of(4), read("10-3\n4\n"));
+	}
+
+	@Test
+	public void writeAndRead() throws IOException {
+		final MemoryStorage storage = new MemoryStorage();
+		final TagSet tags = TagSet.ofRuns(new int[] { 1, 1, 3, 4, 10, 500, MAX - 1, MAX });
+		TagFiles.write(storage, "tag_test.txt", tags);
+		assertEquals(tags, TagFiles.read(storage, "tag_test.txt"));
+		TagFiles.write(storage, "tag_test.txt.gz", tags);
+		assertEquals(tags, TagFiles.read(storage, "tag_test.txt.gz"));
+	}
+}
@@ -0,0 +1,141 @@
+package org.samcrow.data.observation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that an {@link ObservationLog} reads back what it wrote
+ *
+ * @author Sam Crow
+ */
+public class ObservationLogTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File file;
+
+	@Before
+	public void setUp() {
+		file = new File(folder.getRoot(), "observations.log");
+	}
+
+	/**
+	 * @return An observation that depends on i
+	 */
+	private static Observation observation(int i) {
+		final boolean hasFix = i % 4 != 0;
+		return new Observation(i % 7 + 1, 1400000000000L + i * 60000L, i % 2 == 0 ? "tablet" : "phone",
+				hasFix ? 31.87 + i * 1e-6 : Double.NaN, hasFix ? -109.04 - i * 1e-6 : Double.NaN,
+				hasFix ? i % 10 : 0, i % 3 == 0 ? Observation.NO_COUNT : i, i % 5 == 0 ? "Note " + i + " \u00e9" : null);
+	}
+
+	private static void assertSame(Observation expected, Observation actual) {
+		assertEquals(expected.getColonyId(), actual.getColonyId());
+		assertEquals(expected.getTime(), actual.getTime());
+		assertEquals(expected.getObserver(), actual.getObserver());
+		assertEquals(expected.hasFix(), actual.hasFix());
+		assertEquals(expected.getLatitude(), actual.getLatitude(), 0);
+		assertEquals(expected.getLongitude(), actual.getLongitude(), 0);
+		assertEquals(expected.getAccuracy(), actual.getAccuracy(), 0);
+		assertEquals(expected.getCount(), actual.getCount());
+		assertEquals(expected.getNotes(), actual.getNotes());
+	}
+
+	/**
+	 * Check that a log contains the observations made by {@link #observation(int)}
+	 * for i from 0 to count - 1
+	 */
+	private static void assertContains(ObservationLog log, int count) throws IOException {
+		assertEquals(count, log.size());
+		int total = 0;
+		for(int colony = 1; colony <= 7; colony++) {
+			final List<Observation> visits = log.getVisits(colony);
+			assertEquals(visits.size(), log.getVisitCount(colony));
+			// Visits of a colony are every seventh observation, in order
+			for(int j = 0; j < visits.size(); j++) {
+				assertSame(observation(colony - 1 + 7 * j), visits.get(j));
+			}
+			total += visits.size();
+		}
+		assertEquals(count, total);
+	}
+
+	@Test
+	public void readsUnflushedObservations() throws IOException {
+		final ObservationLog log = new ObservationLog(file);
+		for(int i = 0; i < 20; i++) {
+			log.append(observation(i));
+		}
+		assertContains(log, 20);
+		log.close();
+	}
+
+	@Test
+	public void readsBackAfterReopening() throws IOException {
+		// Several full blocks and a partial one
+		final int count = ObservationLog.BLOCK_SIZE * 2 + 37;
+		final ObservationLog log = new ObservationLog(file);
+		for(int i = 0; i < count; i++) {
+			log.append(observation(i));
+		}
+		assertContains(log, count);
+		log.close();
+
+		final ObservationLog reopened = new ObservationLog(file);
+		assertContains(reopened, count);
+
+		// Appending after reopening continues the log
+		reopened.append(observation(count));
+		reopened.close();
+		assertContains(new ObservationLog(file), count + 1);
+	}
+
+	@Test
+	public void removesIncompleteBlock() throws IOException {
+		final ObservationLog log = new ObservationLog(file);
+		for(int i = 0; i < 10; i++) {
+			log.append(observation(i));
+		}
+		log.close();
+		final long length = file.length();
+
+		// A block that was being written when the application stopped
+		final FileOutputStream out = new FileOutputStream(file, true);
+		out.write(new byte[] { 0, 0, 1, 0, 0, 0, 0, 5 });
+		out.close();
+
+		final ObservationLog reopened = new ObservationLog(file);
+		assertContains(reopened, 10);
+		assertEquals(length, file.length());
+		reopened.append(observation(10));
+		reopened.close();
+		assertContains(new ObservationLog(file), 11);
+	}
+
+	@Test
+	public void unknownColonyHasNoVisits() throws IOException {
+		final ObservationLog log = new ObservationLog(file);
+		assertEquals(0, log.getVisitCount(99));
+		assertTrue(log.getVisits(99).isEmpty());
+		log.close();
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsOtherFiles() throws IOException {
+		final FileOutputStream out = new FileOutputStream(file);
+		out.write("not a log".getBytes("UTF-8"));
+		out.close();
+		new ObservationLog(file);
+	}
+}
@@ -0,0 +1,136 @@
+package org.samcrow.data.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.samcrow.colonynavigator3.data.Colony;
+import org.samcrow.colonynavigator3.data.ColonyList;
+import org.samcrow.colonynavigator3.data.TagSet;
+import org.samcrow.data.io.JSONFileParser;
+import org.samcrow.data.sql.JDBCSQLDatabase;
+import org.samcrow.data.sql.SQLDatabase;
+import org.samcrow.data.storage.MemoryStorage;
+
+/**
+ * Tests {@link SQLiteColonyProvider} on an SQLite JDBC driver
+ *
+ * @author Sam Crow
+ */
+public class SQLiteColonyProviderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File databaseFile;
+
+	private MemoryStorage storage;
+
+	@Before
+	public void setUp() {
+		databaseFile = new File(folder.getRoot(), "colonies.db");
+		storage = new MemoryStorage();
+		final Map<String, Object> attributes = new HashMap<String, Object>();
+		attributes.put("notes", "Under a creosote bush");
+		new JSONFileParser(storage, "colonies.json").write(Arrays.asList(
+				new Colony(1, 10, 10, true, false, new Date(1400000000000L), attributes),
+				new Colony(2, 60, 10, false, true, new Date(1400000001000L), null),
+				new Colony(3, 120, 130, true, true, null, null),
+				new Colony(4, -20, 40, false, false, null, null)));
+	}
+
+	private SQLiteColonyProvider open() throws IOException {
+		return new SQLiteColonyProvider(JDBCSQLDatabase.open(databaseFile), new JSONFileParser(storage, "colonies.json"));
+	}
+
+	@Test
+	public void migratesOnceAndKeepsChanges() throws IOException {
+		SQLiteColonyProvider provider = open();
+		assertTrue(provider.wasMigrated());
+		assertEquals(4, provider.getColonies().size());
+		final Colony second = provider.getColonies().getById(2);
+		second.setActive(true);
+		provider.updateColony(second);
+		provider.close();
+
+		provider = open();
+		assertFalse(provider.wasMigrated());
+		final ColonyList colonies = provider.getColonies();
+		assertEquals(4, colonies.size());
+		final Colony first = colonies.getById(1);
+		assertEquals(10, first.getX(), 0);
+		assertTrue(first.isActive());
+		assertFalse(first.isVisited());
+		assertEquals(new Date(1400000000000L), first.getModified());
+		assertEquals("Under a creosote bush", first.getAttributes().get("notes"));
+		assertTrue(colonies.getById(2).isActive());
+		assertTrue(colonies.getById(2).isVisited());
+		assertNull(colonies.getById(4).getModified());
+		provider.close();
+	}
+
+	@Test
+	public void usesWriteAheadLog() throws IOException {
+		final SQLDatabase database = JDBCSQLDatabase.open(databaseFile);
+		final SQLDatabase.Rows rows = database.query("PRAGMA journal_mode", null);
+		try {
+			assertTrue(rows.next());
+			assertEquals("wal", rows.getString(0).toLowerCase());
+		}
+		finally {
+			rows.close();
+		}
+		database.close();
+	}
+
+	@Test
+	public void findsByAreaAndFlags() throws IOException {
+		final SQLiteColonyProvider provider = open();
+		assertEquals(TagSet.of(1, 2), provider.findIdsInArea(0, 0, 100, 50));
+		assertEquals(TagSet.of(4), provider.findIdsInArea(-30, 30, -10, 50));
+		assertEquals(TagSet.EMPTY, provider.findIdsInArea(200, 200, 300, 300));
+
+		final int both = SQLiteColonyProvider.FLAG_ACTIVE | SQLiteColonyProvider.FLAG_VISITED;
+		assertEquals(TagSet.of(1, 3), provider.findIdsWithFlags(SQLiteColonyProvider.FLAG_ACTIVE, SQLiteColonyProvider.FLAG_ACTIVE));
+		assertEquals(TagSet.of(1), provider.findIdsWithFlags(both, SQLiteColonyProvider.FLAG_ACTIVE));
+		assertEquals(TagSet.of(1, 2, 3, 4), provider.findIdsWithFlags(0, 0));
+
+		// Queries see the changes queued before them
+		final Colony fourth = provider.getColonies().getById(4);
+		fourth.setPosition(55, 15);
+		fourth.setVisited(true);
+		provider.updateColony(fourth);
+		assertEquals(TagSet.of(1, 2, 4), provider.findIdsInArea(0, 0, 100, 50));
+		assertEquals(TagSet.of(2, 3, 4), provider.findIdsWithFlags(SQLiteColonyProvider.FLAG_VISITED, SQLiteColonyProvider.FLAG_VISITED));
+		provider.close();
+	}
+
+	@Test
+	public void writesAndRemovesOtherColonies() throws IOException {
+		SQLiteColonyProvider provider = open();
+		final Colony added = new Colony(9, 1, 2, true);
+		provider.write(Collections.singletonList(added));
+		provider.remove(Arrays.asList(provider.getColonies().getById(3), added));
+		provider.write(Collections.singletonList(added));
+		provider.remove(Collections.singletonList(provider.getColonies().getById(1)));
+		assertEquals(TagSet.of(2, 4, 9), provider.findIdsWithFlags(0, 0));
+		provider.close();
+
+		provider = open();
+		assertEquals(TagSet.of(2, 4, 9), TagSet.ofColonies(provider.getColonies()));
+		provider.close();
+	}
+}
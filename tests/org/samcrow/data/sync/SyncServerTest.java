@@ -0,0 +1,186 @@
+package org.samcrow.data.sync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.samcrow.colonynavigator3.data.Colony;
+import org.samcrow.colonynavigator3.data.ColonyList;
+import org.samcrow.data.provider.ColonyProvider;
+
+/**
+ * Tests that a {@link SyncServer} keeps its versions across a restart, so
+ * that clients do not send or receive everything again
+ *
+ * @author Sam Crow
+ */
+public class SyncServerTest {
+
+	/** Runs tasks on the calling thread */
+	private static final Executor DIRECT = new Executor() {
+		@Override
+		public void execute(Runnable command) {
+			command.run();
+		}
+	};
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File serverFile;
+
+	private SyncServer server;
+
+	@Before
+	public void setUp() {
+		serverFile = new File(folder.getRoot(), "server_colonies.json");
+	}
+
+	@After
+	public void tearDown() {
+		if(server != null) {
+			server.stop();
+		}
+	}
+
+	/**
+	 * A provider that keeps colonies only in memory
+	 */
+	private static ColonyProvider provider(Colony... colonies) {
+		final ColonyList list = new ColonyList(Arrays.asList(colonies));
+		return new ColonyProvider() {
+			@Override
+			public ColonyList getColonies() {
+				return list;
+			}
+
+			@Override
+			public void updateColonies() {
+			}
+
+			@Override
+			public void updateColony(Colony colony) {
+			}
+		};
+	}
+
+	private SyncClient client(ColonyProvider provider, String name) {
+		return new SyncClient(provider, name, new File(folder.getRoot(), name + ".properties"), DIRECT);
+	}
+
+	/**
+	 * Stop the server, which saves it, and start a new one from the same file
+	 */
+	private void restart() throws IOException {
+		server.stop();
+		server = new SyncServer(serverFile);
+		server.start(0);
+	}
+
+	@Test
+	public void versionsSurviveRestart() throws IOException {
+		server = new SyncServer(serverFile);
+		server.start(0);
+		// Colonies that have never been edited have no modified time and are not sent
+		final Date edited = new Date(1000000);
+		final SyncClient tablet = client(provider(new Colony(1, 10, 20, true, false, edited, null),
+				new Colony(2, 30, 40, false, true, edited, null), new Colony(3, 50, 60, true, false, edited, null),
+				new Colony(4, 70, 80, true)), "tablet");
+		assertEquals(3, tablet.sync("localhost", server.getPort()).pushed);
+
+		final long version = server.getVersion();
+		final String epoch = server.getEpoch();
+		assertNotNull(epoch);
+
+		restart();
+		assertEquals(version, server.getVersion());
+		assertEquals(epoch, server.getEpoch());
+		assertEquals(3, server.getColonies().size());
+
+		// The client has everything already, so nothing is sent either way
+		final SyncClient.Result again = tablet.sync("localhost", server.getPort());
+		assertEquals(0, again.pushed);
+		assertEquals(0, again.pulled);
+
+		// A new client gets every colony
+		final ColonyProvider phoneProvider = provider();
+		final SyncClient.Result phone = client(phoneProvider, "phone").sync("localhost", server.getPort());
+		assertEquals(3, phone.pulled);
+		assertEquals(3, phoneProvider.getColonies().size());
+	}
+
+	@Test
+	public void changesAfterRestartGetNewVersions() throws IOException {
+		server = new SyncServer(serverFile);
+		server.start(0);
+		final Colony colony = new Colony(1, 10, 20, true, false, new Date(1000000), null);
+		final ColonyProvider tabletProvider = provider(colony);
+		final SyncClient tablet = client(tabletProvider, "tablet");
+		tablet.sync("localhost", server.getPort());
+		final ColonyProvider phoneProvider = provider();
+		final SyncClient phone = client(phoneProvider, "phone");
+		phone.sync("localhost", server.getPort());
+
+		restart();
+		final long version = server.getVersion();
+		colony.setVisited(true);
+		assertEquals(1, tablet.sync("localhost", server.getPort()).pushed);
+		assertEquals(version + 1, server.getVersion());
+
+		// The phone's cursor is still valid, so it only gets the changed colony
+		final SyncClient.Result result = phone.sync("localhost", server.getPort());
+		assertEquals(1, result.pulled);
+		assertTrue(phoneProvider.getColonies().getById(1).isVisited());
+	}
+
+	@Test
+	public void unversionedFileStartsNewEpoch() throws IOException {
+		// A colony file from somewhere else, without versions
+		final List<Colony> colonies = new ArrayList<Colony>();
+		colonies.add(new Colony(5, 1, 2, true));
+		colonies.add(new Colony(6, 3, 4, false));
+		final JSONObject root = new JSONObject();
+		try {
+			root.put("colonies", SyncMessage.toJSON(colonies));
+		} catch (JSONException e) {
+			throw new IOException(e.getMessage());
+		}
+		final FileOutputStream out = new FileOutputStream(serverFile);
+		out.write(root.toString().getBytes("UTF-8"));
+		out.close();
+
+		server = new SyncServer(serverFile);
+		final String epoch = server.getEpoch();
+		assertNotNull(epoch);
+		assertEquals(2, server.getVersion());
+		server.start(0);
+
+		restart();
+		assertEquals(epoch, server.getEpoch());
+		assertEquals(2, server.getVersion());
+	}
+
+	@Test
+	public void emptyServersHaveDifferentEpochs() {
+		final SyncServer first = new SyncServer(null);
+		final SyncServer second = new SyncServer(null);
+		assertFalse(first.getEpoch().equals(second.getEpoch()));
+	}
+}
@@ -0,0 +1,100 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.samcrow.colonynavigator3.data.Colony;
+import org.samcrow.data.archive.CensusArchive;
+import org.samcrow.data.archive.CensusArchiveWriter;
+import org.samcrow.data.io.DataStreams;
+import org.samcrow.data.storage.FileStorage;
+
+/**
+ * Combines yearly census CSV files, in the format of colonies.csv, into a
+ * census archive that the application can show on the map.
+ *
+ * The year of each census is the first four-digit number in its file name,
+ * for example census-1987.csv. A colony is active in a year if the fourth
+ * column of its line is A. The application's CSV parser is not used, because
+ * it reads every colony as inactive for the start of a new census.
+ *
+ * Usage, from the project directory, with an org.json jar (the version built
+ * into Android is not available on a desktop JVM):
+ * <pre>
+ * javac -d tools/bin -cp "libs/*:json.jar" -sourcepath src tools/BuildCensusArchive.java
+ * java -cp "tools/bin:libs/*:json.jar" BuildCensusArchive census_archive.bin census-*.csv
+ * </pre>
+ *
+ * @author Sam Crow
+ */
+public class BuildCensusArchive {
+
+	private static final Pattern YEAR = Pattern.compile("\\d{4}");
+
+	public static void main(String[] args) throws Exception {
+		if(args.length < 2) {
+			System.err.println("Usage: BuildCensusArchive archive census-YYYY.csv...");
+			System.exit(1);
+		}
+		final CensusArchiveWriter writer = new CensusArchiveWriter();
+		for(int i = 1; i < args.length; i++) {
+			final File file = new File(args[i]);
+			final Matcher matcher = YEAR.matcher(file.getName());
+			if(!matcher.find()) {
+				System.err.println("No year in file name " + file.getName() + ", skipping");
+				continue;
+			}
+			final int year = Integer.parseInt(matcher.group());
+			writer.addYear(year, read(file));
+		}
+
+		final File archiveFile = new File(args[0]);
+		writer.write(FileStorage.forFile(archiveFile), archiveFile.getName());
+
+		final CensusArchive archive = CensusArchive.read(archiveFile);
+		System.out.println("Wrote " + archive.getYears().length + " years and " + archive.getColonyIds().size()
+				+ " colonies to " + archiveFile + " (" + archiveFile.length() + " bytes)");
+	}
+
+	/**
+	 * Read a census file. Lines that do not start with a colony ID, like
+	 * headers, are skipped.
+	 */
+	private static List<Colony> read(File file) throws IOException {
+		final List<Colony> colonies = new ArrayList<Colony>();
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(DataStreams.openInput(file)));
+		try {
+			int lineNumber = 0;
+			while(true) {
+				final String line = reader.readLine();
+				if(line == null) {
+					break;
+				}
+				lineNumber++;
+				final String[] parts = line.trim().split("\\s*,\\s*");
+				if(parts.length < 3) {
+					continue;
+				}
+				try {
+					final int id = Integer.parseInt(parts[0]);
+					final double x = Double.parseDouble(parts[1]);
+					final double y = Double.parseDouble(parts[2]);
+					final boolean active = parts.length > 3 && parts[3].equalsIgnoreCase("A");
+					colonies.add(new Colony(id, x, y, active));
+				} catch (NumberFormatException e) {
+					if(lineNumber != 1) {
+						System.err.println(file.getName() + " line " + lineNumber + ": " + e.getMessage() + ", skipping");
+					}
+				}
+			}
+		}
+		finally {
+			reader.close();
+		}
+		return colonies;
+	}
+}
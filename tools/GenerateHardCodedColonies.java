@@ -0,0 +1,150 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Generates src/org/samcrow/data/provider/HardCodedColonyData.java from a CSV
+ * file of colonies, so that the hard-coded colonies can be loaded without
+ * parsing anything at run time.
+ *
+ * Each line of the CSV file has the format written by CSVParser:
+ * <code>id,x,y,active,,</code>, where active is A for an active colony.
+ * Coordinates are rounded to whole meters.
+ *
+ * Usage, from the project directory:
+ * <pre>
+ * javac -d tools/bin tools/GenerateHardCodedColonies.java
+ * java -cp tools/bin GenerateHardCodedColonies tools/hardcoded_colonies.csv src/org/samcrow/data/provider/HardCodedColonyData.java
+ * </pre>
+ *
+ * @author Sam Crow
+ */
+public class GenerateHardCodedColonies {
+
+	/** The number of array values to put on each line of output */
+	private static final int VALUES_PER_LINE = 16;
+
+	private static class Row implements Comparable<Row> {
+		int id;
+		int x;
+		int y;
+		boolean active;
+
+		@Override
+		public int compareTo(Row other) {
+			return id < other.id ? -1 : (id > other.id ? 1 : 0);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if(args.length != 2) {
+			System.err.println("Usage: GenerateHardCodedColonies input.csv Output.java");
+			System.exit(1);
+		}
+
+		final List<Row> rows = read(args[0]);
+		// Sorted output lets ColonyList skip real sorting work
+		Collections.sort(rows);
+
+		final PrintStream out = new PrintStream(args[1]);
+		try {
+			write(rows, out);
+		}
+		finally {
+			out.close();
+		}
+		System.out.println("Wrote " + rows.size() + " colonies to " + args[1]);
+	}
+
+	private static List<Row> read(String path) throws IOException {
+		final List<Row> rows = new ArrayList<Row>();
+		final BufferedReader reader = new BufferedReader(new FileReader(path));
+		try {
+			int lineNumber = 0;
+			while(true) {
+				final String line = reader.readLine();
+				if(line == null) {
+					break;
+				}
+				lineNumber++;
+				if(line.trim().isEmpty()) {
+					continue;
+				}
+				final String[] parts = line.split("\\s*,\\s*");
+				if(parts.length < 3) {
+					throw new IOException("Line " + lineNumber + ": expected id,x,y");
+				}
+				final Row row = new Row();
+				row.id = checkShort(Integer.parseInt(parts[0].trim()), lineNumber);
+				row.x = checkShort((int) Math.round(Double.parseDouble(parts[1])), lineNumber);
+				row.y = checkShort((int) Math.round(Double.parseDouble(parts[2])), lineNumber);
+				row.active = parts.length > 3 && parts[3].equalsIgnoreCase("A");
+				rows.add(row);
+			}
+		}
+		finally {
+			reader.close();
+		}
+		return rows;
+	}
+
+	private static int checkShort(int value, int lineNumber) throws IOException {
+		if(value < Short.MIN_VALUE || value > Short.MAX_VALUE) {
+			throw new IOException("Line " + lineNumber + ": value " + value + " does not fit in a short");
+		}
+		return value;
+	}
+
+	private static void write(List<Row> rows, PrintStream out) {
+		out.println("package org.samcrow.data.provider;");
+		out.println();
+		out.println("/**");
+		out.println(" * The colonies provided by {@link HardCodedColonyProvider}, stored as parallel arrays");
+		out.println(" * sorted by colony ID.");
+		out.println(" * ");
+		out.println(" * Generated by tools/GenerateHardCodedColonies.java from tools/hardcoded_colonies.csv.");
+		out.println(" * Do not edit.");
+		out.println(" */");
+		out.println("final class HardCodedColonyData {");
+		out.println();
+		out.println("\tprivate HardCodedColonyData() {}");
+		out.println();
+
+		final int size = rows.size();
+		final String[] ids = new String[size];
+		final String[] xs = new String[size];
+		final String[] ys = new String[size];
+		final String[] actives = new String[size];
+		for(int i = 0; i < size; i++) {
+			final Row row = rows.get(i);
+			ids[i] = String.valueOf(row.id);
+			xs[i] = String.valueOf(row.x);
+			ys[i] = String.valueOf(row.y);
+			actives[i] = String.valueOf(row.active);
+		}
+
+		writeArray(out, "Colony IDs", "short", "IDS", ids);
+		writeArray(out, "X-coordinates in meters", "short", "X", xs);
+		writeArray(out, "Y-coordinates in meters", "short", "Y", ys);
+		writeArray(out, "Active states", "boolean", "ACTIVE", actives);
+		out.println("}");
+	}
+
+	private static void writeArray(PrintStream out, String comment, String type, String name, String[] values) {
+		out.println("\t/** " + comment + " */");
+		out.println("\tstatic final " + type + "[] " + name + " = {");
+		for(int i = 0; i < values.length; i += VALUES_PER_LINE) {
+			final StringBuilder line = new StringBuilder("\t\t");
+			for(int j = i; j < Math.min(i + VALUES_PER_LINE, values.length); j++) {
+				line.append(values[j]).append(", ");
+			}
+			out.println(line.toString().replaceAll("\\s+$", ""));
+		}
+		out.println("\t};");
+		out.println();
+	}
+}
@@ -0,0 +1,80 @@
+import java.util.ArrayList;
+import java.util.List;
+
+import org.samcrow.colonynavigator3.data.Colony;
+import org.samcrow.data.io.CSVFileParser;
+import org.samcrow.data.io.FileParser;
+import org.samcrow.data.io.JSONFileParser;
+import org.samcrow.data.storage.MemoryStorage;
+import org.samcrow.data.storage.Storage;
+import org.samcrow.data.storage.ThrottledStorage;
+
+/**
+ * Measures how long colony files take to save and load from storage of
+ * different speeds, using the same parsers as the application.
+ *
+ * Each configuration is a latency for opening a file and a bandwidth.
+ * The slow configurations are typical of cheap memory cards.
+ *
+ * CSV and JSON files use the application's parsers.
+ *
+ * Usage, from the project directory, with an org.json jar (the version built
+ * into Android is not available on a desktop JVM):
+ * <pre>
+ * javac -d tools/bin -cp "libs/*:json.jar" -sourcepath src tools/StorageBenchmark.java
+ * java -cp "tools/bin:libs/*:json.jar" StorageBenchmark [colonies]
+ * </pre>
+ *
+ * @author Sam Crow
+ */
+public class StorageBenchmark {
+
+	/** Latency in milliseconds and bandwidth in bytes per second of each configuration */
+	private static final long[][] CONFIGURATIONS = {
+		{ 0, 0 },
+		{ 5, 20 * 1024 * 1024 },
+		{ 20, 4 * 1024 * 1024 },
+		{ 50, 1024 * 1024 },
+	};
+
+	/** The number of times each measurement is repeated. The fastest time is reported. */
+	private static final int REPEATS = 3;
+
+	public static void main(String[] args) {
+		final int count = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		final List<Colony> colonies = new ArrayList<Colony>(count);
+		for(int i = 1; i <= count; i++) {
+			colonies.add(new Colony(i, (i * 37) % 600, (i * 91) % 400, i % 3 == 0));
+		}
+
+		System.out.println(count + " colonies");
+		System.out.println("latency(ms)\tbandwidth(KiB/s)\tfile\twrite(ms)\tread(ms)\tbytes");
+		for(long[] configuration : CONFIGURATIONS) {
+			for(String name : new String[] { "colonies.csv", "colonies.csv.gz", "colonies.json", "colonies.json.gz" }) {
+				final MemoryStorage memory = new MemoryStorage();
+				final Storage storage = new ThrottledStorage(memory, configuration[0], configuration[1]);
+
+				long writeTime = Long.MAX_VALUE;
+				long readTime = Long.MAX_VALUE;
+				for(int i = 0; i < REPEATS; i++) {
+					final FileParser<Colony> parser = name.startsWith("colonies.csv")
+							? new CSVFileParser(storage, name) : new JSONFileParser(storage, name);
+
+					long start = System.nanoTime();
+					parser.write(colonies);
+					writeTime = Math.min(writeTime, System.nanoTime() - start);
+
+					start = System.nanoTime();
+					final int read = parser.parse().size();
+					readTime = Math.min(readTime, System.nanoTime() - start);
+					if(read != count) {
+						System.err.println("Read " + read + " colonies from " + name + ", expected " + count);
+					}
+				}
+
+				System.out.println(configuration[0] + "\t" + (configuration[1] / 1024) + "\t" + name
+						+ "\t" + (writeTime / 1000000) + "\t" + (readTime / 1000000) + "\t" + memory.get(name).length);
+			}
+		}
+	}
+}
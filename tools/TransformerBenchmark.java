@@ -0,0 +1,101 @@
+import org.mapsforge.core.model.LatLong;
+import org.samcrow.colonynavigator3.CoordinateTransformer;
+import org.samcrow.colonynavigator3.MapPoint;
+
+/**
+ * Checks the accuracy of {@link CoordinateTransformer} and measures how fast
+ * it transforms points. Runs on a desktop JVM.
+ *
+ * Accuracy is checked by transforming the reference points and by
+ * transforming points to GPS coordinates and back. For comparison, the error
+ * from rounding longitude and latitude to floats, as the previous
+ * transformer did, is also shown.
+ *
+ * Usage, from the project directory:
+ * <pre>
+ * javac -d tools/bin -cp "libs/*" -sourcepath src tools/TransformerBenchmark.java
+ * java -cp "tools/bin:libs/*" TransformerBenchmark [points]
+ * </pre>
+ *
+ * @author Sam Crow
+ */
+public class TransformerBenchmark {
+
+	/** The number of times each measurement is repeated. The fastest time is reported. */
+	private static final int REPEATS = 10;
+
+	/** Receives results so that the JIT compiler cannot remove the work */
+	private static volatile double sink;
+
+	public static void main(String[] args) {
+		final int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+		final MapPoint[] points = {
+			// Colonies 962, 980, 567 and 442
+			new MapPoint(68, 707, 31.87265776, -109.04243),
+			new MapPoint(1324, 289, 31.87087500797029, -109.03870950670428),
+			new MapPoint(110, 110, 31.871036, -109.042678),
+			new MapPoint(110, 782, 31.872357, -109.0391114),
+		};
+
+		for(int n = 1; n <= 4; n++) {
+			final MapPoint[] used = new MapPoint[n];
+			System.arraycopy(points, 0, used, 0, n);
+			final CoordinateTransformer transformer = new CoordinateTransformer(used);
+
+			double referenceError = 0;
+			for(MapPoint point : used) {
+				final double[] local = transformer.toLocal(point.getLongitude(), point.getLatitude());
+				referenceError = Math.max(referenceError, Math.hypot(local[0] - point.getX(), local[1] - point.getY()));
+			}
+
+			double roundTripError = 0;
+			double floatError = 0;
+			final double[] local = new double[2];
+			final double[] lonLat = new double[2];
+			for(int x = 0; x <= 1400; x += 7) {
+				for(int y = 0; y <= 800; y += 7) {
+					local[0] = x;
+					local[1] = y;
+					transformer.toGps(local, lonLat, 1);
+					final double[] back = transformer.toLocal(lonLat[0], lonLat[1]);
+					roundTripError = Math.max(roundTripError, Math.hypot(back[0] - x, back[1] - y));
+					final double[] rounded = transformer.toLocal((float) lonLat[0], (float) lonLat[1]);
+					floatError = Math.max(floatError, Math.hypot(rounded[0] - x, rounded[1] - y));
+				}
+			}
+			System.out.println(n + " points: reference error " + referenceError + " m, round trip error "
+					+ roundTripError + " m, error from float coordinates " + floatError + " m");
+		}
+
+		// Speed, with the default transformer
+		final CoordinateTransformer transformer = CoordinateTransformer.getInstance();
+		final double[] local = new double[2 * count];
+		for(int i = 0; i < count; i++) {
+			local[2 * i] = (i * 37) % 1400;
+			local[2 * i + 1] = (i * 91) % 800;
+		}
+		final double[] lonLat = new double[2 * count];
+		long toGpsTime = Long.MAX_VALUE;
+		long toLocalTime = Long.MAX_VALUE;
+		long singleTime = Long.MAX_VALUE;
+		for(int repeat = 0; repeat < REPEATS; repeat++) {
+			long start = System.nanoTime();
+			transformer.toGps(local, lonLat, count);
+			toGpsTime = Math.min(toGpsTime, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			transformer.toLocal(lonLat, local, count);
+			toLocalTime = Math.min(toLocalTime, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			for(int i = 0; i < count; i++) {
+				final LatLong position = transformer.toGps(local[2 * i], local[2 * i + 1]);
+				sink = position.latitude;
+			}
+			singleTime = Math.min(singleTime, System.nanoTime() - start);
+		}
+		System.out.println(count + " points: batch toGps " + (toGpsTime / count) + " ns/point, batch toLocal "
+				+ (toLocalTime / count) + " ns/point, single toGps " + (singleTime / count) + " ns/point");
+	}
+}